@@ -0,0 +1,36 @@
+package chat.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta los benchmarks con el profiler de memoria de JMH y guarda los resultados en JSON, de modo que cada cambio
+ * del servidor pueda compararse en tiempo y en memoria asignada por operacion (gc.alloc.rate.norm) con una ejecucion
+ * anterior. Acepta las mismas opciones que la linea de comandos de JMH; por defecto ejecuta todos los benchmarks y
+ * guarda los resultados en baseline.json.
+ * <pre>
+ * java -cp target/benchmarks.jar chat.bench.BaselineRunner Protocol -rff antes.json
+ * </pre>
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class BaselineRunner {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("baseline.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,71 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import util.FrameCodec;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del envio de un mensaje global a N destinatarios. Compara la codificacion unica del frame compartido
+ * ({@link ChatMessages#setMessage(String)}) con armar y codificar el mensaje para cada destinatario, como se hacia en
+ * cada update(). Ejecutar con "-prof gc" para obtener la memoria asignada por mensaje (gc.alloc.rate.norm).
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    private static final String SENDER = "bench";
+    private static final String MESSAGE = "Hola a todos, este es un mensaje global de prueba";
+
+    @Param({"10", "100", "1000", "10000"})
+    public int recipients;
+
+    private ChatMessages globalMessages;
+
+    @Setup
+    public void setup() {
+        ChatServer chatServer = new ChatServer(0);
+        this.globalMessages = new ChatMessages(null, null);
+        for (int i = 0; i < this.recipients; i++) {
+            new NullSession(chatServer, this.globalMessages);
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce() {
+        this.globalMessages.setSenderName(SENDER);
+        this.globalMessages.setMessage(MESSAGE);
+    }
+
+    @Benchmark
+    public void encodePerRecipient(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < this.recipients; i++) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(MessagesCodes.GLOBAL_MESSAGE).append(MessagesCodes.SEPARATOR)
+                    .append(SENDER).append(MessagesCodes.SEPARATOR).append(MESSAGE);
+            blackhole.consume(FrameCodec.encode(builder.toString()));
+        }
+    }
+}
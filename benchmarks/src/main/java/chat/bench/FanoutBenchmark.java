@@ -0,0 +1,77 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.fanout.ParallelFanout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de la latencia de entrega de un mensaje global ya codificado ({@link ChatMessages#publish(Frame)}) segun
+ * la cantidad de destinatarios y de threads de {@link ParallelFanout}. Con 0 threads el mensaje se entrega desde el
+ * thread que lo publica, como sin la entrega en paralelo. La cantidad de nucleos disponibles se limita ejecutando la
+ * JVM con -XX:ActiveProcessorCount=N (por ejemplo "-jvmArgsAppend -XX:ActiveProcessorCount=4").
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanoutBenchmark {
+
+    private static final int SHARD_SIZE = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int recipients;
+
+    @Param({"0", "2", "4", "8"})
+    public int threads;
+
+    private ChatMessages globalMessages;
+    private ParallelFanout fanout;
+    private Frame frame;
+
+    @Setup
+    public void setup() {
+        ChatServer chatServer = new ChatServer(0);
+        this.globalMessages = new ChatMessages(null, null);
+        for (int i = 0; i < this.recipients; i++) {
+            new NullSession(chatServer, this.globalMessages);
+        }
+        if (this.threads > 0) {
+            this.fanout = new ParallelFanout(this.threads, 1, SHARD_SIZE);
+            this.globalMessages.setFanout(this.fanout);
+        }
+        this.frame = Frame.of(MessagesCodes.GLOBAL_MESSAGE, "bench", "Hola a todos, este es un mensaje global de prueba");
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (this.fanout != null) {
+            this.fanout.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void publish() {
+        this.globalMessages.publish(this.frame);
+    }
+}
@@ -0,0 +1,93 @@
+package chat.bench;
+
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.transport.InProcessClient;
+import chat.transport.InProcessTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de la latencia de ida y vuelta de un mensaje a traves del servidor completo (decodificacion, limites,
+ * ruteo, codificacion y cola de salida) sin sockets, con dos clientes de {@link InProcessTransport}. La diferencia con
+ * la latencia de {@code chat.load.LoadGenerator} es el costo de la pila TCP y de los threads de entrada/salida.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InProcessBenchmark {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private ChatServer server;
+    private InProcessClient ana;
+    private InProcessClient beto;
+    private String global;
+    private String privateMessage;
+
+    @Setup
+    public void setup() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        InProcessTransport transport = new InProcessTransport();
+        this.server = new ChatServer(transport, config);
+        new Thread(this.server::serve, "chat-inprocess").start();
+        this.ana = transport.connect();
+        this.beto = transport.connect();
+        this.ana.send(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+        this.beto.send(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+        // Se descartan las altas de usuarios antes de medir
+        drain(this.ana);
+        drain(this.beto);
+        this.global = MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "Hola a todos, este es un mensaje global";
+        this.privateMessage = MessagesCodes.PRIVATE_MESSAGE + MessagesCodes.SEPARATOR + "Ana" + MessagesCodes.SEPARATOR
+                + "Beto" + MessagesCodes.SEPARATOR + "Hola, este es un mensaje privado de prueba";
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.ana.close();
+        this.beto.close();
+        this.server.shutdown();
+    }
+
+    @Benchmark
+    public ByteBuffer globalRoundTrip() throws IOException, InterruptedException {
+        this.ana.send(this.global);
+        this.ana.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return this.beto.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public ByteBuffer privateRoundTrip() throws IOException, InterruptedException {
+        this.ana.send(this.privateMessage);
+        this.ana.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return this.beto.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void drain(InProcessClient client) throws InterruptedException {
+        while (client.receive(100, TimeUnit.MILLISECONDS) != null) {
+            // Mensajes previos a la medicion
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import util.BinaryCodes;
+import util.Frame;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clase que reproduce el ruteo de mensajes privados anterior, en el que cada par de usuarios que se comunico comparte
+ * un {@link ChatMessages} observado por ambas sesiones. Se utiliza unicamente como referencia en los benchmarks.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class LegacyPrivateSession implements Observer {
+
+    private final Map<String, LegacyPrivateSession> sessions;
+    private final ConcurrentHashMap<String, ChatMessages> privateMessages;
+    private long bytes;
+
+    /**
+     * Constructor de la clase.
+     * @param sessions registro de las sesiones por nombre de usuario.
+     */
+    public LegacyPrivateSession(Map<String, LegacyPrivateSession> sessions) {
+        this.sessions = sessions;
+        this.privateMessages = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Metodo que envia un mensaje privado como lo hacia sendPrivateMessage.
+     * @param senderName nombre del usuario emisor.
+     * @param receiverName nombre del usuario receptor.
+     * @param message mensaje que se envia.
+     */
+    public synchronized void sendPrivateMessage(String senderName, String receiverName, String message) {
+        ChatMessages chatMessage = this.privateMessages.get(receiverName);
+        if (chatMessage == null) {
+            chatMessage = new ChatMessages(senderName, receiverName);
+            this.privateMessages.put(receiverName, chatMessage);
+            chatMessage.addObserver(this);
+            this.sessions.get(receiverName).suscribeTo(chatMessage, senderName);
+        }
+        chatMessage.setSenderName(senderName);
+        chatMessage.setReceiverName(receiverName);
+        chatMessage.setMessage(message);
+    }
+
+    private synchronized void suscribeTo(ChatMessages chatMessages, String username) {
+        this.privateMessages.put(username, chatMessages);
+        chatMessages.addObserver(this);
+    }
+
+    @Override
+    public void update(Observable o, Object arg) {
+        try {
+            this.bytes += ((Frame) arg).view(BinaryCodes.VERSION_TEXT).remaining();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Metodo para obtener la cantidad de bytes recibidos.
+     * @return bytes de los frames recibidos.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
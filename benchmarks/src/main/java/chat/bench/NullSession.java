@@ -0,0 +1,84 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ChatSession;
+import util.Frame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Clase que representa una sesion sin conexion para los benchmarks. Recibe los frames como lo haria el camino de
+ * escritura de una conexion (tomando una vista propia del frame) y los descarta, de modo que se mide unicamente el
+ * costo del servidor.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class NullSession extends ChatSession {
+
+    private long bytes;
+
+    /**
+     * Constructor de la clase. La sesion queda suscripta al contenedor global.
+     * @param chatServer instancia del servidor.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     */
+    public NullSession(ChatServer chatServer, ChatMessages globalMessages) {
+        super(chatServer, globalMessages);
+        this.open();
+    }
+
+    @Override
+    protected void send(Frame frame) throws IOException {
+        this.bytes += frame.view(this.protocolVersion).remaining();
+    }
+
+    /**
+     * Metodo que registra la sesion en el servidor con el nombre indicado, sin notificar al resto de los usuarios.
+     * @param name nombre de usuario.
+     * @return la misma sesion.
+     */
+    public NullSession register(String name) {
+        this.userName = name;
+        this.chatServer.addUser(name, this);
+        return this;
+    }
+
+    /**
+     * Metodo que atiende una peticion de texto como si la hubiera enviado el cliente.
+     * @param request peticion segun el protocolo {@link util.MessagesCodes}.
+     */
+    public void request(String request) {
+        this.decodeRequest(request);
+    }
+
+    /**
+     * Metodo que atiende una peticion de texto ya codificada como la recibe una conexion, sin crear su String.
+     * @param frame buffer en modo lectura con una peticion completa; su posicion avanza hasta el final de la peticion.
+     * @throws IOException si la peticion es invalida.
+     */
+    public void requestText(ByteBuffer frame) throws IOException {
+        this.textReader.next(frame);
+        this.decodeRequest(this.textReader);
+    }
+
+    /**
+     * Metodo que atiende un frame de la version binaria del protocolo como si lo hubiera enviado el cliente.
+     * @param frame buffer en modo lectura con un frame completo; su posicion avanza hasta el final del frame.
+     * @throws IOException si el frame es invalido.
+     */
+    public void request(ByteBuffer frame) throws IOException {
+        this.frameReader.next(frame);
+        this.decodeRequest(this.frameReader);
+    }
+
+    /**
+     * Metodo para obtener la cantidad de bytes recibidos.
+     * @return bytes de los frames recibidos.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
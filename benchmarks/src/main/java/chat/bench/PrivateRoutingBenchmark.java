@@ -0,0 +1,101 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del ruteo de mensajes privados entre usuarios que ya se comunicaron previamente. Compara el ruteo directo
+ * a traves del registro de usuarios con el diseño anterior de un {@link ChatMessages} por par de usuarios
+ * ({@link LegacyPrivateSession}). La memoria retenida por cada diseño se mide con {@link PrivateRoutingFootprint}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrivateRoutingBenchmark {
+
+    private static final int PAIRS = 4096;
+    private static final String MESSAGE = "Hola, este es un mensaje privado de prueba";
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"20"})
+    public int peersPerUser;
+
+    private NullSession[] sessions;
+    private LegacyPrivateSession[] legacySessions;
+    private int[] senders;
+    private int[] receivers;
+    private String[] names;
+    private String[] requests;
+    private int next;
+
+    @Setup
+    public void setup() {
+        ChatServer chatServer = new ChatServer(0);
+        ChatMessages globalMessages = new ChatMessages(null, null);
+        Map<String, LegacyPrivateSession> legacyRegistry = new HashMap<>();
+        this.sessions = new NullSession[this.users];
+        this.legacySessions = new LegacyPrivateSession[this.users];
+        this.names = new String[this.users];
+        for (int i = 0; i < this.users; i++) {
+            this.names[i] = "user" + i;
+            this.sessions[i] = new NullSession(chatServer, globalMessages).register(this.names[i]);
+            this.legacySessions[i] = new LegacyPrivateSession(legacyRegistry);
+            legacyRegistry.put(this.names[i], this.legacySessions[i]);
+        }
+        // Cada usuario ya converso con sus pares, de modo que se mide el estado estable de ambos diseños
+        for (int i = 0; i < this.users; i++) {
+            for (int p = 1; p <= this.peersPerUser; p++) {
+                int receiver = peer(i, p, this.users);
+                this.legacySessions[i].sendPrivateMessage(this.names[i], this.names[receiver], MESSAGE);
+            }
+        }
+        this.senders = new int[PAIRS];
+        this.receivers = new int[PAIRS];
+        this.requests = new String[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            this.senders[i] = (i * 7919) % this.users;
+            this.receivers[i] = peer(this.senders[i], 1 + i % this.peersPerUser, this.users);
+            this.requests[i] = "PRV|" + this.names[this.senders[i]] + "|" + this.names[this.receivers[i]] + "|" + MESSAGE;
+        }
+    }
+
+    static int peer(int user, int offset, int users) {
+        return (user + offset * 31) % users;
+    }
+
+    @Benchmark
+    public void directRouting() {
+        int i = this.next++ & (PAIRS - 1);
+        this.sessions[this.senders[i]].request(this.requests[i]);
+    }
+
+    @Benchmark
+    public void pairObservableRouting() {
+        int i = this.next++ & (PAIRS - 1);
+        this.legacySessions[this.senders[i]].sendPrivateMessage(this.names[this.senders[i]],
+                this.names[this.receivers[i]], MESSAGE);
+    }
+}
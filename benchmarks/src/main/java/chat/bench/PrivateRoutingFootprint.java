@@ -0,0 +1,77 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Programa que mide la memoria retenida por el ruteo de mensajes privados una vez que cada usuario se comunico con
+ * una cantidad fija de pares, comparando el ruteo directo con el diseño anterior de un observable por par.
+ * <pre>
+ * java -cp target/benchmarks.jar chat.bench.PrivateRoutingFootprint [usuarios] [pares por usuario]
+ * </pre>
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class PrivateRoutingFootprint {
+
+    private static final String MESSAGE = "Hola, este es un mensaje privado de prueba";
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int peersPerUser = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String[] names = new String[users];
+        for (int i = 0; i < users; i++) {
+            names[i] = "user" + i;
+        }
+
+        long base = usedHeap();
+        ChatServer chatServer = new ChatServer(0);
+        ChatMessages globalMessages = new ChatMessages(null, null);
+        NullSession[] sessions = new NullSession[users];
+        for (int i = 0; i < users; i++) {
+            sessions[i] = new NullSession(chatServer, globalMessages).register(names[i]);
+        }
+        long registered = usedHeap();
+        for (int i = 0; i < users; i++) {
+            for (int p = 1; p <= peersPerUser; p++) {
+                sessions[i].request("PRV|" + names[i] + "|" + names[PrivateRoutingBenchmark.peer(i, p, users)] + "|"
+                        + MESSAGE);
+            }
+        }
+        long direct = usedHeap() - registered;
+        System.out.println("Ruteo directo: " + (registered - base) / 1024 + " KB de sesiones, "
+                + direct / 1024 + " KB retenidos por el ruteo");
+
+        Map<String, LegacyPrivateSession> legacyRegistry = new HashMap<>();
+        LegacyPrivateSession[] legacySessions = new LegacyPrivateSession[users];
+        for (int i = 0; i < users; i++) {
+            legacySessions[i] = new LegacyPrivateSession(legacyRegistry);
+            legacyRegistry.put(names[i], legacySessions[i]);
+        }
+        long legacyRegistered = usedHeap();
+        for (int i = 0; i < users; i++) {
+            for (int p = 1; p <= peersPerUser; p++) {
+                legacySessions[i].sendPrivateMessage(names[i], names[PrivateRoutingBenchmark.peer(i, p, users)],
+                        MESSAGE);
+            }
+        }
+        long legacy = usedHeap() - legacyRegistered;
+        System.out.println("Observable por par: " + legacy / 1024 + " KB retenidos por el ruteo ("
+                + (users * (long) peersPerUser) + " conversaciones)");
+        // Usar ambos arreglos luego de medir mantiene vivas las sesiones de los dos disenos durante las mediciones
+        System.out.println("Sesiones medidas: " + sessions.length + " con ruteo directo y " + legacySessions.length
+                + " con observable por par");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,99 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.FrameCodec;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del camino de cada peticion dentro del servidor: la decodificacion de una peticion en
+ * {@code decodeRequest}, con ambas versiones del protocolo (la de texto tanto desde un String como desde el buffer
+ * de lectura, como la reciben las conexiones), y el armado del frame que reciben los observers en
+ * {@code update()}. Las peticiones son mensajes globales a un contenedor sin observers, de modo que no se mide el
+ * envio. Ejecutar con "-prof gc" para obtener la memoria asignada por peticion.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see BroadcastBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    private static final String SENDER = "bench";
+    private static final String MESSAGE = "Hola a todos, este es un mensaje global de prueba";
+
+    private NullSession session;
+    private String textRequest;
+    private ByteBuffer textFrame;
+    private ByteBuffer binaryRequest;
+    private BinaryFrameReader reader;
+
+    @Setup
+    public void setup() throws IOException {
+        ChatServer chatServer = new ChatServer(0);
+        // La sesion no se suscribe al contenedor que utiliza, por lo que el mensaje no tiene destinatarios
+        this.session = new NullSession(chatServer, new ChatMessages(null, null)).register(SENDER);
+        this.textRequest = MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + MESSAGE;
+        this.textFrame = FrameCodec.encode(this.textRequest);
+        ByteBuffer encoded = Frame.of(MessagesCodes.GLOBAL_MESSAGE, MESSAGE).view(BinaryCodes.VERSION_BINARY);
+        this.binaryRequest = ByteBuffer.allocate(encoded.remaining()).put(encoded);
+        this.binaryRequest.flip();
+        this.reader = new BinaryFrameReader(chatServer.getConfig().getMaxFrameLength());
+    }
+
+    @Benchmark
+    public void decodeTextRequest() {
+        this.session.request(this.textRequest);
+    }
+
+    @Benchmark
+    public void decodeTextFrame() throws IOException {
+        this.textFrame.rewind();
+        this.session.requestText(this.textFrame);
+    }
+
+    @Benchmark
+    public void decodeBinaryRequest() throws IOException {
+        this.binaryRequest.rewind();
+        this.session.request(this.binaryRequest);
+    }
+
+    @Benchmark
+    public String parseBinaryFrame() throws IOException {
+        this.binaryRequest.rewind();
+        this.reader.next(this.binaryRequest);
+        return this.reader.getString(0);
+    }
+
+    @Benchmark
+    public ByteBuffer buildTextFrame() throws IOException {
+        return Frame.of(MessagesCodes.GLOBAL_MESSAGE, SENDER, MESSAGE).view(BinaryCodes.VERSION_TEXT);
+    }
+
+    @Benchmark
+    public ByteBuffer buildBinaryFrame() throws IOException {
+        return Frame.of(MessagesCodes.GLOBAL_MESSAGE, SENDER, MESSAGE).view(BinaryCodes.VERSION_BINARY);
+    }
+}
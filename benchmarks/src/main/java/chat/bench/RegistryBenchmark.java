@@ -0,0 +1,130 @@
+package chat.bench;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ChatSession;
+import chat.registry.UserRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark del registro de usuarios conectados con varios threads a la vez: busquedas por nombre y el alta y baja de
+ * usuarios, comparados con el {@link ConcurrentHashMap} por nombre utilizado anteriormente, y las mismas
+ * operaciones a traves de {@link ChatServer}, que son las que utilizan las sesiones. La cantidad de threads se
+ * modifica con "-t".
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RegistryBenchmark {
+
+    private static final int LOOKUPS = 4096;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"16"})
+    public int shards;
+
+    private UserRegistry registry;
+    private ConcurrentHashMap<String, ChatSession> map;
+    private ChatServer chatServer;
+    private ChatMessages globalMessages;
+    private String[] names;
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        this.chatServer = new ChatServer(0);
+        this.globalMessages = new ChatMessages(null, null);
+        this.registry = new UserRegistry(this.shards);
+        this.map = new ConcurrentHashMap<>();
+        this.names = new String[LOOKUPS];
+        for (int i = 0; i < this.users; i++) {
+            String name = "user" + i;
+            ChatSession session = new NullSession(this.chatServer, this.globalMessages);
+            this.registry.register(name, session);
+            this.chatServer.addUser(name, session);
+            this.map.put(name, session);
+            if (i < LOOKUPS) {
+                this.names[i] = name;
+            }
+        }
+        for (int i = this.users; i < LOOKUPS; i++) {
+            this.names[i] = this.names[i % this.users];
+        }
+    }
+
+    /**
+     * Estado de cada thread: la posicion en las busquedas y un usuario propio para las altas y bajas.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+        String churnName;
+        ChatSession churnSession;
+
+        @Setup
+        public void setup(RegistryBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+            this.next = thread * 997;
+            this.churnName = "churn" + thread;
+            this.churnSession = new NullSession(benchmark.chatServer, benchmark.globalMessages);
+        }
+    }
+
+    @Benchmark
+    public ChatSession lookupByName(Cursor cursor) {
+        return this.registry.get(this.names[cursor.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public ChatSession lookupConcurrentHashMap(Cursor cursor) {
+        return this.map.get(this.names[cursor.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public ChatSession registerAndRemove(Cursor cursor) {
+        this.registry.register(cursor.churnName, cursor.churnSession);
+        return this.registry.unregister(cursor.churnName, cursor.churnSession);
+    }
+
+    @Benchmark
+    public boolean registerAndRemoveConcurrentHashMap(Cursor cursor) {
+        this.map.put(cursor.churnName, cursor.churnSession);
+        return this.map.remove(cursor.churnName, cursor.churnSession);
+    }
+
+    @Benchmark
+    public ChatSession serverGetSessionOf(Cursor cursor) {
+        return this.chatServer.getSessionOf(this.names[cursor.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public boolean serverAddAndRemoveUser(Cursor cursor) {
+        this.chatServer.addUser(cursor.churnName, cursor.churnSession);
+        return this.chatServer.removeUser(cursor.churnName, cursor.churnSession);
+    }
+}
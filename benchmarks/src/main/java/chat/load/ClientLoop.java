@@ -0,0 +1,103 @@
+package chat.load;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread que atiende con un selector las conexiones de un grupo de clientes simulados. Todas las operaciones sobre un
+ * cliente, incluidos los envios que decide el generador de carga, se ejecutan en el thread de su grupo, de modo que
+ * los clientes no necesitan sincronizacion.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+class ClientLoop implements Runnable {
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private final AtomicBoolean wakeupPending;
+    private volatile boolean running;
+
+    /**
+     * Constructor de la clase.
+     * @throws IOException si no es posible abrir el selector.
+     */
+    ClientLoop() throws IOException {
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.wakeupPending = new AtomicBoolean();
+        this.running = true;
+    }
+
+    /**
+     * Metodo que encola una tarea para ejecutarla en el thread del grupo. El selector se despierta una unica vez por
+     * cada grupo de tareas encoladas mientras estaba ocupado.
+     * @param task tarea a ejecutar.
+     */
+    void execute(Runnable task) {
+        this.tasks.add(task);
+        if (this.wakeupPending.compareAndSet(false, true)) {
+            this.selector.wakeup();
+        }
+    }
+
+    Selector getSelector() {
+        return selector;
+    }
+
+    @Override
+    public void run() {
+        try {
+            this.loop();
+        } finally {
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                // Se descarta, la prueba ya termino
+            }
+        }
+    }
+
+    private void loop() {
+        while (this.running) {
+            try {
+                this.selector.select();
+            } catch (IOException e) {
+                return;
+            }
+            this.wakeupPending.set(false);
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                task.run();
+            }
+            Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                SimulatedClient client = (SimulatedClient) key.attachment();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isReadable()) {
+                    client.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    client.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Metodo que detiene el thread, que al terminar cierra el selector.
+     */
+    void close() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+}
@@ -0,0 +1,233 @@
+package chat.load;
+
+import chat.ChatServer;
+import chat.ServerConfig;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga y prueba de resistencia del servidor de chat. Abre miles de clientes simulados, atendidos por unos
+ * pocos threads con selectores, que se registran con NWU a la tasa indicada y luego envian mensajes segun un
+ * {@link LoadScript} a una tasa total fija. Al terminar informa la cantidad de conexiones por segundo, el throughput y
+ * la distribucion de la latencia de extremo a extremo (p50, p99, p99.9 y maximo) de cada tipo de mensaje.
+ * <p>
+ * La tasa de envio es independiente de la velocidad del servidor: cada mensaje lleva el instante en que debia
+ * enviarse, por lo que si el generador o el servidor se atrasan la demora se refleja en la latencia en lugar de
+ * ocultarse. Se configura con propiedades del sistema:
+ * <pre>
+ * load.host, load.port      servidor (localhost:2525)
+ * load.embedded             inicia un ChatServer en este proceso con las propiedades chat.* (true)
+ * load.clients              clientes simulados (1000)
+ * load.connectRate          registros por segundo al iniciar (500)
+ * load.rate                 mensajes por segundo entre todos los clientes (2000)
+ * load.script               guion de trafico (chat, ver LoadScript)
+ * load.warmup, load.duration segundos de calentamiento y de medicion (5 y 30)
+ * load.payload              caracteres de relleno de cada mensaje (64)
+ * load.threads              threads de los clientes (2)
+ * load.presence             negociar SNP y DLT en lugar de GTU, NWU y RMV (true)
+ * </pre>
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class LoadGenerator {
+
+    private final Properties properties;
+    private final PrintStream out;
+    private final LoadStats stats;
+
+    /**
+     * Constructor de la clase.
+     * @param properties configuracion de la prueba, con prefijo "load.", y del servidor embebido, con prefijo "chat.".
+     * @param out stream en el que se informa el progreso y el resultado.
+     */
+    public LoadGenerator(Properties properties, PrintStream out) {
+        this.properties = properties;
+        this.out = out;
+        this.stats = new LoadStats();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(System.getProperties(), System.out).run();
+        System.exit(0);
+    }
+
+    /**
+     * Metodo que ejecuta la prueba completa e imprime el resultado.
+     * @return resultados de la prueba.
+     * @throws IOException si no es posible conectarse al servidor.
+     * @throws InterruptedException si el thread es interrumpido.
+     */
+    public LoadStats run() throws IOException, InterruptedException {
+        String host = this.properties.getProperty("load.host", "localhost");
+        int port = this.integer("load.port", 2525);
+        int clients = this.integer("load.clients", 1000);
+        double connectRate = this.decimal("load.connectRate", 500);
+        double rate = this.decimal("load.rate", 2000);
+        LoadScript script = LoadScript.parse(this.properties.getProperty("load.script", "chat"));
+        double warmup = this.decimal("load.warmup", 5);
+        double duration = this.decimal("load.duration", 30);
+        char[] padding = new char[this.integer("load.payload", 64)];
+        Arrays.fill(padding, 'x');
+        String payload = new String(padding);
+        int threads = this.integer("load.threads", 2);
+        boolean presence = Boolean.parseBoolean(this.properties.getProperty("load.presence", "true"));
+
+        ChatServer server = null;
+        if (Boolean.parseBoolean(this.properties.getProperty("load.embedded", "true"))) {
+            server = new ChatServer(port, ServerConfig.fromProperties(this.properties));
+            Thread serverThread = new Thread(server::serve, "load-server");
+            serverThread.setDaemon(true);
+            serverThread.start();
+        }
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        awaitServer(address);
+
+        List<ClientLoop> loops = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            ClientLoop loop = new ClientLoop();
+            Thread thread = new Thread(loop, "load-clients-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            loops.add(loop);
+        }
+        SimulatedClient[] all = new SimulatedClient[clients];
+        for (int i = 0; i < clients; i++) {
+            all[i] = new SimulatedClient("load" + i, loops.get(i % threads), address, this.stats, presence);
+        }
+        try {
+            this.out.printf("Servidor %s, %d clientes, guion %s, %.0f msg/s%n", address, clients, script, rate);
+            double rampSeconds = this.ramp(all, connectRate);
+            this.out.printf("Clientes: %d registrados en %.2f s (%.0f conexiones/s)%n",
+                    this.stats.getConnections(), rampSeconds, this.stats.getConnections() / rampSeconds);
+
+            this.drive(all, script, rate, warmup, payload);
+            this.stats.resetMessages();
+            this.drive(all, script, rate, duration, payload);
+            // Los mensajes en vuelo al terminar se siguen registrando hasta el resumen
+            Thread.sleep(500);
+            this.stats.print(this.out, duration);
+        } finally {
+            for (SimulatedClient client : all) {
+                client.getLoop().execute(client::close);
+            }
+            Thread.sleep(100);
+            for (ClientLoop loop : loops) {
+                loop.close();
+            }
+            if (server != null) {
+                server.shutdown();
+            }
+        }
+        return this.stats;
+    }
+
+    /**
+     * Metodo que conecta a todos los clientes a la tasa indicada y espera a que el servidor confirme sus registros.
+     * @return segundos transcurridos hasta el ultimo registro.
+     */
+    private double ramp(SimulatedClient[] clients, double connectRate) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < clients.length; i++) {
+            pace(start, (long) (i * 1e9 / connectRate));
+            SimulatedClient client = clients[i];
+            client.getLoop().execute(client::connect);
+        }
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        while (this.stats.getConnections() + this.stats.getErrors() < clients.length && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Metodo que envia mensajes segun el guion durante el tiempo indicado. Cada mensaje tiene un instante previsto
+     * segun la tasa, que es el que se envia en el mensaje, aunque el generador lo despache mas tarde.
+     */
+    private void drive(SimulatedClient[] clients, LoadScript script, double rate, double seconds, String payload) {
+        Random random = new Random(42);
+        long start = this.stats.now();
+        long total = (long) (rate * seconds);
+        long lastReport = start;
+        for (long issued = 0; issued < total; issued++) {
+            long intended = start + (long) (issued * 1e9 / rate);
+            long now = this.stats.now();
+            if (intended > now) {
+                LockSupport.parkNanos(intended - now);
+            }
+            SimulatedClient client = pick(clients, random);
+            if (client == null) {
+                continue;
+            }
+            switch (script.next(random)) {
+                case GBL:
+                    client.getLoop().execute(() -> client.sendGlobal(intended, payload));
+                    break;
+                case PRV:
+                    SimulatedClient receiver = pick(clients, random);
+                    if (receiver != null) {
+                        client.getLoop().execute(() -> client.sendPrivate(receiver.getName(), intended, payload));
+                    }
+                    break;
+                default:
+                    client.getLoop().execute(client::churn);
+                    break;
+            }
+            if (intended - lastReport >= 1_000_000_000L) {
+                lastReport = intended;
+                this.out.printf("  %5.1f s: %d enviados, %d entregas%n", (intended - start) / 1e9,
+                        this.stats.getSent(), this.stats.getDelivered());
+            }
+        }
+    }
+
+    private static SimulatedClient pick(SimulatedClient[] clients, Random random) {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            SimulatedClient client = clients[random.nextInt(clients.length)];
+            if (client.isRegistered()) {
+                return client;
+            }
+        }
+        return null;
+    }
+
+    private static void pace(long start, long offsetNanos) {
+        long wait = start + offsetNanos - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private static void awaitServer(InetSocketAddress address) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try (Socket socket = new Socket(address.getHostString(), address.getPort())) {
+                return;
+            } catch (ConnectException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private int integer(String name, int defaultValue) {
+        String value = this.properties.getProperty(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private double decimal(String name, double defaultValue) {
+        String value = this.properties.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+}
@@ -0,0 +1,105 @@
+package chat.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Guion de trafico de la prueba de carga: la proporcion de cada accion que realizan los clientes simulados. Se define
+ * con pesos relativos, por ejemplo "gbl=1,prv=8,churn=1", o con el nombre de uno de los guiones predefinidos:
+ * <ul>
+ * <li>chat: mayormente mensajes privados, algunos globales y reconexiones ocasionales.</li>
+ * <li>broadcast: solo mensajes globales.</li>
+ * <li>private: solo mensajes privados.</li>
+ * <li>churn: mensajes privados y reconexiones en partes iguales.</li>
+ * </ul>
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class LoadScript {
+
+    /**
+     * Acciones que puede realizar un cliente simulado.
+     */
+    public enum Action {
+        /** Mensaje global (GBL), que reciben todos los clientes. */
+        GBL,
+        /** Mensaje privado (PRV) a otro cliente elegido al azar. */
+        PRV,
+        /** Desconexion con RMV y nueva conexion con NWU del mismo usuario. */
+        CHURN
+    }
+
+    private static final Map<String, String> PRESETS = new LinkedHashMap<>();
+
+    static {
+        PRESETS.put("chat", "gbl=1,prv=8,churn=1");
+        PRESETS.put("broadcast", "gbl=1");
+        PRESETS.put("private", "prv=1");
+        PRESETS.put("churn", "prv=1,churn=1");
+    }
+
+    private final String definition;
+    private final double[] cumulative;
+
+    private LoadScript(String definition, double[] cumulative) {
+        this.definition = definition;
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * Metodo que crea un guion a partir de su definicion.
+     * @param script nombre de un guion predefinido o lista accion=peso separada por comas.
+     * @return el guion.
+     * @throws IllegalArgumentException si la definicion es invalida.
+     */
+    public static LoadScript parse(String script) {
+        String definition = PRESETS.getOrDefault(script, script);
+        double[] weights = new double[Action.values().length];
+        double total = 0;
+        for (String entry : definition.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Guion invalido: " + script);
+            }
+            double weight = Double.parseDouble(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Peso negativo en el guion: " + entry);
+            }
+            weights[Action.valueOf(pair[0].trim().toUpperCase()).ordinal()] += weight;
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("El guion no tiene acciones: " + script);
+        }
+        double[] cumulative = new double[weights.length];
+        double accumulated = 0;
+        for (int i = 0; i < weights.length; i++) {
+            accumulated += weights[i] / total;
+            cumulative[i] = accumulated;
+        }
+        return new LoadScript(definition, cumulative);
+    }
+
+    /**
+     * Metodo que elige al azar la proxima accion segun los pesos del guion.
+     * @param random generador de numeros aleatorios.
+     * @return accion a realizar.
+     */
+    public Action next(Random random) {
+        double value = random.nextDouble();
+        Action[] actions = Action.values();
+        for (int i = 0; i < actions.length; i++) {
+            if (value < this.cumulative[i]) {
+                return actions[i];
+            }
+        }
+        return actions[actions.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return definition;
+    }
+}
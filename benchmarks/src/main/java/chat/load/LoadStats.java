@@ -0,0 +1,128 @@
+package chat.load;
+
+import chat.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resultados de una prueba de carga: la distribucion de la latencia de extremo a extremo de cada tipo de mensaje,
+ * desde el instante en que debia enviarse hasta que lo recibe cada destinatario, y los contadores de mensajes,
+ * conexiones y errores. Los clientes simulados la actualizan desde varios threads.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class LoadStats {
+
+    private final long origin = System.nanoTime();
+    private final LatencyHistogram globalLatency = new LatencyHistogram();
+    private final LatencyHistogram privateLatency = new LatencyHistogram();
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder churns = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Metodo que retorna el instante actual relativo al inicio de la prueba. Es el valor que viaja en los mensajes,
+     * siempre positivo a diferencia de {@link System#nanoTime()}.
+     * @return nanosegundos desde el inicio de la prueba.
+     */
+    long now() {
+        return System.nanoTime() - this.origin;
+    }
+
+    void sent() {
+        this.sent.increment();
+    }
+
+    void global(long nanos) {
+        this.globalLatency.record(nanos);
+        this.delivered.increment();
+    }
+
+    void privateMessage(long nanos) {
+        this.privateLatency.record(nanos);
+        this.delivered.increment();
+    }
+
+    void connected(long nanos) {
+        this.connectLatency.record(nanos);
+    }
+
+    void churn() {
+        this.churns.increment();
+    }
+
+    void error() {
+        this.errors.increment();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de mensajes enviados.
+     * @return mensajes GBL y PRV enviados.
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de mensajes recibidos por los clientes.
+     * @return entregas de GBL y PRV, un mensaje global cuenta una vez por destinatario.
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de registros completados, incluidas las reconexiones.
+     * @return cantidad de conexiones.
+     */
+    public long getConnections() {
+        return connectLatency.getCount();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de errores de conexion.
+     * @return cantidad de errores.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Metodo que descarta las latencias y contadores de mensajes registrados, por ejemplo al terminar el calentamiento.
+     */
+    void resetMessages() {
+        this.globalLatency.reset();
+        this.privateLatency.reset();
+        this.sent.reset();
+        this.delivered.reset();
+        this.churns.reset();
+    }
+
+    /**
+     * Metodo que imprime el resumen de la prueba.
+     * @param out stream de salida.
+     * @param seconds duracion de la medicion en segundos.
+     */
+    public void print(PrintStream out, double seconds) {
+        long sent = this.getSent();
+        long delivered = this.getDelivered();
+        out.printf("Enviados: %d mensajes en %.1f s (%.0f msg/s), entregas: %d (%.0f entregas/s)%n", sent, seconds,
+                sent / seconds, delivered, delivered / seconds);
+        out.printf("Reconexiones: %d, errores: %d%n", this.churns.sum(), this.getErrors());
+        out.printf("%-10s %10s %10s %10s %10s %10s%n", "Latencia", "cantidad", "p50 us", "p99 us", "p99.9 us",
+                "max us");
+        print(out, "GBL", this.globalLatency);
+        print(out, "PRV", this.privateLatency);
+        print(out, "NWU", this.connectLatency);
+    }
+
+    private static void print(PrintStream out, String name, LatencyHistogram histogram) {
+        out.printf("%-10s %10d %10.1f %10.1f %10.1f %10.1f%n", name, histogram.getCount(),
+                histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                histogram.getPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0);
+    }
+}
@@ -0,0 +1,252 @@
+package chat.load;
+
+import util.FrameCodec;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Cliente de chat simulado que habla la version de texto del protocolo {@link MessagesCodes}. Cada mensaje que envia
+ * lleva en su texto el instante en que debia enviarse, de modo que quien lo recibe registra la latencia de extremo a
+ * extremo sin coordinarse con el emisor. Todas sus operaciones se ejecutan en el thread de su {@link ClientLoop}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+class SimulatedClient {
+
+    private static final int BUFFER_BYTES = 16 * 1024;
+
+    private final String name;
+    private final ClientLoop loop;
+    private final InetSocketAddress address;
+    private final LoadStats stats;
+    private final boolean presenceDeltas;
+    private final String globalPrefix;
+    private final String privateSuffix;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private ByteBuffer inbound;
+    private ByteBuffer outbound;
+    private long connectStart;
+    private volatile boolean registered;
+
+    /**
+     * Constructor de la clase.
+     * @param name nombre de usuario del cliente.
+     * @param loop grupo que atiende la conexion del cliente.
+     * @param address direccion del servidor.
+     * @param stats resultados de la prueba.
+     * @param presenceDeltas true para negociar SNP y DLT en lugar de recibir GTU, NWU y RMV de cada usuario.
+     */
+    SimulatedClient(String name, ClientLoop loop, InetSocketAddress address, LoadStats stats, boolean presenceDeltas) {
+        this.name = name;
+        this.loop = loop;
+        this.address = address;
+        this.stats = stats;
+        this.presenceDeltas = presenceDeltas;
+        this.globalPrefix = MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + name + MessagesCodes.SEPARATOR;
+        this.privateSuffix = MessagesCodes.SEPARATOR + name + MessagesCodes.SEPARATOR;
+        this.inbound = ByteBuffer.allocate(BUFFER_BYTES);
+        this.outbound = ByteBuffer.allocate(BUFFER_BYTES);
+    }
+
+    /**
+     * Metodo que abre la conexion y registra al usuario con NWU.
+     */
+    void connect() {
+        this.connectStart = this.stats.now();
+        try {
+            this.channel = SocketChannel.open(this.address);
+            this.channel.configureBlocking(false);
+            this.key = this.channel.register(this.loop.getSelector(), SelectionKey.OP_READ, this);
+            if (this.presenceDeltas) {
+                this.send(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + "1" + MessagesCodes.SEPARATOR
+                        + MessagesCodes.FEATURE_PRESENCE_DELTA);
+            }
+            this.send(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + this.name);
+        } catch (IOException e) {
+            this.failed();
+        }
+    }
+
+    /**
+     * Metodo que envia un mensaje global.
+     * @param intended instante, segun {@link LoadStats#now()}, en que el generador decidio enviarlo.
+     * @param payload relleno del mensaje.
+     */
+    void sendGlobal(long intended, String payload) {
+        if (this.send(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + intended + ":" + payload)) {
+            this.stats.sent();
+        }
+    }
+
+    /**
+     * Metodo que envia un mensaje privado.
+     * @param receiver nombre del usuario receptor.
+     * @param intended instante, segun {@link LoadStats#now()}, en que el generador decidio enviarlo.
+     * @param payload relleno del mensaje.
+     */
+    void sendPrivate(String receiver, long intended, String payload) {
+        if (this.send(MessagesCodes.PRIVATE_MESSAGE + MessagesCodes.SEPARATOR + this.name + MessagesCodes.SEPARATOR
+                + receiver + MessagesCodes.SEPARATOR + intended + ":" + payload)) {
+            this.stats.sent();
+        }
+    }
+
+    /**
+     * Metodo que desconecta al usuario con RMV y vuelve a conectarlo.
+     */
+    void churn() {
+        if (this.channel == null) {
+            return;
+        }
+        this.send(MessagesCodes.REMOVE_USER + MessagesCodes.SEPARATOR + this.name);
+        this.close();
+        this.stats.churn();
+        this.connect();
+    }
+
+    private boolean send(String message) {
+        if (this.channel == null) {
+            return false;
+        }
+        try {
+            ByteBuffer encoded = FrameCodec.encode(message);
+            if (this.outbound.remaining() < encoded.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(this.outbound.capacity() * 2,
+                        this.outbound.position() + encoded.remaining()));
+                this.outbound.flip();
+                larger.put(this.outbound);
+                this.outbound = larger;
+            }
+            this.outbound.put(encoded);
+            this.flush();
+            return this.channel != null;
+        } catch (IOException e) {
+            this.failed();
+            return false;
+        }
+    }
+
+    /**
+     * Metodo que escribe lo pendiente sin bloquear; si el socket no acepta todo se espera a que sea escribible.
+     */
+    void flush() {
+        if (this.channel == null) {
+            return;
+        }
+        try {
+            this.outbound.flip();
+            this.channel.write(this.outbound);
+            boolean pending = this.outbound.hasRemaining();
+            this.outbound.compact();
+            this.key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        } catch (IOException e) {
+            this.failed();
+        }
+    }
+
+    /**
+     * Metodo que lee los mensajes recibidos y registra la latencia de los GBL y PRV.
+     */
+    void onReadable() {
+        try {
+            if (this.channel.read(this.inbound) < 0) {
+                this.failed();
+                return;
+            }
+            this.inbound.flip();
+            String message;
+            while ((message = FrameCodec.decode(this.inbound)) != null) {
+                this.handle(message, this.stats.now());
+            }
+            if (this.inbound.remaining() == this.inbound.capacity()) {
+                // Un mensaje mas grande que el buffer
+                ByteBuffer larger = ByteBuffer.allocate(this.inbound.capacity() * 2);
+                larger.put(this.inbound);
+                this.inbound = larger;
+            } else {
+                this.inbound.compact();
+            }
+        } catch (IOException e) {
+            this.failed();
+        }
+    }
+
+    private void handle(String message, long now) {
+        if (message.startsWith(MessagesCodes.GLOBAL_MESSAGE)) {
+            // GBL|sender|intended:payload
+            int start = message.indexOf(MessagesCodes.SEPARATOR, MessagesCodes.GLOBAL_MESSAGE.length() + 1) + 1;
+            this.stats.global(now - intended(message, start));
+        } else if (message.startsWith(MessagesCodes.PRIVATE_MESSAGE)) {
+            // PRV|sender|receiver|intended:payload, el eco del emisor no se cuenta
+            int receiver = message.indexOf(MessagesCodes.SEPARATOR, MessagesCodes.PRIVATE_MESSAGE.length() + 1);
+            if (message.startsWith(this.privateSuffix, receiver)) {
+                this.stats.privateMessage(now - intended(message, receiver + this.privateSuffix.length()));
+            }
+        } else if (message.equals(MessagesCodes.PING)) {
+            // Los clientes que no envian mensajes deben responder para que el servidor no cierre la conexion
+            this.send(MessagesCodes.PONG);
+        } else if (!this.registered && (message.startsWith(MessagesCodes.SNAPSHOT)
+                || message.equals(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + this.name))) {
+            this.registered = true;
+            this.stats.connected(now - this.connectStart);
+        }
+    }
+
+    private static long intended(String message, int start) {
+        long value = 0;
+        for (int i = start; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private void failed() {
+        this.stats.error();
+        this.close();
+    }
+
+    /**
+     * Metodo que cierra la conexion del cliente.
+     */
+    void close() {
+        this.registered = false;
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                // Se descarta, la conexion ya no se utiliza
+            }
+            this.channel = null;
+            this.key = null;
+        }
+        this.inbound.clear();
+        this.outbound.clear();
+    }
+
+    /**
+     * Metodo que indica si el servidor ya confirmo el registro del usuario.
+     * @return true si el cliente puede enviar y recibir mensajes.
+     */
+    boolean isRegistered() {
+        return registered;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ClientLoop getLoop() {
+        return loop;
+    }
+}
@@ -1,9 +1,16 @@
 import chat.ChatServer;
+import chat.ServerConfig;
 
 public class Main {
 
     public static void main(String[] args) {
-        ChatServer chatServer = new ChatServer(2525);
+        ServerConfig config = ServerConfig.fromProperties(System.getProperties());
+        // El primer argumento permite elegir el modo del servidor: blocking o nio
+        if (args.length > 0) {
+            config.setMode(ServerConfig.Mode.valueOf(args[0].toUpperCase()));
+        }
+        // Varios nodos de un cluster en el mismo equipo escuchan en puertos distintos
+        ChatServer chatServer = new ChatServer(Integer.getInteger("chat.port", 2525), config);
         chatServer.serve();
     }
 }
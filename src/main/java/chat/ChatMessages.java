@@ -1,19 +1,44 @@
 package chat;
 
+import chat.cluster.ClusterNode;
+import chat.fanout.ParallelFanout;
+import chat.history.HistoryLog;
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
 
 /**
  * Clase que representa el contenedor de mensajes entre los threads.
+ * <p>
+ * El contenedor guarda sus propios observers para reutilizar el mismo arreglo en cada publicacion mientras no haya
+ * altas ni bajas, y para poder dividirlo entre varios threads con {@link ParallelFanout} cuando la audiencia es grande.
+ * Los observers no deben publicar ni suscribirse desde {@link Observer#update(Observable, Object)}.
  * @author Agustin Chirichigno
  * @author Braian Varona
  * @version 1.0
  */
 public class ChatMessages extends Observable {
 
+    private static Logger log = LogManager.getLogger(ChatMessages.class);
+    private static ChatMetrics metrics = ChatMetrics.getInstance();
+
     private String message;
     private String receiverName;
     private String senderName;
+    private HistoryLog history;
+    private ClusterNode cluster;
+    private ParallelFanout fanout;
+    private final Set<Observer> observers = new LinkedHashSet<>();
+    private Observer[] snapshot; // null si cambiaron los observers desde la ultima publicacion
 
     /**
      * Constructor de la clase.
@@ -34,13 +59,108 @@ public class ChatMessages extends Observable {
     }
 
     /**
-     * Metodo que cambia el estado del contenedor, actualiza el mensaje.
+     * Metodo que cambia el estado del contenedor, actualiza el mensaje. El mensaje se codifica una unica vez, se
+     * publica a los observers de este servidor con {@link #publish(Frame)} y, si el servidor forma parte de un
+     * cluster, se envia a los otros nodos.
      * @param message mensaje enviado.
      */
     public void setMessage(String message) {
         this.message = message;
+        Frame frame = this.toFrame();
+        this.publish(frame);
+        if (this.cluster != null) {
+            this.cluster.broadcast(frame);
+        }
+    }
+
+    /**
+     * Metodo que entrega un mensaje ya codificado a todos los observers, que solo lo encolan para su envio. La
+     * duracion de la publicacion se registra en {@link ChatMetrics#getPublishLatency()}. Si el contenedor tiene un
+     * historial el mensaje se agrega antes de entregarlo, de modo que el orden del historial es el orden de entrega.
+     * @param frame frame del mensaje, compartido por todos los observers.
+     */
+    public void publish(Frame frame) {
+        long start = System.nanoTime();
+        if (this.history != null) {
+            try {
+                this.history.append(frame);
+            } catch (IOException e) {
+                log.error("Error al guardar el mensaje en el historial: " + e.getMessage());
+            }
+        }
         this.setChanged();
-        this.notifyObservers(this.message);
+        this.notifyObservers(frame);
+        metrics.recordPublish(System.nanoTime() - start, this.countObservers());
+    }
+
+    /**
+     * Metodo que entrega el mensaje a todos los observers si el contenedor cambio. Si la cantidad de observers alcanza
+     * el umbral de {@link ParallelFanout} la entrega se divide entre sus threads; en ambos casos el metodo retorna
+     * cuando todos los observers recibieron el mensaje.
+     * @param arg mensaje a entregar.
+     */
+    @Override
+    public void notifyObservers(Object arg) {
+        Observer[] observers;
+        synchronized (this) {
+            if (!this.hasChanged()) {
+                return;
+            }
+            this.clearChanged();
+            if (this.snapshot == null) {
+                this.snapshot = this.observers.toArray(new Observer[0]);
+            }
+            observers = this.snapshot;
+        }
+        ParallelFanout fanout = this.fanout;
+        if (fanout != null && fanout.accepts(observers.length)) {
+            fanout.deliver(this, observers, arg);
+            return;
+        }
+        for (Observer observer : observers) {
+            observer.update(this, arg);
+        }
+    }
+
+    @Override
+    public synchronized void addObserver(Observer o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        if (this.observers.add(o)) {
+            this.snapshot = null;
+        }
+    }
+
+    @Override
+    public synchronized void deleteObserver(Observer o) {
+        if (this.observers.remove(o)) {
+            this.snapshot = null;
+        }
+    }
+
+    @Override
+    public synchronized void deleteObservers() {
+        this.observers.clear();
+        this.snapshot = null;
+    }
+
+    @Override
+    public synchronized int countObservers() {
+        return this.observers.size();
+    }
+
+    /**
+     * Metodo que arma el mensaje que se envia a los clientes segun el protocolo {@link MessagesCodes}.
+     * @return PRV|sender|receiver|message si el contenedor es privado, GBL|sender|message si es global.
+     */
+    private Frame toFrame() {
+        if( (this.senderName != null) && (this.receiverName != null) ) {
+            // PRV|sender|receiver|message
+            return Frame.of(MessagesCodes.PRIVATE_MESSAGE, this.senderName, this.receiverName, this.message);
+        }
+        // GBL|sender|message
+        return Frame.of(MessagesCodes.GLOBAL_MESSAGE, String.valueOf(this.senderName), this.message);
     }
 
     /**
@@ -75,6 +195,54 @@ public class ChatMessages extends Observable {
         this.senderName = senderName;
     }
 
+    /**
+     * Metodo para obtener el historial en el que se guardan los mensajes.
+     * @return historial, o null si los mensajes no se guardan.
+     */
+    public HistoryLog getHistory() {
+        return history;
+    }
+
+    /**
+     * Metodo para setear el historial en el que se guardan los mensajes.
+     * @param history historial de los mensajes globales.
+     */
+    public void setHistory(HistoryLog history) {
+        this.history = history;
+    }
+
+    /**
+     * Metodo para obtener el nodo del cluster al que se envian los mensajes.
+     * @return nodo del cluster, o null si el servidor no forma parte de un cluster.
+     */
+    public ClusterNode getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Metodo para setear el nodo del cluster al que se envian los mensajes.
+     * @param cluster nodo del cluster del servidor.
+     */
+    public void setCluster(ClusterNode cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Metodo para obtener la entrega en paralelo de los mensajes a audiencias grandes.
+     * @return entrega en paralelo, o null si los mensajes se entregan desde el thread que los publica.
+     */
+    public ParallelFanout getFanout() {
+        return fanout;
+    }
+
+    /**
+     * Metodo para setear la entrega en paralelo de los mensajes a audiencias grandes.
+     * @param fanout entrega en paralelo del servidor.
+     */
+    public void setFanout(ParallelFanout fanout) {
+        this.fanout = fanout;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,13 +1,29 @@
 package chat;
 
+import chat.cluster.ClusterNode;
+import chat.fanout.ParallelFanout;
+import chat.history.HistoryLog;
+import chat.mailbox.MailboxStore;
+import chat.metrics.ChatMetrics;
+import chat.metrics.MetricsEndpoint;
+import chat.registry.UserRegistry;
+import chat.resume.ResumeTokens;
+import chat.room.RoomManager;
+import chat.timer.TimingWheel;
+import chat.transfer.TransferStore;
+import chat.transport.NioTransport;
+import chat.transport.SocketTransport;
+import chat.transport.Transport;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import util.Frame;
+import util.FrameCompressor;
 
+import javax.management.JMException;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * Clase que representa la funcionalidad de un servidor socket para chats entre usuarios.
@@ -19,76 +35,316 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ChatServer {
 
     private static Logger log = LogManager.getLogger(ChatServer.class);
-    private static ConcurrentHashMap<String, ChatServerThread> runningThreads;
+    private static final int TIMER_TICKS = 512;
+    private static final long LISTENER_JOIN_MILLIS = 5000;
 
-    private int port;
-    private ServerSocket serverSocket;
+    private ServerConfig config;
+    private final Transport transport;
+    private final UserRegistry registry;
+    private final PresenceBatcher presence;
+    private final RoomManager rooms;
+    private final FrameCompressor compressor;
+    private final TimingWheel timers;
+    private final ResumeTokens resumeTokens;
+    private HistoryLog history;
+    private MailboxStore mailboxes;
+    private TransferStore transfers;
+    private ParallelFanout fanout;
+    private volatile ClusterNode cluster;
+    private volatile MetricsEndpoint metricsEndpoint;
+    private volatile boolean running;
+    private volatile Thread listener;
 
     /**
      * Constructor de la clase.
      * @param port numero de puerto por el que se escucharan las peticiones.
      */
     public ChatServer(int port) {
-        this.port = port;
-        runningThreads = new ConcurrentHashMap<>();
+        this(port, new ServerConfig());
     }
 
     /**
-     * Metodo que instancia un socket server en el puerto provisto y escucha
-     * por nuevas peticiones para atenderlas mediante la creacion de threads.
+     * Constructor de la clase.
+     * @param port numero de puerto por el que se escucharan las peticiones.
+     * @param config configuracion del servidor.
+     * @see ServerConfig
+     */
+    public ChatServer(int port, ServerConfig config) {
+        this(config.getMode() == ServerConfig.Mode.NIO ? new NioTransport(port, config.getIoThreads())
+                : new SocketTransport(port), config);
+    }
+
+    /**
+     * Constructor de la clase para atender las conexiones de un transporte propio, por ejemplo
+     * {@link chat.transport.InProcessTransport} para embeber el servidor en otra aplicacion sin sockets. El modo y la
+     * cantidad de threads de entrada/salida de la configuracion no se utilizan.
+     * @param transport transporte por el que llegan las conexiones.
+     * @param config configuracion del servidor.
+     * @see Transport
+     */
+    public ChatServer(Transport transport, ServerConfig config) {
+        this.transport = transport;
+        this.config = config;
+        this.registry = new UserRegistry(config.getRegistryShards());
+        this.presence = new PresenceBatcher(this, config.getPresenceWindowMillis());
+        this.rooms = new RoomManager();
+        this.timers = new TimingWheel("chat-timers", config.getHeartbeatTickMillis(), TIMER_TICKS);
+        this.resumeTokens = new ResumeTokens();
+        if (config.getHistoryDirectory() != null) {
+            try {
+                this.history = new HistoryLog(Paths.get(config.getHistoryDirectory()), config.getHistorySegmentBytes(),
+                        config.getHistoryRetentionBytes(), config.getHistoryRetentionMillis());
+            } catch (IOException e) {
+                log.error("Error abriendo el historial, los mensajes globales no se guardaran: " + e.getMessage());
+            }
+        }
+        byte[] dictionary = null;
+        if (config.getCompressionDictionary() != null) {
+            try {
+                dictionary = Files.readAllBytes(Paths.get(config.getCompressionDictionary()));
+            } catch (IOException e) {
+                log.error("Error leyendo el diccionario de compresion, se comprime sin diccionario: " + e.getMessage());
+            }
+        }
+        this.compressor = new FrameCompressor(config.getCompressionThreshold(), config.getCompressionLevel(), dictionary);
+        try {
+            this.mailboxes = new MailboxStore(this, config.getMailboxDirectory() == null ? null
+                    : Paths.get(config.getMailboxDirectory()), config.getMailboxMemoryBytes(), config.getMailboxDiskBytes());
+        } catch (IOException e) {
+            log.error("Error abriendo el directorio de mensajes pendientes: " + e.getMessage());
+        }
+        if (config.getTransferDirectory() != null) {
+            try {
+                this.transfers = new TransferStore(Paths.get(config.getTransferDirectory()), config);
+            } catch (IOException e) {
+                log.error("Error abriendo el directorio de archivos, no se aceptaran archivos: " + e.getMessage());
+            }
+        }
+        if (config.getFanoutThreshold() > 0) {
+            this.fanout = new ParallelFanout(config.getFanoutThreads(), config.getFanoutThreshold(),
+                    config.getFanoutShardSize());
+        }
+    }
+
+    /**
+     * Metodo que atiende las conexiones que llegan por el transporte del servidor hasta que se detiene: con sockets,
+     * mediante la creacion de threads o mediante selectores segun el modo configurado, o en memoria.
+     * @see ServerConfig.Mode
+     * @see Transport
      */
     public void serve() {
+        this.running = true;
+        this.listener = Thread.currentThread();
+        this.timers.start();
+        this.startMetrics();
+        final ChatMessages globalMessages = new ChatMessages(null, null);
+        globalMessages.setHistory(this.history);
+        globalMessages.setFanout(this.fanout);
+        if (this.config.getClusterPort() > 0) {
+            ClusterNode cluster = new ClusterNode(this, globalMessages);
+            try {
+                cluster.start();
+                this.cluster = cluster;
+                globalMessages.setCluster(cluster);
+            } catch (IOException e) {
+                log.error("Error iniciando el nodo del cluster, el servidor atiende solo a sus clientes: "
+                        + e.getMessage());
+            }
+        }
         try {
-            this.serverSocket = new ServerSocket(this.port);
-            Socket clientSocket;
-            final ChatMessages globalMessages = new ChatMessages(null, null);
-            // Escucha por peticiones provenientes del cliente
-            while(true) {
-                log.info("Server escuchando en el puerto: " + this.port);
-                clientSocket = serverSocket.accept();
-                ChatServerThread chatServerThread = new ChatServerThread(this, clientSocket, globalMessages);
-                chatServerThread.start();
-                log.info("Conexion aceptada, thread id: " + chatServerThread.getId());
+            this.transport.serve(this, globalMessages);
+        } catch (IOException e) {
+            if (this.running) {
+                log.error("Error creando el server: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Metodo que publica las metricas del servidor por JMX y, si esta configurado, en texto plano en su propio puerto.
+     * Un error al publicarlas no impide atender a los clientes.
+     * @see ServerConfig#getMetricsPort()
+     */
+    private void startMetrics() {
+        try {
+            ChatMetrics.getInstance().register();
+        } catch (JMException e) {
+            log.error("Error publicando las metricas por JMX: " + e.getMessage());
+        }
+        if (this.config.getMetricsPort() > 0) {
+            MetricsEndpoint endpoint = new MetricsEndpoint(this, this.config.getMetricsPort());
+            try {
+                endpoint.start();
+                this.metricsEndpoint = endpoint;
+            } catch (IOException e) {
+                log.error("Error iniciando el puerto de metricas: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Metodo que detiene la escucha de nuevas peticiones. Espera a que termine el thread que escuchaba, ya que el
+     * puerto recien se libera cuando ese thread abandona el accept.
+     */
+    public void shutdown() {
+        this.running = false;
+        try {
+            this.transport.close();
+            this.presence.shutdown();
+            if (this.fanout != null) {
+                this.fanout.shutdown();
+            }
+            this.timers.close();
+            this.compressor.close();
+            if (this.cluster != null) {
+                this.cluster.close();
+            }
+            if (this.metricsEndpoint != null) {
+                this.metricsEndpoint.close();
+            }
+            if (this.history != null) {
+                this.history.close();
+            }
+            Thread listener = this.listener;
+            if (listener != null && listener != Thread.currentThread()) {
+                listener.join(LISTENER_JOIN_MILLIS);
             }
         } catch (IOException e) {
-            log.error("Error creando el server: " + e.getMessage());
+            log.error("Error cerrando el server: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Metodo que retorna el numero de clientes conectados al server.
-     * @return numero de clientes conectados.
+     * Metodo para obtener la configuracion del servidor.
+     * @return configuracion del servidor.
+     */
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Metodo para obtener el transporte por el que llegan las conexiones.
+     * @return transporte del servidor.
      */
-    public static int getClientsConnected() {
-        return runningThreads.size();
+    public Transport getTransport() {
+        return transport;
     }
 
     /**
-     * Metodo que retorna el conjunto de los nombres de usuario de cada cliente conectado.
-     * @return conjunto de nombres de usuario.
+     * Metodo para obtener el registro de los usuarios conectados al server.
+     * @return registro de usuarios.
      */
-    public static Set<String> getUsersConnected() {
-        return runningThreads.keySet();
+    public UserRegistry getRegistry() {
+        return registry;
     }
 
     /**
-     * Metodo que obtiene la instancia del thread asociado al usuario.
-     * @param username nombre de usuario para el cual buscar el thread.
-     * @return la instancia del thread correspondiente.
-     * @see ChatServerThread
+     * Metodo que obtiene la sesion asociada al usuario.
+     * @param username nombre de usuario para el cual buscar la sesion.
+     * @return la instancia de la sesion correspondiente, o null si el usuario no esta conectado.
+     * @see ChatSession
      */
-    public static ChatServerThread getRunningThreadOf(String username) {
-        return runningThreads.get(username);
+    public ChatSession getSessionOf(String username) {
+        return this.registry.get(username);
+    }
+
+    /**
+     * Metodo que retorna las sesiones de los usuarios conectados.
+     * @return copia de las sesiones registradas.
+     */
+    List<ChatSession> sessions() {
+        return this.registry.sessions();
+    }
+
+    /**
+     * Metodo para obtener el historial de los mensajes globales.
+     * @return historial, o null si esta deshabilitado.
+     * @see ServerConfig#getHistoryDirectory()
+     */
+    public HistoryLog getHistory() {
+        return history;
+    }
+
+    /**
+     * Metodo para obtener las casillas de mensajes privados para usuarios desconectados.
+     * @return casillas del servidor, o null si no fue posible crear su directorio.
+     */
+    public MailboxStore getMailboxes() {
+        return mailboxes;
+    }
+
+    /**
+     * Metodo para obtener el almacen de los archivos que envian los clientes.
+     * @return almacen del servidor, o null si no se configuro su directorio o no fue posible crearlo.
+     * @see ServerConfig#getTransferDirectory()
+     */
+    public TransferStore getTransfers() {
+        return transfers;
+    }
+
+    /**
+     * Metodo para obtener el indice de las salas de chat.
+     * @return salas del servidor.
+     */
+    public RoomManager getRooms() {
+        return rooms;
+    }
+
+    /**
+     * Metodo para obtener el compresor de los frames para las conexiones que negociaron la compresion.
+     * @return compresor del servidor.
+     * @see ServerConfig#getCompressionThreshold()
+     */
+    public FrameCompressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Metodo para obtener la rueda que controla los plazos de las conexiones: el envio de PIN y el cierre de las
+     * conexiones inactivas o cuyas escrituras no avanzan.
+     * @return rueda del servidor.
+     * @see ServerConfig#getHeartbeatTickMillis()
+     */
+    public TimingWheel getTimers() {
+        return timers;
+    }
+
+    /**
+     * Metodo para obtener los tokens con los que los clientes pueden reanudar sus sesiones.
+     * @return tokens vigentes del servidor.
+     * @see ServerConfig#getResumeGraceMillis()
+     */
+    public ResumeTokens getResumeTokens() {
+        return resumeTokens;
+    }
+
+    /**
+     * Metodo para obtener el nodo del cluster del servidor.
+     * @return nodo del cluster, o null si el servidor no forma parte de un cluster.
+     * @see ServerConfig#getClusterPort()
+     */
+    public ClusterNode getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Metodo para obtener el agrupador de las conexiones y desconexiones de usuarios.
+     * @return agrupador de presencia del servidor.
+     */
+    public PresenceBatcher getPresence() {
+        return presence;
     }
 
     /**
      * Logica correspondiente al registro de un nuevo usuario. Genera una nueva entrada
      * en el registro de usuarios conectados.
      * @param userName nombre del nuevo usuario.
-     * @param thread thread asociado al nuevo usuario.
+     * @param session sesion asociada al nuevo usuario.
      */
-    public void addUser(String userName, ChatServerThread thread) {
-        runningThreads.put(userName, thread);
+    public void addUser(String userName, ChatSession session) {
+        this.registry.register(userName, session);
     }
 
     /**
@@ -97,28 +353,69 @@ public class ChatServer {
      * @param userName nombre del usuario.
      */
     public void removeUser(String userName) {
-        runningThreads.remove(userName);
+        this.registry.unregister(userName);
     }
 
     /**
-     * Envia un mensaje a cada thread que esta en ejecucion para notificar que un nuevo
-     * usuario se ha conectado.
-     * @param userName nombre del nuevo usuario.
+     * Logica correspondiente al cierre de la conexion de un usuario. Elimina la entrada en el registro de usuarios
+     * conectados solo si corresponde a la sesion indicada.
+     * @param userName nombre del usuario.
+     * @param session sesion cuya conexion se cerro.
+     * @return true si el usuario seguia registrado con esa sesion.
+     */
+    public boolean removeUser(String userName, ChatSession session) {
+        return this.registry.unregister(userName, session) != null;
+    }
+
+    /**
+     * Notifica a cada sesion activa que un nuevo usuario se ha conectado, y al nuevo usuario la lista de usuarios.
+     * Las notificaciones se agrupan con las del resto de los usuarios que se conectan en la misma ventana.
+     * @param session sesion del nuevo usuario.
+     * @see PresenceBatcher
      */
-    public void broadcastUser(String userName) {
-        for (ChatServerThread chat: runningThreads.values()) {
-            chat.updateUser(userName);
+    public void broadcastUser(ChatSession session) {
+        this.presence.join(session);
+        ClusterNode cluster = this.cluster;
+        if (cluster != null) {
+            cluster.userJoined(session.getUserName());
         }
     }
 
     /**
-     * Envia un mensaje a cada thread que esta en ejecucion para notificar que un
-     * usuario se ha desconectado.
+     * Notifica a cada sesion activa que un usuario se ha desconectado. La notificacion se agrupa con las del resto de
+     * los usuarios que se conectan o desconectan en la misma ventana.
      * @param userName nombre del usuario.
+     * @see PresenceBatcher
      */
     public void broadcastRemoveUser(String userName) {
-        for (ChatServerThread chat: runningThreads.values()) {
-            chat.updateRemoveUser(userName);
+        this.presence.leave(userName);
+        ClusterNode cluster = this.cluster;
+        if (cluster != null) {
+            cluster.userLeft(userName);
+        }
+    }
+
+    /**
+     * Metodo que entrega un mensaje privado a su receptor: directamente si esta conectado a este servidor, a traves
+     * del enlace con su nodo si esta conectado a otro nodo del cluster, o a su casilla si no esta conectado. Si el
+     * receptor tiene mensajes pendientes en su casilla el mensaje se encola detras de ellos.
+     * @param receiverName nombre del usuario receptor.
+     * @param frame frame del mensaje privado.
+     * @param forward false si el mensaje llego de otro nodo y no debe reenviarse.
+     * @return sesion del receptor, o null si no esta conectado a este servidor.
+     */
+    public ChatSession routePrivate(String receiverName, Frame frame, boolean forward) {
+        ChatSession receiver = this.getSessionOf(receiverName);
+        ClusterNode cluster = this.cluster;
+        if (receiver != null && (this.mailboxes == null || !this.mailboxes.hasPending(receiverName))) {
+            receiver.deliver(frame);
+        } else if (receiver == null && forward && cluster != null && cluster.forward(receiverName, frame)) {
+            log.debug("Mensaje privado reenviado a otro nodo: {}", receiverName);
+        } else if (this.mailboxes != null) {
+            this.mailboxes.offer(receiverName, frame);
+        } else {
+            log.warn("Mensaje privado para un usuario no conectado: {}", receiverName);
         }
+        return receiver;
     }
 }
@@ -1,35 +1,52 @@
 package chat;
 
+import chat.metrics.ChatMetrics;
+import chat.outbound.CountingOutputStream;
+import chat.outbound.OutboundQueue;
+import chat.transfer.FileSend;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import util.MessagesCodes;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.FrameCodec;
+import util.TextFrameReader;
 
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.ProtocolException;
 import java.net.Socket;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.LockSupport;
 
 
 /**
  * Clase que representa la funcionalidad de un thread que atiende las peticiones de un cliente de chat
- * hacia el servidor propio.
+ * hacia el servidor propio, leyendo y escribiendo de forma bloqueante sobre el socket. Los mensajes hacia el cliente
+ * se encolan y los escribe un thread propio de la conexion, de modo que un cliente lento no demore a quien publica.
  * @author Agustin Chirichigno
  * @author Braian Varona
  * @version 1.0
+ * @see ChatSession
  */
-public class ChatServerThread extends Thread implements Observer {
+public class ChatServerThread extends ChatSession implements Runnable {
 
     private static Logger log = LogManager.getLogger(ChatServerThread.class);
 
-    private static ChatServer chatServer;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
     private Socket socket;
-    private ChatMessages globalMessages; // global
-    private ConcurrentHashMap<String, ChatMessages> privateMessages;
-    private String userName;
     private DataInputStream dataIn;
     private DataOutputStream dataOut;
+    private final OutboundQueue outbound;
+    private ByteBuffer inbound;
+    private Thread writer;
+    private volatile boolean closed;
+    private volatile long writeStarted; // Solo lo modifica el thread escritor
 
     /**
      * Constructor de la clase.
@@ -40,13 +57,16 @@ public class ChatServerThread extends Thread implements Observer {
      * @see ChatMessages
      */
     public ChatServerThread(ChatServer chatServer, Socket socket, ChatMessages globalMessages) {
-        ChatServerThread.chatServer = chatServer;
+        super(chatServer, globalMessages);
         this.socket = socket;
-        this.globalMessages = globalMessages;
-        this.privateMessages = new ConcurrentHashMap<>();
+        ServerConfig config = chatServer.getConfig();
+        this.outbound = new OutboundQueue(config.getOutboundMaxBytes(), config.getOutboundPolicy(),
+                config.getOutboundFlushMicros());
         try {
             this.dataIn = new DataInputStream(socket.getInputStream());
-            this.dataOut = new DataOutputStream(socket.getOutputStream());
+            // Los frames de cada grupo se acumulan en el buffer y se escriben en el socket al vaciarlo
+            this.dataOut = new DataOutputStream(new BufferedOutputStream(
+                    new CountingOutputStream(socket.getOutputStream()), OutboundQueue.GATHER_BYTES));
         } catch (IOException e) {
             log.error("Error creando los data input/output: " + e.getMessage());
         }
@@ -58,227 +78,231 @@ public class ChatServerThread extends Thread implements Observer {
      */
     @Override
     public void run() {
-        String receivedMessage;
         boolean connected = true;
-        this.globalMessages.addObserver(this);
+        this.writer = new Thread(this::writeMessages);
+        this.writer.start();
+        this.open();
 
         // Mientras la conexion este vigente
         while(connected) {
             try {
-                receivedMessage = this.dataIn.readUTF();
-                this.decodeRequest(receivedMessage);
+                long throttle = this.getThrottleDelay();
+                if (throttle > 0) {
+                    // La conexion supero su limite de peticiones: se demora la lectura de la siguiente
+                    LockSupport.parkNanos(throttle);
+                }
+                if (this.protocolVersion == BinaryCodes.VERSION_TEXT) {
+                    this.decodeRequest(this.readTextFrame());
+                } else {
+                    this.decodeRequest(this.readBinaryFrame());
+                }
+                if (this.dataIn.available() == 0) {
+                    // Se confirman las peticiones atendidas al no quedar otras recibidas
+                    this.acknowledge();
+                }
             } catch (IOException readException) {
                 // desconectar usuarios
                 log.info("Cerrando conexion.");
                 connected = false;
-//                // Si se ha producido un error al recibir datos del cliente se cierra la conexion con el.
-                 try {
-                    this.dataIn.close();
-                    this.dataOut.close();
-                    this.socket.close();
-                    chatServer.removeUser(this.userName);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-
+                this.disconnect();
+            } catch (RuntimeException e) {
+                log.error("Error atendiendo la peticion: " + e);
+                connected = false;
+                this.disconnect();
             }
         }
     }
 
     /**
-     * Metodo que decodifica la peticion que recibe y realiza la accion correspondiente de acuerdo al tipo de la misma.
-     * @param request string con la peticion que el cliente envia.
-     */
-    private void decodeRequest(String request) {
-        String[] args = request.split("\\" + MessagesCodes.SEPARATOR);
-        log.debug("New request -- " + request);
-        switch (args[0]) {
-            case MessagesCodes.NEW_USER:
-                log.debug("Nuevo usuario: " + args[1]);
-                this.registerUser(args[1]); //args[1] contains username
-                break;
-            case MessagesCodes.GLOBAL_MESSAGE:
-                log.debug("Nuevo mensaje global");
-                this.sendGlobal(args[1]);
-                break;
-            case MessagesCodes.PRIVATE_MESSAGE:
-                log.debug("Nuevo mensaje privado");
-                this.sendPrivateMessage(args[1], args[2], args[3]); //args[1] contains sender username args[2] contains receiver username args[3] contains message
-                break;
-            case MessagesCodes.REMOVE_USER:
-                log.debug("Eliminando usuario");
-                this.removeUser(args[1]); //args[1] username
-                break;
-            default:
-                break;
-        }
-    }
-
-    /**
-     * Metodo que se ejecuta al momento de recibir el nuevo estado del objeto observado {@link ChatMessages}.
-     * @param o objeto observado.
-     * @param arg nuevo estado del objeto.
-     * @see ChatMessages
+     * Metodo que cierra la conexion con el cliente y libera su sesion. Lo invoca el thread de lectura al terminar,
+     * tanto si el cliente cerro la conexion como si una peticion provoco un error.
      */
-    @Override
-    public synchronized void update(Observable o, Object arg) {
-        // Recibo una notificacion de que el mensaje ha cambiado por lo que debo actualizarle al cliente
+    private void disconnect() {
+        this.closed = true;
+        this.writer.interrupt();
+        // Si se ha producido un error al recibir datos del cliente se cierra la conexion con el.
         try {
-            // Envia el mensaje al cliente y este lo discrimina para mostrarlo en la seccion correcta
-            StringBuilder builder = new StringBuilder();
-            String senderName = ((ChatMessages)o).getSenderName();
-            String receiverName = ((ChatMessages)o).getReceiverName();
-            if( (senderName != null) && (receiverName!= null) ) {
-                // PRV|sender|receiver|message
-                builder.append(MessagesCodes.PRIVATE_MESSAGE).append(MessagesCodes.SEPARATOR)
-                        .append(senderName).append(MessagesCodes.SEPARATOR).append(receiverName)
-                        .append(MessagesCodes.SEPARATOR).append(arg.toString());
-            } else {
-                // GBL|sender|message
-                builder.append(MessagesCodes.GLOBAL_MESSAGE).append(MessagesCodes.SEPARATOR)
-                        .append(senderName).append(MessagesCodes.SEPARATOR).append(arg.toString());
-            }
-            this.dataOut.writeUTF(builder.toString());
+            this.dataIn.close();
+            // El data output no se cierra: vaciaria su buffer y podria bloquearse con un cliente lento.
+            // Al cerrar el socket se cierra su stream
+            this.socket.close();
         } catch (IOException e) {
-            log.error("Error al actualizar el mensaje al cliente:" + e.getMessage() );
+            log.error("Error cerrando la conexion: " + e.getMessage());
         }
+        this.closed();
     }
 
     /**
-     * Metodo que se realiza para registrar un nuevo usuario. Chequea si hay mas usuarios conectados y de ser asi
-     * indica al servidor que realice un envio broadcast del nuevo usuario.
-     * @param username nombre del usuario
+     * Metodo que lee una peticion completa de la version de texto del protocolo, con el formato de writeUTF, sobre un
+     * buffer reutilizable, sin crear el String de la peticion.
+     * @return el decodificador posicionado sobre la peticion leida.
+     * @throws IOException si la conexion se cerro.
      */
-    private void registerUser(String username) {
-        this.userName = username;
-        if (ChatServer.getClientsConnected() > 0) {
-            this.updateUserList(ChatServer.getUsersConnected());
-        }
-        chatServer.addUser(this.userName, this);
-        chatServer.broadcastUser(username);
+    private TextFrameReader readTextFrame() throws IOException {
+        int length = this.dataIn.readUnsignedShort();
+        this.readInbound(FrameCodec.HEADER_LENGTH, length);
+        this.inbound.putShort(0, (short) length);
+        long start = System.nanoTime();
+        this.textReader.next(this.inbound);
+        ChatMetrics.getInstance().recordDecode(System.nanoTime() - start);
+        return this.textReader;
     }
 
     /**
-     * Logica correspondiente al envio de un mensaje privado entre dos usuarios. Se verifica si no hubo un envio previo,
-     * de ser asi crea un contenedor {@link ChatMessages} entre estos dos usuarios, de modo que sean notificados cada vez
-     * que un nuevo mensaje es enviado. Finalmente cambia el estado del contenedor.
-     * @param senderName nombre del usuario emisor del mensaje
-     * @param receiverName nombre del usuario receptor del mensaje
-     * @param message mensaje que se envia
-     * @see ChatMessages
+     * Metodo que lee un frame completo de la version binaria del protocolo sobre un buffer reutilizable.
+     * @return el decodificador posicionado sobre el frame leido.
+     * @throws IOException si la conexion se cerro o el frame es invalido.
      */
-    private synchronized void sendPrivateMessage(String senderName, String receiverName, String message) {
-        ChatMessages chatMessage = this.privateMessages.get(receiverName);
-        if ( chatMessage == null ) {
-            chatMessage = new ChatMessages(senderName, receiverName);
-            // Almaceno el observable para comunicar este usuario con el receptor
-            this.privateMessages.put(receiverName, chatMessage);
-            // Añado a este usuario como observer del observable
-            chatMessage.addObserver(this);
-            // Ordeno que el receptor se suscriba al observable y que lo almacene como
-            // via de comunicacion con este usuario
-            ChatServer.getRunningThreadOf(receiverName)
-                    .suscribeTo(chatMessage, senderName);
+    private BinaryFrameReader readBinaryFrame() throws IOException {
+        int length = this.dataIn.readInt();
+        if (length < 1 || length > this.chatServer.getConfig().getMaxFrameLength()) {
+            throw new ProtocolException("Longitud de frame invalida: " + length);
         }
-        chatMessage.setSenderName(senderName);
-        chatMessage.setReceiverName(receiverName);
-        chatMessage.setMessage(message);
+        this.readInbound(BinaryCodes.HEADER_LENGTH, length);
+        this.inbound.putInt(0, length);
+        long start = System.nanoTime();
+        this.frameReader.next(this.inbound);
+        ChatMetrics.getInstance().recordDecode(System.nanoTime() - start);
+        return this.frameReader;
     }
 
     /**
-     * Metodo que se ejecuta al enviar un mensaje global. Cambia el estado del objeto observable.
-     * @param message mensaje a enviar
+     * Metodo que lee el contenido de una peticion en el buffer de lectura, a continuacion del espacio de su cabecera.
+     * El buffer solo se reemplaza si la peticion no entra en el actual.
+     * @param headerLength longitud de la cabecera, que escribe quien invoca al metodo.
+     * @param length longitud del contenido.
+     * @throws IOException si la conexion se cerro.
      */
-    private synchronized void sendGlobal(String message) {
-        this.globalMessages.setSenderName(this.userName);
-        this.globalMessages.setMessage(message); //args[1] contains global message
+    private void readInbound(int headerLength, int length) throws IOException {
+        if (this.inbound == null || this.inbound.capacity() < headerLength + length) {
+            this.inbound = ByteBuffer.allocate(Math.max(headerLength + length, INITIAL_BUFFER_SIZE));
+        }
+        this.inbound.clear();
+        this.dataIn.readFully(this.inbound.array(), headerLength, length);
+        this.inbound.limit(headerLength + length);
     }
 
     /**
-     * Metodo que se ejecuta en el caso de que entre dos usuarios no haya un envio previo. Le ordena al usuario receptor
-     * que observe el contenedor de mensajes entre ellos, y que guarde la asociacion entre el usuario con el cual se comunica
-     * y el contenedor.
-     * @param chatMessages contenedor de mensajes entre el emisor y el receptor {@link ChatMessages}.
-     * @param username nombre del usuario emisor.
-     * @see ChatMessages
+     * Metodo que ejecuta el thread escritor de la conexion. Toma los frames de la cola de salida en grupos, los
+     * acumula en el buffer del data output y lo vacia una vez por grupo, de modo que varios frames se escriben en el
+     * socket juntos. Si la escritura falla se cierra el socket, lo que finaliza la lectura. Las escrituras que tardan
+     * mas de {@link ServerConfig#getMetricsStallMillis()} se registran como demoradas.
+     * <p>
+     * Los archivos encolados se escriben de a una porcion, solo cuando no quedan frames por escribir. El socket de la
+     * version bloqueante no tiene un canal propio, por lo que cada porcion se copia del archivo al data output en
+     * bloques acotados.
      */
-    // Chequear concurrencia aca
-    private synchronized void suscribeTo(ChatMessages chatMessages, String username) {
-        this.privateMessages.put(username, chatMessages);
-        chatMessages.addObserver(this);
+    private void writeMessages() {
+        WritableByteChannel channel = Channels.newChannel(this.dataOut);
+        ByteBuffer[] frames = new ByteBuffer[OutboundQueue.GATHER_FRAMES];
+        long stallNanos = this.chatServer.getConfig().getMetricsStallMillis() * 1_000_000L;
+        try {
+            while (true) {
+                this.outbound.awaitFrames();
+                long delay;
+                while ((delay = this.outbound.getFlushDelay(System.nanoTime())) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                int count = this.outbound.drainTo(frames);
+                long start = System.nanoTime();
+                this.writeStarted = start;
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer buffer = frames[i];
+                    frames[i] = null;
+                    if (buffer.hasArray()) {
+                        this.dataOut.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    } else {
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    }
+                }
+                FileSend file = this.outbound.nextFile();
+                if (file != null) {
+                    file.writeChunk(channel);
+                    if (file.isDone()) {
+                        this.outbound.fileSent();
+                    }
+                }
+                this.dataOut.flush();
+                this.writeStarted = 0;
+                ChatMetrics.getInstance().framesWritten(count);
+                if (System.nanoTime() - start >= stallNanos) {
+                    this.writeStalled();
+                }
+            }
+        } catch (InterruptedException e) {
+            // La conexion fue cerrada
+        } catch (IOException e) {
+            ChatMetrics.getInstance().writeError();
+            log.error("Error al enviar el mensaje al cliente:" + e.getMessage());
+            try {
+                this.socket.close();
+            } catch (IOException closeException) {
+                log.error("Error cerrando el socket:" + closeException.getMessage());
+            }
+        } finally {
+            // Se eliminan los archivos que no llegaron a enviarse
+            this.outbound.clear();
+        }
     }
 
     /**
-     * Metodo que se ejecuta en el caso de que un usuario se desconecte del chat. De modo que todos los usuarios que han mantenido una
-     * conversacion con el que se desconecta no observen mas al contenedor de mensajes y eliminen la asociacion del usuario con el contenedor.
-     * @param chatMessages contenedor de mensajes entre el emisor y el receptor {@link ChatMessages}.
-     * @param username nombre del usuario que se desconecto.
-     * @see ChatMessages
+     * Metodo que retorna el momento en que comenzo la escritura en curso del thread escritor.
+     * @return valor de {@link System#nanoTime()}, o 0 si el thread escritor espera frames.
      */
-    private synchronized void unsuscribeTo(ChatMessages chatMessages, String username) {
-        chatMessages.deleteObserver(this);
-        this.privateMessages.remove(username);
+    @Override
+    protected long getWriteBlockedSince() {
+        return this.writeStarted;
     }
 
     /**
-     * Metodo que comunica al cliente que el usuario se ha conectado, de modo que el cliente realice la accion correspondiente.
-     * @param userName nombre del usuario conectado.
+     * Metodo que cierra el socket, lo que finaliza la lectura y el cierre continua en el thread de la conexion.
      */
-    public void updateUser(String userName) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(MessagesCodes.NEW_USER).append(MessagesCodes.SEPARATOR).append(userName);
+    @Override
+    protected void closeConnection() {
         try {
-            this.dataOut.writeUTF(builder.toString());
+            this.socket.close();
         } catch (IOException e) {
-            log.error("Error al actualizar los usuarios:" + e.getMessage() );
+            log.error("Error cerrando el socket: {}", e.getMessage());
         }
     }
 
     /**
-     * Metodo que envia al cliente la lista de usuarios conectados al server.
-     * @param users lista de los usuarios conectados.
+     * Metodo que retorna la cantidad de frames encolados que aun no escribio el thread escritor.
+     * @return cantidad de frames pendientes.
      */
-    private void updateUserList(Set<String> users) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(MessagesCodes.GET_USERS);
-        for (String user :
-                users) {
-            builder.append(MessagesCodes.SEPARATOR).append(user);
-        }
-        try {
-            this.dataOut.writeUTF(builder.toString());
-        } catch (IOException e) {
-            log.error("Error al actualizar la lista de usuarios:" + e.getMessage() );
-        }
+    @Override
+    public int getPendingFrames() {
+        return this.outbound.size();
     }
 
     /**
-     * Metodo que realiza la logica de desconexion de un usuario al server. Consiste en dejar de observar el contenedor global y cada contenedor existente
-     * entre el usuario que se desconecta y los restantes, asi como tambien indicarles a los usuarios que dejen de observar el contenedor.
-     * @param userName nombre del usuario que se desconecta.
+     * Metodo que encola el frame para que lo escriba el thread escritor de la conexion. Si la cola de salida esta
+     * llena se aplica la politica configurada, y si el frame no puede descartarse se cierra la conexion.
+     * @param frame frame a enviar.
+     * @throws IOException si la conexion ya fue cerrada.
      */
-    private void removeUser(String userName) {
-        for (Map.Entry<String, ChatMessages> chats: this.privateMessages.entrySet()) {
-            chats.getValue().deleteObserver(this);
-            ChatServer.getRunningThreadOf(chats.getKey()).unsuscribeTo(chats.getValue(), userName);
+    @Override
+    protected void send(Frame frame) throws IOException {
+        if (this.closed) {
+            throw new IOException("Conexion cerrada");
+        }
+        if (!this.outbound.offer(this.view(frame), this.isBulk(frame))) {
+            this.outboundOverflow();
         }
-        this.globalMessages.deleteObserver(this);
-        chatServer.removeUser(userName);
-        chatServer.broadcastRemoveUser(userName);
     }
 
     /**
-     * Metodo que notifica a los clientes que un usuario se ha desconectado de modo que realicen las acciones correspondientes.
-     * @param userName nombre del usuario desconectado.
+     * Metodo que encola el archivo para que el thread escritor escriba su contenido luego de los frames encolados.
+     * @param file envio del archivo.
+     * @return false si la conexion ya fue cerrada o ya tiene encolada la cantidad maxima de archivos.
      */
-    public void updateRemoveUser(String userName) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(MessagesCodes.REMOVE_USER).append(MessagesCodes.SEPARATOR).append(userName);
-        try {
-            this.dataOut.writeUTF(builder.toString());
-        } catch (IOException e) {
-            log.error("Error al actualizar los usuarios:" + e.getMessage() );
-        }
+    @Override
+    protected boolean sendFile(FileSend file) {
+        ServerConfig config = this.chatServer.getConfig();
+        return !this.closed && this.outbound.offerFile(file, config.getTransferMaxQueuedFiles(),
+                config.getTransferMaxBytes());
     }
 
 }
@@ -0,0 +1,1176 @@
+package chat;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import chat.history.HistoryLog;
+import chat.mailbox.MailboxStore;
+import chat.metrics.ChatMetrics;
+import chat.ratelimit.RateLimiter;
+import chat.resume.ReplayBuffer;
+import chat.resume.ResumeTokens;
+import chat.room.RoomManager;
+import chat.timer.TimingWheel;
+import chat.transfer.FileSend;
+import chat.transfer.TransferStore;
+import chat.transfer.Upload;
+import util.BinaryCodec;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.FrameCodec;
+import util.FrameCompressor;
+import util.FrameInflater;
+import util.FrameReader;
+import util.MessagesCodes;
+import util.TextFrameReader;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clase que representa la sesion de un cliente de chat conectado al servidor. Contiene la logica del protocolo
+ * {@link MessagesCodes}, independiente de la forma en que se leen y escriben los mensajes en la conexion, de modo
+ * que el servidor bloqueante ({@link ChatServerThread}) y el servidor no bloqueante ({@link chat.nio.NioSession})
+ * atiendan a los clientes de la misma manera.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public abstract class ChatSession implements Observer {
+
+    private static Logger log = LogManager.getLogger(ChatSession.class);
+
+    private static final Frame PING = Frame.of(MessagesCodes.PING);
+    private static final Frame PONG = Frame.of(MessagesCodes.PONG);
+
+    protected final ChatServer chatServer;
+    protected final ChatMessages globalMessages; // global
+    protected String userName;
+    protected volatile int protocolVersion;
+    protected final BinaryFrameReader frameReader;
+    protected final TextFrameReader textReader;
+    protected volatile Set<String> features;
+    protected volatile FrameCompressor compressor;
+    private FrameInflater inflater; // Solo lo utiliza el thread que lee de la conexion
+    private BinaryFrameReader batchReader; // Solo lo utiliza el thread que lee de la conexion
+    private long requestSequence; // Solo lo utiliza el thread que lee de la conexion
+    private long acknowledged; // Solo lo utiliza el thread que lee de la conexion
+    private final RateLimiter rateLimiter;
+    private long throttledUntil; // Solo lo utiliza el thread que lee de la conexion
+    private boolean rateLimitExceeded; // Solo lo utiliza el thread que lee de la conexion
+    private Map<String, Upload> uploads; // Solo lo utiliza el thread que lee de la conexion
+    protected final Set<String> rooms;
+    private final AtomicBoolean connected;
+    private volatile long writeStalls; // Solo lo modifica el thread que escribe en la conexion
+    private volatile long lastReceived;
+    private volatile TimingWheel.Timeout heartbeat;
+    private boolean pingSent; // Solo lo utiliza el thread de la rueda
+    private volatile ReplayBuffer replay;
+    // Los siguientes campos se modifican con el buffer de reenvio bloqueado
+    private volatile String resumeToken;
+    private long replayBase;
+    private boolean detached;
+    private ChatSession successor;
+    private TimingWheel.Timeout grace;
+
+    /**
+     * Constructor de la clase.
+     * @param chatServer instancia del servidor.
+     * @param globalMessages contenedor que implementa el patron de Observer-Observable
+     *                       para los mensajes del chat global {@link ChatMessages}.
+     * @see ChatMessages
+     */
+    protected ChatSession(ChatServer chatServer, ChatMessages globalMessages) {
+        this.chatServer = chatServer;
+        this.globalMessages = globalMessages;
+        this.protocolVersion = BinaryCodes.VERSION_TEXT;
+        this.features = Collections.emptySet();
+        this.rooms = ConcurrentHashMap.newKeySet();
+        this.connected = new AtomicBoolean();
+        this.frameReader = new BinaryFrameReader(chatServer.getConfig().getMaxFrameLength());
+        this.textReader = new TextFrameReader();
+        this.rateLimiter = new RateLimiter(chatServer.getConfig());
+    }
+
+    /**
+     * Metodo que envia un frame al cliente. El frame puede estar compartido con otras conexiones, por lo que solo
+     * debe leerse a traves de {@link Frame#view(int)}, con la version del protocolo vigente al momento del envio.
+     * @param frame frame a enviar.
+     * @throws IOException si no es posible escribir en la conexion.
+     */
+    protected abstract void send(Frame frame) throws IOException;
+
+    /**
+     * Metodo que retorna la vista del frame que se escribe en la conexion, segun la version del protocolo vigente y,
+     * si se negocio, comprimido. Las conexiones la obtienen al encolar el frame.
+     * @param frame frame a enviar.
+     * @return vista del contenido codificado.
+     * @throws IOException si el mensaje no puede representarse en la version del protocolo de la conexion.
+     * @see Frame#view(int, FrameCompressor)
+     */
+    protected ByteBuffer view(Frame frame) throws IOException {
+        return frame.view(this.protocolVersion, this.compressor);
+    }
+
+    /**
+     * Metodo que entrega al cliente un frame compartido entre varios destinatarios. Si el cliente negocio
+     * {@link MessagesCodes#FEATURE_RESUME} el frame se conserva para reenviarlo al reanudar la sesion; mientras la
+     * conexion esta cerrada solo se conserva, y una vez reanudada en otra conexion se entrega a la nueva sesion.
+     * @param frame frame a enviar.
+     */
+    public void deliver(Frame frame) {
+        ReplayBuffer replay = this.replay;
+        if (replay == null || !isReplayable(frame)) {
+            this.write(frame);
+            return;
+        }
+        ChatSession successor;
+        synchronized (replay) {
+            successor = this.successor;
+            if (successor == null) {
+                replay.add(frame);
+                if (!this.detached) {
+                    this.write(frame);
+                }
+                return;
+            }
+        }
+        successor.deliver(frame);
+    }
+
+    /**
+     * Metodo que indica si un frame se reenvia al reanudar una sesion. Los frames propios de la conexion no se
+     * reenvian ni se cuentan entre los recibidos. Los archivos tampoco se reenvian, ya que su contenido se escribe
+     * directamente en la conexion.
+     * @param frame frame enviado.
+     * @return false para HLO, PIN, PON, RSM, ACK, ERR, FIL y CRD.
+     */
+    private static boolean isReplayable(Frame frame) {
+        switch (frame.getOpcode()) {
+            case BinaryCodes.PING:
+            case BinaryCodes.PONG:
+            case BinaryCodes.RESUME:
+            case BinaryCodes.ACK:
+            case BinaryCodes.ERROR:
+            case BinaryCodes.FILE:
+            case BinaryCodes.CREDIT:
+                return false;
+            default:
+                return !MessagesCodes.HELLO.equals(frame.getCode());
+        }
+    }
+
+    /**
+     * Metodo que escribe un frame en la conexion con el cliente.
+     * @param frame frame a enviar.
+     */
+    private void write(Frame frame) {
+        ChatMetrics.getInstance().frameOut(frame.getOpcode());
+        try {
+            this.send(frame);
+        } catch (IOException e) {
+            ChatMetrics.getInstance().writeError();
+            log.error("Error al enviar el mensaje al cliente: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que encola el envio de un archivo para que la conexion escriba su contenido luego de los frames
+     * encolados, dentro de los limites de {@link ServerConfig#getTransferMaxQueuedFiles()}. Por defecto no lo acepta,
+     * para las sesiones sin conexion.
+     * @param file envio del archivo, que la conexion cierra al terminar.
+     * @return false si la conexion no acepta el archivo; en ese caso quien lo invoca debe cerrarlo.
+     * @see chat.outbound.OutboundQueue#offerFile(FileSend, int, long)
+     */
+    protected boolean sendFile(FileSend file) {
+        return false;
+    }
+
+    /**
+     * Metodo que indica si un frame es un mensaje masivo, que se encola detras de los prioritarios y puede descartarse
+     * si el cliente no lee lo suficientemente rapido. Mientras el cliente no se registro, y si puede reanudar su
+     * sesion, todos los frames se consideran prioritarios, ya que el orden de los frames debe conservarse para
+     * negociar la version del protocolo y para contar los recibidos.
+     * @param frame frame a enviar.
+     * @return true para GBL, ROM y HIS.
+     * @see chat.outbound.OutboundQueue
+     */
+    protected boolean isBulk(Frame frame) {
+        if (this.replay != null || this.userName == null) {
+            return false;
+        }
+        switch (frame.getOpcode()) {
+            case BinaryCodes.GLOBAL_MESSAGE:
+            case BinaryCodes.ROOM_MESSAGE:
+            case BinaryCodes.HISTORY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Metodo que cierra la conexion de un cliente cuya cola de salida alcanzo su limite de memoria sin que el frame a
+     * encolar pudiera descartarse.
+     * @see ServerConfig#getOutboundMaxBytes()
+     */
+    protected void outboundOverflow() {
+        log.info("Cerrando la conexion de {}: la cola de salida supera los {} bytes", this.userName,
+                chatServer.getConfig().getOutboundMaxBytes());
+        ChatMetrics.getInstance().slowConsumerDisconnect();
+        this.closeConnection();
+    }
+
+    /**
+     * Metodo que retorna la cantidad de mensajes encolados para el cliente que aun no se escribieron en la conexion.
+     * @return cantidad de frames pendientes.
+     */
+    public int getPendingFrames() {
+        return 0;
+    }
+
+    /**
+     * Metodo que registra una escritura en la conexion que no pudo completarse a tiempo, es decir que el cliente no
+     * esta leyendo sus mensajes al ritmo en que se le envian.
+     * @see ServerConfig#getMetricsStallMillis()
+     */
+    protected void writeStalled() {
+        this.writeStalls++;
+        ChatMetrics.getInstance().writeStall();
+    }
+
+    /**
+     * Metodo que retorna la cantidad de escrituras demoradas en la conexion con el cliente.
+     * @return cantidad de escrituras que no pudieron completarse a tiempo.
+     */
+    public long getWriteStalls() {
+        return writeStalls;
+    }
+
+    /**
+     * Metodo que retorna el momento desde el que la escritura en curso en la conexion no avanza.
+     * @return valor de {@link System#nanoTime()} al comenzar la espera, o 0 si no hay una escritura demorada.
+     * @see ServerConfig#getWriteTimeoutMillis()
+     */
+    protected long getWriteBlockedSince() {
+        return 0;
+    }
+
+    /**
+     * Metodo que cierra la conexion con el cliente desde otro thread, por ejemplo al vencer un plazo. El cierre debe
+     * completarse por el mismo camino que una desconexion del cliente, es decir invocando {@link #closed()}. Por
+     * defecto no hace nada, para las sesiones sin conexion.
+     */
+    protected void closeConnection() {
+    }
+
+    /**
+     * Metodo que retorna el nombre del usuario asociado a la sesion.
+     * @return nombre de usuario, o null si el cliente aun no se ha registrado.
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Metodo para obtener la version del protocolo negociada con el cliente.
+     * @return {@link BinaryCodes#VERSION_TEXT} o {@link BinaryCodes#VERSION_BINARY}.
+     */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Metodo que indica si el cliente negocio una funcionalidad opcional del protocolo.
+     * @param feature funcionalidad de {@link MessagesCodes#FEATURES}.
+     * @return true si la funcionalidad fue aceptada en el HLO.
+     */
+    public boolean hasFeature(String feature) {
+        return features.contains(feature);
+    }
+
+    /**
+     * Metodo que comienza a observar el contenedor global. Debe invocarse una vez que la conexion esta lista para
+     * recibir mensajes.
+     */
+    protected void open() {
+        if (this.connected.compareAndSet(false, true)) {
+            ChatMetrics.getInstance().connectionOpened();
+        }
+        this.globalMessages.addObserver(this);
+        this.lastReceived = System.nanoTime();
+        this.scheduleHeartbeat(this.heartbeatDelay(0, 0));
+    }
+
+    /**
+     * Metodo que ejecuta la rueda del servidor al vencer el plazo de la conexion. Cierra la conexion si la escritura en
+     * curso no avanza o si el cliente no envio mensajes en el tiempo configurado, y le envia un PIN si esta inactivo.
+     * Recibir un mensaje solo actualiza el momento de la ultima recepcion, sin reprogramar el plazo: al vencer se
+     * calcula el siguiente, por lo que cada conexion tiene un unico plazo en la rueda.
+     * @see ServerConfig#getPingIntervalMillis()
+     * @see ServerConfig#getIdleTimeoutMillis()
+     * @see ServerConfig#getWriteTimeoutMillis()
+     */
+    private void heartbeat() {
+        if (!this.connected.get()) {
+            return;
+        }
+        ServerConfig config = chatServer.getConfig();
+        long now = System.nanoTime();
+        long idle = TimeUnit.NANOSECONDS.toMillis(now - this.lastReceived);
+        long writeBlockedSince = this.getWriteBlockedSince();
+        long blocked = writeBlockedSince == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(now - writeBlockedSince);
+        if (config.getWriteTimeoutMillis() > 0 && blocked >= config.getWriteTimeoutMillis()) {
+            log.info("Cerrando la conexion de {}: la escritura no avanza hace {} ms", this.userName, blocked);
+            ChatMetrics.getInstance().writeTimeout();
+            this.closeConnection();
+            return;
+        }
+        if (config.getIdleTimeoutMillis() > 0 && idle >= config.getIdleTimeoutMillis()) {
+            log.info("Cerrando la conexion de {}: sin mensajes hace {} ms", this.userName, idle);
+            ChatMetrics.getInstance().idleTimeout();
+            this.closeConnection();
+            return;
+        }
+        if (config.getPingIntervalMillis() > 0) {
+            if (idle < config.getPingIntervalMillis()) {
+                this.pingSent = false;
+            } else if (!this.pingSent) {
+                this.pingSent = true;
+                this.deliver(PING);
+            }
+        }
+        this.scheduleHeartbeat(this.heartbeatDelay(idle, blocked));
+    }
+
+    /**
+     * Metodo que calcula el tiempo hasta el proximo control de la conexion: el menor de los plazos configurados que
+     * aun no vencieron.
+     * @param idle tiempo sin recibir mensajes, en milisegundos.
+     * @param blocked tiempo que lleva demorada la escritura en curso, en milisegundos.
+     * @return tiempo en milisegundos, o -1 si no hay plazos configurados.
+     */
+    private long heartbeatDelay(long idle, long blocked) {
+        ServerConfig config = chatServer.getConfig();
+        long delay = Long.MAX_VALUE;
+        if (config.getPingIntervalMillis() > 0) {
+            // Enviado el PIN, se vuelve a controlar si el cliente respondio un intervalo despues
+            delay = this.pingSent ? config.getPingIntervalMillis() : config.getPingIntervalMillis() - idle;
+        }
+        if (config.getIdleTimeoutMillis() > 0) {
+            delay = Math.min(delay, config.getIdleTimeoutMillis() - idle);
+        }
+        if (config.getWriteTimeoutMillis() > 0) {
+            // Una escritura que se demora despues de este control se detecta, a lo sumo, un plazo mas tarde
+            delay = Math.min(delay, config.getWriteTimeoutMillis() - blocked);
+        }
+        return delay == Long.MAX_VALUE ? -1 : delay;
+    }
+
+    private void scheduleHeartbeat(long delay) {
+        if (delay >= 0) {
+            this.heartbeat = chatServer.getTimers().schedule(this::heartbeat, delay);
+        }
+    }
+
+    /**
+     * Metodo que se ejecuta cuando la conexion con el cliente se cierra. Si el cliente puede reanudar la sesion, la
+     * sesion se conserva durante {@link ServerConfig#getResumeGraceMillis()} sin notificar a nadie; si no, se libera
+     * con {@link #release()}.
+     */
+    protected void closed() {
+        if (this.connected.compareAndSet(true, false)) {
+            ChatMetrics.getInstance().connectionClosed();
+        }
+        TimingWheel.Timeout heartbeat = this.heartbeat;
+        if (heartbeat != null) {
+            heartbeat.cancel();
+        }
+        if (this.inflater != null) {
+            this.inflater.close();
+        }
+        if (this.uploads != null) {
+            // Los archivos que el cliente no termino de enviar se descartan
+            for (Upload upload : this.uploads.values()) {
+                upload.abort();
+            }
+            this.uploads.clear();
+        }
+        if (this.replay != null && this.detach()) {
+            return;
+        }
+        this.release();
+    }
+
+    /**
+     * Metodo que deja de observar el contenedor global y las salas a las que se unio el usuario y, si no se
+     * desconecto previamente, elimina su entrada en el registro de usuarios conectados y notifica al resto de los
+     * usuarios.
+     */
+    private void release() {
+        this.globalMessages.deleteObserver(this);
+        this.leaveRooms();
+        if (this.userName != null && chatServer.removeUser(this.userName, this)) {
+            chatServer.broadcastRemoveUser(this.userName);
+        }
+    }
+
+    /**
+     * Metodo que conserva la sesion de una conexion cerrada para que el cliente pueda reanudarla. Mientras tanto el
+     * usuario sigue registrado, en sus salas y observando el contenedor global, y los frames que recibe solo se
+     * conservan. Si no se reanuda en el plazo configurado se libera.
+     * @return true si la sesion se conserva o ya continua en otra conexion; false si debe liberarse.
+     */
+    private boolean detach() {
+        synchronized (this.replay) {
+            if (this.successor != null) {
+                return true;
+            }
+            if (this.resumeToken == null) {
+                return false;
+            }
+            this.detached = true;
+            this.grace = chatServer.getTimers().schedule(this::expire, chatServer.getConfig().getResumeGraceMillis());
+        }
+        log.info("Conexion de {} cerrada, la sesion se conserva para reanudarla", this.userName);
+        return true;
+    }
+
+    /**
+     * Metodo que ejecuta la rueda del servidor al vencer el plazo para reanudar la sesion. Si el token no fue
+     * utilizado la sesion se libera como si la conexion se hubiera cerrado en ese momento.
+     */
+    private void expire() {
+        String token = this.resumeToken;
+        if (token == null || !chatServer.getResumeTokens().revoke(token, this)) {
+            return;
+        }
+        synchronized (this.replay) {
+            this.resumeToken = null;
+        }
+        log.info("Sesion de {} liberada sin reanudarse", this.userName);
+        this.release();
+    }
+
+    /**
+     * Metodo que crea el token con el que el cliente puede reanudar la sesion y se lo envia con RSM|token. Los frames
+     * enviados a continuacion son los que el cliente cuenta como recibidos al reanudarla.
+     */
+    private void issueResumeToken() {
+        ResumeTokens tokens = chatServer.getResumeTokens();
+        synchronized (this.replay) {
+            if (this.resumeToken != null) {
+                tokens.revoke(this.resumeToken, this);
+            }
+            this.resumeToken = tokens.issue(this);
+            this.replayBase = this.replay.getCount();
+            this.write(Frame.of(MessagesCodes.RESUME, this.resumeToken));
+        }
+    }
+
+    /**
+     * Metodo que invalida el token de la sesion, por ejemplo cuando el usuario se desconecta explicitamente.
+     */
+    private void revokeResumeToken() {
+        ReplayBuffer replay = this.replay;
+        if (replay == null) {
+            return;
+        }
+        synchronized (replay) {
+            if (this.resumeToken != null) {
+                chatServer.getResumeTokens().revoke(this.resumeToken, this);
+                this.resumeToken = null;
+            }
+        }
+    }
+
+    /**
+     * Metodo que reanuda en esta conexion la sesion del token presentado. La sesion anterior entrega su usuario, sus
+     * salas y los frames que el cliente no recibio, y desde entonces reenvia a esta sesion los frames que le llegan;
+     * luego se reemplaza en el registro y en las salas, sin notificar a ningun usuario. La entrega se realiza con el
+     * contenedor global bloqueado, de modo que ningun mensaje global se pierde ni se repite. Si la sesion no puede
+     * reanudarse se responde RSM sin campos, y el cliente debe registrarse con NWU.
+     * @param token token recibido con RSM al registrarse o al reanudar la sesion anterior.
+     * @param received cantidad de frames recibidos luego de ese RSM, sin contar PIN y PON.
+     */
+    private void resume(String token, String received) {
+        if (this.replay == null || this.userName != null) {
+            log.warn("Pedido de reanudacion de una sesion registrada o que no negocio la funcionalidad");
+            this.deliver(Frame.of(MessagesCodes.RESUME));
+            return;
+        }
+        long count;
+        try {
+            count = Long.parseLong(received.trim());
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        ChatSession previous;
+        boolean resumed;
+        synchronized (this.globalMessages) {
+            previous = chatServer.getResumeTokens().claim(token);
+            resumed = previous != null && previous.handOver(this, count);
+            if (resumed) {
+                this.globalMessages.deleteObserver(previous);
+            }
+        }
+        if (!resumed) {
+            if (previous != null) {
+                previous.abandon();
+            }
+            this.deliver(Frame.of(MessagesCodes.RESUME));
+            return;
+        }
+        chatServer.addUser(this.userName, this);
+        for (String roomName : this.rooms) {
+            chatServer.getRooms().replace(roomName, previous, this);
+        }
+        // Si la conexion anterior no se habia detectado como cerrada, se cierra sin liberar la sesion
+        previous.closeConnection();
+    }
+
+    /**
+     * Metodo que entrega la sesion a la conexion que la reanuda. Se invoca con el token ya quitado, por lo que la
+     * sesion no puede reanudarse dos veces.
+     * @param next sesion de la nueva conexion.
+     * @param received cantidad de frames que el cliente recibio luego del ultimo RSM.
+     * @return false si alguno de los frames que el cliente no recibio ya no se conserva.
+     */
+    private boolean handOver(ChatSession next, long received) {
+        synchronized (this.replay) {
+            this.resumeToken = null;
+            if (this.grace != null) {
+                this.grace.cancel();
+            }
+            List<Frame> missed = received < 0 ? null : this.replay.since(this.replayBase + received);
+            if (missed == null) {
+                return false;
+            }
+            this.successor = next;
+            next.adopt(this, missed);
+            return true;
+        }
+    }
+
+    /**
+     * Metodo que toma el usuario y las salas de la sesion anterior, envia el nuevo token y reenvia los frames que el
+     * cliente no recibio.
+     * @param previous sesion que se reanuda.
+     * @param missed frames a reenviar, en orden.
+     */
+    private void adopt(ChatSession previous, List<Frame> missed) {
+        this.userName = previous.userName;
+        this.rooms.addAll(previous.rooms);
+        this.issueResumeToken();
+        for (Frame frame : missed) {
+            this.deliver(frame);
+        }
+        log.info("Sesion de {} reanudada, {} frames reenviados", this.userName, missed.size());
+    }
+
+    /**
+     * Metodo que libera una sesion cuyo token fue presentado pero que no pudo reanudarse. Si la conexion sigue
+     * abierta se cierra, y la sesion se libera al cerrarse.
+     */
+    private void abandon() {
+        boolean detached;
+        synchronized (this.replay) {
+            detached = this.detached;
+        }
+        if (detached) {
+            this.release();
+        } else {
+            this.closeConnection();
+        }
+    }
+
+    /**
+     * Metodo que decodifica la peticion que recibe y realiza la accion correspondiente de acuerdo al tipo de la misma.
+     * Las conexiones no crean el String de la peticion sino que la decodifican sobre su buffer de lectura con
+     * {@link #decodeRequest(TextFrameReader)}; este metodo se conserva para quien ya tiene la peticion armada.
+     * @param request string con la peticion que el cliente envia.
+     */
+    protected void decodeRequest(String request) {
+        TextFrameReader reader = new TextFrameReader();
+        try {
+            reader.next(FrameCodec.encode(request));
+            this.decodeRequest(reader);
+        } catch (IOException e) {
+            log.warn("Peticion invalida: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que realiza la accion correspondiente a una peticion de la version de texto del protocolo, decodificada
+     * sobre el buffer de lectura de la conexion.
+     * @param frame peticion decodificada.
+     * @throws IOException si la peticion no contiene los campos esperados.
+     * @see TextFrameReader
+     */
+    protected void decodeRequest(TextFrameReader frame) throws IOException {
+        this.lastReceived = System.nanoTime();
+        if (frame.opcode() < 0 && frame.isCode(MessagesCodes.HELLO)) {
+            ChatMetrics.getInstance().frameIn(frame.opcode());
+            if (frame.fieldCount() < 1) {
+                throw new ProtocolException("Falta la version del protocolo");
+            }
+            String[] args = new String[frame.fieldCount()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = frame.getString(i);
+            }
+            this.negotiate(args[0], Arrays.copyOfRange(args, 1, args.length)); //args[0] contains protocol version args[1..] contains features
+            return;
+        }
+        this.dispatch(frame);
+    }
+
+    /**
+     * Metodo que realiza la accion correspondiente a un frame de la version binaria del protocolo. Si la conexion
+     * negocio la compresion, los frames comprimidos se descomprimen antes de atenderlos, y si negocio
+     * {@link MessagesCodes#FEATURE_BATCH} se atiende cada peticion de los frames BAT.
+     * @param frame frame decodificado, con los mismos campos que su equivalente de texto.
+     * @throws IOException si el frame no contiene los campos esperados.
+     * @see BinaryCodes
+     */
+    protected void decodeRequest(BinaryFrameReader frame) throws IOException {
+        this.lastReceived = System.nanoTime();
+        if (frame.opcode() == BinaryCodes.COMPRESSED && this.compressor != null) {
+            ChatMetrics.getInstance().frameIn(frame.opcode());
+            if (this.inflater == null) {
+                this.inflater = new FrameInflater(chatServer.getConfig().getMaxFrameLength(),
+                        this.compressor.getDictionary());
+            }
+            frame = this.inflater.inflate(frame);
+        }
+        if (frame.opcode() == BinaryCodes.BATCH && this.hasFeature(MessagesCodes.FEATURE_BATCH)) {
+            this.dispatchBatch(frame);
+            return;
+        }
+        this.dispatch(frame);
+    }
+
+    /**
+     * Metodo que atiende en orden las peticiones de un frame BAT, decodificandolas sobre el contenido del frame sin
+     * copiarlo. Cada peticion se cuenta en la secuencia como si se hubiera recibido en un frame propio.
+     * @param frame frame BAT decodificado.
+     * @throws IOException si alguna peticion esta truncada, es un frame BAT o comprimido, o no contiene los campos
+     * esperados.
+     */
+    private void dispatchBatch(BinaryFrameReader frame) throws IOException {
+        ChatMetrics.getInstance().frameIn(frame.opcode());
+        ByteBuffer requests = frame.getView(0); //field 0 contains the requests
+        if (this.batchReader == null) {
+            this.batchReader = new BinaryFrameReader(chatServer.getConfig().getMaxFrameLength());
+        }
+        while (requests.hasRemaining()) {
+            if (!this.batchReader.next(requests)) {
+                throw new ProtocolException("Peticion truncada en el frame " + MessagesCodes.BATCH);
+            }
+            byte opcode = this.batchReader.opcode();
+            if (opcode == BinaryCodes.BATCH || opcode == BinaryCodes.COMPRESSED) {
+                throw new ProtocolException("Un frame " + MessagesCodes.BATCH + " no puede contener frames "
+                        + BinaryCodes.codeOf(opcode));
+            }
+            this.dispatch(this.batchReader);
+        }
+    }
+
+    /**
+     * Metodo que envia al cliente la secuencia de la ultima peticion atendida, si negocio
+     * {@link MessagesCodes#FEATURE_ACK} y se atendieron peticiones desde el ultimo ACK. Las conexiones lo invocan
+     * cuando no quedan peticiones recibidas por atender, de modo que un unico ACK confirma todas las peticiones de una
+     * lectura, y el cliente puede enviar varias peticiones sin esperar la confirmacion de cada una.
+     */
+    protected void acknowledge() {
+        if (this.requestSequence != this.acknowledged && this.hasFeature(MessagesCodes.FEATURE_ACK)) {
+            this.acknowledged = this.requestSequence;
+            this.deliver(Frame.of(MessagesCodes.ACK, String.valueOf(this.acknowledged)));
+        }
+    }
+
+    /**
+     * Metodo que realiza la accion correspondiente a una peticion, sin importar la version del protocolo con la que
+     * fue recibida. Solo se crean los String de los campos que la accion utiliza, y el log es parametrizado para no
+     * armar mensajes cuando el nivel debug esta deshabilitado.
+     * @param frame peticion decodificada.
+     * @throws IOException si la peticion no contiene los campos esperados.
+     */
+    private void dispatch(FrameReader frame) throws IOException {
+        long start = System.nanoTime();
+        ChatMetrics metrics = ChatMetrics.getInstance();
+        byte opcode = frame.opcode();
+        metrics.frameIn(opcode);
+        log.debug("New request -- opcode {}", opcode);
+        if (this.rateLimitExceeded) {
+            return; // La conexion se esta cerrando
+        }
+        if (this.rateLimiter.isLimited(opcode) && !this.admit(opcode, start)) {
+            this.requestSequence++;
+            return;
+        }
+        switch (opcode) {
+            case BinaryCodes.NEW_USER:
+                this.registerUser(frame.getString(0)); //field 0 contains username
+                break;
+            case BinaryCodes.GLOBAL_MESSAGE:
+                this.sendGlobal(frame.getString(0)); //field 0 contains global message
+                break;
+            case BinaryCodes.PRIVATE_MESSAGE:
+                this.sendPrivateMessage(frame.getString(0), frame.getString(1), frame.getString(2)); //fields sender, receiver, message
+                break;
+            case BinaryCodes.REMOVE_USER:
+                this.removeUser(frame.getString(0)); //field 0 contains username
+                break;
+            case BinaryCodes.HISTORY:
+                this.replayHistory(frame.getString(0), frame.getString(1)); //fields last or since, count or sequence
+                break;
+            case BinaryCodes.JOIN_ROOM:
+                this.joinRoom(frame.getString(0)); //field 0 contains room name
+                break;
+            case BinaryCodes.LEAVE_ROOM:
+                this.leaveRoom(frame.getString(0)); //field 0 contains room name
+                break;
+            case BinaryCodes.ROOM_MESSAGE:
+                this.sendRoomMessage(frame.getString(0), frame.getString(1)); //fields room name, message
+                break;
+            case BinaryCodes.PING:
+                this.deliver(PONG);
+                break;
+            case BinaryCodes.PONG:
+                break; // Solo indica que el cliente sigue conectado
+            case BinaryCodes.RESUME:
+                this.resume(frame.getString(0), frame.getString(1)); //fields token, frames received
+                break;
+            case BinaryCodes.FILE:
+                this.startUpload(frame.getString(0), frame.getString(1), frame.getString(2), frame.getString(3)); //fields id, receiver, file name, size
+                break;
+            case BinaryCodes.CHUNK:
+                if (!(frame instanceof BinaryFrameReader)) {
+                    throw new ProtocolException("Frame " + MessagesCodes.CHUNK + " fuera de la version binaria");
+                }
+                this.receiveChunk(frame.getString(0), ((BinaryFrameReader) frame).getView(1)); //fields id, content
+                break;
+            default:
+                break;
+        }
+        this.requestSequence++;
+        metrics.recordDispatch(System.nanoTime() - start);
+    }
+
+    /**
+     * Metodo que aplica a una peticion el limite de peticiones de su codigo, segun la accion configurada: rechazarla
+     * respondiendo ERR|rate|codigo, atenderla y demorar la lectura de las siguientes, o cerrar la conexion. Con la
+     * demora, la conexion tambien se cierra si la deuda superaria {@link RateLimiter#MAX_DEBT_TOKENS}.
+     * @param opcode opcode limitado de la peticion.
+     * @param now valor actual de {@link System#nanoTime()}.
+     * @return true si la peticion debe atenderse.
+     * @see ServerConfig#getRateLimitAction()
+     */
+    private boolean admit(byte opcode, long now) {
+        ChatMetrics metrics = ChatMetrics.getInstance();
+        switch (chatServer.getConfig().getRateLimitAction()) {
+            case DELAY:
+                long debt = this.rateLimiter.acquire(opcode, now);
+                if (debt < 0) {
+                    // Solo un frame BAT puede acumular tanta deuda, ya que sus peticiones se atienden sin demorar la
+                    // lectura entre ellas
+                    this.disconnectRateLimited(opcode);
+                    return false;
+                }
+                if (debt > 0) {
+                    metrics.rateLimited(opcode);
+                    this.throttledUntil = Math.max(this.throttledUntil, now + debt);
+                }
+                return true;
+            case DISCONNECT:
+                if (this.rateLimiter.tryAcquire(opcode, now) == 0) {
+                    return true;
+                }
+                this.disconnectRateLimited(opcode);
+                return false;
+            default:
+                if (this.rateLimiter.tryAcquire(opcode, now) == 0) {
+                    return true;
+                }
+                metrics.rateLimited(opcode);
+                this.deliver(Frame.of(MessagesCodes.ERROR, MessagesCodes.ERROR_RATE_LIMIT, BinaryCodes.codeOf(opcode)));
+                return false;
+        }
+    }
+
+    /**
+     * Metodo que cierra la conexion por superar el limite de peticiones de un codigo. Las peticiones restantes de la
+     * lectura actual, incluidas las del mismo frame BAT, ya no se atienden.
+     * @param opcode opcode limitado de la peticion.
+     */
+    private void disconnectRateLimited(byte opcode) {
+        ChatMetrics metrics = ChatMetrics.getInstance();
+        metrics.rateLimited(opcode);
+        metrics.rateLimitDisconnect();
+        log.warn("Cerrando la conexion de {} por superar el limite de peticiones {}", this.userName,
+                BinaryCodes.codeOf(opcode));
+        this.rateLimitExceeded = true;
+        this.closeConnection();
+    }
+
+    /**
+     * Metodo que indica cuanto debe demorarse la lectura de la siguiente peticion porque la conexion supero el limite
+     * de peticiones con la accion {@link ServerConfig.RateLimitAction#DELAY}. Solo lo utiliza el thread que lee de la
+     * conexion.
+     * @return nanosegundos a esperar, o 0 si puede leerse sin demora.
+     */
+    protected long getThrottleDelay() {
+        return this.throttledUntil == 0 ? 0 : Math.max(0, this.throttledUntil - System.nanoTime());
+    }
+
+    /**
+     * Metodo que responde la negociacion de la version del protocolo y de las funcionalidades opcionales. La respuesta
+     * se envia con el formato de texto, con la version y las funcionalidades aceptadas, y a partir de ese momento la
+     * conexion utiliza la version acordada. La compresion, los frames BAT y los archivos solo se aceptan junto con la
+     * version binaria.
+     * @param version version solicitada por el cliente.
+     * @param requestedFeatures funcionalidades solicitadas por el cliente.
+     */
+    private void negotiate(String version, String[] requestedFeatures) {
+        int requested;
+        try {
+            requested = Integer.parseInt(version.trim());
+        } catch (NumberFormatException e) {
+            requested = BinaryCodes.VERSION_TEXT;
+        }
+        int accepted = requested >= BinaryCodes.VERSION_BINARY ? BinaryCodes.VERSION_BINARY : BinaryCodes.VERSION_TEXT;
+        List<String> reply = new ArrayList<>();
+        reply.add(String.valueOf(accepted));
+        List<String> supported = Arrays.asList(MessagesCodes.FEATURES);
+        for (String feature : requestedFeatures) {
+            // Los frames comprimidos, los frames BAT y los frames CHK solo pueden enviarse con la version binaria
+            boolean binaryOnly = MessagesCodes.FEATURE_COMPRESSION.equals(feature)
+                    || MessagesCodes.FEATURE_BATCH.equals(feature) || MessagesCodes.FEATURE_TRANSFER.equals(feature);
+            boolean disabled = MessagesCodes.FEATURE_RESUME.equals(feature)
+                    && chatServer.getConfig().getResumeGraceMillis() <= 0
+                    || MessagesCodes.FEATURE_TRANSFER.equals(feature) && chatServer.getTransfers() == null;
+            if (supported.contains(feature) && !reply.contains(feature) && !disabled
+                    && (!binaryOnly || accepted == BinaryCodes.VERSION_BINARY)) {
+                reply.add(feature);
+            }
+        }
+        this.features = Collections.unmodifiableSet(new HashSet<>(reply.subList(1, reply.size())));
+        this.deliver(Frame.of(MessagesCodes.HELLO, reply.toArray(new String[0])));
+        this.protocolVersion = accepted;
+        this.compressor = this.features.contains(MessagesCodes.FEATURE_COMPRESSION) ? chatServer.getCompressor() : null;
+        // La secuencia de las peticiones comienza luego de cada HLO
+        this.requestSequence = 0;
+        this.acknowledged = 0;
+        if (this.features.contains(MessagesCodes.FEATURE_RESUME) && this.replay == null) {
+            this.replay = new ReplayBuffer(chatServer.getConfig().getResumeBufferFrames());
+        }
+        log.debug("Version del protocolo negociada: {}, funcionalidades: {}", accepted, this.features);
+    }
+
+    /**
+     * Metodo que se ejecuta al momento de recibir el nuevo estado del objeto observado {@link ChatMessages}.
+     * @param o objeto observado.
+     * @param arg frame con el mensaje, codificado una unica vez para todos los observers.
+     * @see ChatMessages
+     */
+    @Override
+    public void update(Observable o, Object arg) {
+        if (this.replay != null && this.userName == null) {
+            // Un cliente que puede reanudar su sesion recibe los mensajes globales recien al registrarse o reanudarla,
+            // para que no se repitan con los que se le reenvian
+            return;
+        }
+        // Recibo una notificacion de que el mensaje ha cambiado por lo que debo actualizarle al cliente
+        this.deliver((Frame) arg);
+    }
+
+    /**
+     * Metodo que se realiza para registrar un nuevo usuario. Indica al servidor que notifique al resto de los usuarios
+     * y que envie al nuevo usuario la lista de usuarios conectados, agrupados en la ventana de presencia actual.
+     * @param username nombre del usuario
+     * @see PresenceBatcher
+     */
+    private void registerUser(String username) {
+        this.userName = username;
+        chatServer.addUser(this.userName, this);
+        if (this.replay != null) {
+            this.issueResumeToken();
+        }
+        chatServer.broadcastUser(this);
+        MailboxStore mailboxes = chatServer.getMailboxes();
+        if (mailboxes != null) {
+            mailboxes.deliverPending(this);
+        }
+    }
+
+    /**
+     * Logica correspondiente al envio de un mensaje privado entre dos usuarios. El mensaje se entrega directamente a la
+     * sesion del receptor obtenida del registro de usuarios conectados, sin guardar estado por cada par de usuarios,
+     * o al nodo del cluster en el que esta conectado (ver {@link ChatServer#routePrivate(String, Frame, boolean)}).
+     * Si {@link ServerConfig#isPrivateEcho()} esta activo el emisor tambien recibe el mensaje.
+     * @param senderName nombre del usuario emisor del mensaje
+     * @param receiverName nombre del usuario receptor del mensaje
+     * @param message mensaje que se envia
+     */
+    private void sendPrivateMessage(String senderName, String receiverName, String message) {
+        // PRV|sender|receiver|message
+        Frame frame = Frame.of(MessagesCodes.PRIVATE_MESSAGE, senderName, receiverName, message);
+        ChatSession receiver = chatServer.routePrivate(receiverName, frame, true);
+        if (receiver != this && chatServer.getConfig().isPrivateEcho()) {
+            this.deliver(frame);
+        }
+    }
+
+    /**
+     * Metodo que se ejecuta al enviar un mensaje global. Cambia el estado del objeto observable.
+     * @param message mensaje a enviar
+     */
+    private void sendGlobal(String message) {
+        // El emisor y el mensaje se cambian juntos para que el frame corresponda a un unico envio
+        synchronized (this.globalMessages) {
+            this.globalMessages.setSenderName(this.userName);
+            this.globalMessages.setMessage(message); //args[1] contains global message
+        }
+    }
+
+    /**
+     * Metodo que reenvia al cliente mensajes globales anteriores del historial, seguidos de HIS con la secuencia
+     * siguiente al ultimo mensaje reenviado. Los numeros de secuencia son consecutivos, por lo que el cliente puede
+     * contar los GBL que recibe luego para pedir solo los que se perdio al reconectarse. Mientras se encolan los
+     * mensajes no se publican mensajes globales nuevos, de modo que no se pierden ni se repiten mensajes entre el
+     * historial y los que siguen.
+     * @param mode {@link MessagesCodes#HISTORY_LAST} o {@link MessagesCodes#HISTORY_SINCE}.
+     * @param value cantidad de mensajes o numero de secuencia.
+     */
+    private void replayHistory(String mode, String value) {
+        HistoryLog history = this.globalMessages.getHistory();
+        if (history == null) {
+            this.deliver(Frame.of(MessagesCodes.HISTORY, "0"));
+            return;
+        }
+        long requested;
+        try {
+            requested = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Pedido de historial invalido: {} {}", mode, value);
+            return;
+        }
+        int max = chatServer.getConfig().getHistoryReplayMax();
+        synchronized (this.globalMessages) {
+            List<Frame> frames;
+            long next;
+            if (MessagesCodes.HISTORY_SINCE.equals(mode)) {
+                frames = history.since(requested, max);
+                long first = Math.min(Math.max(requested, history.getFirstSequence()), history.getNextSequence());
+                next = first + frames.size();
+            } else {
+                frames = history.last((int) Math.min(requested, max));
+                next = history.getNextSequence();
+            }
+            for (Frame frame : frames) {
+                this.deliver(frame);
+            }
+            this.deliver(Frame.of(MessagesCodes.HISTORY, String.valueOf(next)));
+        }
+    }
+
+    /**
+     * Metodo que une al usuario a una sala de chat. Solo los usuarios registrados pueden unirse a salas.
+     * @param roomName nombre de la sala.
+     * @see RoomManager#join(String, ChatSession)
+     */
+    private void joinRoom(String roomName) {
+        if (this.userName == null) {
+            log.warn("Pedido de sala de un usuario no registrado: {}", roomName);
+            return;
+        }
+        if (this.rooms.add(roomName)) {
+            chatServer.getRooms().join(roomName, this);
+        }
+    }
+
+    /**
+     * Metodo que quita al usuario de una sala de chat.
+     * @param roomName nombre de la sala.
+     * @see RoomManager#leave(String, ChatSession)
+     */
+    private void leaveRoom(String roomName) {
+        if (this.rooms.remove(roomName)) {
+            chatServer.getRooms().leave(roomName, this);
+        }
+    }
+
+    /**
+     * Metodo que quita al usuario de todas las salas a las que se unio.
+     */
+    private void leaveRooms() {
+        for (String roomName : this.rooms) {
+            this.leaveRoom(roomName);
+        }
+    }
+
+    /**
+     * Metodo que envia un mensaje a los miembros de una sala de la que el usuario es miembro.
+     * @param roomName nombre de la sala.
+     * @param message mensaje a enviar.
+     */
+    private void sendRoomMessage(String roomName, String message) {
+        if (chatServer.getRooms().publish(roomName, this, message) < 0) {
+            log.warn("Mensaje para una sala de la que el usuario no es miembro: {}", roomName);
+        }
+    }
+
+    /**
+     * Metodo que comienza a recibir un archivo para otro usuario. Ambos usuarios deben haber negociado
+     * {@link MessagesCodes#FEATURE_TRANSFER}. El servidor responde CRD con las porciones que el cliente puede enviar, o
+     * ERR|transfer|FIL|id si rechaza el archivo.
+     * @param id id de la transferencia elegido por el cliente.
+     * @param receiverName nombre del usuario receptor.
+     * @param name nombre del archivo.
+     * @param size tamano del archivo en bytes.
+     * @see TransferStore
+     */
+    private void startUpload(String id, String receiverName, String name, String size) {
+        if (this.uploads == null) {
+            this.uploads = new HashMap<>();
+        }
+        TransferStore transfers = chatServer.getTransfers();
+        long bytes;
+        try {
+            bytes = Long.parseLong(size.trim());
+        } catch (NumberFormatException e) {
+            bytes = -1;
+        }
+        ChatSession receiver = chatServer.getSessionOf(receiverName);
+        if (transfers == null || this.userName == null || !this.hasFeature(MessagesCodes.FEATURE_TRANSFER)
+                || bytes < 0 || bytes > transfers.getMaxBytes()
+                || BinaryCodec.encodedLength(id) > TransferStore.MAX_ID_BYTES || this.uploads.containsKey(id)
+                || this.uploads.size() >= TransferStore.MAX_UPLOADS
+                || receiver == null || !receiver.hasFeature(MessagesCodes.FEATURE_TRANSFER)) {
+            log.warn("Archivo rechazado: {} de {} para {}", name, this.userName, receiverName);
+            this.rejectUpload(id);
+            return;
+        }
+        Upload upload;
+        try {
+            upload = transfers.open(id, receiverName, name, bytes);
+        } catch (IOException e) {
+            log.error("Error creando el archivo {}: {}", name, e.getMessage());
+            this.rejectUpload(id);
+            return;
+        }
+        this.uploads.put(id, upload);
+        if (upload.isComplete()) {
+            this.finishUpload(upload);
+        } else {
+            this.grantChunks(upload);
+        }
+    }
+
+    /**
+     * Metodo que guarda en disco una porcion de un archivo que el cliente esta enviando, directamente desde el buffer
+     * de lectura. Una porcion no admitida cancela la transferencia.
+     * @param id id de la transferencia elegido por el cliente.
+     * @param content contenido de la porcion.
+     */
+    private void receiveChunk(String id, ByteBuffer content) {
+        Upload upload = this.uploads == null ? null : this.uploads.get(id);
+        if (upload == null) {
+            log.warn("Porcion de un archivo desconocido: {}", id);
+            return;
+        }
+        try {
+            if (!upload.write(content)) {
+                log.warn("Porcion no admitida del archivo {} de {}", upload.getName(), this.userName);
+                this.cancelUpload(upload);
+                return;
+            }
+        } catch (IOException e) {
+            log.error("Error guardando el archivo {}: {}", upload.getName(), e.getMessage());
+            this.cancelUpload(upload);
+            return;
+        }
+        if (upload.isComplete()) {
+            this.finishUpload(upload);
+        } else {
+            this.grantChunks(upload);
+        }
+    }
+
+    /**
+     * Metodo que envia al cliente CRD|id|cantidad|bytes si corresponde admitirle mas porciones de un archivo.
+     * @param upload transferencia en curso.
+     */
+    private void grantChunks(Upload upload) {
+        int granted = upload.grant();
+        if (granted > 0) {
+            this.deliver(Frame.of(MessagesCodes.CREDIT, upload.getId(), String.valueOf(granted),
+                    String.valueOf(chatServer.getTransfers().getChunkBytes())));
+        }
+    }
+
+    /**
+     * Metodo que entrega al receptor un archivo recibido por completo: le envia FIL con el id asignado por el servidor
+     * y encola el contenido en su conexion, y confirma el archivo al emisor con FIL. Si el receptor ya no esta
+     * conectado el archivo se descarta.
+     * @param upload transferencia completa.
+     */
+    private void finishUpload(Upload upload) {
+        this.uploads.remove(upload.getId());
+        ChatSession receiver = chatServer.getSessionOf(upload.getReceiverName());
+        if (receiver == null || !receiver.hasFeature(MessagesCodes.FEATURE_TRANSFER)) {
+            upload.abort();
+            this.rejectUpload(upload.getId());
+            return;
+        }
+        String size = String.valueOf(upload.getSize());
+        FileSend file = chatServer.getTransfers().send(upload);
+        receiver.deliver(Frame.of(MessagesCodes.FILE, file.getId(), this.userName, upload.getName(), size));
+        if (!receiver.sendFile(file)) {
+            // El receptor ya recibio el FIL, por lo que tambien se le informa que el contenido no llegara
+            receiver.rejectUpload(file.getId());
+            file.close();
+            this.rejectUpload(upload.getId());
+            return;
+        }
+        this.deliver(Frame.of(MessagesCodes.FILE, upload.getId(), upload.getReceiverName(), upload.getName(), size));
+    }
+
+    private void cancelUpload(Upload upload) {
+        this.uploads.remove(upload.getId());
+        upload.abort();
+        this.rejectUpload(upload.getId());
+    }
+
+    private void rejectUpload(String id) {
+        this.deliver(Frame.of(MessagesCodes.ERROR, MessagesCodes.ERROR_TRANSFER, MessagesCodes.FILE, id));
+    }
+
+    /**
+     * Metodo que realiza la logica de desconexion de un usuario al server. Consiste en dejar de observar el contenedor global
+     * y las salas, eliminar al usuario del registro de usuarios conectados y notificar al resto de los usuarios.
+     * @param userName nombre del usuario que se desconecta.
+     */
+    private void removeUser(String userName) {
+        this.revokeResumeToken();
+        this.globalMessages.deleteObserver(this);
+        this.leaveRooms();
+        chatServer.removeUser(userName);
+        chatServer.broadcastRemoveUser(userName);
+    }
+
+}
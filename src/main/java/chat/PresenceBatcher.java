@@ -0,0 +1,200 @@
+package chat;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clase que agrupa las conexiones y desconexiones de usuarios en ventanas de tiempo cortas y las comunica en un unico
+ * envio por ventana, en lugar de recorrer todas las sesiones por cada usuario que se conecta.
+ * <p>
+ * Al cerrar cada ventana se incrementa la version de la lista de usuarios. Las sesiones que negociaron
+ * {@link MessagesCodes#FEATURE_PRESENCE_DELTA} reciben un unico frame DLT con todos los cambios, y al conectarse un
+ * frame SNP con la lista completa; el resto recibe GTU, NWU y RMV como hasta ahora. Cada frame se codifica una sola vez.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class PresenceBatcher {
+
+    private static Logger log = LogManager.getLogger(PresenceBatcher.class);
+
+    private final ChatServer chatServer;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushScheduled;
+    private Map<String, ChatSession> pendingJoins;
+    private Set<String> pendingLeaves;
+    private final Set<String> announced;
+    private long version;
+
+    /**
+     * Constructor de la clase.
+     * @param chatServer instancia del servidor.
+     * @param windowMillis duracion de la ventana en milisegundos; con 0 cada cambio se comunica inmediatamente.
+     */
+    public PresenceBatcher(ChatServer chatServer, long windowMillis) {
+        this.chatServer = chatServer;
+        this.windowMillis = windowMillis;
+        this.flushScheduled = new AtomicBoolean();
+        this.pendingJoins = new LinkedHashMap<>();
+        this.pendingLeaves = new LinkedHashSet<>();
+        this.announced = new LinkedHashSet<>();
+        this.scheduler = windowMillis > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-presence");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Metodo que registra la conexion de un usuario. La sesion recibe la lista de usuarios al cerrar la ventana.
+     * @param session sesion del usuario que se conecto.
+     */
+    public void join(ChatSession session) {
+        synchronized (this) {
+            this.pendingJoins.put(session.getUserName(), session);
+        }
+        this.scheduleFlush();
+    }
+
+    /**
+     * Metodo que registra la conexion de un usuario a otro nodo del cluster. Se comunica igual que la de un usuario
+     * local, pero no hay sesion a la que enviarle la lista de usuarios.
+     * @param userName nombre del usuario que se conecto.
+     * @see chat.cluster.ClusterNode
+     */
+    public void joinRemote(String userName) {
+        synchronized (this) {
+            this.pendingJoins.put(userName, null);
+        }
+        this.scheduleFlush();
+    }
+
+    /**
+     * Metodo que registra la desconexion de un usuario. Si el usuario se conecto dentro de la misma ventana ninguna
+     * de las dos novedades se comunica.
+     * @param userName nombre del usuario que se desconecto.
+     */
+    public void leave(String userName) {
+        synchronized (this) {
+            this.pendingJoins.remove(userName);
+            if (this.announced.contains(userName)) {
+                this.pendingLeaves.add(userName);
+            }
+        }
+        this.scheduleFlush();
+    }
+
+    /**
+     * Metodo para obtener la version actual de la lista de usuarios.
+     * @return cantidad de ventanas con cambios comunicadas.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    private void scheduleFlush() {
+        if (this.scheduler == null || this.scheduler.isShutdown()) {
+            this.flush();
+        } else if (this.flushScheduled.compareAndSet(false, true)) {
+            this.scheduler.schedule(this::flush, this.windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Metodo que cierra la ventana actual y comunica sus cambios a todas las sesiones registradas.
+     */
+    public synchronized void flush() {
+        this.flushScheduled.set(false);
+        if (this.pendingJoins.isEmpty() && this.pendingLeaves.isEmpty()) {
+            return;
+        }
+        Map<String, ChatSession> joins = this.pendingJoins;
+        Set<String> leaves = this.pendingLeaves;
+        this.pendingJoins = new LinkedHashMap<>();
+        this.pendingLeaves = new LinkedHashSet<>();
+
+        Set<String> previous = new LinkedHashSet<>(this.announced);
+        this.announced.removeAll(leaves);
+        List<String> existing = new ArrayList<>(this.announced);
+        this.announced.addAll(joins.keySet());
+        this.version++;
+        String version = String.valueOf(this.version);
+
+        List<Frame> legacyFrames = new ArrayList<>();
+        List<String> delta = new ArrayList<>();
+        delta.add(version);
+        for (String leave : leaves) {
+            legacyFrames.add(Frame.of(MessagesCodes.REMOVE_USER, leave));
+            delta.add("-" + leave);
+        }
+        List<Frame> joinFrames = new ArrayList<>();
+        for (String join : joins.keySet()) {
+            joinFrames.add(Frame.of(MessagesCodes.NEW_USER, join));
+            delta.add("+" + join);
+        }
+        legacyFrames.addAll(joinFrames);
+        Frame deltaFrame = Frame.of(MessagesCodes.PRESENCE_DELTA, delta.toArray(new String[0]));
+        Frame snapshotFrame = null;
+        Frame usersFrame = null;
+
+        for (ChatSession session : this.chatServer.sessions()) {
+            String userName = session.getUserName();
+            boolean deltas = session.hasFeature(MessagesCodes.FEATURE_PRESENCE_DELTA);
+            if (joins.get(userName) == session) {
+                // Nuevo usuario: lista completa de usuarios
+                if (deltas) {
+                    if (snapshotFrame == null) {
+                        List<String> snapshot = new ArrayList<>();
+                        snapshot.add(version);
+                        snapshot.addAll(this.announced);
+                        snapshotFrame = Frame.of(MessagesCodes.SNAPSHOT, snapshot.toArray(new String[0]));
+                    }
+                    session.deliver(snapshotFrame);
+                } else {
+                    if (!existing.isEmpty()) {
+                        if (usersFrame == null) {
+                            usersFrame = Frame.of(MessagesCodes.GET_USERS, existing.toArray(new String[0]));
+                        }
+                        session.deliver(usersFrame);
+                    }
+                    for (Frame frame : joinFrames) {
+                        session.deliver(frame);
+                    }
+                }
+            } else if (previous.contains(userName)) {
+                // Usuario ya conectado: solo los cambios de la ventana
+                if (deltas) {
+                    session.deliver(deltaFrame);
+                } else {
+                    for (Frame frame : legacyFrames) {
+                        session.deliver(frame);
+                    }
+                }
+            }
+        }
+        log.debug("Presencia version {}: {} conexiones, {} desconexiones", version, joins.size(), leaves.size());
+    }
+
+    /**
+     * Metodo que detiene el envio periodico de los cambios.
+     */
+    public void shutdown() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,1024 @@
+package chat;
+
+import util.BinaryCodes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Clase que contiene la configuracion del servidor de chat. Los valores por defecto reproducen el comportamiento
+ * original del servidor y pueden modificarse mediante propiedades del sistema (por ejemplo -Dchat.mode=nio).
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class ServerConfig {
+
+    /**
+     * Forma en que el servidor atiende las conexiones.
+     */
+    public enum Mode {
+        /** Un thread por cliente con lecturas y escrituras bloqueantes ({@link ChatServerThread}). */
+        BLOCKING,
+        /** Un conjunto fijo de threads que atienden todas las conexiones mediante selectores ({@link chat.nio.NioServer}). */
+        NIO
+    }
+
+    /**
+     * Accion que se toma con los mensajes masivos cuando la cola de salida de una conexion alcanza su limite de memoria.
+     */
+    public enum OverflowPolicy {
+        /** Descartar los mensajes masivos mas antiguos de la cola para encolar el nuevo. */
+        DROP_OLDEST,
+        /** Descartar el nuevo mensaje masivo. */
+        DROP_NEW,
+        /** Cerrar la conexion con el cliente. */
+        DISCONNECT
+    }
+
+    /**
+     * Accion que se toma con una peticion que supera el limite de peticiones de su codigo.
+     */
+    public enum RateLimitAction {
+        /** Descartar la peticion y responder ERR|rate|codigo. */
+        REJECT,
+        /** Atender la peticion y demorar la lectura de las siguientes hasta recuperar el limite. */
+        DELAY,
+        /** Cerrar la conexion con el cliente. */
+        DISCONNECT
+    }
+
+    private Mode mode = Mode.BLOCKING;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int maxFrameLength = 16 * 1024 * 1024;
+    private boolean privateEcho = true;
+    private long presenceWindowMillis = 50;
+    private int registryShards = 16;
+    private String historyDirectory;
+    private int historySegmentBytes = 16 * 1024 * 1024;
+    private long historyRetentionBytes = 1024L * 1024 * 1024;
+    private long historyRetentionMillis = 7L * 24 * 60 * 60 * 1000;
+    private int historyReplayMax = 1000;
+    private String mailboxDirectory;
+    private int mailboxMemoryBytes = 64 * 1024;
+    private long mailboxDiskBytes = 16L * 1024 * 1024;
+    private int mailboxMaxUsers = 10000;
+    private int clusterPort = 0;
+    private String clusterNodeId;
+    private String clusterPeers;
+    private int clusterBatchFrames = 256;
+    private int clusterQueueFrames = 65536;
+    private int metricsPort = 0;
+    private long metricsStallMillis = 100;
+    private int compressionThreshold = 512;
+    private int compressionLevel = 6;
+    private String compressionDictionary;
+    private long heartbeatTickMillis = 100;
+    private long pingIntervalMillis = 30000;
+    private long idleTimeoutMillis = 90000;
+    private long writeTimeoutMillis = 30000;
+    private long resumeGraceMillis = 30000;
+    private int resumeBufferFrames = 256;
+    private long outboundMaxBytes = 8 * 1024 * 1024;
+    private OverflowPolicy outboundPolicy = OverflowPolicy.DROP_OLDEST;
+    private long outboundFlushMicros = 200;
+    private final Map<String, Long> rateLimits = new HashMap<>();
+    private final Map<String, Integer> rateBursts = new HashMap<>();
+    private RateLimitAction rateLimitAction = RateLimitAction.REJECT;
+    private String transferDirectory;
+    private int transferChunkBytes = 64 * 1024;
+    private int transferWindow = 8;
+    private long transferMaxBytes = 1024L * 1024 * 1024;
+    private int transferMaxQueuedFiles = 4;
+    private int fanoutThreshold = 0;
+    private int fanoutThreads = Runtime.getRuntime().availableProcessors();
+    private int fanoutShardSize = 1024;
+
+    /**
+     * Metodo que crea una configuracion a partir de un conjunto de propiedades. Las propiedades ausentes
+     * conservan su valor por defecto.
+     * @param properties propiedades con prefijo "chat.".
+     * @return la configuracion resultante.
+     */
+    public static ServerConfig fromProperties(Properties properties) {
+        ServerConfig config = new ServerConfig();
+        String mode = properties.getProperty("chat.mode");
+        if (mode != null) {
+            config.setMode(Mode.valueOf(mode.trim().toUpperCase()));
+        }
+        String ioThreads = properties.getProperty("chat.io.threads");
+        if (ioThreads != null) {
+            config.setIoThreads(Integer.parseInt(ioThreads.trim()));
+        }
+        String maxFrameLength = properties.getProperty("chat.frame.maxLength");
+        if (maxFrameLength != null) {
+            config.setMaxFrameLength(Integer.parseInt(maxFrameLength.trim()));
+        }
+        String privateEcho = properties.getProperty("chat.private.echo");
+        if (privateEcho != null) {
+            config.setPrivateEcho(Boolean.parseBoolean(privateEcho.trim()));
+        }
+        String presenceWindow = properties.getProperty("chat.presence.window");
+        if (presenceWindow != null) {
+            config.setPresenceWindowMillis(Long.parseLong(presenceWindow.trim()));
+        }
+        String registryShards = properties.getProperty("chat.registry.shards");
+        if (registryShards != null) {
+            config.setRegistryShards(Integer.parseInt(registryShards.trim()));
+        }
+        config.setHistoryDirectory(properties.getProperty("chat.history.dir", config.getHistoryDirectory()));
+        String historySegmentBytes = properties.getProperty("chat.history.segmentBytes");
+        if (historySegmentBytes != null) {
+            config.setHistorySegmentBytes(Integer.parseInt(historySegmentBytes.trim()));
+        }
+        String historyRetentionBytes = properties.getProperty("chat.history.retentionBytes");
+        if (historyRetentionBytes != null) {
+            config.setHistoryRetentionBytes(Long.parseLong(historyRetentionBytes.trim()));
+        }
+        String historyRetentionMillis = properties.getProperty("chat.history.retentionMillis");
+        if (historyRetentionMillis != null) {
+            config.setHistoryRetentionMillis(Long.parseLong(historyRetentionMillis.trim()));
+        }
+        String historyReplayMax = properties.getProperty("chat.history.replayMax");
+        if (historyReplayMax != null) {
+            config.setHistoryReplayMax(Integer.parseInt(historyReplayMax.trim()));
+        }
+        config.setMailboxDirectory(properties.getProperty("chat.mailbox.dir", config.getMailboxDirectory()));
+        String mailboxMemoryBytes = properties.getProperty("chat.mailbox.memoryBytes");
+        if (mailboxMemoryBytes != null) {
+            config.setMailboxMemoryBytes(Integer.parseInt(mailboxMemoryBytes.trim()));
+        }
+        String mailboxDiskBytes = properties.getProperty("chat.mailbox.diskBytes");
+        if (mailboxDiskBytes != null) {
+            config.setMailboxDiskBytes(Long.parseLong(mailboxDiskBytes.trim()));
+        }
+        String mailboxMaxUsers = properties.getProperty("chat.mailbox.maxUsers");
+        if (mailboxMaxUsers != null) {
+            config.setMailboxMaxUsers(Integer.parseInt(mailboxMaxUsers.trim()));
+        }
+        String clusterPort = properties.getProperty("chat.cluster.port");
+        if (clusterPort != null) {
+            config.setClusterPort(Integer.parseInt(clusterPort.trim()));
+        }
+        config.setClusterNodeId(properties.getProperty("chat.cluster.nodeId", config.getClusterNodeId()));
+        config.setClusterPeers(properties.getProperty("chat.cluster.peers", config.getClusterPeers()));
+        String clusterBatchFrames = properties.getProperty("chat.cluster.batchFrames");
+        if (clusterBatchFrames != null) {
+            config.setClusterBatchFrames(Integer.parseInt(clusterBatchFrames.trim()));
+        }
+        String clusterQueueFrames = properties.getProperty("chat.cluster.queueFrames");
+        if (clusterQueueFrames != null) {
+            config.setClusterQueueFrames(Integer.parseInt(clusterQueueFrames.trim()));
+        }
+        String metricsPort = properties.getProperty("chat.metrics.port");
+        if (metricsPort != null) {
+            config.setMetricsPort(Integer.parseInt(metricsPort.trim()));
+        }
+        String metricsStallMillis = properties.getProperty("chat.metrics.stallMillis");
+        if (metricsStallMillis != null) {
+            config.setMetricsStallMillis(Long.parseLong(metricsStallMillis.trim()));
+        }
+        String compressionThreshold = properties.getProperty("chat.compression.threshold");
+        if (compressionThreshold != null) {
+            config.setCompressionThreshold(Integer.parseInt(compressionThreshold.trim()));
+        }
+        String compressionLevel = properties.getProperty("chat.compression.level");
+        if (compressionLevel != null) {
+            config.setCompressionLevel(Integer.parseInt(compressionLevel.trim()));
+        }
+        config.setCompressionDictionary(properties.getProperty("chat.compression.dictionary",
+                config.getCompressionDictionary()));
+        String heartbeatTickMillis = properties.getProperty("chat.heartbeat.tickMillis");
+        if (heartbeatTickMillis != null) {
+            config.setHeartbeatTickMillis(Long.parseLong(heartbeatTickMillis.trim()));
+        }
+        String pingIntervalMillis = properties.getProperty("chat.heartbeat.pingMillis");
+        if (pingIntervalMillis != null) {
+            config.setPingIntervalMillis(Long.parseLong(pingIntervalMillis.trim()));
+        }
+        String idleTimeoutMillis = properties.getProperty("chat.heartbeat.idleMillis");
+        if (idleTimeoutMillis != null) {
+            config.setIdleTimeoutMillis(Long.parseLong(idleTimeoutMillis.trim()));
+        }
+        String writeTimeoutMillis = properties.getProperty("chat.heartbeat.writeTimeoutMillis");
+        if (writeTimeoutMillis != null) {
+            config.setWriteTimeoutMillis(Long.parseLong(writeTimeoutMillis.trim()));
+        }
+        String resumeGraceMillis = properties.getProperty("chat.resume.graceMillis");
+        if (resumeGraceMillis != null) {
+            config.setResumeGraceMillis(Long.parseLong(resumeGraceMillis.trim()));
+        }
+        String resumeBufferFrames = properties.getProperty("chat.resume.bufferFrames");
+        if (resumeBufferFrames != null) {
+            config.setResumeBufferFrames(Integer.parseInt(resumeBufferFrames.trim()));
+        }
+        String outboundMaxBytes = properties.getProperty("chat.outbound.maxBytes");
+        if (outboundMaxBytes != null) {
+            config.setOutboundMaxBytes(Long.parseLong(outboundMaxBytes.trim()));
+        }
+        String outboundPolicy = properties.getProperty("chat.outbound.policy");
+        if (outboundPolicy != null) {
+            config.setOutboundPolicy(OverflowPolicy.valueOf(outboundPolicy.trim().toUpperCase()));
+        }
+        String outboundFlushMicros = properties.getProperty("chat.outbound.flushMicros");
+        if (outboundFlushMicros != null) {
+            config.setOutboundFlushMicros(Long.parseLong(outboundFlushMicros.trim()));
+        }
+        for (byte opcode = 1; opcode <= BinaryCodes.MAX_OPCODE; opcode++) {
+            String code = BinaryCodes.codeOf(opcode);
+            String rateLimit = properties.getProperty("chat.ratelimit." + code);
+            if (rateLimit != null) {
+                long perSecond = Long.parseLong(rateLimit.trim());
+                String rateBurst = properties.getProperty("chat.ratelimit." + code + ".burst");
+                config.setRateLimit(code, perSecond, rateBurst != null ? Integer.parseInt(rateBurst.trim())
+                        : (int) Math.max(1, perSecond));
+            }
+        }
+        String rateLimitAction = properties.getProperty("chat.ratelimit.action");
+        if (rateLimitAction != null) {
+            config.setRateLimitAction(RateLimitAction.valueOf(rateLimitAction.trim().toUpperCase()));
+        }
+        config.setTransferDirectory(properties.getProperty("chat.transfer.dir", config.getTransferDirectory()));
+        String transferChunkBytes = properties.getProperty("chat.transfer.chunkBytes");
+        if (transferChunkBytes != null) {
+            config.setTransferChunkBytes(Integer.parseInt(transferChunkBytes.trim()));
+        }
+        String transferWindow = properties.getProperty("chat.transfer.window");
+        if (transferWindow != null) {
+            config.setTransferWindow(Integer.parseInt(transferWindow.trim()));
+        }
+        String transferMaxBytes = properties.getProperty("chat.transfer.maxBytes");
+        if (transferMaxBytes != null) {
+            config.setTransferMaxBytes(Long.parseLong(transferMaxBytes.trim()));
+        }
+        String transferMaxQueuedFiles = properties.getProperty("chat.transfer.maxQueuedFiles");
+        if (transferMaxQueuedFiles != null) {
+            config.setTransferMaxQueuedFiles(Integer.parseInt(transferMaxQueuedFiles.trim()));
+        }
+        String fanoutThreshold = properties.getProperty("chat.fanout.threshold");
+        if (fanoutThreshold != null) {
+            config.setFanoutThreshold(Integer.parseInt(fanoutThreshold.trim()));
+        }
+        String fanoutThreads = properties.getProperty("chat.fanout.threads");
+        if (fanoutThreads != null) {
+            config.setFanoutThreads(Integer.parseInt(fanoutThreads.trim()));
+        }
+        String fanoutShardSize = properties.getProperty("chat.fanout.shardSize");
+        if (fanoutShardSize != null) {
+            config.setFanoutShardSize(Integer.parseInt(fanoutShardSize.trim()));
+        }
+        return config;
+    }
+
+    /**
+     * Metodo para obtener el modo de atencion de las conexiones.
+     * @return modo del servidor.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Metodo para setear el modo de atencion de las conexiones.
+     * @param mode modo del servidor.
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de threads de entrada/salida del modo {@link Mode#NIO}.
+     * @return cantidad de threads.
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Metodo para setear la cantidad de threads de entrada/salida del modo {@link Mode#NIO}.
+     * @param ioThreads cantidad de threads, por defecto uno por nucleo.
+     */
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Metodo para obtener la longitud maxima de un frame de la version binaria del protocolo.
+     * @return longitud maxima en bytes.
+     */
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * Metodo para setear la longitud maxima de un frame de la version binaria del protocolo.
+     * @param maxFrameLength longitud maxima en bytes, por defecto 16 MB.
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Metodo que indica si el emisor de un mensaje privado tambien lo recibe.
+     * @return true si se reenvia el mensaje al emisor.
+     */
+    public boolean isPrivateEcho() {
+        return privateEcho;
+    }
+
+    /**
+     * Metodo para setear si el emisor de un mensaje privado tambien lo recibe.
+     * @param privateEcho true para reenviar el mensaje al emisor, como por defecto.
+     */
+    public void setPrivateEcho(boolean privateEcho) {
+        this.privateEcho = privateEcho;
+    }
+
+    /**
+     * Metodo para obtener la duracion de la ventana en la que se agrupan las conexiones y desconexiones de usuarios.
+     * @return duracion en milisegundos.
+     * @see PresenceBatcher
+     */
+    public long getPresenceWindowMillis() {
+        return presenceWindowMillis;
+    }
+
+    /**
+     * Metodo para setear la duracion de la ventana en la que se agrupan las conexiones y desconexiones de usuarios.
+     * @param presenceWindowMillis duracion en milisegundos, por defecto 50; con 0 cada cambio se envia inmediatamente.
+     */
+    public void setPresenceWindowMillis(long presenceWindowMillis) {
+        this.presenceWindowMillis = presenceWindowMillis;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de shards del registro de usuarios conectados.
+     * @return cantidad de shards.
+     * @see chat.registry.UserRegistry
+     */
+    public int getRegistryShards() {
+        return registryShards;
+    }
+
+    /**
+     * Metodo para setear la cantidad de shards del registro de usuarios conectados.
+     * @param registryShards cantidad de shards, por defecto 16; se redondea a la siguiente potencia de dos.
+     */
+    public void setRegistryShards(int registryShards) {
+        this.registryShards = registryShards;
+    }
+
+    /**
+     * Metodo para obtener el directorio del historial del chat global.
+     * @return ruta del directorio, o null si el historial esta deshabilitado.
+     * @see chat.history.HistoryLog
+     */
+    public String getHistoryDirectory() {
+        return historyDirectory;
+    }
+
+    /**
+     * Metodo para setear el directorio del historial del chat global.
+     * @param historyDirectory ruta del directorio, por defecto null para no guardar el historial.
+     */
+    public void setHistoryDirectory(String historyDirectory) {
+        this.historyDirectory = historyDirectory;
+    }
+
+    /**
+     * Metodo para obtener la capacidad de cada segmento del historial.
+     * @return capacidad en bytes.
+     */
+    public int getHistorySegmentBytes() {
+        return historySegmentBytes;
+    }
+
+    /**
+     * Metodo para setear la capacidad de cada segmento del historial.
+     * @param historySegmentBytes capacidad en bytes, por defecto 16 MB.
+     */
+    public void setHistorySegmentBytes(int historySegmentBytes) {
+        this.historySegmentBytes = historySegmentBytes;
+    }
+
+    /**
+     * Metodo para obtener el espacio maximo que ocupa el historial en el disco.
+     * @return espacio en bytes.
+     */
+    public long getHistoryRetentionBytes() {
+        return historyRetentionBytes;
+    }
+
+    /**
+     * Metodo para setear el espacio maximo que ocupa el historial en el disco.
+     * @param historyRetentionBytes espacio en bytes, por defecto 1 GB.
+     */
+    public void setHistoryRetentionBytes(long historyRetentionBytes) {
+        this.historyRetentionBytes = historyRetentionBytes;
+    }
+
+    /**
+     * Metodo para obtener la antiguedad maxima de los mensajes del historial.
+     * @return antiguedad en milisegundos.
+     */
+    public long getHistoryRetentionMillis() {
+        return historyRetentionMillis;
+    }
+
+    /**
+     * Metodo para setear la antiguedad maxima de los mensajes del historial.
+     * @param historyRetentionMillis antiguedad en milisegundos, por defecto 7 dias.
+     */
+    public void setHistoryRetentionMillis(long historyRetentionMillis) {
+        this.historyRetentionMillis = historyRetentionMillis;
+    }
+
+    /**
+     * Metodo para obtener la cantidad maxima de mensajes del historial que se reenvian por pedido.
+     * @return cantidad de mensajes.
+     */
+    public int getHistoryReplayMax() {
+        return historyReplayMax;
+    }
+
+    /**
+     * Metodo para setear la cantidad maxima de mensajes del historial que se reenvian por pedido.
+     * @param historyReplayMax cantidad de mensajes, por defecto 1000.
+     */
+    public void setHistoryReplayMax(int historyReplayMax) {
+        this.historyReplayMax = historyReplayMax;
+    }
+
+    /**
+     * Metodo para obtener el directorio al que pasan los mensajes privados pendientes que no entran en memoria.
+     * @return ruta del directorio, o null si los mensajes pendientes se mantienen solo en memoria.
+     * @see chat.mailbox.MailboxStore
+     */
+    public String getMailboxDirectory() {
+        return mailboxDirectory;
+    }
+
+    /**
+     * Metodo para setear el directorio al que pasan los mensajes privados pendientes que no entran en memoria.
+     * @param mailboxDirectory ruta del directorio, por defecto null para descartar los mensajes mas antiguos.
+     */
+    public void setMailboxDirectory(String mailboxDirectory) {
+        this.mailboxDirectory = mailboxDirectory;
+    }
+
+    /**
+     * Metodo para obtener la memoria maxima de los mensajes pendientes de cada usuario desconectado.
+     * @return memoria en bytes.
+     */
+    public int getMailboxMemoryBytes() {
+        return mailboxMemoryBytes;
+    }
+
+    /**
+     * Metodo para setear la memoria maxima de los mensajes pendientes de cada usuario desconectado.
+     * @param mailboxMemoryBytes memoria en bytes, por defecto 64 KB.
+     */
+    public void setMailboxMemoryBytes(int mailboxMemoryBytes) {
+        this.mailboxMemoryBytes = mailboxMemoryBytes;
+    }
+
+    /**
+     * Metodo para obtener el espacio maximo en disco de los mensajes pendientes de cada usuario desconectado.
+     * @return espacio en bytes.
+     */
+    public long getMailboxDiskBytes() {
+        return mailboxDiskBytes;
+    }
+
+    /**
+     * Metodo para setear el espacio maximo en disco de los mensajes pendientes de cada usuario desconectado.
+     * @param mailboxDiskBytes espacio en bytes, por defecto 16 MB.
+     */
+    public void setMailboxDiskBytes(long mailboxDiskBytes) {
+        this.mailboxDiskBytes = mailboxDiskBytes;
+    }
+
+    /**
+     * Metodo para obtener la cantidad maxima de usuarios desconectados con mensajes pendientes en memoria.
+     * @return cantidad de casillas.
+     */
+    public int getMailboxMaxUsers() {
+        return mailboxMaxUsers;
+    }
+
+    /**
+     * Metodo para setear la cantidad maxima de usuarios desconectados con mensajes pendientes en memoria. Los mensajes
+     * para otros usuarios se descartan hasta que se entregue alguna casilla.
+     * @param mailboxMaxUsers cantidad de casillas, por defecto 10000.
+     */
+    public void setMailboxMaxUsers(int mailboxMaxUsers) {
+        this.mailboxMaxUsers = mailboxMaxUsers;
+    }
+
+    /**
+     * Metodo para obtener el puerto en el que el nodo acepta los enlaces de los otros nodos del cluster.
+     * @see chat.cluster.ClusterNode
+     * @return numero de puerto, o 0 si el servidor no forma parte de un cluster.
+     */
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    /**
+     * Metodo para setear el puerto en el que el nodo acepta los enlaces de los otros nodos del cluster.
+     * @param clusterPort numero de puerto, por defecto 0 para deshabilitar el cluster.
+     */
+    public void setClusterPort(int clusterPort) {
+        this.clusterPort = clusterPort;
+    }
+
+    /**
+     * Metodo para obtener el nombre del nodo dentro del cluster.
+     * @return nombre del nodo, o null para utilizar node-puerto.
+     */
+    public String getClusterNodeId() {
+        return clusterNodeId;
+    }
+
+    /**
+     * Metodo para setear el nombre del nodo dentro del cluster.
+     * @param clusterNodeId nombre unico del nodo.
+     */
+    public void setClusterNodeId(String clusterNodeId) {
+        this.clusterNodeId = clusterNodeId;
+    }
+
+    /**
+     * Metodo para obtener las direcciones de los otros nodos del cluster.
+     * @return lista host:puerto separada por comas, o null.
+     */
+    public String getClusterPeers() {
+        return clusterPeers;
+    }
+
+    /**
+     * Metodo para setear las direcciones de los otros nodos del cluster.
+     * @param clusterPeers lista host:puerto de los puertos de cluster de los otros nodos, separada por comas.
+     */
+    public void setClusterPeers(String clusterPeers) {
+        this.clusterPeers = clusterPeers;
+    }
+
+    /**
+     * Metodo para obtener la cantidad maxima de frames que se escriben juntos en un enlace entre nodos.
+     * @return cantidad de frames por escritura.
+     */
+    public int getClusterBatchFrames() {
+        return clusterBatchFrames;
+    }
+
+    /**
+     * Metodo para setear la cantidad maxima de frames que se escriben juntos en un enlace entre nodos.
+     * @param clusterBatchFrames cantidad de frames por escritura, por defecto 256.
+     */
+    public void setClusterBatchFrames(int clusterBatchFrames) {
+        this.clusterBatchFrames = clusterBatchFrames;
+    }
+
+    /**
+     * Metodo para obtener la cantidad maxima de frames pendientes de cada enlace entre nodos.
+     * @return capacidad de la cola de cada enlace.
+     */
+    public int getClusterQueueFrames() {
+        return clusterQueueFrames;
+    }
+
+    /**
+     * Metodo para setear la cantidad maxima de frames pendientes de cada enlace entre nodos. Los frames que no entran se descartan.
+     * @param clusterQueueFrames capacidad de la cola, por defecto 65536.
+     */
+    public void setClusterQueueFrames(int clusterQueueFrames) {
+        this.clusterQueueFrames = clusterQueueFrames;
+    }
+
+    /**
+     * Metodo para obtener el puerto en el que se publican las metricas del servidor en texto plano.
+     * @return numero de puerto, o 0 si las metricas solo se publican por JMX.
+     * @see chat.metrics.MetricsEndpoint
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * Metodo para setear el puerto en el que se publican las metricas del servidor en texto plano.
+     * @param metricsPort numero de puerto, por defecto 0 para no publicarlas.
+     */
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    /**
+     * Metodo para obtener la duracion a partir de la cual una escritura en la conexion de un cliente se considera
+     * demorada.
+     * @return duracion en milisegundos.
+     */
+    public long getMetricsStallMillis() {
+        return metricsStallMillis;
+    }
+
+    /**
+     * Metodo para setear la duracion a partir de la cual una escritura en la conexion de un cliente se considera
+     * demorada.
+     * @param metricsStallMillis duracion en milisegundos, por defecto 100.
+     */
+    public void setMetricsStallMillis(long metricsStallMillis) {
+        this.metricsStallMillis = metricsStallMillis;
+    }
+
+    /**
+     * Metodo para obtener la longitud minima de los frames que se comprimen para las conexiones que negociaron la
+     * compresion.
+     * @return longitud en bytes.
+     * @see util.FrameCompressor
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Metodo para setear la longitud minima de los frames que se comprimen para las conexiones que negociaron la
+     * compresion.
+     * @param compressionThreshold longitud en bytes, por defecto 512.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Metodo para obtener el nivel de compresion de los frames.
+     * @return nivel entre 0 y 9.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Metodo para setear el nivel de compresion de los frames.
+     * @param compressionLevel nivel entre 0 (sin compresion) y 9 (maxima compresion), por defecto 6.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Metodo para obtener el archivo con el diccionario inicial de la compresion, compartido con los clientes.
+     * @return ruta del archivo, o null si no se utiliza diccionario.
+     */
+    public String getCompressionDictionary() {
+        return compressionDictionary;
+    }
+
+    /**
+     * Metodo para setear el archivo con el diccionario inicial de la compresion, compartido con los clientes.
+     * @param compressionDictionary ruta del archivo, por defecto null para no utilizar diccionario.
+     */
+    public void setCompressionDictionary(String compressionDictionary) {
+        this.compressionDictionary = compressionDictionary;
+    }
+
+    /**
+     * Metodo para obtener la duracion de cada paso de la rueda que controla los plazos de las conexiones. Los plazos se
+     * cumplen con una demora de a lo sumo un paso.
+     * @return duracion en milisegundos.
+     * @see chat.timer.TimingWheel
+     */
+    public long getHeartbeatTickMillis() {
+        return heartbeatTickMillis;
+    }
+
+    /**
+     * Metodo para setear la duracion de cada paso de la rueda que controla los plazos de las conexiones.
+     * @param heartbeatTickMillis duracion en milisegundos, por defecto 100.
+     */
+    public void setHeartbeatTickMillis(long heartbeatTickMillis) {
+        this.heartbeatTickMillis = heartbeatTickMillis;
+    }
+
+    /**
+     * Metodo para obtener el tiempo sin recibir mensajes de un cliente a partir del cual el servidor le envia un PIN.
+     * @return duracion en milisegundos, o 0 si no se envian.
+     */
+    public long getPingIntervalMillis() {
+        return pingIntervalMillis;
+    }
+
+    /**
+     * Metodo para setear el tiempo sin recibir mensajes de un cliente a partir del cual el servidor le envia un PIN.
+     * @param pingIntervalMillis duracion en milisegundos, por defecto 30000; 0 para no enviarlos.
+     */
+    public void setPingIntervalMillis(long pingIntervalMillis) {
+        this.pingIntervalMillis = pingIntervalMillis;
+    }
+
+    /**
+     * Metodo para obtener el tiempo sin recibir mensajes de un cliente a partir del cual se cierra su conexion.
+     * @return duracion en milisegundos, o 0 si las conexiones inactivas no se cierran.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Metodo para setear el tiempo sin recibir mensajes de un cliente a partir del cual se cierra su conexion. Debe
+     * ser mayor que {@link #getPingIntervalMillis()} para que el cliente tenga tiempo de responder el PIN.
+     * @param idleTimeoutMillis duracion en milisegundos, por defecto 90000; 0 para no cerrarlas.
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Metodo para obtener el tiempo que puede demorarse una escritura en la conexion de un cliente antes de cerrarla.
+     * @return duracion en milisegundos, o 0 si no se controla.
+     */
+    public long getWriteTimeoutMillis() {
+        return writeTimeoutMillis;
+    }
+
+    /**
+     * Metodo para setear el tiempo que puede demorarse una escritura en la conexion de un cliente antes de cerrarla.
+     * @param writeTimeoutMillis duracion en milisegundos, por defecto 30000; 0 para no controlarlo.
+     */
+    public void setWriteTimeoutMillis(long writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    /**
+     * Metodo para obtener el tiempo durante el que se conserva la sesion de un cliente que negocio
+     * {@link util.MessagesCodes#FEATURE_RESUME} luego de cerrarse su conexion, a la espera de que la reanude.
+     * @return duracion en milisegundos, o 0 si las sesiones no pueden reanudarse.
+     */
+    public long getResumeGraceMillis() {
+        return resumeGraceMillis;
+    }
+
+    /**
+     * Metodo para setear el tiempo durante el que se conserva la sesion de un cliente luego de cerrarse su conexion.
+     * Durante ese tiempo el resto de los usuarios no es notificado de la desconexion.
+     * @param resumeGraceMillis duracion en milisegundos, por defecto 30000; 0 para no aceptar la funcionalidad.
+     */
+    public void setResumeGraceMillis(long resumeGraceMillis) {
+        this.resumeGraceMillis = resumeGraceMillis;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames enviados que se conservan por sesion para reenviarlos al reanudarla.
+     * @return cantidad de frames.
+     * @see chat.resume.ReplayBuffer
+     */
+    public int getResumeBufferFrames() {
+        return resumeBufferFrames;
+    }
+
+    /**
+     * Metodo para setear la cantidad de frames enviados que se conservan por sesion. Si el cliente perdio mas frames
+     * la sesion no puede reanudarse y debe volver a registrarse.
+     * @param resumeBufferFrames cantidad de frames, por defecto 256.
+     */
+    public void setResumeBufferFrames(int resumeBufferFrames) {
+        this.resumeBufferFrames = resumeBufferFrames;
+    }
+
+    /**
+     * Metodo para obtener la memoria maxima de los frames pendientes de escribirse en cada conexion.
+     * @return cantidad de bytes, o 0 si no hay limite.
+     * @see chat.outbound.OutboundQueue
+     */
+    public long getOutboundMaxBytes() {
+        return outboundMaxBytes;
+    }
+
+    /**
+     * Metodo para setear la memoria maxima de los frames pendientes de escribirse en cada conexion. Al alcanzarla se
+     * aplica {@link #getOutboundPolicy()} a los mensajes masivos, y si no entra un frame prioritario se cierra la
+     * conexion.
+     * @param outboundMaxBytes cantidad de bytes, por defecto 8 MiB; 0 para no limitarla.
+     */
+    public void setOutboundMaxBytes(long outboundMaxBytes) {
+        this.outboundMaxBytes = outboundMaxBytes;
+    }
+
+    /**
+     * Metodo para obtener la accion que se toma con los mensajes masivos cuando una conexion alcanza su limite.
+     * @return politica de la cola de salida.
+     */
+    public OverflowPolicy getOutboundPolicy() {
+        return outboundPolicy;
+    }
+
+    /**
+     * Metodo para setear la accion que se toma con los mensajes masivos cuando una conexion alcanza su limite.
+     * @param outboundPolicy politica de la cola de salida, por defecto {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public void setOutboundPolicy(OverflowPolicy outboundPolicy) {
+        this.outboundPolicy = outboundPolicy;
+    }
+
+    /**
+     * Metodo para obtener la demora maxima que se agrega a la escritura de un frame para agruparlo con los siguientes.
+     * Solo se demora mientras la conexion recibe rafagas de frames; con poco trafico cada frame se escribe al encolarse.
+     * @return demora maxima en microsegundos, o 0 para escribir siempre sin demora.
+     */
+    public long getOutboundFlushMicros() {
+        return outboundFlushMicros;
+    }
+
+    /**
+     * Metodo para setear la demora maxima que se agrega a la escritura de un frame para agruparlo con los siguientes.
+     * @param outboundFlushMicros demora en microsegundos, por defecto 200; 0 la desactiva.
+     */
+    public void setOutboundFlushMicros(long outboundFlushMicros) {
+        this.outboundFlushMicros = outboundFlushMicros;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de peticiones por segundo que cada usuario puede enviar con un codigo.
+     * @param code codigo de {@link util.MessagesCodes}.
+     * @return peticiones por segundo, o 0 si el codigo no tiene limite.
+     * @see chat.ratelimit.RateLimiter
+     */
+    public long getRateLimit(String code) {
+        return rateLimits.getOrDefault(code, 0L);
+    }
+
+    /**
+     * Metodo para obtener la cantidad de peticiones con un codigo que cada usuario puede enviar seguidas antes de
+     * que se aplique su limite por segundo.
+     * @param code codigo de {@link util.MessagesCodes}.
+     * @return cantidad de peticiones.
+     */
+    public int getRateBurst(String code) {
+        return rateBursts.getOrDefault(code, 0);
+    }
+
+    /**
+     * Metodo para setear el limite de peticiones de un codigo. Por defecto ningun codigo tiene limite; en la
+     * propiedad chat.ratelimit.CODIGO se indican las peticiones por segundo y en chat.ratelimit.CODIGO.burst la
+     * rafaga, que por defecto es igual a las peticiones por segundo.
+     * @param code codigo de {@link util.MessagesCodes}.
+     * @param perSecond peticiones por segundo, o 0 para quitar el limite.
+     * @param burst cantidad de peticiones que pueden enviarse seguidas, a lo sumo
+     *              {@value chat.ratelimit.RateLimiter#MAX_BURST}.
+     */
+    public void setRateLimit(String code, long perSecond, int burst) {
+        this.rateLimits.put(code, perSecond);
+        this.rateBursts.put(code, burst);
+    }
+
+    /**
+     * Metodo para obtener la accion que se toma con una peticion que supera su limite.
+     * @return accion configurada.
+     */
+    public RateLimitAction getRateLimitAction() {
+        return rateLimitAction;
+    }
+
+    /**
+     * Metodo para setear la accion que se toma con una peticion que supera su limite.
+     * @param rateLimitAction accion, por defecto {@link RateLimitAction#REJECT}.
+     */
+    public void setRateLimitAction(RateLimitAction rateLimitAction) {
+        this.rateLimitAction = rateLimitAction;
+    }
+
+    /**
+     * Metodo para obtener el directorio en el que se guardan los archivos que envian los clientes hasta entregarlos.
+     * @return ruta del directorio, o null si el servidor no acepta archivos.
+     * @see chat.transfer.TransferStore
+     */
+    public String getTransferDirectory() {
+        return transferDirectory;
+    }
+
+    /**
+     * Metodo para setear el directorio en el que se guardan los archivos que envian los clientes hasta entregarlos.
+     * @param transferDirectory ruta del directorio, por defecto null para no aceptar la funcionalidad.
+     */
+    public void setTransferDirectory(String transferDirectory) {
+        this.transferDirectory = transferDirectory;
+    }
+
+    /**
+     * Metodo para obtener el tamano maximo de cada porcion en la que se envia el contenido de un archivo.
+     * @return cantidad de bytes.
+     */
+    public int getTransferChunkBytes() {
+        return transferChunkBytes;
+    }
+
+    /**
+     * Metodo para setear el tamano maximo de cada porcion en la que se envia el contenido de un archivo. No puede
+     * superar la longitud maxima de un frame.
+     * @param transferChunkBytes cantidad de bytes, por defecto 64 KiB.
+     */
+    public void setTransferChunkBytes(int transferChunkBytes) {
+        this.transferChunkBytes = transferChunkBytes;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de porciones de un archivo que un cliente puede enviar sin esperar un CRD.
+     * @return cantidad de porciones.
+     */
+    public int getTransferWindow() {
+        return transferWindow;
+    }
+
+    /**
+     * Metodo para setear la cantidad de porciones de un archivo que un cliente puede enviar sin esperar un CRD.
+     * @param transferWindow cantidad de porciones, por defecto 8.
+     */
+    public void setTransferWindow(int transferWindow) {
+        this.transferWindow = transferWindow;
+    }
+
+    /**
+     * Metodo para obtener el tamano maximo de un archivo.
+     * @return cantidad de bytes.
+     */
+    public long getTransferMaxBytes() {
+        return transferMaxBytes;
+    }
+
+    /**
+     * Metodo para setear el tamano maximo de un archivo. Los archivos mas grandes se rechazan con ERR|transfer.
+     * @param transferMaxBytes cantidad de bytes, por defecto 1 GiB.
+     */
+    public void setTransferMaxBytes(long transferMaxBytes) {
+        this.transferMaxBytes = transferMaxBytes;
+    }
+
+    /**
+     * Metodo para obtener la cantidad maxima de archivos encolados para enviarse a un receptor.
+     * @return cantidad de archivos.
+     */
+    public int getTransferMaxQueuedFiles() {
+        return transferMaxQueuedFiles;
+    }
+
+    /**
+     * Metodo para setear la cantidad maxima de archivos encolados para enviarse a un receptor. Cada archivo encolado
+     * mantiene abierto su archivo temporal, y entre todos no pueden superar {@link #getTransferMaxBytes()}; un archivo
+     * que no entra en la cola del receptor se rechaza con ERR|transfer.
+     * @param transferMaxQueuedFiles cantidad de archivos, por defecto 4.
+     */
+    public void setTransferMaxQueuedFiles(int transferMaxQueuedFiles) {
+        this.transferMaxQueuedFiles = transferMaxQueuedFiles;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de destinatarios a partir de la cual un mensaje global se entrega en paralelo.
+     * @return cantidad de destinatarios, o 0 si los mensajes se entregan siempre desde el thread que los publica.
+     * @see chat.fanout.ParallelFanout
+     */
+    public int getFanoutThreshold() {
+        return fanoutThreshold;
+    }
+
+    /**
+     * Metodo para setear la cantidad de destinatarios a partir de la cual un mensaje global se entrega en paralelo.
+     * @param fanoutThreshold cantidad de destinatarios, por defecto 0 para entregarlos siempre desde el thread que los
+     *                        publica.
+     */
+    public void setFanoutThreshold(int fanoutThreshold) {
+        this.fanoutThreshold = fanoutThreshold;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de threads que entregan en paralelo los mensajes globales.
+     * @return cantidad de threads.
+     */
+    public int getFanoutThreads() {
+        return fanoutThreads;
+    }
+
+    /**
+     * Metodo para setear la cantidad de threads que entregan en paralelo los mensajes globales.
+     * @param fanoutThreads cantidad de threads, por defecto uno por nucleo.
+     */
+    public void setFanoutThreads(int fanoutThreads) {
+        this.fanoutThreads = fanoutThreads;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de destinatarios que atiende cada tarea de una entrega en paralelo.
+     * @return cantidad de destinatarios.
+     */
+    public int getFanoutShardSize() {
+        return fanoutShardSize;
+    }
+
+    /**
+     * Metodo para setear la cantidad de destinatarios que atiende cada tarea de una entrega en paralelo.
+     * @param fanoutShardSize cantidad de destinatarios, por defecto 1024.
+     */
+    public void setFanoutShardSize(int fanoutShardSize) {
+        this.fanoutShardSize = fanoutShardSize;
+    }
+}
@@ -0,0 +1,335 @@
+package chat.cluster;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ServerConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nodo de un cluster de servidores de chat. Cada nodo atiende a sus propios clientes y mantiene un enlace de salida
+ * ({@link NodeLink}) con cada uno de los otros nodos, por el que envia con la version binaria del protocolo:
+ * <ul>
+ * <li>los mensajes globales publicados en este nodo (GBL), que el otro nodo publica a sus clientes;</li>
+ * <li>los mensajes privados para usuarios conectados a ese nodo (PRV), que se le reenvian solo a el;</li>
+ * <li>las conexiones y desconexiones de los usuarios de este nodo (NWU y RMV).</li>
+ * </ul>
+ * Los enlaces de entrada solo se leen, por lo que entre cada par de nodos hay dos conexiones, una por sentido. Con
+ * las altas y bajas recibidas cada nodo conoce en que nodo esta conectado cada usuario del cluster y las comunica a
+ * sus clientes como si fueran propias. Si un enlace de entrada se cierra, los usuarios de ese nodo se dan de baja.
+ * <p>
+ * Cada nodo entrega los mensajes de otro nodo en el orden en que este los envio; los mensajes globales de nodos
+ * distintos pueden verse en distinto orden en cada nodo.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see ServerConfig#getClusterPort()
+ */
+public class ClusterNode implements Closeable {
+
+    private static Logger log = LogManager.getLogger(ClusterNode.class);
+
+    private final ChatServer chatServer;
+    private final ChatMessages globalMessages;
+    private final String nodeId;
+    private final int port;
+    private final int maxFrameLength;
+    private final List<NodeLink> links;
+    private final Map<String, NodeLink> linksByNode;
+    private final Map<String, Peer> remoteUsers;
+    private final Set<Socket> inbound;
+    private ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    /**
+     * Nodo al otro lado de un enlace de entrada. Identifica a los usuarios anunciados por esa conexion, de modo que
+     * al reconectarse el nodo la baja de la conexion anterior no elimine a los usuarios ya anunciados por la nueva.
+     */
+    private static final class Peer {
+        private final String nodeId;
+
+        private Peer(String nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+
+    /**
+     * Constructor de la clase.
+     * @param chatServer servidor local.
+     * @param globalMessages contenedor de los mensajes del chat global del servidor local.
+     */
+    public ClusterNode(ChatServer chatServer, ChatMessages globalMessages) {
+        ServerConfig config = chatServer.getConfig();
+        this.chatServer = chatServer;
+        this.globalMessages = globalMessages;
+        this.port = config.getClusterPort();
+        this.nodeId = config.getClusterNodeId() != null ? config.getClusterNodeId() : "node-" + this.port;
+        this.maxFrameLength = config.getMaxFrameLength();
+        this.links = new ArrayList<>();
+        this.linksByNode = new ConcurrentHashMap<>();
+        this.remoteUsers = new ConcurrentHashMap<>();
+        this.inbound = ConcurrentHashMap.newKeySet();
+        if (config.getClusterPeers() != null) {
+            for (String peer : config.getClusterPeers().split(",")) {
+                peer = peer.trim();
+                if (peer.isEmpty()) {
+                    continue;
+                }
+                int separator = peer.lastIndexOf(':');
+                InetSocketAddress address = new InetSocketAddress(peer.substring(0, separator),
+                        Integer.parseInt(peer.substring(separator + 1)));
+                this.links.add(new NodeLink(this, address, config.getClusterQueueFrames(),
+                        config.getClusterBatchFrames()));
+            }
+        }
+    }
+
+    /**
+     * Metodo que comienza a aceptar los enlaces de los otros nodos y a conectarse con ellos.
+     * @throws IOException si no es posible escuchar en el puerto de cluster.
+     */
+    public void start() throws IOException {
+        this.serverSocket = new ServerSocket(this.port);
+        Thread acceptor = new Thread(this::accept, "chat-cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        for (NodeLink link : this.links) {
+            link.start();
+        }
+        log.info("Nodo " + this.nodeId + " escuchando enlaces en el puerto " + this.port + ", " + this.links.size()
+                + " nodos configurados");
+    }
+
+    private void accept() {
+        while (!this.closed) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                Thread thread = new Thread(() -> this.serveNode(socket), "chat-cluster-in-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!this.closed) {
+                    log.error("Error aceptando enlaces del cluster: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Metodo que atiende un enlace de entrada: responde la presentacion y aplica en orden los frames del otro nodo.
+     * @param socket socket del enlace.
+     */
+    private void serveNode(Socket socket) {
+        Peer peer = null;
+        this.inbound.add(socket);
+        try {
+            FrameInput in = new FrameInput(new DataInputStream(socket.getInputStream()), this.maxFrameLength);
+            BinaryFrameReader frame = in.next();
+            if (frame.opcode() != BinaryCodes.NODE) {
+                throw new ProtocolException("Se esperaba la presentacion del nodo, opcode " + frame.opcode());
+            }
+            peer = new Peer(frame.getString(0));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            NodeLink.write(Channels.newChannel(out), Frame.of(MessagesCodes.NODE, this.nodeId));
+            out.flush();
+            log.info("Enlace entrante del nodo " + peer.nodeId);
+            while (!this.closed) {
+                this.apply(peer, in.next());
+            }
+        } catch (IOException e) {
+            if (!this.closed) {
+                log.info("Enlace entrante cerrado" + (peer == null ? "" : " del nodo " + peer.nodeId) + ": "
+                        + e.getMessage());
+            }
+        } finally {
+            this.inbound.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.error("Error cerrando el enlace: " + e.getMessage());
+            }
+            if (peer != null) {
+                this.removeUsersOf(peer);
+            }
+        }
+    }
+
+    private void apply(Peer peer, BinaryFrameReader frame) throws IOException {
+        switch (frame.opcode()) {
+            case BinaryCodes.NEW_USER: {
+                String userName = frame.getString(0);
+                if (this.remoteUsers.put(userName, peer) == null) {
+                    this.chatServer.getPresence().joinRemote(userName);
+                }
+                break;
+            }
+            case BinaryCodes.REMOVE_USER: {
+                String userName = frame.getString(0);
+                if (this.remoteUsers.remove(userName, peer)) {
+                    this.chatServer.getPresence().leave(userName);
+                }
+                break;
+            }
+            case BinaryCodes.GLOBAL_MESSAGE: {
+                Frame message = Frame.of(MessagesCodes.GLOBAL_MESSAGE, frame.getString(0), frame.getString(1));
+                synchronized (this.globalMessages) {
+                    this.globalMessages.publish(message);
+                }
+                break;
+            }
+            case BinaryCodes.PRIVATE_MESSAGE: {
+                String receiverName = frame.getString(1);
+                Frame message = Frame.of(MessagesCodes.PRIVATE_MESSAGE, frame.getString(0), receiverName,
+                        frame.getString(2));
+                // No se reenvia a otro nodo: si el usuario ya no esta en este nodo queda en su casilla
+                this.chatServer.routePrivate(receiverName, message, false);
+                break;
+            }
+            default:
+                log.warn("Opcode desconocido en el enlace con " + peer.nodeId + ": " + frame.opcode());
+                break;
+        }
+    }
+
+    private void removeUsersOf(Peer peer) {
+        for (Map.Entry<String, Peer> entry : this.remoteUsers.entrySet()) {
+            if (entry.getValue() == peer && this.remoteUsers.remove(entry.getKey(), peer)) {
+                this.chatServer.getPresence().leave(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Metodo que comunica a los otros nodos la conexion de un usuario de este nodo.
+     * @param userName nombre del usuario.
+     */
+    public void userJoined(String userName) {
+        this.broadcast(Frame.of(MessagesCodes.NEW_USER, userName));
+    }
+
+    /**
+     * Metodo que comunica a los otros nodos la desconexion de un usuario de este nodo.
+     * @param userName nombre del usuario.
+     */
+    public void userLeft(String userName) {
+        this.broadcast(Frame.of(MessagesCodes.REMOVE_USER, userName));
+    }
+
+    /**
+     * Metodo que envia un frame a todos los otros nodos. El frame se codifica una unica vez para todos los enlaces.
+     * @param frame frame a enviar.
+     */
+    public void broadcast(Frame frame) {
+        for (NodeLink link : this.links) {
+            link.enqueue(frame);
+        }
+    }
+
+    /**
+     * Metodo que reenvia un mensaje privado al nodo en el que esta conectado su receptor.
+     * @param receiverName nombre del usuario receptor.
+     * @param frame frame del mensaje privado.
+     * @return false si el receptor no esta conectado a otro nodo o no hay enlace con su nodo.
+     */
+    public boolean forward(String receiverName, Frame frame) {
+        Peer peer = this.remoteUsers.get(receiverName);
+        if (peer == null) {
+            return false;
+        }
+        NodeLink link = this.linksByNode.get(peer.nodeId);
+        if (link == null) {
+            return false;
+        }
+        link.enqueue(frame);
+        return true;
+    }
+
+    /**
+     * Metodo que indica si un usuario esta conectado a otro nodo del cluster.
+     * @param userName nombre del usuario.
+     * @return true si algun otro nodo anuncio al usuario.
+     */
+    public boolean isRemoteUser(String userName) {
+        return this.remoteUsers.containsKey(userName);
+    }
+
+    /**
+     * Metodo que retorna los usuarios conectados a los otros nodos del cluster.
+     * @return nombres de los usuarios.
+     */
+    public Set<String> getRemoteUsers() {
+        return Collections.unmodifiableSet(this.remoteUsers.keySet());
+    }
+
+    /**
+     * Metodo que retorna la cantidad de enlaces de salida conectados.
+     * @return cantidad de nodos con los que hay enlace.
+     */
+    public int getConnectedLinks() {
+        return this.linksByNode.size();
+    }
+
+    /**
+     * Metodo para obtener el nombre de este nodo.
+     * @return nombre del nodo.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    void linkConnected(NodeLink link) {
+        this.linksByNode.put(link.getPeerNodeId(), link);
+    }
+
+    void linkDisconnected(NodeLink link) {
+        this.linksByNode.remove(link.getPeerNodeId(), link);
+    }
+
+    List<String> localUsers() {
+        return this.chatServer.getRegistry().names();
+    }
+
+    /**
+     * Metodo que cierra los enlaces con los otros nodos.
+     * @throws IOException si no es posible cerrar el puerto de cluster.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        for (NodeLink link : this.links) {
+            link.close();
+        }
+        for (Socket socket : this.inbound) {
+            socket.close();
+        }
+        if (this.serverSocket != null) {
+            this.serverSocket.close();
+        }
+    }
+}
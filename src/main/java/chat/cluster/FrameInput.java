@@ -0,0 +1,56 @@
+package chat.cluster;
+
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Lector de los frames binarios que llegan por un enlace entre nodos del cluster. Reutiliza el mismo buffer y el mismo
+ * decodificador para todos los frames del enlace.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+class FrameInput {
+
+    private final DataInputStream in;
+    private final int maxFrameLength;
+    private final BinaryFrameReader reader;
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor de la clase.
+     * @param in stream de entrada del socket del enlace.
+     * @param maxFrameLength longitud maxima admitida para un frame.
+     */
+    FrameInput(DataInputStream in, int maxFrameLength) {
+        this.in = in;
+        this.maxFrameLength = maxFrameLength;
+        this.reader = new BinaryFrameReader(maxFrameLength);
+    }
+
+    /**
+     * Metodo que lee el proximo frame completo del enlace.
+     * @return el decodificador posicionado sobre el frame leido.
+     * @throws IOException si el enlace se cerro o el frame es invalido.
+     */
+    BinaryFrameReader next() throws IOException {
+        int length = this.in.readInt();
+        if (length < 1 || length > this.maxFrameLength) {
+            throw new ProtocolException("Longitud de frame invalida: " + length);
+        }
+        if (this.buffer == null || this.buffer.capacity() < BinaryCodes.HEADER_LENGTH + length) {
+            this.buffer = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + length);
+        }
+        this.buffer.clear();
+        this.buffer.putInt(0, length);
+        this.in.readFully(this.buffer.array(), BinaryCodes.HEADER_LENGTH, length);
+        this.buffer.limit(BinaryCodes.HEADER_LENGTH + length);
+        this.reader.next(this.buffer);
+        return this.reader;
+    }
+}
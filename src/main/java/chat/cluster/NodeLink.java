@@ -0,0 +1,195 @@
+package chat.cluster;
+
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Enlace de salida desde este nodo hacia otro nodo del cluster. Los frames se encolan sin bloquear a quien los envia y
+ * un thread propio del enlace los escribe: toma todos los frames pendientes, hasta el maximo configurado, y los
+ * escribe juntos con un unico flush, de modo que en momentos de mucho trafico cada escritura en el socket transporta
+ * muchos mensajes.
+ * <p>
+ * Al conectarse el enlace se presenta con NOD, recibe el nombre del otro nodo y le envia un NWU por cada usuario
+ * conectado a este nodo. Si la conexion se pierde se reintenta; los frames encolados mientras tanto se envian al
+ * reconectarse, y los que no entran en la cola se descartan.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see ClusterNode
+ */
+class NodeLink implements Runnable {
+
+    private static Logger log = LogManager.getLogger(NodeLink.class);
+    private static ChatMetrics metrics = ChatMetrics.getInstance();
+
+    private static final long RECONNECT_MILLIS = 500;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final ClusterNode cluster;
+    private final InetSocketAddress address;
+    private final BlockingQueue<Frame> queue;
+    private final int batchFrames;
+    private volatile Socket socket;
+    private volatile String peerNodeId;
+    private volatile boolean closed;
+    private Thread thread;
+
+    /**
+     * Constructor de la clase.
+     * @param cluster nodo local.
+     * @param address direccion del puerto de cluster del otro nodo.
+     * @param queueFrames capacidad de la cola de frames pendientes.
+     * @param batchFrames cantidad maxima de frames por escritura.
+     */
+    NodeLink(ClusterNode cluster, InetSocketAddress address, int queueFrames, int batchFrames) {
+        this.cluster = cluster;
+        this.address = address;
+        this.queue = new LinkedBlockingQueue<>(queueFrames);
+        this.batchFrames = Math.max(batchFrames, 1);
+    }
+
+    /**
+     * Metodo que inicia el thread del enlace.
+     */
+    void start() {
+        this.thread = new Thread(this, "chat-cluster-" + this.address.getHostString() + ":" + this.address.getPort());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Metodo que encola un frame para enviarlo al otro nodo.
+     * @param frame frame a enviar, compartido con el resto de los destinatarios.
+     */
+    void enqueue(Frame frame) {
+        if (!this.queue.offer(frame)) {
+            metrics.clusterDropped();
+            log.warn("Cola del enlace con {} llena, se descarta un mensaje", this.address);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Frame> batch = new ArrayList<>(this.batchFrames);
+        while (!this.closed) {
+            try (Socket socket = new Socket()) {
+                socket.connect(this.address);
+                socket.setTcpNoDelay(true);
+                this.socket = socket;
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES);
+                WritableByteChannel channel = Channels.newChannel(out);
+                FrameInput in = new FrameInput(new DataInputStream(socket.getInputStream()),
+                        this.cluster.getMaxFrameLength());
+                this.handshake(channel, out, in);
+                while (!this.closed) {
+                    batch.add(this.queue.take());
+                    this.queue.drainTo(batch, this.batchFrames - 1);
+                    for (Frame frame : batch) {
+                        write(channel, frame);
+                    }
+                    out.flush();
+                    metrics.clusterBatch(batch.size());
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                if (!this.closed) {
+                    log.debug("Sin enlace con el nodo " + this.address + ": " + e.getMessage());
+                }
+            } finally {
+                this.disconnected();
+            }
+            batch.clear();
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void handshake(WritableByteChannel channel, OutputStream out, FrameInput in) throws IOException {
+        write(channel, Frame.of(MessagesCodes.NODE, this.cluster.getNodeId()));
+        out.flush();
+        BinaryFrameReader reply = in.next();
+        if (reply.opcode() != BinaryCodes.NODE) {
+            throw new ProtocolException("Respuesta invalida del nodo " + this.address + ": opcode " + reply.opcode());
+        }
+        this.peerNodeId = reply.getString(0);
+        this.cluster.linkConnected(this);
+        // Los cambios encolados luego de la lista se aplican despues, por lo que el otro nodo queda consistente
+        for (String userName : this.cluster.localUsers()) {
+            write(channel, Frame.of(MessagesCodes.NEW_USER, userName));
+        }
+        out.flush();
+        log.info("Enlace con el nodo " + this.peerNodeId + " en " + this.address);
+    }
+
+    /**
+     * Metodo que escribe un frame con la version binaria del protocolo.
+     * @param channel canal de salida del enlace.
+     * @param frame frame a escribir.
+     * @throws IOException si no es posible escribir en el enlace.
+     */
+    static void write(WritableByteChannel channel, Frame frame) throws IOException {
+        ByteBuffer view = frame.view(BinaryCodes.VERSION_BINARY);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+    }
+
+    private void disconnected() {
+        if (this.peerNodeId != null) {
+            this.cluster.linkDisconnected(this);
+            this.peerNodeId = null;
+        }
+        this.socket = null;
+    }
+
+    /**
+     * Metodo para obtener el nombre del nodo al otro lado del enlace.
+     * @return nombre del nodo, o null si el enlace no esta conectado.
+     */
+    String getPeerNodeId() {
+        return peerNodeId;
+    }
+
+    /**
+     * Metodo que cierra el enlace y detiene su thread.
+     */
+    void close() {
+        this.closed = true;
+        Socket socket = this.socket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.error("Error cerrando el enlace con " + this.address + ": " + e.getMessage());
+            }
+        }
+        if (this.thread != null) {
+            this.thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package chat.fanout;
+
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Clase que entrega un mensaje a una audiencia grande en paralelo. Los destinatarios se dividen en porciones de
+ * {@link chat.ServerConfig#getFanoutShardSize()} destinatarios que atienden los threads de un {@link ForkJoinPool}; un
+ * thread que termina sus porciones toma las pendientes de otro, por lo que una porcion con destinatarios lentos no
+ * demora al resto.
+ * <p>
+ * La entrega termina cuando todos los destinatarios recibieron el mensaje, y el contenedor publica los mensajes de a
+ * uno, por lo que cada destinatario los recibe en el mismo orden en que se publicaron.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see chat.ChatMessages#publish(util.Frame)
+ */
+public class ParallelFanout {
+
+    private static Logger log = LogManager.getLogger(ParallelFanout.class);
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final int shardSize;
+
+    /**
+     * Constructor de la clase.
+     * @param threads cantidad de threads que entregan los mensajes.
+     * @param threshold cantidad de destinatarios a partir de la cual un mensaje se entrega en paralelo.
+     * @param shardSize cantidad de destinatarios que atiende cada tarea.
+     */
+    public ParallelFanout(int threads, int threshold, int shardSize) {
+        this.pool = new ForkJoinPool(Math.max(1, threads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("chat-fanout-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        this.threshold = Math.max(1, threshold);
+        this.shardSize = Math.max(1, shardSize);
+        log.debug("Entrega en paralelo desde {} destinatarios con {} threads", this.threshold, this.pool.getParallelism());
+    }
+
+    /**
+     * Metodo que indica si un mensaje para la cantidad de destinatarios indicada se entrega en paralelo.
+     * @param recipients cantidad de destinatarios.
+     * @return true si la audiencia alcanza el umbral y los threads siguen disponibles.
+     */
+    public boolean accepts(int recipients) {
+        return recipients >= this.threshold && !this.pool.isShutdown();
+    }
+
+    /**
+     * Metodo que entrega el mensaje a todos los destinatarios y espera a que terminen de recibirlo.
+     * @param source contenedor que publica el mensaje.
+     * @param observers destinatarios del mensaje; el arreglo no se modifica.
+     * @param arg mensaje, compartido por todos los destinatarios.
+     */
+    public void deliver(Observable source, Observer[] observers, Object arg) {
+        this.pool.invoke(new Shard(source, observers, 0, observers.length, arg, this.shardSize));
+        ChatMetrics.getInstance().parallelPublish();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de threads que entregan los mensajes.
+     * @return cantidad de threads.
+     */
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Metodo que finaliza los threads. Los mensajes siguientes se entregan desde el thread que los publica.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Tarea que entrega el mensaje a un rango de destinatarios, dividiendolo a la mitad hasta que cada parte tenga a
+     * lo sumo la cantidad de destinatarios de una porcion.
+     */
+    private static class Shard extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Observable source;
+        private final Observer[] observers;
+        private final int from;
+        private final int to;
+        private final Object arg;
+        private final int shardSize;
+
+        Shard(Observable source, Observer[] observers, int from, int to, Object arg, int shardSize) {
+            this.source = source;
+            this.observers = observers;
+            this.from = from;
+            this.to = to;
+            this.arg = arg;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.shardSize) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.observers[i].update(this.source, this.arg);
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new Shard(this.source, this.observers, this.from, middle, this.arg, this.shardSize),
+                    new Shard(this.source, this.observers, middle, this.to, this.arg, this.shardSize));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package chat.history;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.BinaryCodes;
+import util.Frame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Historial de los mensajes del chat global, guardado en segmentos de solo agregado mapeados en memoria. Cada mensaje
+ * recibe un numero de secuencia consecutivo y se guarda ya codificado en ambas versiones del protocolo, de modo que al
+ * reenviarlo las conexiones escriben directamente vistas de los archivos mapeados, sin copiarlo ni codificarlo.
+ * <p>
+ * Cuando el segmento actual se llena se crea uno nuevo, y los segmentos mas antiguos se eliminan mientras el historial
+ * supere el espacio de retencion o su ultimo mensaje supere la antiguedad de retencion.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see LogSegment
+ */
+public class HistoryLog implements Closeable {
+
+    private static Logger log = LogManager.getLogger(HistoryLog.class);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long retentionBytes;
+    private final long retentionMillis;
+    private final Deque<LogSegment> segments;
+    private long nextSequence;
+    private long totalBytes;
+
+    /**
+     * Constructor de la clase. Abre los segmentos existentes en el directorio, de modo que el historial y sus numeros
+     * de secuencia se conservan entre ejecuciones del servidor.
+     * @param directory directorio de los segmentos, se crea si no existe.
+     * @param segmentBytes capacidad de cada segmento en bytes.
+     * @param retentionBytes espacio maximo ocupado por los segmentos.
+     * @param retentionMillis antiguedad maxima de los mensajes en milisegundos.
+     * @throws IOException si no es posible abrir el directorio o sus segmentos.
+     */
+    public HistoryLog(Path directory, int segmentBytes, long retentionBytes, long retentionMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.retentionBytes = retentionBytes;
+        this.retentionMillis = retentionMillis;
+        this.segments = new ArrayDeque<>();
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + LogSegment.SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        // Los nombres tienen la secuencia base con ceros a la izquierda, por lo que el orden alfabetico es el numerico
+        Collections.sort(paths);
+        for (Path path : paths) {
+            LogSegment segment = LogSegment.open(path);
+            if (!this.segments.isEmpty() && segment.getBaseSequence() != this.segments.peekLast().getEndSequence()) {
+                log.warn("Segmento del historial fuera de secuencia, se descartan los anteriores: " + path);
+                this.deleteAll();
+            }
+            this.segments.addLast(segment);
+            this.totalBytes += segment.getCapacity();
+        }
+        this.nextSequence = this.segments.isEmpty() ? 0 : this.segments.peekLast().getEndSequence();
+        log.info("Historial en " + directory + ": " + this.segments.size() + " segmentos, proxima secuencia "
+                + this.nextSequence);
+    }
+
+    /**
+     * Metodo que agrega un mensaje al historial.
+     * @param frame frame del mensaje global.
+     * @return numero de secuencia asignado al mensaje.
+     * @throws IOException si no es posible codificar el mensaje o crear un nuevo segmento.
+     */
+    public synchronized long append(Frame frame) throws IOException {
+        ByteBuffer binary = frame.view(BinaryCodes.VERSION_BINARY);
+        ByteBuffer text;
+        try {
+            text = frame.view(BinaryCodes.VERSION_TEXT);
+        } catch (IOException e) {
+            // Supera el limite de la version de texto, solo se reenvia a los clientes binarios
+            text = null;
+        }
+        int recordLength = LogSegment.recordLength(text, binary);
+        long now = System.currentTimeMillis();
+        LogSegment active = this.segments.peekLast();
+        if (active == null || !active.fits(recordLength)) {
+            this.roll(recordLength);
+            active = this.segments.peekLast();
+        }
+        this.nextSequence = active.append(now, text, binary) + 1;
+        this.expire(now);
+        return this.nextSequence - 1;
+    }
+
+    private void roll(int recordLength) throws IOException {
+        LogSegment previous = this.segments.peekLast();
+        if (previous != null) {
+            previous.close();
+        }
+        LogSegment segment = LogSegment.create(this.directory, this.nextSequence,
+                Math.max(this.segmentBytes, recordLength + 4));
+        this.segments.addLast(segment);
+        this.totalBytes += segment.getCapacity();
+        log.debug("Nuevo segmento del historial a partir de la secuencia " + this.nextSequence);
+    }
+
+    private void expire(long now) throws IOException {
+        while (this.segments.size() > 1) {
+            LogSegment oldest = this.segments.peekFirst();
+            boolean tooLarge = this.totalBytes > this.retentionBytes;
+            boolean tooOld = now - oldest.getLastTimestamp() > this.retentionMillis;
+            if (!tooLarge && !tooOld) {
+                break;
+            }
+            this.segments.removeFirst();
+            this.totalBytes -= oldest.getCapacity();
+            // Las vistas ya encoladas siguen siendo validas: el mapeo se libera recien cuando dejan de usarse
+            oldest.delete();
+            log.debug("Segmento del historial eliminado hasta la secuencia " + oldest.getEndSequence());
+        }
+    }
+
+    /**
+     * Metodo que obtiene los ultimos mensajes del historial.
+     * @param count cantidad de mensajes.
+     * @return frames de los mensajes, del mas antiguo al mas reciente.
+     */
+    public synchronized List<Frame> last(int count) {
+        long first = Math.max(this.getFirstSequence(), this.nextSequence - Math.max(count, 0));
+        return this.since(first, count);
+    }
+
+    /**
+     * Metodo que obtiene los mensajes del historial a partir de un numero de secuencia. Si los mensajes mas antiguos
+     * ya fueron eliminados se retorna a partir del primero disponible.
+     * @param sequence numero de secuencia del primer mensaje.
+     * @param max cantidad maxima de mensajes.
+     * @return frames de los mensajes, del mas antiguo al mas reciente.
+     */
+    public synchronized List<Frame> since(long sequence, int max) {
+        long from = Math.max(sequence, this.getFirstSequence());
+        long to = Math.min(this.nextSequence, from + Math.max(max, 0));
+        List<Frame> frames = new ArrayList<>((int) Math.max(to - from, 0));
+        Iterator<LogSegment> iterator = this.segments.iterator();
+        while (iterator.hasNext() && from < to) {
+            LogSegment segment = iterator.next();
+            while (from < to && from < segment.getEndSequence()) {
+                frames.add(segment.read(from++));
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Metodo para obtener el numero de secuencia del mensaje mas antiguo disponible.
+     * @return secuencia del primer mensaje.
+     */
+    public synchronized long getFirstSequence() {
+        LogSegment first = this.segments.peekFirst();
+        return first == null ? this.nextSequence : first.getBaseSequence();
+    }
+
+    /**
+     * Metodo para obtener el numero de secuencia que recibira el proximo mensaje.
+     * @return secuencia del proximo mensaje.
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de segmentos del historial.
+     * @return cantidad de archivos.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void deleteAll() throws IOException {
+        for (LogSegment segment : this.segments) {
+            segment.delete();
+        }
+        this.segments.clear();
+        this.totalBytes = 0;
+    }
+
+    /**
+     * Metodo que escribe en el disco los mensajes pendientes y cierra los segmentos.
+     * @throws IOException si no es posible cerrar algun segmento.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (LogSegment segment : this.segments) {
+            segment.close();
+        }
+    }
+}
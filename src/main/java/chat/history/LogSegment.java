@@ -0,0 +1,213 @@
+package chat.history;
+
+import util.Frame;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Archivo del historial mapeado en memoria, con los mensajes de una secuencia de numeros consecutivos a partir del
+ * numero base que le da nombre. Cada registro tiene el formato:
+ * <pre>
+ * [int32 longitud][int64 secuencia][int64 timestamp][int32 longitud texto][frame de texto][frame binario]
+ * </pre>
+ * La longitud no incluye sus propios cuatro bytes, y una longitud de texto -1 indica que el mensaje no puede enviarse
+ * con la version de texto del protocolo. El archivo se crea con su capacidad final, por lo que una longitud 0 marca el
+ * fin de los registros escritos.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+class LogSegment {
+
+    static final String SUFFIX = ".log";
+    static final int RECORD_HEADER = 4 + 8 + 8 + 4;
+
+    private final Path path;
+    private final long baseSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int[] offsets;
+    private int count;
+    private long lastTimestamp;
+
+    private LogSegment(Path path, long baseSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.offsets = new int[64];
+    }
+
+    /**
+     * Metodo que crea un segmento vacio.
+     * @param directory directorio del historial.
+     * @param baseSequence numero de secuencia del primer mensaje del segmento.
+     * @param capacity capacidad del archivo en bytes.
+     * @return el segmento creado.
+     * @throws IOException si no es posible crear o mapear el archivo.
+     */
+    static LogSegment create(Path directory, long baseSequence, int capacity) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseSequence, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new LogSegment(path, baseSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    /**
+     * Metodo que abre un segmento existente y recorre sus registros para reconstruir el indice.
+     * @param path archivo del segmento.
+     * @return el segmento abierto.
+     * @throws IOException si no es posible abrir o mapear el archivo.
+     */
+    static LogSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long baseSequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(path, baseSequence, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + RECORD_HEADER <= this.buffer.capacity()) {
+            int length = this.buffer.getInt(position);
+            long sequence = this.buffer.getLong(position + 4);
+            if (length < RECORD_HEADER - 4 || position + 4 + length > this.buffer.capacity()
+                    || sequence != this.baseSequence + this.count) {
+                // Fin de los registros, o un registro incompleto por una escritura interrumpida
+                break;
+            }
+            this.lastTimestamp = this.buffer.getLong(position + 12);
+            this.index(position);
+            position += 4 + length;
+        }
+        this.buffer.position(position);
+    }
+
+    private void index(int position) {
+        if (this.count == this.offsets.length) {
+            this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+        }
+        this.offsets[this.count++] = position;
+    }
+
+    /**
+     * Metodo que calcula el espacio que ocupa un registro.
+     * @param text frame de texto, o null.
+     * @param binary frame binario.
+     * @return bytes del registro, incluyendo su cabecera.
+     */
+    static int recordLength(ByteBuffer text, ByteBuffer binary) {
+        return RECORD_HEADER + (text == null ? 0 : text.remaining()) + binary.remaining();
+    }
+
+    /**
+     * Metodo que indica si queda espacio para un registro.
+     * @param recordLength bytes del registro.
+     * @return true si el registro entra en el segmento.
+     */
+    boolean fits(int recordLength) {
+        // Se reservan cuatro bytes para la longitud 0 que marca el fin de los registros
+        return this.buffer.remaining() >= recordLength + 4;
+    }
+
+    /**
+     * Metodo que agrega un mensaje al final del segmento. Los bytes del registro se escriben antes que su longitud,
+     * de modo que un registro incompleto nunca se lee como valido.
+     * @param timestamp instante del mensaje en milisegundos.
+     * @param text frame de texto, o null.
+     * @param binary frame binario.
+     * @return numero de secuencia del mensaje.
+     */
+    long append(long timestamp, ByteBuffer text, ByteBuffer binary) {
+        int position = this.buffer.position();
+        long sequence = this.baseSequence + this.count;
+        int length = recordLength(text, binary);
+        this.buffer.position(position + 4);
+        this.buffer.putLong(sequence);
+        this.buffer.putLong(timestamp);
+        this.buffer.putInt(text == null ? -1 : text.remaining());
+        if (text != null) {
+            this.buffer.put(text);
+        }
+        this.buffer.put(binary);
+        this.buffer.putInt(position, length - 4);
+        this.lastTimestamp = timestamp;
+        this.index(position);
+        return sequence;
+    }
+
+    /**
+     * Metodo que obtiene un mensaje del segmento como vistas de solo lectura del archivo mapeado, sin copiarlo.
+     * @param sequence numero de secuencia del mensaje.
+     * @return frame listo para ser enviado.
+     */
+    Frame read(long sequence) {
+        int position = this.offsets[(int) (sequence - this.baseSequence)];
+        int length = this.buffer.getInt(position);
+        int textLength = this.buffer.getInt(position + 20);
+        int start = position + RECORD_HEADER;
+        ByteBuffer text = textLength < 0 ? null : this.slice(start, textLength);
+        int binaryStart = start + Math.max(textLength, 0);
+        ByteBuffer binary = this.slice(binaryStart, position + 4 + length - binaryStart);
+        return Frame.encoded(MessagesCodes.GLOBAL_MESSAGE, text, binary);
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = this.buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view.slice();
+    }
+
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    /**
+     * Metodo que retorna el numero de secuencia siguiente al ultimo mensaje del segmento.
+     * @return secuencia del proximo mensaje.
+     */
+    long getEndSequence() {
+        return baseSequence + count;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Metodo que escribe en el disco los registros pendientes y cierra el archivo. El mapeo sigue siendo valido para
+     * las vistas que aun no se enviaron.
+     * @throws IOException si no es posible cerrar el archivo.
+     */
+    void close() throws IOException {
+        if (this.channel.isOpen()) {
+            this.buffer.force();
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Metodo que cierra y elimina el archivo del segmento.
+     * @throws IOException si no es posible eliminar el archivo.
+     */
+    void delete() throws IOException {
+        this.channel.close();
+        Files.deleteIfExists(this.path);
+    }
+}
@@ -0,0 +1,168 @@
+package chat.mailbox;
+
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Casilla de los mensajes privados de un usuario desconectado. Los mensajes mas recientes se conservan en memoria
+ * hasta el limite configurado; al superarlo los mas antiguos pasan a un archivo del usuario, en el formato binario del
+ * protocolo, de modo que los mensajes del archivo siempre son anteriores a los de memoria. No es thread-safe:
+ * {@link MailboxStore} la utiliza sincronizando sobre la casilla.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+class Mailbox {
+
+    private static Logger log = LogManager.getLogger(Mailbox.class);
+    private static ChatMetrics metrics = ChatMetrics.getInstance();
+
+    private final Path file;
+    private final Deque<Frame> memory;
+    private int memoryBytes;
+    private long diskBytes;
+    private int diskCount;
+    private boolean removed;
+
+    /**
+     * Constructor de la clase.
+     * @param file archivo al que pasan los mensajes que no entran en memoria, o null para descartarlos.
+     */
+    Mailbox(Path file) {
+        this.file = file;
+        this.memory = new ArrayDeque<>();
+        if (file != null && Files.exists(file)) {
+            // Un archivo de una ejecucion anterior del servidor se entrega junto con los mensajes nuevos
+            this.restore();
+        }
+    }
+
+    /**
+     * Metodo que cuenta los mensajes del archivo recorriendo las cabeceras de sus frames, sin leer su contenido. Un
+     * frame incompleto al final del archivo, por ejemplo de una escritura interrumpida, se descarta truncando el
+     * archivo, para que los mensajes que pasen luego al archivo queden a continuacion del ultimo frame completo.
+     */
+    private void restore() {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH);
+            long position = 0;
+            while (position + BinaryCodes.HEADER_LENGTH <= size) {
+                header.clear();
+                while (header.hasRemaining() && channel.read(header, position + header.position()) >= 0) {
+                    // Se lee la cabecera completa
+                }
+                int length = header.getInt(0);
+                if (length < 1 || position + BinaryCodes.HEADER_LENGTH + length > size) {
+                    break;
+                }
+                position += BinaryCodes.HEADER_LENGTH + length;
+                this.diskCount++;
+            }
+            if (position < size) {
+                log.warn("Descartando {} bytes de un mensaje incompleto en {}", size - position, this.file);
+                channel.truncate(position);
+            }
+            this.diskBytes = position;
+        } catch (IOException e) {
+            log.error("Error al leer los mensajes pendientes de " + this.file + ": " + e.getMessage());
+        }
+        metrics.mailboxRestored(this.diskCount);
+    }
+
+    /**
+     * Metodo que agrega un mensaje a la casilla, pasando al archivo los mensajes mas antiguos que no entran en memoria.
+     * Un mensaje que supera por si solo el limite de memoria pasa al archivo detras de todos los anteriores.
+     * @param frame frame del mensaje privado.
+     * @param memoryLimit bytes maximos en memoria.
+     * @param diskLimit bytes maximos en el archivo.
+     * @throws IOException si no es posible escribir el archivo.
+     */
+    void add(Frame frame, int memoryLimit, long diskLimit) throws IOException {
+        int size = frame.length(BinaryCodes.VERSION_BINARY);
+        this.memory.addLast(frame);
+        this.memoryBytes += size;
+        metrics.mailboxQueued(size);
+        while (this.memoryBytes > memoryLimit) {
+            this.spillOldest(diskLimit);
+        }
+    }
+
+    private void spillOldest(long diskLimit) throws IOException {
+        Frame oldest = this.memory.removeFirst();
+        int size = oldest.length(BinaryCodes.VERSION_BINARY);
+        this.memoryBytes -= size;
+        if (this.file == null || this.diskBytes + size > diskLimit) {
+            metrics.mailboxDropped(size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer view = oldest.view(BinaryCodes.VERSION_BINARY);
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+        this.diskBytes += size;
+        this.diskCount++;
+        metrics.mailboxSpilled(size);
+    }
+
+    /**
+     * Metodo que retira todos los mensajes de la casilla, primero los del archivo y luego los de memoria.
+     * @param maxFrameLength longitud maxima de un frame del archivo.
+     * @return frames en el orden en que se enviaron.
+     * @throws IOException si no es posible leer el archivo.
+     */
+    List<Frame> drain(int maxFrameLength) throws IOException {
+        List<Frame> frames = new ArrayList<>(this.diskCount + this.memory.size());
+        if (this.file != null && Files.exists(this.file)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+            BinaryFrameReader reader = new BinaryFrameReader(maxFrameLength);
+            while (reader.next(buffer)) {
+                frames.add(Frame.of(MessagesCodes.PRIVATE_MESSAGE, reader.getString(0), reader.getString(1),
+                        reader.getString(2)));
+            }
+            Files.delete(this.file);
+        }
+        frames.addAll(this.memory);
+        metrics.mailboxDelivered(this.diskCount + this.memory.size(), this.memoryBytes);
+        this.memory.clear();
+        this.memoryBytes = 0;
+        this.diskBytes = 0;
+        this.diskCount = 0;
+        return frames;
+    }
+
+    /**
+     * Metodo que retorna la cantidad de mensajes de la casilla.
+     * @return mensajes en memoria y en el archivo.
+     */
+    int depth() {
+        return this.memory.size() + this.diskCount;
+    }
+
+    boolean isRemoved() {
+        return removed;
+    }
+
+    void setRemoved(boolean removed) {
+        this.removed = removed;
+    }
+}
@@ -0,0 +1,218 @@
+package chat.mailbox;
+
+import chat.ChatServer;
+import chat.ChatSession;
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.Frame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conjunto de las casillas de mensajes privados para usuarios desconectados. Un mensaje privado cuyo receptor no esta
+ * conectado se guarda en su casilla, y al registrarse el usuario con NWU recibe todos sus mensajes juntos, en el orden
+ * en que se enviaron.
+ * <p>
+ * Cada casilla conserva en memoria hasta {@code memoryBytes} bytes de mensajes; los mas antiguos pasan a un archivo por
+ * usuario en el directorio configurado, hasta {@code diskBytes} bytes. Sin directorio, o superado ese limite, los
+ * mensajes mas antiguos se descartan. Como cualquier nombre puede recibir mensajes, la cantidad de casillas se limita a
+ * {@link chat.ServerConfig#getMailboxMaxUsers()}; los mensajes para otros usuarios se descartan. La cantidad de
+ * mensajes pendientes se publica en {@link chat.metrics.ChatMetrics#getMailboxDepth()}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see Mailbox
+ */
+public class MailboxStore {
+
+    private static Logger log = LogManager.getLogger(MailboxStore.class);
+
+    private static final String SUFFIX = ".mbx";
+    private static final int MAX_FILE_NAME = 128; // Caracteres del nombre codificado, sin el sufijo
+
+    private final ChatServer chatServer;
+    private final Path directory;
+    private final int memoryBytes;
+    private final long diskBytes;
+    private final int maxFrameLength;
+    private final int maxUsers;
+    private final ConcurrentHashMap<String, Mailbox> mailboxes;
+
+    /**
+     * Constructor de la clase.
+     * @param chatServer instancia del servidor, para entregar directamente los mensajes de usuarios que se conectan.
+     * @param directory directorio de los archivos de las casillas, o null para mantenerlas solo en memoria.
+     * @param memoryBytes bytes maximos en memoria por casilla.
+     * @param diskBytes bytes maximos en disco por casilla.
+     * @throws IOException si no es posible crear el directorio.
+     */
+    public MailboxStore(ChatServer chatServer, Path directory, int memoryBytes, long diskBytes) throws IOException {
+        this.chatServer = chatServer;
+        this.directory = directory == null ? null : Files.createDirectories(directory);
+        this.memoryBytes = memoryBytes;
+        this.diskBytes = diskBytes;
+        this.maxFrameLength = chatServer.getConfig().getMaxFrameLength();
+        this.maxUsers = chatServer.getConfig().getMailboxMaxUsers();
+        this.mailboxes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Metodo que guarda un mensaje privado para un usuario desconectado. Si el usuario se conecto mientras tanto el
+     * mensaje se le entrega directamente. Si no hay lugar para una nueva casilla el mensaje se descarta.
+     * @param receiverName nombre del usuario receptor.
+     * @param frame frame del mensaje privado.
+     */
+    public void offer(String receiverName, Frame frame) {
+        while (true) {
+            Mailbox mailbox = this.mailboxes.get(receiverName);
+            if (mailbox == null) {
+                ChatSession receiver = this.chatServer.getSessionOf(receiverName);
+                if (receiver != null) {
+                    // Sin casilla no hay mensajes pendientes a los que adelantarse
+                    receiver.deliver(frame);
+                    return;
+                }
+                if (this.mailboxes.size() >= this.maxUsers) {
+                    log.warn("Mensaje privado descartado, no hay lugar para la casilla de {}", receiverName);
+                    ChatMetrics.getInstance().mailboxRejected();
+                    return;
+                }
+                mailbox = this.mailboxes.computeIfAbsent(receiverName, this::newMailbox);
+            }
+            synchronized (mailbox) {
+                if (mailbox.isRemoved()) {
+                    // La casilla se entrego mientras tanto, se vuelve a buscar
+                    continue;
+                }
+                // El registro se consulta dentro del lock: si el usuario ya se registro, su casilla se entrega despues.
+                // Si quedan mensajes pendientes este se encola detras de ellos, para no adelantarse a su entrega
+                ChatSession receiver = this.chatServer.getSessionOf(receiverName);
+                if (receiver != null && mailbox.depth() == 0) {
+                    // La casilla vacia se quita para que los mensajes siguientes no pasen por ella
+                    mailbox.setRemoved(true);
+                    this.mailboxes.remove(receiverName, mailbox);
+                    receiver.deliver(frame);
+                    return;
+                }
+                try {
+                    mailbox.add(frame, this.memoryBytes, this.diskBytes);
+                } catch (IOException e) {
+                    log.error("Error al guardar el mensaje para " + receiverName + ": " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Metodo que entrega a un usuario todos sus mensajes pendientes. Debe invocarse luego de registrarlo, de modo que
+     * los mensajes posteriores se le entreguen directamente; como la entrega se realiza con la casilla bloqueada,
+     * ninguno de ellos se adelanta a los pendientes.
+     * @param session sesion del usuario que se registro.
+     * @return cantidad de mensajes entregados.
+     */
+    public int deliverPending(ChatSession session) {
+        String userName = session.getUserName();
+        Mailbox mailbox = this.mailboxes.get(userName);
+        if (mailbox == null) {
+            Path file = this.fileOf(userName);
+            if (file == null || !Files.exists(file)) {
+                return 0;
+            }
+            mailbox = this.mailboxes.computeIfAbsent(userName, this::newMailbox);
+        }
+        synchronized (mailbox) {
+            mailbox.setRemoved(true);
+            this.mailboxes.remove(userName, mailbox);
+            List<Frame> frames;
+            try {
+                frames = mailbox.drain(this.maxFrameLength);
+            } catch (IOException e) {
+                log.error("Error al leer los mensajes pendientes de " + userName + ": " + e.getMessage());
+                return 0;
+            }
+            for (Frame frame : frames) {
+                session.deliver(frame);
+            }
+            return frames.size();
+        }
+    }
+
+    /**
+     * Metodo que indica si un usuario tiene una casilla con mensajes que aun no se le entregaron.
+     * @param userName nombre del usuario.
+     * @return true si los mensajes para el usuario deben pasar por {@link #offer(String, Frame)}.
+     */
+    public boolean hasPending(String userName) {
+        Mailbox mailbox = this.mailboxes.get(userName);
+        if (mailbox == null) {
+            return false;
+        }
+        synchronized (mailbox) {
+            return mailbox.depth() > 0;
+        }
+    }
+
+    /**
+     * Metodo que retorna la cantidad de mensajes pendientes de un usuario.
+     * @param userName nombre del usuario.
+     * @return mensajes en memoria y en disco.
+     */
+    public int getDepth(String userName) {
+        Mailbox mailbox = this.mailboxes.get(userName);
+        if (mailbox == null) {
+            return 0;
+        }
+        synchronized (mailbox) {
+            return mailbox.depth();
+        }
+    }
+
+    /**
+     * Metodo que retorna la cantidad de usuarios con mensajes pendientes en memoria.
+     * @return cantidad de casillas.
+     */
+    public int size() {
+        return this.mailboxes.size();
+    }
+
+    private Mailbox newMailbox(String userName) {
+        return new Mailbox(this.fileOf(userName));
+    }
+
+    private Path fileOf(String userName) {
+        if (this.directory == null) {
+            return null;
+        }
+        // El nombre se codifica en hexadecimal para que cualquier nombre de usuario sea un nombre de archivo valido.
+        // Los nombres largos se reemplazan por su hash, con un prefijo que no es hexadecimal para no confundirlos
+        byte[] bytes = userName.getBytes(StandardCharsets.UTF_8);
+        String prefix = "";
+        if (bytes.length * 2 > MAX_FILE_NAME) {
+            bytes = sha256(bytes);
+            prefix = "h";
+        }
+        StringBuilder name = new StringBuilder(prefix);
+        for (byte b : bytes) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return this.directory.resolve(name.append(SUFFIX).toString());
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM incluye SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package chat.metrics;
+
+import util.BinaryCodes;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase que concentra las metricas del servidor de chat. Existe una unica instancia compartida por todas las sesiones,
+ * y sus contadores pueden actualizarse desde cualquier thread sin sincronizacion: cada contador es un {@link LongAdder},
+ * que reparte las actualizaciones concurrentes en celdas distintas en lugar de competir por una misma variable.
+ * <p>
+ * Las metricas se publican por JMX como {@value #OBJECT_NAME} y en texto plano mediante {@link MetricsEndpoint}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class ChatMetrics implements ChatMetricsMXBean {
+
+    public static final String OBJECT_NAME = "chat:type=ChatMetrics";
+    private static final String OTHER_OPCODE = "OTHER";
+
+    private static final ChatMetrics instance = new ChatMetrics();
+
+    private final LongAdder connectionsOpened;
+    private final LongAdder connectionsClosed;
+    private final LongAdder[] framesIn;
+    private final LongAdder[] framesOut;
+    private final LatencyHistogram decodeLatency;
+    private final LatencyHistogram dispatchLatency;
+    private final LongAdder writeStalls;
+    private final LongAdder writeErrors;
+    private final LongAdder idleTimeouts;
+    private final LongAdder writeTimeouts;
+    private final LongAdder outboundDropped;
+    private final LongAdder slowConsumerDisconnects;
+    private final LongAdder writeSyscalls;
+    private final LongAdder framesWritten;
+    private final LongAdder[] rateLimited;
+    private final LongAdder rateLimitDisconnects;
+    private final LongAdder transferBytesReceived;
+    private final LongAdder transferBytesSent;
+    private final LongAdder parallelPublishes;
+    private final LatencyHistogram publishLatency;
+    private final LongAdder publishedRecipients;
+    private final AtomicLong mailboxDepth;
+    private final AtomicLong mailboxMemoryBytes;
+    private final LongAdder mailboxSpilled;
+    private final LongAdder mailboxDropped;
+    private final LongAdder mailboxDelivered;
+    private final LongAdder clusterFrames;
+    private final LongAdder clusterBatches;
+    private final LongAdder clusterDropped;
+
+    private ChatMetrics() {
+        this.connectionsOpened = new LongAdder();
+        this.connectionsClosed = new LongAdder();
+        // La posicion 0 acumula los frames sin opcode binario, como HLO
+        this.framesIn = new LongAdder[BinaryCodes.MAX_OPCODE + 1];
+        this.framesOut = new LongAdder[BinaryCodes.MAX_OPCODE + 1];
+        for (int i = 0; i < this.framesIn.length; i++) {
+            this.framesIn[i] = new LongAdder();
+            this.framesOut[i] = new LongAdder();
+        }
+        this.decodeLatency = new LatencyHistogram();
+        this.dispatchLatency = new LatencyHistogram();
+        this.writeStalls = new LongAdder();
+        this.writeErrors = new LongAdder();
+        this.idleTimeouts = new LongAdder();
+        this.writeTimeouts = new LongAdder();
+        this.outboundDropped = new LongAdder();
+        this.slowConsumerDisconnects = new LongAdder();
+        this.writeSyscalls = new LongAdder();
+        this.framesWritten = new LongAdder();
+        this.rateLimited = new LongAdder[BinaryCodes.MAX_OPCODE + 1];
+        for (int i = 0; i < this.rateLimited.length; i++) {
+            this.rateLimited[i] = new LongAdder();
+        }
+        this.rateLimitDisconnects = new LongAdder();
+        this.transferBytesReceived = new LongAdder();
+        this.transferBytesSent = new LongAdder();
+        this.parallelPublishes = new LongAdder();
+        this.publishLatency = new LatencyHistogram();
+        this.publishedRecipients = new LongAdder();
+        this.mailboxDepth = new AtomicLong();
+        this.mailboxMemoryBytes = new AtomicLong();
+        this.mailboxSpilled = new LongAdder();
+        this.mailboxDropped = new LongAdder();
+        this.mailboxDelivered = new LongAdder();
+        this.clusterFrames = new LongAdder();
+        this.clusterBatches = new LongAdder();
+        this.clusterDropped = new LongAdder();
+    }
+
+    /**
+     * Metodo para obtener la instancia de las metricas.
+     * @return instancia compartida.
+     */
+    public static ChatMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Metodo que publica las metricas en el servidor de MBeans de la plataforma. Solo tiene efecto la primera vez que
+     * se invoca, de modo que varios servidores en el mismo proceso comparten el MBean.
+     * @throws JMException si no es posible registrar el MBean.
+     */
+    public synchronized void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(this, name);
+        }
+    }
+
+    /**
+     * Metodo que registra la apertura de una conexion con un cliente.
+     */
+    public void connectionOpened() {
+        this.connectionsOpened.increment();
+    }
+
+    /**
+     * Metodo que registra el cierre de una conexion con un cliente.
+     */
+    public void connectionClosed() {
+        this.connectionsClosed.increment();
+    }
+
+    /**
+     * Metodo que registra un frame recibido de un cliente.
+     * @param opcode opcode de {@link BinaryCodes}, o -1 si el mensaje no tiene equivalente binario.
+     */
+    public void frameIn(byte opcode) {
+        this.framesIn[indexOf(opcode)].increment();
+    }
+
+    /**
+     * Metodo que registra un frame encolado para un cliente.
+     * @param opcode opcode de {@link BinaryCodes}, o -1 si el mensaje no tiene equivalente binario.
+     */
+    public void frameOut(byte opcode) {
+        this.framesOut[indexOf(opcode)].increment();
+    }
+
+    /**
+     * Metodo que registra el tiempo de decodificacion de una peticion.
+     * @param nanos duracion en nanosegundos.
+     */
+    public void recordDecode(long nanos) {
+        this.decodeLatency.record(nanos);
+    }
+
+    /**
+     * Metodo que registra el tiempo de atencion de una peticion ya decodificada.
+     * @param nanos duracion en nanosegundos.
+     */
+    public void recordDispatch(long nanos) {
+        this.dispatchLatency.record(nanos);
+    }
+
+    /**
+     * Metodo que registra una escritura en la conexion de un cliente que no pudo completarse a tiempo.
+     */
+    public void writeStall() {
+        this.writeStalls.increment();
+    }
+
+    /**
+     * Metodo que registra un error al escribir o encolar un mensaje para un cliente.
+     */
+    public void writeError() {
+        this.writeErrors.increment();
+    }
+
+    /**
+     * Metodo que registra el cierre de una conexion por no recibir mensajes del cliente en el tiempo configurado.
+     */
+    public void idleTimeout() {
+        this.idleTimeouts.increment();
+    }
+
+    /**
+     * Metodo que registra el cierre de una conexion cuya escritura no avanzo en el tiempo configurado.
+     */
+    public void writeTimeout() {
+        this.writeTimeouts.increment();
+    }
+
+    /**
+     * Metodo que registra un mensaje masivo descartado porque la cola de salida de la conexion estaba llena.
+     */
+    public void outboundDropped() {
+        this.outboundDropped.increment();
+    }
+
+    /**
+     * Metodo que registra el cierre de una conexion porque su cola de salida estaba llena.
+     */
+    public void slowConsumerDisconnect() {
+        this.slowConsumerDisconnects.increment();
+    }
+
+    /**
+     * Metodo que registra una escritura en el socket de un cliente, que puede contener varios frames.
+     */
+    public void writeSyscall() {
+        this.writeSyscalls.increment();
+    }
+
+    /**
+     * Metodo que registra frames escritos por completo en la conexion de un cliente.
+     * @param count cantidad de frames.
+     */
+    public void framesWritten(int count) {
+        this.framesWritten.add(count);
+    }
+
+    /**
+     * Metodo que registra una peticion que supero el limite de peticiones de su codigo.
+     * @param opcode opcode de {@link BinaryCodes} de la peticion.
+     */
+    public void rateLimited(byte opcode) {
+        this.rateLimited[indexOf(opcode)].increment();
+    }
+
+    /**
+     * Metodo que registra el cierre de una conexion por superar el limite de peticiones.
+     */
+    public void rateLimitDisconnect() {
+        this.rateLimitDisconnects.increment();
+    }
+
+    /**
+     * Metodo que registra contenido de archivos recibido de los clientes y guardado en disco.
+     * @param bytes cantidad de bytes.
+     */
+    public void transferBytesReceived(long bytes) {
+        this.transferBytesReceived.add(bytes);
+    }
+
+    /**
+     * Metodo que registra contenido de archivos enviado a los clientes directamente desde el disco.
+     * @param bytes cantidad de bytes.
+     */
+    public void transferBytesSent(long bytes) {
+        this.transferBytesSent.add(bytes);
+    }
+
+    /**
+     * Metodo que registra una publicacion entregada en paralelo a sus destinatarios.
+     */
+    public void parallelPublish() {
+        this.parallelPublishes.increment();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getConnectionsActive() {
+        // Se lee primero el cierre para no informar nunca menos conexiones activas de las reales
+        long closed = this.connectionsClosed.sum();
+        return this.connectionsOpened.sum() - closed;
+    }
+
+    @Override
+    public Map<String, Long> getFramesIn() {
+        return countsOf(this.framesIn);
+    }
+
+    @Override
+    public Map<String, Long> getFramesOut() {
+        return countsOf(this.framesOut);
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames recibidos con un opcode.
+     * @param opcode opcode de {@link BinaryCodes}, o -1 para los mensajes sin equivalente binario.
+     * @return cantidad de frames.
+     */
+    public long getFramesIn(byte opcode) {
+        return this.framesIn[indexOf(opcode)].sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames enviados con un opcode.
+     * @param opcode opcode de {@link BinaryCodes}, o -1 para los mensajes sin equivalente binario.
+     * @return cantidad de frames.
+     */
+    public long getFramesOut(byte opcode) {
+        return this.framesOut[indexOf(opcode)].sum();
+    }
+
+    /**
+     * Metodo para obtener el histograma de decodificacion de las peticiones.
+     * @return histograma en nanosegundos.
+     */
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    /**
+     * Metodo para obtener el histograma de atencion de las peticiones.
+     * @return histograma en nanosegundos.
+     */
+    public LatencyHistogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    @Override
+    public LatencySnapshot getDecode() {
+        return LatencySnapshot.of(this.decodeLatency);
+    }
+
+    @Override
+    public LatencySnapshot getDispatch() {
+        return LatencySnapshot.of(this.dispatchLatency);
+    }
+
+    @Override
+    public LatencySnapshot getFanout() {
+        return LatencySnapshot.of(this.publishLatency);
+    }
+
+    @Override
+    public long getWriteStalls() {
+        return writeStalls.sum();
+    }
+
+    @Override
+    public long getWriteErrors() {
+        return writeErrors.sum();
+    }
+
+    @Override
+    public long getIdleTimeouts() {
+        return idleTimeouts.sum();
+    }
+
+    @Override
+    public long getWriteTimeouts() {
+        return writeTimeouts.sum();
+    }
+
+    @Override
+    public long getOutboundDropped() {
+        return outboundDropped.sum();
+    }
+
+    @Override
+    public long getSlowConsumerDisconnects() {
+        return slowConsumerDisconnects.sum();
+    }
+
+    @Override
+    public long getWriteSyscalls() {
+        return writeSyscalls.sum();
+    }
+
+    @Override
+    public long getFramesWritten() {
+        return framesWritten.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRateLimited() {
+        return countsOf(this.rateLimited);
+    }
+
+    /**
+     * Metodo para obtener la cantidad de peticiones con un opcode que superaron su limite.
+     * @param opcode opcode de {@link BinaryCodes}.
+     * @return cantidad de peticiones.
+     */
+    public long getRateLimited(byte opcode) {
+        return this.rateLimited[indexOf(opcode)].sum();
+    }
+
+    @Override
+    public long getRateLimitDisconnects() {
+        return rateLimitDisconnects.sum();
+    }
+
+    @Override
+    public long getTransferBytesReceived() {
+        return transferBytesReceived.sum();
+    }
+
+    @Override
+    public long getTransferBytesSent() {
+        return transferBytesSent.sum();
+    }
+
+    @Override
+    public long getParallelPublishes() {
+        return parallelPublishes.sum();
+    }
+
+    @Override
+    public double getWriteSyscallsPerFrame() {
+        long frames = this.framesWritten.sum();
+        return frames == 0 ? 0 : (double) this.writeSyscalls.sum() / frames;
+    }
+
+    /**
+     * Metodo que retorna el nombre con el que se publican las metricas de un opcode.
+     * @param index posicion del opcode en los contadores.
+     * @return codigo de {@link util.MessagesCodes}, o {@value #OTHER_OPCODE}.
+     */
+    static String opcodeName(int index) {
+        String code = BinaryCodes.codeOf((byte) index);
+        return code == null ? OTHER_OPCODE : code;
+    }
+
+    private static int indexOf(byte opcode) {
+        return opcode > 0 && opcode <= BinaryCodes.MAX_OPCODE ? opcode : 0;
+    }
+
+    private static Map<String, Long> countsOf(LongAdder[] counters) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 1; i < counters.length; i++) {
+            counts.put(opcodeName(i), counters[i].sum());
+        }
+        counts.put(OTHER_OPCODE, counters[0].sum());
+        return counts;
+    }
+
+    /**
+     * Metodo que registra la publicacion de un mensaje, es decir el tiempo que tarda en entregarse a las colas de
+     * salida de todos los destinatarios.
+     * @param nanos duracion de la publicacion en nanosegundos.
+     * @param recipients cantidad de destinatarios.
+     */
+    public void recordPublish(long nanos, int recipients) {
+        this.publishLatency.record(nanos);
+        this.publishedRecipients.add(recipients);
+    }
+
+    /**
+     * Metodo para obtener el histograma de duracion de las publicaciones.
+     * @return histograma en nanosegundos.
+     */
+    public LatencyHistogram getPublishLatency() {
+        return publishLatency;
+    }
+
+    /**
+     * Metodo para obtener la cantidad total de entregas realizadas por las publicaciones.
+     * @return suma de los destinatarios de cada publicacion.
+     */
+    public long getPublishedRecipients() {
+        return publishedRecipients.sum();
+    }
+
+    /**
+     * Metodo que registra un mensaje privado guardado en la casilla de un usuario desconectado.
+     * @param bytes bytes que ocupa el mensaje en memoria.
+     */
+    public void mailboxQueued(int bytes) {
+        this.mailboxDepth.incrementAndGet();
+        this.mailboxMemoryBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Metodo que registra un mensaje de una casilla que paso de la memoria al disco.
+     * @param bytes bytes que ocupaba el mensaje en memoria.
+     */
+    public void mailboxSpilled(int bytes) {
+        this.mailboxMemoryBytes.addAndGet(-bytes);
+        this.mailboxSpilled.increment();
+    }
+
+    /**
+     * Metodo que registra los mensajes de un archivo de casilla de una ejecucion anterior del servidor.
+     * @param messages cantidad de mensajes del archivo.
+     */
+    public void mailboxRestored(int messages) {
+        this.mailboxDepth.addAndGet(messages);
+    }
+
+    /**
+     * Metodo que registra un mensaje privado descartado sin guardarse, por no haber lugar para una nueva casilla.
+     */
+    public void mailboxRejected() {
+        this.mailboxDropped.increment();
+    }
+
+    /**
+     * Metodo que registra un mensaje de una casilla descartado por superar los limites de memoria y de disco.
+     * @param bytes bytes que ocupaba el mensaje en memoria.
+     */
+    public void mailboxDropped(int bytes) {
+        this.mailboxDepth.decrementAndGet();
+        this.mailboxMemoryBytes.addAndGet(-bytes);
+        this.mailboxDropped.increment();
+    }
+
+    /**
+     * Metodo que registra la entrega de los mensajes de una casilla al conectarse su usuario.
+     * @param messages cantidad de mensajes entregados.
+     * @param memoryBytes bytes que ocupaban en memoria los mensajes entregados.
+     */
+    public void mailboxDelivered(int messages, long memoryBytes) {
+        this.mailboxDepth.addAndGet(-messages);
+        this.mailboxMemoryBytes.addAndGet(-memoryBytes);
+        this.mailboxDelivered.add(messages);
+    }
+
+    /**
+     * Metodo para obtener la cantidad de mensajes pendientes en todas las casillas.
+     * @return mensajes en memoria y en disco.
+     */
+    public long getMailboxDepth() {
+        return mailboxDepth.get();
+    }
+
+    /**
+     * Metodo para obtener la memoria ocupada por los mensajes pendientes de todas las casillas.
+     * @return bytes en memoria.
+     */
+    public long getMailboxMemoryBytes() {
+        return mailboxMemoryBytes.get();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de mensajes de casillas que pasaron de la memoria al disco.
+     * @return cantidad de mensajes.
+     */
+    public long getMailboxSpilled() {
+        return mailboxSpilled.sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de mensajes de casillas descartados.
+     * @return cantidad de mensajes.
+     */
+    public long getMailboxDropped() {
+        return mailboxDropped.sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de mensajes de casillas entregados.
+     * @return cantidad de mensajes.
+     */
+    public long getMailboxDelivered() {
+        return mailboxDelivered.sum();
+    }
+
+    /**
+     * Metodo que registra una escritura en un enlace entre nodos del cluster.
+     * @param frames cantidad de frames escritos juntos.
+     */
+    public void clusterBatch(int frames) {
+        this.clusterFrames.add(frames);
+        this.clusterBatches.increment();
+    }
+
+    /**
+     * Metodo que registra un frame descartado por estar llena la cola de un enlace entre nodos.
+     */
+    public void clusterDropped() {
+        this.clusterDropped.increment();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames enviados a otros nodos del cluster.
+     * @return cantidad de frames.
+     */
+    public long getClusterFrames() {
+        return clusterFrames.sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de escrituras en los enlaces entre nodos. Cada escritura agrupa uno o mas frames.
+     * @return cantidad de escrituras.
+     */
+    public long getClusterBatches() {
+        return clusterBatches.sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames descartados por los enlaces entre nodos.
+     * @return cantidad de frames.
+     */
+    public long getClusterDropped() {
+        return clusterDropped.sum();
+    }
+}
@@ -0,0 +1,180 @@
+package chat.metrics;
+
+import java.util.Map;
+
+/**
+ * Interfaz con la que se publican por JMX las metricas del servidor de chat.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see ChatMetrics
+ */
+public interface ChatMetricsMXBean {
+
+    /**
+     * Metodo para obtener la cantidad de conexiones con clientes abiertas desde el inicio.
+     * @return cantidad de conexiones.
+     */
+    long getConnectionsOpened();
+
+    /**
+     * Metodo para obtener la cantidad de conexiones con clientes abiertas en este momento.
+     * @return cantidad de conexiones.
+     */
+    long getConnectionsActive();
+
+    /**
+     * Metodo para obtener la cantidad de frames recibidos de los clientes por cada codigo del protocolo.
+     * @return cantidad de frames por codigo de {@link util.MessagesCodes}.
+     */
+    Map<String, Long> getFramesIn();
+
+    /**
+     * Metodo para obtener la cantidad de frames encolados para los clientes por cada codigo del protocolo.
+     * @return cantidad de frames por codigo de {@link util.MessagesCodes}.
+     */
+    Map<String, Long> getFramesOut();
+
+    /**
+     * Metodo para obtener el resumen del tiempo de decodificacion de las peticiones.
+     * @return resumen en nanosegundos.
+     */
+    LatencySnapshot getDecode();
+
+    /**
+     * Metodo para obtener el resumen del tiempo de atencion de las peticiones ya decodificadas.
+     * @return resumen en nanosegundos.
+     */
+    LatencySnapshot getDispatch();
+
+    /**
+     * Metodo para obtener el resumen del tiempo que tarda un mensaje en encolarse para todos sus destinatarios.
+     * @return resumen en nanosegundos.
+     */
+    LatencySnapshot getFanout();
+
+    /**
+     * Metodo para obtener la cantidad de escrituras en conexiones de clientes que no pudieron completarse a tiempo.
+     * @return cantidad de escrituras demoradas.
+     * @see chat.ServerConfig#getMetricsStallMillis()
+     */
+    long getWriteStalls();
+
+    /**
+     * Metodo para obtener la cantidad de errores al escribir o encolar mensajes para los clientes.
+     * @return cantidad de errores.
+     */
+    long getWriteErrors();
+
+    /**
+     * Metodo para obtener la cantidad de conexiones cerradas por no recibir mensajes del cliente a tiempo.
+     * @return cantidad de conexiones.
+     * @see chat.ServerConfig#getIdleTimeoutMillis()
+     */
+    long getIdleTimeouts();
+
+    /**
+     * Metodo para obtener la cantidad de conexiones cerradas porque una escritura no avanzo a tiempo.
+     * @return cantidad de conexiones.
+     * @see chat.ServerConfig#getWriteTimeoutMillis()
+     */
+    long getWriteTimeouts();
+
+    /**
+     * Metodo para obtener la cantidad de mensajes masivos descartados porque la cola de salida estaba llena.
+     * @return cantidad de mensajes.
+     * @see chat.ServerConfig#getOutboundPolicy()
+     */
+    long getOutboundDropped();
+
+    /**
+     * Metodo para obtener la cantidad de conexiones cerradas porque su cola de salida estaba llena.
+     * @return cantidad de conexiones.
+     * @see chat.ServerConfig#getOutboundMaxBytes()
+     */
+    long getSlowConsumerDisconnects();
+
+    /**
+     * Metodo para obtener la cantidad de escrituras realizadas en los sockets de los clientes.
+     * @return cantidad de escrituras.
+     * @see chat.ServerConfig#getOutboundFlushMicros()
+     */
+    long getWriteSyscalls();
+
+    /**
+     * Metodo para obtener la cantidad de frames escritos por completo en las conexiones de los clientes.
+     * @return cantidad de frames.
+     */
+    long getFramesWritten();
+
+    /**
+     * Metodo para obtener la cantidad promedio de escrituras en el socket por frame enviado. Un valor menor a 1 indica
+     * que las escrituras agrupan varios frames.
+     * @return escrituras por frame, o 0 si aun no se escribio ninguno.
+     */
+    double getWriteSyscallsPerFrame();
+
+    /**
+     * Metodo para obtener la cantidad de peticiones que superaron el limite de su codigo.
+     * @return cantidad de peticiones por codigo de {@link util.MessagesCodes}.
+     * @see chat.ServerConfig#getRateLimit(String)
+     */
+    Map<String, Long> getRateLimited();
+
+    /**
+     * Metodo para obtener la cantidad de conexiones cerradas por superar el limite de peticiones.
+     * @return cantidad de conexiones.
+     * @see chat.ServerConfig#getRateLimitAction()
+     */
+    long getRateLimitDisconnects();
+
+    /**
+     * Metodo para obtener la cantidad de bytes de archivos recibidos de los clientes.
+     * @return cantidad de bytes.
+     * @see chat.transfer.TransferStore
+     */
+    long getTransferBytesReceived();
+
+    /**
+     * Metodo para obtener la cantidad de bytes de archivos enviados a los clientes.
+     * @return cantidad de bytes.
+     */
+    long getTransferBytesSent();
+
+    /**
+     * Metodo para obtener la cantidad de publicaciones entregadas en paralelo a sus destinatarios.
+     * @return cantidad de publicaciones.
+     * @see chat.fanout.ParallelFanout
+     */
+    long getParallelPublishes();
+
+    /**
+     * Metodo para obtener la cantidad total de entregas realizadas por las publicaciones.
+     * @return suma de los destinatarios de cada publicacion.
+     */
+    long getPublishedRecipients();
+
+    /**
+     * Metodo para obtener la cantidad de mensajes pendientes en todas las casillas.
+     * @return mensajes en memoria y en disco.
+     */
+    long getMailboxDepth();
+
+    /**
+     * Metodo para obtener la memoria ocupada por los mensajes pendientes de todas las casillas.
+     * @return bytes en memoria.
+     */
+    long getMailboxMemoryBytes();
+
+    /**
+     * Metodo para obtener la cantidad de frames enviados a otros nodos del cluster.
+     * @return cantidad de frames.
+     */
+    long getClusterFrames();
+
+    /**
+     * Metodo para obtener la cantidad de frames descartados por los enlaces entre nodos.
+     * @return cantidad de frames.
+     */
+    long getClusterDropped();
+}
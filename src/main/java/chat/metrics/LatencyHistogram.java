@@ -0,0 +1,145 @@
+package chat.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase que representa un histograma de duraciones en nanosegundos. Los intervalos son log-lineales: cada potencia de
+ * dos se divide en {@link #SUB_BUCKETS} intervalos iguales, de modo que el error de cada percentil es a lo sumo un
+ * octavo del valor, registrar un valor no requiere sincronizacion ni memoria adicional y puede hacerse desde muchos
+ * threads a la vez.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    public static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets;
+    private final LongAdder count;
+    private final LongAdder total;
+    private final AtomicLong max;
+
+    /**
+     * Constructor de la clase.
+     */
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+        this.count = new LongAdder();
+        this.total = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Metodo que registra una duracion.
+     * @param nanos duracion en nanosegundos.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        this.buckets[indexOf(nanos)].increment();
+        this.count.increment();
+        this.total.add(nanos);
+        long current;
+        while (nanos > (current = this.max.get())) {
+            if (this.max.compareAndSet(current, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Metodo para obtener la cantidad de duraciones registradas.
+     * @return cantidad de registros.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Metodo para obtener la duracion promedio.
+     * @return promedio en nanosegundos, 0 si no hay registros.
+     */
+    public long getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : this.total.sum() / count;
+    }
+
+    /**
+     * Metodo para obtener la duracion maxima registrada.
+     * @return maximo en nanosegundos.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Metodo para obtener una cota superior del percentil indicado.
+     * @param percentile percentil entre 0 y 100.
+     * @return limite superior, en nanosegundos, del intervalo que contiene al percentil.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile / 100.0);
+        long accumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            accumulated += counts[i];
+            if (accumulated >= target && counts[i] > 0) {
+                return Math.min(upperBound(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    private static int indexOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Metodo que descarta todos los registros.
+     */
+    public void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.count.reset();
+        this.total.reset();
+        this.max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + this.getCount() + " mean=" + this.getMean() + "ns p50=" + this.getPercentile(50)
+                + "ns p99=" + this.getPercentile(99) + "ns p99.9=" + this.getPercentile(99.9)
+                + "ns max=" + this.getMax() + "ns";
+    }
+}
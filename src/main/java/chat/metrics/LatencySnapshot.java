@@ -0,0 +1,96 @@
+package chat.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Clase que representa el resumen de un {@link LatencyHistogram} en un momento dado, tal como se publica por JMX.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class LatencySnapshot {
+
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    /**
+     * Constructor de la clase.
+     * @param count cantidad de registros.
+     * @param mean promedio en nanosegundos.
+     * @param p50 mediana en nanosegundos.
+     * @param p99 percentil 99 en nanosegundos.
+     * @param p999 percentil 99.9 en nanosegundos.
+     * @param max maximo en nanosegundos.
+     */
+    @ConstructorProperties({"count", "mean", "p50", "p99", "p999", "max"})
+    public LatencySnapshot(long count, long mean, long p50, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * Metodo que crea el resumen de un histograma.
+     * @param histogram histograma a resumir.
+     * @return resumen con los valores actuales del histograma.
+     */
+    public static LatencySnapshot of(LatencyHistogram histogram) {
+        return new LatencySnapshot(histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+                histogram.getPercentile(99), histogram.getPercentile(99.9), histogram.getMax());
+    }
+
+    /**
+     * Metodo para obtener la cantidad de registros.
+     * @return cantidad de registros.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Metodo para obtener el promedio.
+     * @return promedio en nanosegundos.
+     */
+    public long getMean() {
+        return mean;
+    }
+
+    /**
+     * Metodo para obtener la mediana.
+     * @return mediana en nanosegundos.
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * Metodo para obtener el percentil 99.
+     * @return percentil en nanosegundos.
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * Metodo para obtener el percentil 99.9.
+     * @return percentil en nanosegundos.
+     */
+    public long getP999() {
+        return p999;
+    }
+
+    /**
+     * Metodo para obtener el maximo.
+     * @return maximo en nanosegundos.
+     */
+    public long getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,194 @@
+package chat.metrics;
+
+import chat.ChatServer;
+import chat.ChatSession;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Clase que publica las metricas del servidor en texto plano en un puerto propio, separado del de los clientes. Cada
+ * conexion recibe una respuesta HTTP con una metrica por linea, en el formato de exposicion de Prometheus, y se
+ * cierra. Las respuestas se arman en el thread que acepta las conexiones, ya que solo se leen los contadores.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see chat.ServerConfig#getMetricsPort()
+ */
+public class MetricsEndpoint implements Closeable {
+
+    private static Logger log = LogManager.getLogger(MetricsEndpoint.class);
+
+    private static final int READ_TIMEOUT_MILLIS = 1000;
+
+    private final ChatServer chatServer;
+    private final ChatMetrics metrics;
+    private final int port;
+    private ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    /**
+     * Constructor de la clase.
+     * @param chatServer servidor cuyas sesiones se informan.
+     * @param port numero de puerto en el que se publican las metricas.
+     */
+    public MetricsEndpoint(ChatServer chatServer, int port) {
+        this.chatServer = chatServer;
+        this.metrics = ChatMetrics.getInstance();
+        this.port = port;
+    }
+
+    /**
+     * Metodo que comienza a aceptar conexiones en el puerto de metricas.
+     * @throws IOException si no es posible escuchar en el puerto.
+     */
+    public void start() throws IOException {
+        this.serverSocket = new ServerSocket(this.port);
+        Thread acceptor = new Thread(this::accept, "chat-metrics");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Metricas publicadas en el puerto " + this.port);
+    }
+
+    private void accept() {
+        while (!this.closed) {
+            try (Socket socket = this.serverSocket.accept()) {
+                this.serve(socket);
+            } catch (IOException e) {
+                if (this.closed) {
+                    return;
+                }
+                log.error("Error atendiendo una consulta de metricas: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Metodo que descarta la peticion del cliente y le responde con las metricas actuales.
+     * @param socket conexion con el cliente.
+     * @throws IOException si no es posible escribir la respuesta.
+     */
+    private void serve(Socket socket) throws IOException {
+        socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        try {
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                // Se ignoran la linea de peticion y los encabezados
+            }
+        } catch (SocketTimeoutException e) {
+            // El cliente no envio una peticion HTTP completa, se le responde igual
+        }
+        byte[] body = this.render().getBytes(StandardCharsets.UTF_8);
+        String header = "HTTP/1.0 200 OK\r\n"
+                + "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        OutputStream out = socket.getOutputStream();
+        out.write(header.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+    }
+
+    /**
+     * Metodo que arma el texto con los valores actuales de las metricas.
+     * @return una metrica por linea.
+     */
+    public String render() {
+        StringBuilder text = new StringBuilder(2048);
+        counter(text, "chat_connections_opened_total", this.metrics.getConnectionsOpened());
+        gauge(text, "chat_connections_active", this.metrics.getConnectionsActive());
+        gauge(text, "chat_users_registered", this.chatServer.getRegistry().size());
+        frames(text, "chat_frames_in_total", this.metrics.getFramesIn());
+        frames(text, "chat_frames_out_total", this.metrics.getFramesOut());
+        latency(text, "chat_decode_nanos", this.metrics.getDecode());
+        latency(text, "chat_dispatch_nanos", this.metrics.getDispatch());
+        latency(text, "chat_fanout_nanos", this.metrics.getFanout());
+        counter(text, "chat_fanout_recipients_total", this.metrics.getPublishedRecipients());
+        counter(text, "chat_write_stalls_total", this.metrics.getWriteStalls());
+        counter(text, "chat_write_errors_total", this.metrics.getWriteErrors());
+        counter(text, "chat_idle_timeouts_total", this.metrics.getIdleTimeouts());
+        counter(text, "chat_write_timeouts_total", this.metrics.getWriteTimeouts());
+        counter(text, "chat_outbound_dropped_total", this.metrics.getOutboundDropped());
+        counter(text, "chat_slow_consumer_disconnects_total", this.metrics.getSlowConsumerDisconnects());
+        counter(text, "chat_write_syscalls_total", this.metrics.getWriteSyscalls());
+        counter(text, "chat_frames_written_total", this.metrics.getFramesWritten());
+        gauge(text, "chat_write_syscalls_per_frame", this.metrics.getWriteSyscallsPerFrame());
+        frames(text, "chat_rate_limited_total", this.metrics.getRateLimited());
+        counter(text, "chat_rate_limit_disconnects_total", this.metrics.getRateLimitDisconnects());
+        counter(text, "chat_transfer_bytes_received_total", this.metrics.getTransferBytesReceived());
+        counter(text, "chat_transfer_bytes_sent_total", this.metrics.getTransferBytesSent());
+        counter(text, "chat_parallel_publishes_total", this.metrics.getParallelPublishes());
+        long pending = 0;
+        long maxPending = 0;
+        for (ChatSession session : this.chatServer.getRegistry().sessions()) {
+            int frames = session.getPendingFrames();
+            pending += frames;
+            maxPending = Math.max(maxPending, frames);
+        }
+        gauge(text, "chat_outbound_pending_frames", pending);
+        gauge(text, "chat_outbound_pending_frames_max", maxPending);
+        counter(text, "chat_compressed_frames_total", this.chatServer.getCompressor().getCompressedFrames());
+        counter(text, "chat_compression_saved_bytes_total", this.chatServer.getCompressor().getSavedBytes());
+        gauge(text, "chat_mailbox_depth", this.metrics.getMailboxDepth());
+        gauge(text, "chat_mailbox_memory_bytes", this.metrics.getMailboxMemoryBytes());
+        counter(text, "chat_cluster_frames_total", this.metrics.getClusterFrames());
+        counter(text, "chat_cluster_dropped_total", this.metrics.getClusterDropped());
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, String name, long value) {
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder text, String name, long value) {
+        text.append("# TYPE ").append(name).append(" gauge\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder text, String name, double value) {
+        text.append("# TYPE ").append(name).append(" gauge\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void frames(StringBuilder text, String name, Map<String, Long> counts) {
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            text.append(name).append("{code=\"").append(count.getKey()).append("\"} ").append(count.getValue())
+                    .append('\n');
+        }
+    }
+
+    private static void latency(StringBuilder text, String name, LatencySnapshot snapshot) {
+        text.append("# TYPE ").append(name).append(" summary\n");
+        text.append(name).append("{quantile=\"0.5\"} ").append(snapshot.getP50()).append('\n');
+        text.append(name).append("{quantile=\"0.99\"} ").append(snapshot.getP99()).append('\n');
+        text.append(name).append("{quantile=\"0.999\"} ").append(snapshot.getP999()).append('\n');
+        text.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+        text.append(name).append("_sum ").append(snapshot.getMean() * snapshot.getCount()).append('\n');
+        text.append(name).append("_max ").append(snapshot.getMax()).append('\n');
+    }
+
+    /**
+     * Metodo que deja de aceptar conexiones en el puerto de metricas.
+     * @throws IOException si no es posible cerrar el puerto.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        if (this.serverSocket != null) {
+            this.serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package chat.nio;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Clase que representa un thread de entrada/salida que atiende un conjunto de conexiones mediante un {@link Selector}.
+ * Las operaciones sobre los canales se realizan unicamente en este thread; el resto de los threads le encargan
+ * tareas mediante {@link #execute(Runnable)}.
+ * <p>
+ * Las tareas del propio loop pueden demorarse mediante {@link #schedule(Runnable, long)}, con precision de
+ * microsegundos: si falta menos de un milisegundo para ejecutarlas el selector se consulta sin esperar.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class IoLoop implements Runnable {
+
+    private static Logger log = LogManager.getLogger(IoLoop.class);
+
+    private final String name;
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private ArrayDeque<Runnable> delayed; // Solo se usa en el thread del loop
+    private ArrayDeque<Runnable> due; // Solo se usa en el thread del loop
+    private long delayedUntil;
+    private volatile boolean running;
+
+    /**
+     * Constructor de la clase.
+     * @param name nombre del thread del loop.
+     * @throws IOException si no es posible abrir el selector.
+     */
+    public IoLoop(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.delayed = new ArrayDeque<>();
+        this.due = new ArrayDeque<>();
+        this.running = true;
+    }
+
+    /**
+     * Metodo que inicia el thread del loop.
+     */
+    public void start() {
+        new Thread(this, this.name).start();
+    }
+
+    /**
+     * Metodo para obtener el nombre del loop.
+     * @return nombre del thread del loop.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Metodo que encarga al loop la atencion de una nueva conexion.
+     * @param channel canal de la conexion, en modo no bloqueante.
+     * @param session sesion asociada a la conexion.
+     */
+    public void register(SocketChannel channel, NioSession session) {
+        this.execute(() -> {
+            try {
+                session.attach(channel.register(this.selector, SelectionKey.OP_READ, session));
+            } catch (ClosedChannelException e) {
+                session.close();
+            }
+        });
+    }
+
+    /**
+     * Metodo que encola una tarea para que se ejecute en el thread del loop.
+     * @param task tarea a ejecutar.
+     */
+    public void execute(Runnable task) {
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Metodo que demora una tarea del loop. Solo puede invocarse desde el thread del loop. Las tareas demoradas se
+     * ejecutan juntas al cumplirse la primera demora, por lo que una tarea puede ejecutarse antes de tiempo.
+     * @param task tarea a ejecutar.
+     * @param delayNanos demora en nanosegundos.
+     */
+    void schedule(Runnable task, long delayNanos) {
+        long deadline = System.nanoTime() + delayNanos;
+        if (this.delayed.isEmpty() || deadline - this.delayedUntil < 0) {
+            this.delayedUntil = deadline;
+        }
+        this.delayed.add(task);
+    }
+
+    /**
+     * Metodo que contiene el ciclo del loop: espera eventos de los canales, atiende lecturas y escrituras y
+     * ejecuta las tareas encargadas por otros threads.
+     */
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                this.select();
+            } catch (IOException e) {
+                log.error("Error en el selector: " + e.getMessage());
+                break;
+            }
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Error ejecutando una tarea del loop: " + e);
+                }
+            }
+            Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                NioSession session = (NioSession) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable()) {
+                        session.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        session.flush();
+                    }
+                } catch (IOException e) {
+                    session.close();
+                } catch (RuntimeException e) {
+                    log.error("Error atendiendo la peticion: " + e);
+                    session.close();
+                }
+            }
+            this.runDelayed();
+        }
+        for (SelectionKey key : this.selector.keys()) {
+            ((NioSession) key.attachment()).close();
+        }
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            log.error("Error cerrando el selector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que espera eventos de los canales hasta que venza la primera tarea demorada, si hay alguna.
+     * @throws IOException si ocurre un error en el selector.
+     */
+    private void select() throws IOException {
+        if (this.delayed.isEmpty()) {
+            this.selector.select();
+            return;
+        }
+        long remaining = this.delayedUntil - System.nanoTime();
+        if (remaining >= 1_000_000) {
+            this.selector.select(remaining / 1_000_000);
+        } else {
+            this.selector.selectNow();
+        }
+    }
+
+    /**
+     * Metodo que ejecuta las tareas demoradas si vencio la primera de ellas. Las tareas que vuelven a demorarse se
+     * ejecutan en una proxima vuelta del loop.
+     */
+    private void runDelayed() {
+        if (this.delayed.isEmpty() || System.nanoTime() - this.delayedUntil < 0) {
+            return;
+        }
+        ArrayDeque<Runnable> ready = this.delayed;
+        this.delayed = this.due;
+        this.due = ready;
+        Runnable task;
+        while ((task = ready.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Error ejecutando una tarea del loop: " + e);
+            }
+        }
+    }
+
+    /**
+     * Metodo que detiene el loop y cierra las conexiones que atiende.
+     */
+    public void close() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+}
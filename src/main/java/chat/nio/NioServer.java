@@ -0,0 +1,82 @@
+package chat.nio;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Clase que representa el modo no bloqueante del servidor. Acepta las conexiones y las reparte entre un conjunto fijo
+ * de {@link IoLoop}, de modo que la cantidad de threads no depende de la cantidad de clientes conectados.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class NioServer {
+
+    private static Logger log = LogManager.getLogger(NioServer.class);
+
+    private final ChatServer chatServer;
+    private final int port;
+    private final ChatMessages globalMessages;
+    private final IoLoop[] loops;
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * Constructor de la clase.
+     * @param chatServer instancia del servidor.
+     * @param port numero de puerto por el que se escucharan las peticiones.
+     * @param ioThreads cantidad de threads de entrada/salida.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     * @throws IOException si no es posible crear los selectores.
+     */
+    public NioServer(ChatServer chatServer, int port, int ioThreads, ChatMessages globalMessages) throws IOException {
+        this.chatServer = chatServer;
+        this.port = port;
+        this.globalMessages = globalMessages;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new IoLoop("chat-io-" + i);
+        }
+    }
+
+    /**
+     * Metodo que escucha por nuevas conexiones y las asigna a los loops de forma circular.
+     * @throws IOException si no es posible escuchar en el puerto o aceptar conexiones.
+     */
+    public void serve() throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(this.port));
+        for (IoLoop loop : this.loops) {
+            loop.start();
+        }
+        log.info("Server escuchando en el puerto: " + this.port + " con " + this.loops.length + " threads de entrada/salida");
+        int next = 0;
+        while (true) {
+            SocketChannel channel = this.serverChannel.accept();
+            channel.configureBlocking(false);
+            IoLoop loop = this.loops[next];
+            next = (next + 1) % this.loops.length;
+            loop.register(channel, new NioSession(this.chatServer, channel, loop, this.globalMessages));
+            log.info("Conexion aceptada, loop: {}", loop.getName());
+        }
+    }
+
+    /**
+     * Metodo que deja de aceptar conexiones y detiene los loops.
+     * @throws IOException si no es posible cerrar el canal del servidor.
+     */
+    public void close() throws IOException {
+        for (IoLoop loop : this.loops) {
+            loop.close();
+        }
+        if (this.serverChannel != null) {
+            this.serverChannel.close();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package chat.nio;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ChatSession;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.outbound.OutboundQueue;
+import chat.transfer.FileSend;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.BinaryCodes;
+import util.Frame;
+import util.FrameCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clase que representa la sesion de un cliente atendido por un {@link IoLoop}. Los mensajes recibidos se acumulan en un
+ * buffer hasta completar una peticion, y los mensajes a enviar se encolan para que el loop los escriba cuando el socket
+ * lo permita, de modo que ningun thread quede bloqueado esperando a un cliente.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class NioSession extends ChatSession {
+
+    private static Logger log = LogManager.getLogger(NioSession.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int CHUNKS_PER_FLUSH = 4; // Porciones de archivos que se escriben antes de ceder el loop
+
+    private final SocketChannel channel;
+    private final IoLoop loop;
+    private SelectionKey key;
+    private ByteBuffer inbound;
+    private final OutboundQueue outbound;
+    private final ByteBuffer[] pending;
+    private int pendingIndex;
+    private int pendingCount;
+    private final AtomicBoolean flushScheduled;
+    private final Runnable flushTask;
+    private final Runnable resumeTask;
+    private boolean readPaused; // Solo lo utiliza el thread del loop
+    private final AtomicBoolean closed;
+    private final long stallNanos;
+    private volatile long stalledSince; // Solo lo modifica el thread del loop
+
+    /**
+     * Constructor de la clase.
+     * @param chatServer instancia del servidor.
+     * @param channel canal de la conexion con el cliente, en modo no bloqueante.
+     * @param loop loop que atiende la conexion.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     */
+    public NioSession(ChatServer chatServer, SocketChannel channel, IoLoop loop, ChatMessages globalMessages) {
+        super(chatServer, globalMessages);
+        this.channel = channel;
+        this.loop = loop;
+        this.inbound = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        ServerConfig config = chatServer.getConfig();
+        this.outbound = new OutboundQueue(config.getOutboundMaxBytes(), config.getOutboundPolicy(),
+                config.getOutboundFlushMicros());
+        this.pending = new ByteBuffer[OutboundQueue.GATHER_FRAMES];
+        this.flushScheduled = new AtomicBoolean();
+        this.flushTask = this::flushOrClose;
+        this.resumeTask = this::resumeReading;
+        this.closed = new AtomicBoolean();
+        this.stallNanos = chatServer.getConfig().getMetricsStallMillis() * 1_000_000L;
+    }
+
+    /**
+     * Metodo que se ejecuta en el thread del loop una vez que el canal fue registrado en su selector.
+     * @param key clave del canal en el selector.
+     */
+    void attach(SelectionKey key) {
+        this.key = key;
+        this.open();
+    }
+
+    /**
+     * Metodo que lee los bytes disponibles en el canal y atiende cada peticion completa recibida.
+     * @throws IOException si la conexion fue cerrada o se recibio un mensaje invalido.
+     */
+    void read() throws IOException {
+        if (this.channel.read(this.inbound) < 0) {
+            throw new IOException("Conexion cerrada por el cliente");
+        }
+        this.decodeBuffered();
+    }
+
+    /**
+     * Metodo que atiende las peticiones completas del buffer de lectura. Si la conexion supera su limite de
+     * peticiones con la accion {@link chat.ServerConfig.RateLimitAction#DELAY}, deja de leer del canal y encarga al
+     * loop que continue una vez transcurrida la demora.
+     * @throws IOException si se recibio un mensaje invalido.
+     */
+    private void decodeBuffered() throws IOException {
+        this.inbound.flip();
+        while (this.decodeNext()) {
+            long throttle = this.getThrottleDelay();
+            if (throttle > 0) {
+                this.readPaused = true;
+                this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+                this.loop.schedule(this.resumeTask, throttle);
+                break;
+            }
+        }
+        this.acknowledge();
+        this.inbound.compact();
+        if (!this.inbound.hasRemaining()) {
+            // La peticion pendiente no entra en el buffer, se agranda hasta el maximo del protocolo
+            int maxLength = this.protocolVersion == BinaryCodes.VERSION_TEXT
+                    ? FrameCodec.HEADER_LENGTH + FrameCodec.MAX_LENGTH
+                    : BinaryCodes.HEADER_LENGTH + this.chatServer.getConfig().getMaxFrameLength();
+            ByteBuffer larger = ByteBuffer.allocate((int) Math.min(this.inbound.capacity() * 2L, maxLength));
+            this.inbound.flip();
+            larger.put(this.inbound);
+            this.inbound = larger;
+        } else if (this.inbound.position() == 0 && this.inbound.capacity() > INITIAL_BUFFER_SIZE) {
+            // Se libera el buffer agrandado por una peticion larga
+            this.inbound = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Metodo que se ejecuta en el thread del loop al vencer la demora por el limite de peticiones: atiende las
+     * peticiones que quedaron en el buffer y vuelve a leer del canal si no corresponde otra demora.
+     */
+    private void resumeReading() {
+        if (this.closed.get() || !this.readPaused) {
+            return;
+        }
+        if (this.getThrottleDelay() > 0) {
+            // Se ejecuto junto con otra tarea demorada que vencio antes
+            this.loop.schedule(this.resumeTask, this.getThrottleDelay());
+            return;
+        }
+        this.readPaused = false;
+        try {
+            this.decodeBuffered();
+        } catch (IOException e) {
+            this.close();
+            return;
+        }
+        if (!this.readPaused) {
+            this.key.interestOps(this.key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Metodo que decodifica y atiende la siguiente peticion del buffer, segun la version del protocolo vigente.
+     * @return true si habia una peticion completa.
+     * @throws IOException si la peticion es invalida.
+     */
+    private boolean decodeNext() throws IOException {
+        long start = System.nanoTime();
+        if (this.protocolVersion == BinaryCodes.VERSION_TEXT) {
+            if (!this.textReader.next(this.inbound)) {
+                return false;
+            }
+            ChatMetrics.getInstance().recordDecode(System.nanoTime() - start);
+            this.decodeRequest(this.textReader);
+            return true;
+        }
+        if (!this.frameReader.next(this.inbound)) {
+            return false;
+        }
+        ChatMetrics.getInstance().recordDecode(System.nanoTime() - start);
+        this.decodeRequest(this.frameReader);
+        return true;
+    }
+
+    /**
+     * Metodo que escribe en el canal los mensajes encolados. Los frames se toman en grupos y cada grupo se escribe
+     * con una unica escritura; mientras la conexion recibe rafagas la escritura puede demorarse, segun
+     * {@link chat.ServerConfig#getOutboundFlushMicros()}, para agrupar mas frames. Si el socket no admite mas datos se
+     * espera a que el selector indique que es posible continuar; si la espera supera
+     * {@link chat.ServerConfig#getMetricsStallMillis()} se registra como una escritura demorada.
+     * <p>
+     * Al no quedar frames se escriben las porciones de los archivos encolados directamente desde el archivo al socket.
+     * Luego de {@value #CHUNKS_PER_FLUSH} porciones la escritura continua en otra tarea, para que un archivo grande no
+     * demore a las demas conexiones del loop.
+     * @throws IOException si no es posible escribir en el canal.
+     */
+    void flush() throws IOException {
+        this.flushScheduled.set(false);
+        if (this.closed.get()) {
+            return;
+        }
+        if (this.pendingIndex == this.pendingCount) {
+            long delay = this.outbound.getFlushDelay(System.nanoTime());
+            if (delay > 0) {
+                // Mientras la tarea esta demorada los nuevos frames no encargan otra escritura
+                this.flushScheduled.set(true);
+                this.loop.schedule(this.flushTask, delay);
+                return;
+            }
+        }
+        int chunks = 0;
+        while (true) {
+            while (this.pendingIndex < this.pendingCount || this.nextPending()) {
+                try {
+                    this.channel.write(this.pending, this.pendingIndex, this.pendingCount - this.pendingIndex);
+                } catch (IOException e) {
+                    ChatMetrics.getInstance().writeError();
+                    throw e;
+                }
+                ChatMetrics.getInstance().writeSyscall();
+                while (this.pendingIndex < this.pendingCount && !this.pending[this.pendingIndex].hasRemaining()) {
+                    this.pending[this.pendingIndex++] = null;
+                }
+                if (this.pendingIndex < this.pendingCount) {
+                    this.awaitWritable();
+                    return;
+                }
+                ChatMetrics.getInstance().framesWritten(this.pendingCount);
+            }
+            FileSend file = this.outbound.nextFile();
+            if (file == null) {
+                break;
+            }
+            if (chunks == CHUNKS_PER_FLUSH) {
+                if (this.flushScheduled.compareAndSet(false, true)) {
+                    this.loop.execute(this.flushTask);
+                }
+                break;
+            }
+            boolean written;
+            try {
+                written = file.writeChunk(this.channel);
+            } catch (IOException e) {
+                ChatMetrics.getInstance().writeError();
+                throw e;
+            }
+            if (!written) {
+                this.awaitWritable();
+                return;
+            }
+            chunks++;
+            if (file.isDone()) {
+                this.outbound.fileSent();
+            }
+        }
+        if (this.stalledSince != 0) {
+            if (System.nanoTime() - this.stalledSince >= this.stallNanos) {
+                this.writeStalled();
+            }
+            this.stalledSince = 0;
+        }
+        this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Metodo que espera a que el selector indique que el socket admite mas datos para continuar la escritura.
+     */
+    private void awaitWritable() {
+        if (this.stalledSince == 0) {
+            this.stalledSince = System.nanoTime();
+        }
+        this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Metodo que toma el siguiente grupo de frames de la cola de salida.
+     * @return true si habia frames encolados.
+     */
+    private boolean nextPending() {
+        this.pendingIndex = 0;
+        this.pendingCount = this.outbound.drainTo(this.pending);
+        return this.pendingCount > 0;
+    }
+
+    /**
+     * Metodo que retorna el momento desde el que el socket no admite mas datos.
+     * @return valor de {@link System#nanoTime()}, o 0 si no hay una escritura demorada.
+     */
+    @Override
+    protected long getWriteBlockedSince() {
+        return this.stalledSince;
+    }
+
+    /**
+     * Metodo que encarga al loop el cierre de la conexion.
+     */
+    @Override
+    protected void closeConnection() {
+        this.loop.execute(this::close);
+    }
+
+    /**
+     * Metodo que retorna la cantidad de frames encolados que aun no se escribieron.
+     * @return cantidad de frames pendientes.
+     */
+    @Override
+    public int getPendingFrames() {
+        return this.outbound.size();
+    }
+
+    /**
+     * Metodo que encola el frame y solicita al loop que lo escriba. Puede invocarse desde cualquier thread. Si la cola
+     * de salida esta llena se aplica la politica configurada, y si el frame no puede descartarse se cierra la conexion.
+     * @param frame frame a enviar.
+     * @throws IOException si la conexion ya fue cerrada.
+     */
+    @Override
+    protected void send(Frame frame) throws IOException {
+        if (this.closed.get()) {
+            throw new IOException("Conexion cerrada");
+        }
+        if (!this.outbound.offer(this.view(frame), this.isBulk(frame))) {
+            this.outboundOverflow();
+            return;
+        }
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            this.loop.execute(this.flushTask);
+        }
+    }
+
+    /**
+     * Metodo que encola el archivo y solicita al loop que escriba su contenido luego de los frames encolados. Puede
+     * invocarse desde cualquier thread.
+     * @param file envio del archivo.
+     * @return false si la conexion ya fue cerrada o ya tiene encolada la cantidad maxima de archivos.
+     */
+    @Override
+    protected boolean sendFile(FileSend file) {
+        ServerConfig config = this.chatServer.getConfig();
+        if (this.closed.get() || !this.outbound.offerFile(file, config.getTransferMaxQueuedFiles(),
+                config.getTransferMaxBytes())) {
+            return false;
+        }
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            this.loop.execute(this.flushTask);
+        }
+        return true;
+    }
+
+    /**
+     * Metodo que escribe los mensajes encolados desde una tarea del loop, cerrando la conexion si la escritura falla.
+     */
+    private void flushOrClose() {
+        try {
+            this.flush();
+        } catch (IOException e) {
+            this.close();
+        }
+    }
+
+    /**
+     * Metodo que cierra la conexion con el cliente. Solo tiene efecto la primera vez que se invoca.
+     */
+    void close() {
+        if (this.closed.compareAndSet(false, true)) {
+            log.info("Cerrando conexion.");
+            if (this.key != null) {
+                this.key.cancel();
+            }
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                log.error("Error cerrando el canal: " + e.getMessage());
+            }
+            this.outbound.clear();
+            this.closed();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package chat.outbound;
+
+import chat.metrics.ChatMetrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Clase que registra en las metricas cada escritura sobre el stream de un socket. Se ubica debajo del buffer de salida
+ * de la conexion, por lo que cada escritura que recibe corresponde a una escritura en el socket.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see ChatMetrics#getWriteSyscallsPerFrame()
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * Constructor de la clase.
+     * @param out stream del socket.
+     */
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.out.write(b);
+        ChatMetrics.getInstance().writeSyscall();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.out.write(b, off, len);
+        ChatMetrics.getInstance().writeSyscall();
+    }
+}
@@ -0,0 +1,285 @@
+package chat.outbound;
+
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.transfer.FileSend;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Clase que contiene los frames pendientes de escribirse en la conexion con un cliente. Los frames se separan en dos
+ * colas: la prioritaria, con la presencia, los mensajes privados y los frames propios de la conexion, y la de mensajes
+ * masivos (GBL, ROM y los mensajes de HIS), de modo que una rafaga de mensajes globales no demore al resto. Dentro de
+ * cada cola se respeta el orden, y la cola prioritaria se escribe siempre antes.
+ * <p>
+ * La memoria de los frames encolados tiene un limite. Al superarlo se aplica la politica configurada a los mensajes
+ * masivos: descartar los mas antiguos, descartar el nuevo o cerrar la conexion. Los frames prioritarios nunca se
+ * descartan: salvo que la politica sea cerrar la conexion, desplazan a los mensajes masivos mas antiguos, y si aun
+ * asi no entran se cierra la conexion. Un frame se acepta siempre si la cola esta vacia, aunque
+ * supere el limite por si solo.
+ * <p>
+ * Los frames se toman en grupos de hasta {@value #GATHER_FRAMES} para escribirlos juntos. Mientras la conexion recibe
+ * rafagas (el ultimo grupo tomado tenia mas de un frame) la escritura puede demorarse hasta la demora configurada
+ * desde que se encolo el frame mas antiguo, para agrupar los siguientes; con poco trafico no se demora.
+ * <p>
+ * Los archivos a enviar forman una tercera cola, que se escribe de a una porcion y solo cuando no hay frames
+ * encolados. Los archivos no cuentan para el limite de memoria, ya que su contenido se lee del disco al escribirlo.
+ * <p>
+ * Puede utilizarse desde cualquier thread: los frames se encolan desde los threads que publican y los toma el thread
+ * que escribe en la conexion.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see ServerConfig#getOutboundMaxBytes()
+ * @see ServerConfig#getOutboundPolicy()
+ * @see ServerConfig#getOutboundFlushMicros()
+ */
+public class OutboundQueue {
+
+    public static final int GATHER_FRAMES = 64;
+    public static final int GATHER_BYTES = 64 * 1024;
+
+    private final ArrayDeque<ByteBuffer> priority;
+    private final ArrayDeque<ByteBuffer> bulk;
+    private final ArrayDeque<FileSend> files;
+    private final long maxBytes;
+    private final ServerConfig.OverflowPolicy policy;
+    private long bytes;
+    private long fileBytes;
+    private boolean overflowed;
+    private boolean closed;
+    private final long flushDelayNanos;
+    private long firstQueued;
+    private boolean burst;
+
+    /**
+     * Constructor de la clase, para una cola que no demora las escrituras.
+     * @param maxBytes memoria maxima de los frames encolados, o 0 para no limitarla.
+     * @param policy politica que se aplica a los mensajes masivos al superar el limite.
+     */
+    public OutboundQueue(long maxBytes, ServerConfig.OverflowPolicy policy) {
+        this(maxBytes, policy, 0);
+    }
+
+    /**
+     * Constructor de la clase.
+     * @param maxBytes memoria maxima de los frames encolados, o 0 para no limitarla.
+     * @param policy politica que se aplica a los mensajes masivos al superar el limite.
+     * @param flushMicros demora maxima de la escritura de un frame para agruparlo con los siguientes.
+     */
+    public OutboundQueue(long maxBytes, ServerConfig.OverflowPolicy policy, long flushMicros) {
+        this.priority = new ArrayDeque<>();
+        this.bulk = new ArrayDeque<>();
+        this.files = new ArrayDeque<>();
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.flushDelayNanos = flushMicros * 1000;
+    }
+
+    /**
+     * Metodo que encola un frame, aplicando la politica configurada si se supera el limite de memoria.
+     * @param frame vista del frame a escribir.
+     * @param bulk true si es un mensaje masivo, que puede descartarse y se escribe luego de los prioritarios.
+     * @return false si la conexion debe cerrarse porque el cliente no lee lo suficientemente rapido. Solo se retorna
+     * una vez: a partir de ese momento los frames se descartan hasta que se cierre la conexion.
+     */
+    public synchronized boolean offer(ByteBuffer frame, boolean bulk) {
+        if (this.overflowed) {
+            return true;
+        }
+        int length = frame.remaining();
+        if (this.maxBytes > 0 && this.bytes + length > this.maxBytes && !this.isEmpty()) {
+            if (this.policy == ServerConfig.OverflowPolicy.DISCONNECT) {
+                this.overflowed = true;
+                return false;
+            }
+            // Un frame prioritario siempre desplaza a los mensajes masivos
+            if (!bulk || this.policy == ServerConfig.OverflowPolicy.DROP_OLDEST) {
+                this.dropOldest(length);
+            }
+            if (this.bytes + length > this.maxBytes && !this.isEmpty()) {
+                if (!bulk) {
+                    this.overflowed = true;
+                    return false;
+                }
+                ChatMetrics.getInstance().outboundDropped();
+                return true;
+            }
+        }
+        if (this.flushDelayNanos > 0 && this.isEmpty()) {
+            this.firstQueued = System.nanoTime();
+        }
+        (bulk ? this.bulk : this.priority).add(frame);
+        this.bytes += length;
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * Metodo que descarta los mensajes masivos mas antiguos hasta que entre un frame de la longitud indicada.
+     * @param length longitud del frame a encolar.
+     */
+    private void dropOldest(int length) {
+        Iterator<ByteBuffer> oldest = this.bulk.iterator();
+        while (this.bytes + length > this.maxBytes && oldest.hasNext()) {
+            this.bytes -= oldest.next().remaining();
+            oldest.remove();
+            ChatMetrics.getInstance().outboundDropped();
+        }
+    }
+
+    /**
+     * Metodo que toma el siguiente frame a escribir, si hay alguno.
+     * @return el primer frame prioritario, o el primer mensaje masivo si no hay prioritarios, o null si la cola esta
+     * vacia.
+     */
+    public synchronized ByteBuffer poll() {
+        ByteBuffer frame = this.priority.poll();
+        if (frame == null) {
+            frame = this.bulk.poll();
+        }
+        if (frame != null) {
+            this.bytes -= frame.remaining();
+        }
+        return frame;
+    }
+
+    /**
+     * Metodo que toma los siguientes frames a escribir, en el mismo orden que {@link #poll()}, para escribirlos juntos.
+     * Se deja de tomar frames al alcanzar {@value #GATHER_BYTES} bytes, de modo que los frames que se estan
+     * escribiendo, que ya no cuentan para el limite de memoria, no lo superen demasiado.
+     * @param frames arreglo en el que se guardan los frames, a partir de la primera posicion.
+     * @return cantidad de frames tomados, a lo sumo la longitud del arreglo.
+     */
+    public synchronized int drainTo(ByteBuffer[] frames) {
+        int count = 0;
+        int gathered = 0;
+        ByteBuffer frame;
+        while (count < frames.length && gathered < GATHER_BYTES && (frame = this.poll()) != null) {
+            frames[count++] = frame;
+            gathered += frame.remaining();
+        }
+        if (count > 0) {
+            this.burst = count > 1;
+        }
+        return count;
+    }
+
+    /**
+     * Metodo que espera a que haya frames o archivos encolados.
+     * @throws InterruptedException si el thread fue interrumpido mientras esperaba.
+     */
+    public synchronized void awaitFrames() throws InterruptedException {
+        while (this.isEmpty() && this.files.isEmpty()) {
+            this.wait();
+        }
+    }
+
+    /**
+     * Metodo que espera a que haya frames encolados, como maximo el tiempo indicado. La espera termina antes si la
+     * cola se vacia con {@link #clear()}.
+     * @param timeoutMillis tiempo maximo de espera en milisegundos.
+     * @return true si hay frames encolados.
+     * @throws InterruptedException si el thread fue interrumpido mientras esperaba.
+     */
+    public synchronized boolean awaitFrames(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        long remaining = timeoutMillis;
+        while (this.isEmpty() && !this.closed && remaining > 0) {
+            this.wait(remaining);
+            remaining = (deadline - System.nanoTime()) / 1_000_000L;
+        }
+        return !this.isEmpty();
+    }
+
+    /**
+     * Metodo que encola un archivo para escribirlo luego de los frames encolados.
+     * @param file envio del archivo.
+     * @param maxFiles cantidad maxima de archivos encolados, incluido el que se esta escribiendo.
+     * @param maxBytes tamano maximo de los archivos encolados en conjunto.
+     * @return false si la conexion se esta cerrando o si el archivo supera alguno de los limites; en ese caso el
+     * archivo no se encola.
+     */
+    public synchronized boolean offerFile(FileSend file, int maxFiles, long maxBytes) {
+        if (this.closed || this.overflowed || this.files.size() >= maxFiles
+                || this.fileBytes + file.getSize() > maxBytes) {
+            return false;
+        }
+        this.files.add(file);
+        this.fileBytes += file.getSize();
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * Metodo que retorna el archivo que se esta escribiendo, si no hay frames encolados que deban escribirse antes.
+     * @return el primer archivo encolado, o null si no hay archivos o hay frames encolados.
+     */
+    public synchronized FileSend nextFile() {
+        return this.isEmpty() ? this.files.peek() : null;
+    }
+
+    /**
+     * Metodo que quita de la cola el archivo que termino de escribirse y lo cierra.
+     */
+    public synchronized void fileSent() {
+        FileSend file = this.files.poll();
+        if (file != null) {
+            this.fileBytes -= file.getSize();
+            file.close();
+        }
+    }
+
+    /**
+     * Metodo que indica cuanto puede demorarse la escritura de los frames encolados para agruparlos con los
+     * siguientes. Solo se demora si la conexion recibe rafagas y los frames encolados no completan un grupo.
+     * @param now valor actual de {@link System#nanoTime()}.
+     * @return nanosegundos que pueden esperarse, o 0 si los frames deben escribirse ahora.
+     */
+    public synchronized long getFlushDelay(long now) {
+        if (this.flushDelayNanos == 0 || !this.burst || this.isEmpty() || this.size() >= GATHER_FRAMES
+                || this.bytes >= GATHER_BYTES) {
+            return 0;
+        }
+        return Math.max(0, this.firstQueued + this.flushDelayNanos - now);
+    }
+
+    private boolean isEmpty() {
+        return this.priority.isEmpty() && this.bulk.isEmpty();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames encolados.
+     * @return cantidad de frames.
+     */
+    public synchronized int size() {
+        return this.priority.size() + this.bulk.size();
+    }
+
+    /**
+     * Metodo para obtener la memoria ocupada por los frames encolados.
+     * @return cantidad de bytes pendientes de escribirse.
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Metodo que descarta los frames y cierra los archivos encolados al cerrarse la conexion. A partir de ese momento
+     * no se aceptan archivos.
+     */
+    public synchronized void clear() {
+        this.priority.clear();
+        this.bulk.clear();
+        this.bytes = 0;
+        this.closed = true;
+        for (FileSend file : this.files) {
+            file.close();
+        }
+        this.files.clear();
+        this.fileBytes = 0;
+        this.notifyAll();
+    }
+}
@@ -0,0 +1,122 @@
+package chat.ratelimit;
+
+import chat.ServerConfig;
+import util.BinaryCodes;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Clase que limita la cantidad de peticiones de cada codigo que envia un usuario, con un token bucket por opcode.
+ * Cada peticion consume un token; los tokens se recuperan a razon del limite por segundo configurado, hasta la rafaga
+ * configurada.
+ * <p>
+ * El estado de cada bucket se guarda en un unico long: los 40 bits altos contienen el milisegundo de la ultima
+ * recarga, contado desde la creacion del limitador, y los 24 bits bajos los tokens disponibles en milesimas, con signo
+ * para admitir deuda. Tomar un token es un compare-and-set sobre ese long, sin locks y sin crear objetos.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see ServerConfig#getRateLimit(String)
+ */
+public class RateLimiter {
+
+    public static final int MAX_BURST = 8000;
+    public static final int MAX_DEBT_TOKENS = 8000; // Deuda maxima que puede acumular un bucket, en tokens
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long TOKEN = 1000; // Un token en milesimas
+    private static final long MAX_DEBT = MAX_DEBT_TOKENS * TOKEN; // Entra en los 23 bits de tokens con signo
+
+    private final long epoch;
+    private final long[] rates;
+    private final long[] bursts;
+    private final AtomicLongArray states;
+    private final boolean enabled;
+
+    /**
+     * Constructor de la clase. Los buckets comienzan llenos.
+     * @param config configuracion con los limites de cada codigo.
+     */
+    public RateLimiter(ServerConfig config) {
+        this.epoch = System.nanoTime();
+        this.rates = new long[BinaryCodes.MAX_OPCODE + 1];
+        this.bursts = new long[BinaryCodes.MAX_OPCODE + 1];
+        this.states = new AtomicLongArray(BinaryCodes.MAX_OPCODE + 1);
+        boolean enabled = false;
+        for (byte opcode = 1; opcode <= BinaryCodes.MAX_OPCODE; opcode++) {
+            String code = BinaryCodes.codeOf(opcode);
+            long rate = config.getRateLimit(code);
+            if (rate > 0) {
+                // Tokens por segundo equivale a milesimas de token por milisegundo
+                this.rates[opcode] = rate;
+                this.bursts[opcode] = Math.min(Math.max(1, config.getRateBurst(code)), MAX_BURST) * TOKEN;
+                this.states.set(opcode, pack(0, this.bursts[opcode]));
+                enabled = true;
+            }
+        }
+        this.enabled = enabled;
+    }
+
+    /**
+     * Metodo que indica si las peticiones con un opcode tienen limite.
+     * @param opcode opcode de {@link BinaryCodes}, o -1 para las peticiones sin equivalente binario.
+     * @return true si tienen limite.
+     */
+    public boolean isLimited(byte opcode) {
+        return this.enabled && opcode > 0 && opcode <= BinaryCodes.MAX_OPCODE && this.rates[opcode] > 0;
+    }
+
+    /**
+     * Metodo que intenta tomar un token para una peticion. Si no hay tokens disponibles el bucket no se modifica.
+     * @param opcode opcode limitado de la peticion.
+     * @param now valor actual de {@link System#nanoTime()}.
+     * @return 0 si se tomo el token, o los nanosegundos que faltan para que haya uno disponible.
+     */
+    public long tryAcquire(byte opcode, long now) {
+        return this.take(opcode, now, false);
+    }
+
+    /**
+     * Metodo que toma un token para una peticion aunque no haya disponibles, dejando el bucket en deuda. La deuda no
+     * puede superar {@link #MAX_DEBT_TOKENS}: si la superaria el token no se toma y el bucket no se modifica.
+     * @param opcode opcode limitado de la peticion.
+     * @param now valor actual de {@link System#nanoTime()}.
+     * @return 0 si habia un token disponible, los nanosegundos que deben esperarse para saldar la deuda, o -1 si la
+     * deuda superaria el maximo.
+     */
+    public long acquire(byte opcode, long now) {
+        return this.take(opcode, now, true);
+    }
+
+    private long take(byte opcode, long now, boolean borrow) {
+        long rate = this.rates[opcode];
+        long burst = this.bursts[opcode];
+        long millis = (now - this.epoch) / 1_000_000;
+        while (true) {
+            long state = this.states.get(opcode);
+            long refilled = state >>> TOKEN_BITS;
+            long tokens = (state << (Long.SIZE - TOKEN_BITS)) >> (Long.SIZE - TOKEN_BITS);
+            long elapsed = millis - refilled;
+            if (elapsed > 0) {
+                // Se limita el tiempo transcurrido para que el producto no desborde
+                tokens = Math.min(burst, tokens + Math.min(elapsed, (burst - tokens) / rate + 1) * rate);
+                refilled = millis;
+            }
+            if (tokens < TOKEN && !borrow) {
+                return (TOKEN - tokens + rate - 1) / rate * 1_000_000;
+            }
+            long remaining = tokens - TOKEN;
+            if (remaining < -MAX_DEBT) {
+                return -1;
+            }
+            if (this.states.compareAndSet(opcode, state, pack(refilled, remaining))) {
+                return remaining >= 0 ? 0 : (-remaining + rate - 1) / rate * 1_000_000;
+            }
+        }
+    }
+
+    private static long pack(long millis, long tokens) {
+        return (millis << TOKEN_BITS) | (tokens & TOKEN_MASK);
+    }
+}
@@ -0,0 +1,177 @@
+package chat.registry;
+
+import chat.ChatSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Registro de los usuarios conectados a un servidor, dividido en shards para que los registros y las bajas de usuarios
+ * distintos no compitan por el mismo lock.
+ * <p>
+ * El shard de un usuario se elige con el hash de su nombre. Las busquedas por nombre no toman locks: cada shard guarda
+ * sus sesiones en un {@link ConcurrentHashMap}, y su lock solo ordena las modificaciones respecto de los recorridos
+ * de {@link #names()} y {@link #sessions()}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class UserRegistry {
+
+    private final Shard[] shards;
+    private final int shardBits;
+    private final AtomicInteger size;
+
+    /**
+     * Constructor de la clase.
+     * @param shards cantidad de shards, se redondea a la siguiente potencia de dos.
+     */
+    public UserRegistry(int shards) {
+        int count = Integer.highestOneBit(Math.max(shards, 1) * 2 - 1);
+        this.shardBits = Integer.numberOfTrailingZeros(count);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.size = new AtomicInteger();
+    }
+
+    private Shard shardOf(String name) {
+        // Se usan los bits altos del hash, ya que los bajos eligen el bucket dentro del mapa del shard
+        int hash = name.hashCode() * 0x9E3779B9;
+        return this.shardBits == 0 ? this.shards[0] : this.shards[hash >>> (32 - this.shardBits)];
+    }
+
+    /**
+     * Metodo que registra la sesion de un usuario. Si el nombre ya estaba registrado reemplaza la sesion.
+     * @param name nombre del usuario.
+     * @param session sesion del usuario.
+     */
+    public void register(String name, ChatSession session) {
+        Shard shard = this.shardOf(name);
+        long stamp = shard.lock.writeLock();
+        try {
+            if (shard.sessions.put(name, session) == null) {
+                this.size.incrementAndGet();
+            }
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Metodo que elimina el registro de un usuario, cualquiera sea su sesion.
+     * @param name nombre del usuario.
+     * @return la sesion eliminada, o null si el usuario no estaba registrado.
+     */
+    public ChatSession unregister(String name) {
+        return this.unregister(name, null);
+    }
+
+    /**
+     * Metodo que elimina el registro de un usuario solo si corresponde a la sesion indicada, de modo que una conexion
+     * que se cierra no elimine la sesion con la que el mismo usuario se volvio a conectar.
+     * @param name nombre del usuario.
+     * @param session sesion esperada, o null para eliminar cualquier sesion.
+     * @return la sesion eliminada, o null si el usuario no estaba registrado con esa sesion.
+     */
+    public ChatSession unregister(String name, ChatSession session) {
+        Shard shard = this.shardOf(name);
+        long stamp = shard.lock.writeLock();
+        try {
+            ChatSession current = shard.sessions.get(name);
+            if (current == null || (session != null && current != session)) {
+                return null;
+            }
+            shard.sessions.remove(name);
+            this.size.decrementAndGet();
+            return current;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Metodo que obtiene la sesion de un usuario a partir de su nombre, sin tomar locks.
+     * @param name nombre del usuario.
+     * @return la sesion, o null si el usuario no esta registrado.
+     */
+    public ChatSession get(String name) {
+        return this.shardOf(name).sessions.get(name);
+    }
+
+    /**
+     * Metodo que retorna la cantidad de usuarios registrados.
+     * @return cantidad de usuarios.
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Metodo que retorna los nombres de los usuarios registrados. Se toman los locks de todos los shards a la vez, de
+     * modo que el resultado corresponde a un unico instante y no cambia mientras se recorre.
+     * @return copia de los nombres de usuario.
+     */
+    public List<String> names() {
+        List<String> names = new ArrayList<>(this.size());
+        long[] stamps = this.lockAll();
+        try {
+            for (Shard shard : this.shards) {
+                names.addAll(shard.sessions.keySet());
+            }
+        } finally {
+            this.unlockAll(stamps);
+        }
+        return names;
+    }
+
+    /**
+     * Metodo que retorna las sesiones registradas, con la misma consistencia que {@link #names()}.
+     * @return copia de las sesiones.
+     */
+    public List<ChatSession> sessions() {
+        List<ChatSession> sessions = new ArrayList<>(this.size());
+        long[] stamps = this.lockAll();
+        try {
+            for (Shard shard : this.shards) {
+                sessions.addAll(shard.sessions.values());
+            }
+        } finally {
+            this.unlockAll(stamps);
+        }
+        return sessions;
+    }
+
+    private long[] lockAll() {
+        long[] stamps = new long[this.shards.length];
+        for (int i = 0; i < this.shards.length; i++) {
+            stamps[i] = this.shards[i].lock.readLock();
+        }
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i].lock.unlockRead(stamps[i]);
+        }
+    }
+
+    /**
+     * Porcion del registro con su propio lock y sus usuarios. El lock protege las modificaciones; el mapa admite
+     * ademas lecturas sin lock.
+     */
+    private static final class Shard {
+
+        private final StampedLock lock;
+        private final ConcurrentHashMap<String, ChatSession> sessions;
+
+        private Shard() {
+            this.lock = new StampedLock();
+            this.sessions = new ConcurrentHashMap<>();
+        }
+    }
+}
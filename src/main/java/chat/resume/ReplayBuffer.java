@@ -0,0 +1,65 @@
+package chat.resume;
+
+import util.Frame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase que conserva los ultimos frames enviados a una sesion, numerados en el orden en que se enviaron, para
+ * reenviar los que el cliente no recibio si se vuelve a conectar. Los frames son los mismos que se comparten con el
+ * resto de los destinatarios, por lo que conservarlos no copia su contenido.
+ * <p>
+ * La clase no es thread-safe: la sesion la utiliza con el buffer bloqueado, de modo que la numeracion coincide con el
+ * orden en que se escribieron los frames en la conexion.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class ReplayBuffer {
+
+    private final Frame[] frames;
+    private long count;
+
+    /**
+     * Constructor de la clase.
+     * @param capacity cantidad de frames que se conservan.
+     */
+    public ReplayBuffer(int capacity) {
+        this.frames = new Frame[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Metodo que agrega un frame enviado, reemplazando al mas antiguo si el buffer esta lleno.
+     * @param frame frame enviado.
+     */
+    public void add(Frame frame) {
+        this.frames[(int) (this.count % this.frames.length)] = frame;
+        this.count++;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames agregados desde la creacion del buffer, es decir el numero que
+     * recibira el siguiente frame.
+     * @return cantidad de frames.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Metodo que retorna los frames enviados a partir de un numero, en orden.
+     * @param sequence numero del primer frame.
+     * @return los frames, o null si alguno ya fue reemplazado o el numero aun no fue asignado.
+     */
+    public List<Frame> since(long sequence) {
+        if (sequence < 0 || sequence > this.count || this.count - sequence > this.frames.length) {
+            return null;
+        }
+        List<Frame> missed = new ArrayList<>((int) (this.count - sequence));
+        for (long i = sequence; i < this.count; i++) {
+            missed.add(this.frames[(int) (i % this.frames.length)]);
+        }
+        return missed;
+    }
+}
@@ -0,0 +1,78 @@
+package chat.resume;
+
+import chat.ChatSession;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clase que contiene los tokens de reanudacion vigentes del servidor, de cada token a la sesion que lo recibio. Un
+ * token solo puede utilizarse una vez: reanudar la sesion o vencer su plazo lo quita, y la sesion reanudada recibe
+ * uno nuevo. Los tokens son aleatorios, de modo que un cliente no puede adivinar el de otra sesion.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class ResumeTokens {
+
+    private static final int TOKEN_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecureRandom random;
+    private final ConcurrentHashMap<String, ChatSession> sessions;
+
+    /**
+     * Constructor de la clase.
+     */
+    public ResumeTokens() {
+        this.random = new SecureRandom();
+        this.sessions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Metodo que crea un token para una sesion.
+     * @param session sesion que podra reanudarse con el token.
+     * @return token en hexadecimal.
+     */
+    public String issue(ChatSession session) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        char[] chars = new char[TOKEN_BYTES * 2];
+        String token;
+        do {
+            this.random.nextBytes(bytes);
+            for (int i = 0; i < bytes.length; i++) {
+                chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+            }
+            token = new String(chars);
+        } while (this.sessions.putIfAbsent(token, session) != null);
+        return token;
+    }
+
+    /**
+     * Metodo que quita un token para reanudar su sesion.
+     * @param token token presentado por el cliente.
+     * @return la sesion del token, o null si el token no existe o ya fue utilizado.
+     */
+    public ChatSession claim(String token) {
+        return this.sessions.remove(token);
+    }
+
+    /**
+     * Metodo que quita el token de una sesion que ya no puede reanudarse.
+     * @param token token de la sesion.
+     * @param session sesion del token.
+     * @return true si el token seguia vigente; false si ya fue utilizado para reanudar la sesion.
+     */
+    public boolean revoke(String token, ChatSession session) {
+        return this.sessions.remove(token, session);
+    }
+
+    /**
+     * Metodo que retorna la cantidad de tokens vigentes.
+     * @return cantidad de tokens.
+     */
+    public int size() {
+        return this.sessions.size();
+    }
+}
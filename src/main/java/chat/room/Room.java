@@ -0,0 +1,143 @@
+package chat.room;
+
+import chat.ChatSession;
+import util.Frame;
+
+import java.util.Arrays;
+
+/**
+ * Sala de chat con nombre. Los miembros se guardan en un arreglo que se reemplaza en cada alta o baja, de modo que el
+ * envio de un mensaje recorre solo a los miembros de la sala sin copiar la lista ni tomar otro lock que el de la sala.
+ * <p>
+ * Una sala sin miembros se marca como cerrada y {@link RoomManager} la elimina; quien intente unirse a una sala
+ * cerrada debe volver a buscarla.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class Room {
+
+    private static final ChatSession[] EMPTY = new ChatSession[0];
+
+    private final String name;
+    private volatile ChatSession[] members;
+    private boolean closed;
+
+    /**
+     * Constructor de la clase.
+     * @param name nombre de la sala.
+     */
+    Room(String name) {
+        this.name = name;
+        this.members = EMPTY;
+    }
+
+    /**
+     * Metodo que agrega un miembro a la sala. Debe invocarse con la sala bloqueada.
+     * @param session sesion del usuario que se une.
+     * @return false si la sesion ya era miembro.
+     */
+    boolean add(ChatSession session) {
+        if (this.indexOf(session) >= 0) {
+            return false;
+        }
+        ChatSession[] current = this.members;
+        ChatSession[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = session;
+        this.members = updated;
+        return true;
+    }
+
+    /**
+     * Metodo que quita un miembro de la sala. Debe invocarse con la sala bloqueada.
+     * @param session sesion del usuario que se va.
+     * @return false si la sesion no era miembro.
+     */
+    boolean remove(ChatSession session) {
+        int index = this.indexOf(session);
+        if (index < 0) {
+            return false;
+        }
+        ChatSession[] current = this.members;
+        ChatSession[] updated = new ChatSession[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        this.members = updated;
+        return true;
+    }
+
+    /**
+     * Metodo que reemplaza la sesion de un miembro, conservando su lugar en la sala. Debe invocarse con la sala
+     * bloqueada.
+     * @param previous sesion actual del miembro.
+     * @param session sesion que la reemplaza.
+     * @return false si la sesion actual no era miembro.
+     */
+    boolean replace(ChatSession previous, ChatSession session) {
+        int index = this.indexOf(previous);
+        if (index < 0) {
+            return false;
+        }
+        ChatSession[] updated = this.members.clone();
+        updated[index] = session;
+        this.members = updated;
+        return true;
+    }
+
+    private int indexOf(ChatSession session) {
+        ChatSession[] current = this.members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == session) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Metodo que entrega un frame a todos los miembros de la sala. Debe invocarse con la sala bloqueada, de modo que
+     * todos los miembros reciban los mensajes de la sala en el mismo orden.
+     * @param frame frame compartido por todos los miembros.
+     * @return cantidad de miembros a los que se entrego.
+     */
+    int deliver(Frame frame) {
+        ChatSession[] current = this.members;
+        for (ChatSession member : current) {
+            member.deliver(frame);
+        }
+        return current.length;
+    }
+
+    /**
+     * Metodo que indica si una sesion es miembro de la sala.
+     * @param session sesion del usuario.
+     * @return true si la sesion se unio a la sala y no la dejo.
+     */
+    public boolean contains(ChatSession session) {
+        return this.indexOf(session) >= 0;
+    }
+
+    /**
+     * Metodo para obtener el nombre de la sala.
+     * @return nombre de la sala.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Metodo que retorna la cantidad de miembros de la sala.
+     * @return cantidad de miembros.
+     */
+    public int size() {
+        return members.length;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void setClosed(boolean closed) {
+        this.closed = closed;
+    }
+}
@@ -0,0 +1,150 @@
+package chat.room;
+
+import chat.ChatSession;
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice de las salas de chat del servidor, de cada nombre de sala a sus miembros. Un mensaje de una sala se codifica
+ * una unica vez y se entrega solo a sus miembros, por lo que su costo depende del tamano de la sala y no de la
+ * cantidad de usuarios conectados al servidor.
+ * <p>
+ * Las salas se crean al unirse el primer miembro y se eliminan al irse el ultimo. Las altas, bajas y mensajes de una
+ * misma sala se realizan con la sala bloqueada, de modo que todos los miembros ven los eventos en el mismo orden.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see Room
+ */
+public class RoomManager {
+
+    private static Logger log = LogManager.getLogger(RoomManager.class);
+    private static ChatMetrics metrics = ChatMetrics.getInstance();
+
+    private final ConcurrentHashMap<String, Room> rooms;
+
+    /**
+     * Constructor de la clase.
+     */
+    public RoomManager() {
+        this.rooms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Metodo que une un usuario a una sala, creandola si no existe, y notifica a todos sus miembros, incluido el
+     * nuevo, con JON|sala|usuario.
+     * @param roomName nombre de la sala.
+     * @param session sesion del usuario, ya registrado.
+     * @return true si el usuario no era miembro de la sala.
+     */
+    public boolean join(String roomName, ChatSession session) {
+        while (true) {
+            Room room = this.rooms.computeIfAbsent(roomName, Room::new);
+            synchronized (room) {
+                if (room.isClosed()) {
+                    // La sala se elimino mientras tanto, se vuelve a buscar
+                    continue;
+                }
+                if (!room.add(session)) {
+                    return false;
+                }
+                room.deliver(Frame.of(MessagesCodes.JOIN_ROOM, roomName, session.getUserName()));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Metodo que quita un usuario de una sala y notifica a los miembros, incluido el que se va, con
+     * LVE|sala|usuario. Si la sala queda vacia se elimina.
+     * @param roomName nombre de la sala.
+     * @param session sesion del usuario.
+     * @return true si el usuario era miembro de la sala.
+     */
+    public boolean leave(String roomName, ChatSession session) {
+        Room room = this.rooms.get(roomName);
+        if (room == null) {
+            return false;
+        }
+        synchronized (room) {
+            if (!room.remove(session)) {
+                return false;
+            }
+            if (room.size() == 0) {
+                room.setClosed(true);
+                this.rooms.remove(roomName, room);
+                log.debug("Sala eliminada: {}", roomName);
+            }
+            Frame frame = Frame.of(MessagesCodes.LEAVE_ROOM, roomName, session.getUserName());
+            session.deliver(frame);
+            room.deliver(frame);
+            return true;
+        }
+    }
+
+    /**
+     * Metodo que reemplaza la sesion de un miembro de una sala sin notificar a los miembros, por ejemplo cuando el
+     * usuario reanuda su sesion en una nueva conexion.
+     * @param roomName nombre de la sala.
+     * @param previous sesion anterior del usuario.
+     * @param session nueva sesion del usuario.
+     * @return true si la sesion anterior era miembro de la sala.
+     */
+    public boolean replace(String roomName, ChatSession previous, ChatSession session) {
+        Room room = this.rooms.get(roomName);
+        if (room == null) {
+            return false;
+        }
+        synchronized (room) {
+            return room.replace(previous, session);
+        }
+    }
+
+    /**
+     * Metodo que envia un mensaje a los miembros de una sala con ROM|sala|emisor|mensaje. Solo los miembros de la
+     * sala pueden enviarle mensajes.
+     * @param roomName nombre de la sala.
+     * @param sender sesion del usuario emisor.
+     * @param message mensaje enviado.
+     * @return cantidad de miembros que recibieron el mensaje, o -1 si el emisor no es miembro de la sala.
+     */
+    public int publish(String roomName, ChatSession sender, String message) {
+        long start = System.nanoTime();
+        Room room = this.rooms.get(roomName);
+        if (room == null) {
+            return -1;
+        }
+        // ROM|room|sender|message
+        Frame frame = Frame.of(MessagesCodes.ROOM_MESSAGE, roomName, sender.getUserName(), message);
+        synchronized (room) {
+            if (!room.contains(sender)) {
+                return -1;
+            }
+            int recipients = room.deliver(frame);
+            metrics.recordPublish(System.nanoTime() - start, recipients);
+            return recipients;
+        }
+    }
+
+    /**
+     * Metodo para obtener una sala.
+     * @param roomName nombre de la sala.
+     * @return la sala, o null si no tiene miembros.
+     */
+    public Room get(String roomName) {
+        return this.rooms.get(roomName);
+    }
+
+    /**
+     * Metodo que retorna la cantidad de salas con al menos un miembro.
+     * @return cantidad de salas.
+     */
+    public int size() {
+        return this.rooms.size();
+    }
+}
@@ -0,0 +1,259 @@
+package chat.timer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clase que controla una gran cantidad de plazos con un unico thread, mediante una rueda de tiempo con hash. La rueda
+ * tiene una cantidad fija de posiciones y avanza una posicion por paso; cada plazo se guarda en la posicion en la que
+ * vence, junto con la cantidad de vueltas que faltan para que venza. En cada paso solo se recorre la posicion actual,
+ * por lo que programar, cancelar y hacer vencer un plazo cuesta O(1) sin importar cuantos plazos haya pendientes.
+ * <p>
+ * Los plazos pueden programarse y cancelarse desde cualquier thread: se encolan y el thread de la rueda los ubica en
+ * su posicion al comenzar el siguiente paso. Las tareas se ejecutan en el thread de la rueda, por lo que no deben
+ * bloquearse. Un plazo vence con una demora de a lo sumo un paso.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class TimingWheel implements Runnable, Closeable {
+
+    private static Logger log = LogManager.getLogger(TimingWheel.class);
+
+    private final String name;
+    private final long tickNanos;
+    private final Timeout[] buckets; // Lista doblemente enlazada de los plazos de cada posicion
+    private final int mask;
+    private final Queue<Timeout> scheduled;
+    private final Queue<Timeout> cancelled;
+    private long tick; // Solo lo modifica el thread de la rueda
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructor de la clase.
+     * @param name nombre del thread de la rueda.
+     * @param tickMillis duracion de cada paso en milisegundos.
+     * @param ticksPerWheel cantidad de posiciones de la rueda; se redondea a la siguiente potencia de dos.
+     */
+    public TimingWheel(String name, long tickMillis, int ticksPerWheel) {
+        if (tickMillis <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Duracion o cantidad de posiciones invalida");
+        }
+        int size = Integer.highestOneBit(Math.max(ticksPerWheel - 1, 1)) << 1;
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Metodo que inicia el thread de la rueda. Los plazos programados antes de iniciarla se cuentan desde el inicio.
+     */
+    public synchronized void start() {
+        if (this.thread == null) {
+            this.running = true;
+            this.thread = new Thread(this, this.name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Metodo que programa una tarea para que se ejecute en el thread de la rueda una vez transcurrido el plazo.
+     * @param task tarea a ejecutar; no debe bloquearse.
+     * @param delayMillis plazo en milisegundos.
+     * @return plazo programado, que puede cancelarse.
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(this, task, Math.max(delayMillis, 0));
+        this.scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Metodo que ejecuta el ciclo de la rueda: espera el siguiente paso, quita los plazos cancelados desde el paso
+     * anterior, ejecuta las tareas de los plazos vencidos en la posicion actual y ubica los plazos programados.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        while (this.running) {
+            long sleepNanos = start + (this.tick + 1) * this.tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                continue;
+            }
+            this.tick++;
+            this.removeCancelled();
+            // Los plazos nuevos se ubican luego de recorrer la posicion actual: uno que vence en una cantidad exacta
+            // de vueltas queda en esta misma posicion y no debe vencer en este paso
+            this.expire(this.buckets[(int) (this.tick & this.mask)]);
+            this.addScheduled();
+        }
+    }
+
+    /**
+     * Metodo que ubica cada plazo programado en la posicion de la rueda en la que vence.
+     */
+    private void addScheduled() {
+        Timeout timeout;
+        while ((timeout = this.scheduled.poll()) != null) {
+            if (timeout.state != Timeout.PENDING) {
+                continue;
+            }
+            // Un plazo menor a un paso vence en el paso siguiente
+            long ticks = Math.max((TimeUnit.MILLISECONDS.toNanos(timeout.delayMillis) + this.tickNanos - 1)
+                    / this.tickNanos, 1);
+            long deadline = this.tick + ticks;
+            timeout.rounds = (ticks - 1) / this.buckets.length;
+            this.link(timeout, (int) (deadline & this.mask));
+        }
+    }
+
+    /**
+     * Metodo que quita de la rueda los plazos cancelados.
+     */
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = this.cancelled.poll()) != null) {
+            if (timeout.bucket >= 0) {
+                this.unlink(timeout);
+            }
+        }
+    }
+
+    /**
+     * Metodo que recorre los plazos de una posicion, ejecutando los que vencen en esta vuelta.
+     * @param head primer plazo de la posicion.
+     */
+    private void expire(Timeout head) {
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                this.unlink(timeout);
+                if (timeout.expire()) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        log.error("Error ejecutando una tarea de la rueda: " + e);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout, int bucket) {
+        timeout.bucket = bucket;
+        timeout.next = this.buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        this.buckets[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            this.buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+    /**
+     * Metodo que detiene el thread de la rueda. Los plazos pendientes no se ejecutan.
+     */
+    @Override
+    public synchronized void close() {
+        this.running = false;
+        if (this.thread != null) {
+            this.thread.interrupt();
+        }
+    }
+
+    /**
+     * Clase que representa un plazo programado en la rueda.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long delayMillis;
+        private volatile int state;
+        // Solo los modifica el thread de la rueda
+        private long rounds;
+        private int bucket = -1;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long delayMillis) {
+            this.wheel = wheel;
+            this.task = task;
+            this.delayMillis = delayMillis;
+        }
+
+        private synchronized boolean expire() {
+            if (this.state != PENDING) {
+                return false;
+            }
+            this.state = EXPIRED;
+            return true;
+        }
+
+        /**
+         * Metodo que cancela el plazo, si aun no vencio.
+         * @return true si el plazo fue cancelado; false si ya habia vencido o se habia cancelado.
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (this.state != PENDING) {
+                    return false;
+                }
+                this.state = CANCELLED;
+            }
+            this.wheel.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * Metodo que indica si el plazo fue cancelado.
+         * @return true si fue cancelado antes de vencer.
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * Metodo que indica si el plazo vencio y su tarea fue ejecutada.
+         * @return true si vencio.
+         */
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+}
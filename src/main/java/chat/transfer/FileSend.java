@@ -0,0 +1,131 @@
+package chat.transfer;
+
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.BinaryCodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Clase que representa el envio de un archivo recibido por completo a su receptor. El contenido se escribe en frames
+ * CHK, cada uno armado con una cabecera de pocos bytes, que se reutiliza, seguida de una porcion del archivo copiada
+ * directamente del archivo al socket con
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, sin pasar por la memoria del servidor.
+ * <p>
+ * La conexion del receptor escribe las porciones de a una, solo cuando no tiene frames encolados y el socket admite
+ * mas datos, por lo que los mensajes del chat no esperan a que termine el archivo y la memoria del envio no depende
+ * de su tamano. Solo lo utiliza el thread que escribe en la conexion.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see chat.outbound.OutboundQueue#offerFile(FileSend, int, long)
+ */
+public class FileSend {
+
+    private static Logger log = LogManager.getLogger(FileSend.class);
+
+    private final String id;
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkBytes;
+    private final ByteBuffer header;
+    private long position;
+    private long chunkEnd;
+
+    FileSend(String id, FileChannel channel, long size, int chunkBytes) {
+        this.id = id;
+        this.channel = channel;
+        this.size = size;
+        this.chunkBytes = chunkBytes;
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        // La cabecera se arma una unica vez; en cada porcion solo cambian la longitud del frame y la del contenido
+        this.header = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + 1 + 1 + 4 + idBytes.length + 1 + 4);
+        this.header.putInt(0);
+        this.header.put(BinaryCodes.CHUNK);
+        this.header.put(BinaryCodes.TYPE_STRING);
+        this.header.putInt(idBytes.length);
+        this.header.put(idBytes);
+        this.header.put(BinaryCodes.TYPE_BYTES);
+        this.header.putInt(0);
+        this.header.limit(0);
+    }
+
+    /**
+     * Metodo que escribe la porcion en curso del archivo o, si no hay una, la siguiente.
+     * @param target canal de la conexion del receptor.
+     * @return true si la porcion se escribio por completo o ya no quedan porciones; false si el canal no admite mas
+     * datos, en cuyo caso la porcion continua en la siguiente invocacion.
+     * @throws IOException si no es posible leer el archivo o escribir en el canal.
+     */
+    public boolean writeChunk(WritableByteChannel target) throws IOException {
+        if (!this.header.hasRemaining() && this.position == this.chunkEnd) {
+            if (this.position == this.size) {
+                return true;
+            }
+            this.nextChunk();
+        }
+        while (this.header.hasRemaining()) {
+            if (target.write(this.header) == 0) {
+                return false;
+            }
+        }
+        while (this.position < this.chunkEnd) {
+            long sent = this.channel.transferTo(this.position, this.chunkEnd - this.position, target);
+            if (sent == 0) {
+                return false;
+            }
+            this.position += sent;
+            ChatMetrics.getInstance().transferBytesSent(sent);
+        }
+        return true;
+    }
+
+    private void nextChunk() {
+        int length = (int) Math.min(this.chunkBytes, this.size - this.position);
+        this.chunkEnd = this.position + length;
+        this.header.clear();
+        this.header.putInt(0, this.header.capacity() - BinaryCodes.HEADER_LENGTH + length);
+        this.header.putInt(this.header.capacity() - 4, length);
+    }
+
+    /**
+     * Metodo que indica si ya se escribio todo el contenido del archivo.
+     * @return true si el envio termino.
+     */
+    public boolean isDone() {
+        return this.position == this.size && !this.header.hasRemaining();
+    }
+
+    /**
+     * Metodo para obtener el id con el que el receptor recibe el archivo.
+     * @return id asignado por el servidor.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Metodo para obtener el tamano del archivo.
+     * @return cantidad de bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Metodo que cierra el archivo, que se elimina del directorio. Se invoca al terminar el envio o al cerrarse la
+     * conexion del receptor.
+     */
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            log.error("Error eliminando el archivo enviado: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package chat.transfer;
+
+import chat.ServerConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clase que guarda en disco los archivos que envian los clientes hasta entregarlos a su receptor. El contenido de cada
+ * archivo llega en porciones de tamano fijo que se escriben en un archivo temporal del directorio configurado a medida
+ * que se reciben, y una vez completo se envia al receptor directamente desde el archivo con
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, de modo que la memoria que ocupa
+ * una transferencia no depende del tamano del archivo.
+ * <p>
+ * Los archivos temporales se eliminan al cerrarse, es decir al terminar de enviarse o al cancelarse la transferencia,
+ * y los que hayan quedado de una ejecucion anterior se eliminan al crear el almacen.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see Upload
+ * @see FileSend
+ */
+public class TransferStore {
+
+    private static Logger log = LogManager.getLogger(TransferStore.class);
+
+    public static final int MAX_UPLOADS = 4; // Por conexion
+    public static final int MAX_ID_BYTES = 64;
+
+    private static final String PREFIX = "transfer";
+    private static final String SUFFIX = ".part";
+    // Bytes de un frame CHK ademas de su contenido: opcode, tipo y longitud de cada campo, e id
+    private static final int CHUNK_OVERHEAD = 1 + 1 + 4 + MAX_ID_BYTES + 1 + 4;
+
+    private final Path directory;
+    private final int chunkBytes;
+    private final int window;
+    private final long maxBytes;
+    private final AtomicLong ids;
+
+    /**
+     * Constructor de la clase.
+     * @param directory directorio de los archivos temporales; se crea si no existe.
+     * @param config configuracion con el tamano de las porciones, la ventana y el tamano maximo de un archivo.
+     * @throws IOException si no es posible crear el directorio.
+     */
+    public TransferStore(Path directory, ServerConfig config) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        // Cada porcion que envia un cliente debe entrar en un frame
+        this.chunkBytes = Math.max(1, Math.min(config.getTransferChunkBytes(),
+                config.getMaxFrameLength() - CHUNK_OVERHEAD));
+        this.window = Math.max(1, config.getTransferWindow());
+        this.maxBytes = config.getTransferMaxBytes();
+        this.ids = new AtomicLong();
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(this.directory, PREFIX + "*" + SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * Metodo que crea el archivo temporal en el que se recibe un archivo.
+     * @param id id de la transferencia elegido por el emisor.
+     * @param receiverName nombre del usuario receptor.
+     * @param name nombre del archivo.
+     * @param size tamano del archivo en bytes.
+     * @return transferencia lista para recibir el contenido.
+     * @throws IOException si no es posible crear el archivo temporal.
+     */
+    public Upload open(String id, String receiverName, String name, long size) throws IOException {
+        Path path = Files.createTempFile(this.directory, PREFIX, SUFFIX);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        log.debug("Recibiendo el archivo {} de {} bytes en {}", name, size, path);
+        return new Upload(id, receiverName, name, size, channel, this.chunkBytes, this.window);
+    }
+
+    /**
+     * Metodo que prepara el envio al receptor de un archivo recibido por completo. El envio toma el archivo temporal,
+     * que se elimina al terminar.
+     * @param upload transferencia completa.
+     * @return envio del archivo, con un id asignado por el servidor para que no se repita entre emisores.
+     */
+    public FileSend send(Upload upload) {
+        return upload.complete(String.valueOf(this.ids.incrementAndGet()));
+    }
+
+    /**
+     * Metodo para obtener el tamano maximo de cada porcion del contenido de un archivo.
+     * @return cantidad de bytes.
+     */
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    /**
+     * Metodo para obtener el tamano maximo de un archivo.
+     * @return cantidad de bytes.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
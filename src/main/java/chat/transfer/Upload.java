@@ -0,0 +1,143 @@
+package chat.transfer;
+
+import chat.metrics.ChatMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Clase que representa un archivo que un cliente esta enviando al servidor. El contenido se escribe en el archivo
+ * temporal a medida que llega, sin acumularlo en memoria.
+ * <p>
+ * El cliente solo puede enviar las porciones que el servidor le admitio. Al comenzar se le admite una ventana de
+ * porciones y, cada vez que usa la mitad, las necesarias para completarla nuevamente, de modo que un unico CRD
+ * confirma varias porciones y el cliente no espera una respuesta por cada una.
+ * <p>
+ * Solo lo utiliza el thread que lee de la conexion del emisor.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see TransferStore
+ */
+public class Upload {
+
+    private static Logger log = LogManager.getLogger(Upload.class);
+
+    private final String id;
+    private final String receiverName;
+    private final String name;
+    private final long size;
+    private final FileChannel channel;
+    private final int chunkBytes;
+    private final int window;
+    private long received;
+    private int credits;
+
+    Upload(String id, String receiverName, String name, long size, FileChannel channel, int chunkBytes, int window) {
+        this.id = id;
+        this.receiverName = receiverName;
+        this.name = name;
+        this.size = size;
+        this.channel = channel;
+        this.chunkBytes = chunkBytes;
+        this.window = window;
+    }
+
+    /**
+     * Metodo que admite las siguientes porciones del archivo si el cliente ya uso la mitad de su ventana.
+     * @return cantidad de porciones admitidas, o 0 si no corresponde enviar un CRD.
+     */
+    public int grant() {
+        long missing = (this.size - this.received + this.chunkBytes - 1) / this.chunkBytes;
+        int granted = (int) Math.min(this.window, missing) - this.credits;
+        if (this.credits * 2 > this.window || granted <= 0) {
+            return 0;
+        }
+        this.credits += granted;
+        return granted;
+    }
+
+    /**
+     * Metodo que escribe una porcion del contenido en el archivo temporal.
+     * @param chunk contenido de la porcion, que se consume por completo.
+     * @return false si la porcion no fue admitida, supera el tamano maximo de una porcion o excede el tamano del
+     * archivo; en ese caso no se escribe.
+     * @throws IOException si no es posible escribir en el archivo temporal.
+     */
+    public boolean write(ByteBuffer chunk) throws IOException {
+        int length = chunk.remaining();
+        if (this.credits == 0 || length > this.chunkBytes || length > this.size - this.received) {
+            return false;
+        }
+        this.credits--;
+        while (chunk.hasRemaining()) {
+            this.channel.write(chunk);
+        }
+        this.received += length;
+        ChatMetrics.getInstance().transferBytesReceived(length);
+        return true;
+    }
+
+    /**
+     * Metodo que indica si ya se recibio todo el contenido del archivo.
+     * @return true si el archivo esta completo.
+     */
+    public boolean isComplete() {
+        return this.received == this.size;
+    }
+
+    /**
+     * Metodo que entrega el archivo temporal a su envio. Desde ese momento la transferencia ya no lo utiliza.
+     * @param transferId id con el que el receptor recibe el archivo.
+     * @return envio del archivo.
+     */
+    FileSend complete(String transferId) {
+        return new FileSend(transferId, this.channel, this.size, this.chunkBytes);
+    }
+
+    /**
+     * Metodo que cancela la transferencia, eliminando el archivo temporal.
+     */
+    public void abort() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            log.error("Error eliminando el archivo {}: {}", this.name, e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo para obtener el id de la transferencia elegido por el emisor.
+     * @return id de la transferencia.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Metodo para obtener el nombre del usuario receptor.
+     * @return nombre del receptor.
+     */
+    public String getReceiverName() {
+        return receiverName;
+    }
+
+    /**
+     * Metodo para obtener el nombre del archivo.
+     * @return nombre del archivo.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Metodo para obtener el tamano del archivo.
+     * @return cantidad de bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,90 @@
+package chat.transport;
+
+import util.FrameCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clase que representa un cliente conectado al servidor en memoria con {@link InProcessTransport}. Envia y recibe los
+ * mismos frames que un cliente TCP (texto con el formato de writeUTF hasta negociar otra version con HLO, o frames de
+ * {@link util.BinaryCodes}), pero sin sockets: las peticiones se atienden en el thread que las envia y los mensajes
+ * del servidor se toman de una cola con {@link #receive(long, TimeUnit)}.
+ * <p>
+ * Los mensajes que el cliente no toma ocupan memoria hasta el limite de {@link chat.ServerConfig#getOutboundMaxBytes()},
+ * como en una conexion TCP con un cliente lento.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class InProcessClient implements Closeable {
+
+    private final InProcessSession session;
+
+    InProcessClient(InProcessSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Metodo que envia una peticion de la version de texto del protocolo, por ejemplo "NWU|Ana" o "HLO|2".
+     * @param request peticion segun {@link util.MessagesCodes}.
+     * @throws IOException si la conexion fue cerrada o la peticion es invalida.
+     */
+    public void send(String request) throws IOException {
+        this.session.receive(FrameCodec.encode(request));
+    }
+
+    /**
+     * Metodo que envia una o mas peticiones ya codificadas, como se escribirian en el socket, por ejemplo frames de la
+     * version binaria armados con {@link util.BinaryCodec}. El buffer se consume por completo.
+     * @param requests buffer en modo lectura con peticiones completas.
+     * @throws IOException si la conexion fue cerrada o alguna peticion es invalida.
+     */
+    public void send(ByteBuffer requests) throws IOException {
+        this.session.receive(requests);
+    }
+
+    /**
+     * Metodo que espera el siguiente frame del servidor.
+     * @param timeout tiempo maximo de espera.
+     * @param unit unidad del tiempo de espera.
+     * @return frame codificado como se leeria del socket, incluyendo su cabecera, o null si no llego ninguno en el
+     * plazo o la conexion fue cerrada.
+     * @throws InterruptedException si el thread fue interrumpido mientras esperaba.
+     */
+    public ByteBuffer receive(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.session.poll(timeout, unit);
+    }
+
+    /**
+     * Metodo que espera el siguiente mensaje de la version de texto del protocolo.
+     * @param timeout tiempo maximo de espera.
+     * @param unit unidad del tiempo de espera.
+     * @return mensaje recibido, por ejemplo "GBL|Ana|hola", o null si no llego ninguno en el plazo o la conexion fue
+     * cerrada.
+     * @throws IOException si el frame recibido no es un mensaje de texto valido.
+     * @throws InterruptedException si el thread fue interrumpido mientras esperaba.
+     */
+    public String receiveText(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        ByteBuffer frame = this.receive(timeout, unit);
+        return frame == null ? null : FrameCodec.decode(frame);
+    }
+
+    /**
+     * Metodo que indica si la conexion fue cerrada por el cliente o por el servidor.
+     * @return true si la conexion fue cerrada.
+     */
+    public boolean isClosed() {
+        return this.session.isClosed();
+    }
+
+    /**
+     * Metodo que cierra la conexion. El servidor la libera como si el cliente hubiera cerrado el socket.
+     */
+    @Override
+    public void close() {
+        this.session.close();
+    }
+}
@@ -0,0 +1,172 @@
+package chat.transport;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ChatSession;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.outbound.OutboundQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.BinaryCodes;
+import util.Frame;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Clase que representa la sesion de un cliente conectado en memoria con {@link InProcessTransport}. Las peticiones del
+ * cliente se atienden en el thread que las envia, de a una por vez, y los mensajes para el cliente se encolan en una
+ * {@link OutboundQueue} con el mismo limite de memoria y la misma politica que una conexion TCP, de la que los toma
+ * {@link InProcessClient}. Los frames se codifican igual que en un socket, segun la version negociada.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+class InProcessSession extends ChatSession {
+
+    private static Logger log = LogManager.getLogger(InProcessSession.class);
+
+    private final OutboundQueue outbound;
+    private final Object inbound; // Ocupado mientras se atienden las peticiones del cliente
+    private volatile boolean closed;
+
+    /**
+     * Constructor de la clase. La sesion queda suscripta al contenedor global.
+     * @param chatServer instancia del servidor.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     */
+    InProcessSession(ChatServer chatServer, ChatMessages globalMessages) {
+        super(chatServer, globalMessages);
+        ServerConfig config = chatServer.getConfig();
+        this.outbound = new OutboundQueue(config.getOutboundMaxBytes(), config.getOutboundPolicy());
+        this.inbound = new Object();
+        this.open();
+    }
+
+    /**
+     * Metodo que atiende en orden las peticiones completas del buffer, como si se hubieran leido de una conexion. Si
+     * la conexion supera su limite de peticiones con {@link ServerConfig.RateLimitAction#DELAY} se demora el thread
+     * que las envia.
+     * @param requests buffer en modo lectura con una o mas peticiones completas, en la version vigente del protocolo.
+     * @throws IOException si la conexion fue cerrada o alguna peticion es invalida; en ese caso se cierra la conexion.
+     */
+    void receive(ByteBuffer requests) throws IOException {
+        synchronized (this.inbound) {
+            if (this.closed) {
+                throw new IOException("Conexion cerrada");
+            }
+            try {
+                while (requests.hasRemaining()) {
+                    long throttle = this.getThrottleDelay();
+                    if (throttle > 0) {
+                        LockSupport.parkNanos(throttle);
+                    }
+                    this.decodeNext(requests);
+                }
+            } catch (IOException e) {
+                this.close();
+                throw e;
+            } catch (RuntimeException e) {
+                log.error("Error atendiendo la peticion: " + e);
+                this.close();
+                throw new IOException("Error atendiendo la peticion", e);
+            }
+            this.acknowledge();
+        }
+    }
+
+    private void decodeNext(ByteBuffer requests) throws IOException {
+        long start = System.nanoTime();
+        if (this.protocolVersion == BinaryCodes.VERSION_TEXT) {
+            if (!this.textReader.next(requests)) {
+                throw new ProtocolException("Peticion incompleta");
+            }
+            ChatMetrics.getInstance().recordDecode(System.nanoTime() - start);
+            this.decodeRequest(this.textReader);
+            return;
+        }
+        if (!this.frameReader.next(requests)) {
+            throw new ProtocolException("Frame incompleto");
+        }
+        ChatMetrics.getInstance().recordDecode(System.nanoTime() - start);
+        this.decodeRequest(this.frameReader);
+    }
+
+    /**
+     * Metodo que espera el siguiente frame para el cliente.
+     * @param timeout tiempo maximo de espera.
+     * @param unit unidad del tiempo de espera.
+     * @return vista del frame codificado, o null si no llego ninguno o la conexion fue cerrada.
+     * @throws InterruptedException si el thread fue interrumpido mientras esperaba.
+     */
+    ByteBuffer poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!this.outbound.awaitFrames(unit.toMillis(timeout))) {
+            return null;
+        }
+        return this.outbound.poll();
+    }
+
+    /**
+     * Metodo que encola el frame para el cliente. Puede invocarse desde cualquier thread. Si la cola de salida esta
+     * llena se aplica la politica configurada, y si el frame no puede descartarse se cierra la conexion.
+     * @param frame frame a enviar.
+     * @throws IOException si la conexion ya fue cerrada.
+     */
+    @Override
+    protected void send(Frame frame) throws IOException {
+        if (this.closed) {
+            throw new IOException("Conexion cerrada");
+        }
+        if (!this.outbound.offer(this.view(frame), this.isBulk(frame))) {
+            this.outboundOverflow();
+        }
+    }
+
+    /**
+     * Metodo que retorna la cantidad de frames encolados que el cliente aun no tomo.
+     * @return cantidad de frames pendientes.
+     */
+    @Override
+    public int getPendingFrames() {
+        return this.outbound.size();
+    }
+
+    /**
+     * Metodo que cierra la conexion desde otro thread. El cliente deja de recibir frames inmediatamente y el cierre se
+     * completa en la rueda de tiempo del servidor, ya que quien lo invoca puede estar entregando un mensaje y no debe
+     * esperar a que terminen las peticiones en curso del cliente.
+     */
+    @Override
+    protected void closeConnection() {
+        this.outbound.clear();
+        this.chatServer.getTimers().schedule(this::close, 0);
+    }
+
+    /**
+     * Metodo que cierra la conexion, como si el cliente hubiera cerrado el socket. Solo tiene efecto la primera vez que
+     * se invoca.
+     */
+    void close() {
+        synchronized (this.inbound) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            log.info("Cerrando conexion.");
+            this.outbound.clear();
+            this.closed();
+        }
+    }
+
+    /**
+     * Metodo que indica si la conexion fue cerrada.
+     * @return true si la conexion fue cerrada por el cliente o por el servidor.
+     */
+    boolean isClosed() {
+        return this.closed;
+    }
+}
@@ -0,0 +1,95 @@
+package chat.transport;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clase que representa un transporte en memoria, sin sockets, para embeber el servidor en otra aplicacion o medir el
+ * ruteo y la entrega de mensajes sin el costo de la pila TCP. Cada {@link #connect()} crea un {@link InProcessClient}
+ * atendido por su propia sesion, con el mismo protocolo, limites y metricas que una conexion TCP.
+ * <p>
+ * {@link #serve(ChatServer, ChatMessages)} no atiende conexiones por si mismo: publica el servidor para que
+ * {@link #connect()} pueda crear sesiones y espera hasta que se cierre el transporte.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class InProcessTransport implements Transport {
+
+    private static Logger log = LogManager.getLogger(InProcessTransport.class);
+
+    private static final long CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final CountDownLatch started;
+    private final CountDownLatch stopped;
+    private volatile ChatServer chatServer;
+    private volatile ChatMessages globalMessages;
+
+    /**
+     * Constructor de la clase.
+     */
+    public InProcessTransport() {
+        this.started = new CountDownLatch(1);
+        this.stopped = new CountDownLatch(1);
+    }
+
+    /**
+     * Metodo que habilita las conexiones en memoria y espera hasta que se cierre el transporte.
+     * @param chatServer servidor al que pertenecen las sesiones.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     * @throws IOException si el thread fue interrumpido mientras esperaba.
+     */
+    @Override
+    public void serve(ChatServer chatServer, ChatMessages globalMessages) throws IOException {
+        this.chatServer = chatServer;
+        this.globalMessages = globalMessages;
+        this.started.countDown();
+        log.info("Server atendiendo conexiones en memoria");
+        try {
+            this.stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Transporte interrumpido");
+        }
+    }
+
+    /**
+     * Metodo que conecta un nuevo cliente. Si el servidor aun no comenzo a atender conexiones se espera a que lo haga,
+     * como maximo {@value #CONNECT_TIMEOUT_MILLIS} milisegundos.
+     * @return cliente conectado.
+     * @throws ConnectException si el servidor no atiende conexiones o el transporte fue cerrado.
+     * @throws InterruptedIOException si el thread fue interrumpido mientras esperaba.
+     */
+    public InProcessClient connect() throws IOException {
+        try {
+            if (!this.started.await(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new ConnectException("El servidor no atiende conexiones");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Conexion interrumpida");
+        }
+        if (this.stopped.getCount() == 0) {
+            throw new ConnectException("Transporte cerrado");
+        }
+        InProcessSession session = new InProcessSession(this.chatServer, this.globalMessages);
+        log.debug("Conexion en memoria aceptada");
+        return new InProcessClient(session);
+    }
+
+    /**
+     * Metodo que deja de aceptar conexiones. Los clientes conectados continuan hasta que se cierran.
+     */
+    @Override
+    public void close() {
+        this.stopped.countDown();
+    }
+}
@@ -0,0 +1,57 @@
+package chat.transport;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.nio.NioServer;
+
+import java.io.IOException;
+
+/**
+ * Clase que representa el transporte TCP del modo no bloqueante: atiende todas las conexiones con un conjunto fijo de
+ * threads de entrada/salida basados en selectores.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see NioServer
+ * @see chat.ServerConfig.Mode#NIO
+ */
+public class NioTransport implements Transport {
+
+    private final int port;
+    private final int ioThreads;
+    private volatile NioServer nioServer;
+
+    /**
+     * Constructor de la clase.
+     * @param port numero de puerto por el que se escucharan las peticiones.
+     * @param ioThreads cantidad de threads de entrada/salida.
+     */
+    public NioTransport(int port, int ioThreads) {
+        this.port = port;
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Metodo que atiende todas las conexiones con un conjunto fijo de threads de entrada/salida.
+     * @param chatServer servidor al que pertenecen las sesiones.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     * @throws IOException si no es posible escuchar en el puerto o se cerro el transporte.
+     */
+    @Override
+    public void serve(ChatServer chatServer, ChatMessages globalMessages) throws IOException {
+        this.nioServer = new NioServer(chatServer, this.port, this.ioThreads, globalMessages);
+        this.nioServer.serve();
+    }
+
+    /**
+     * Metodo que deja de aceptar conexiones y detiene los threads de entrada/salida.
+     * @throws IOException si no es posible cerrar el canal del servidor.
+     */
+    @Override
+    public void close() throws IOException {
+        NioServer nioServer = this.nioServer;
+        if (nioServer != null) {
+            nioServer.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package chat.transport;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ChatServerThread;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Clase que representa el transporte TCP del modo bloqueante: escucha en un puerto y atiende cada conexion con un
+ * {@link ChatServerThread}, es decir con un thread por cliente.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see chat.ServerConfig.Mode#BLOCKING
+ */
+public class SocketTransport implements Transport {
+
+    private static Logger log = LogManager.getLogger(SocketTransport.class);
+
+    private final int port;
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Constructor de la clase.
+     * @param port numero de puerto por el que se escucharan las peticiones.
+     */
+    public SocketTransport(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Metodo que escucha por nuevas peticiones y crea un thread por cada cliente.
+     * @param chatServer servidor al que pertenecen las sesiones.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     * @throws IOException si no es posible escuchar en el puerto o se cerro el transporte.
+     */
+    @Override
+    public void serve(ChatServer chatServer, ChatMessages globalMessages) throws IOException {
+        this.serverSocket = new ServerSocket(this.port);
+        Socket clientSocket;
+        // Escucha por peticiones provenientes del cliente
+        while(true) {
+            log.info("Server escuchando en el puerto: " + this.port);
+            clientSocket = this.serverSocket.accept();
+            ChatServerThread chatServerThread = new ChatServerThread(chatServer, clientSocket, globalMessages);
+            Thread thread = new Thread(chatServerThread);
+            thread.start();
+            log.info("Conexion aceptada, thread id: {}", thread.getId());
+        }
+    }
+
+    /**
+     * Metodo que deja de escuchar en el puerto. Las conexiones aceptadas continuan hasta que el cliente las cierra.
+     * @throws IOException si no es posible cerrar el socket del servidor.
+     */
+    @Override
+    public void close() throws IOException {
+        ServerSocket serverSocket = this.serverSocket;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package chat.transport;
+
+import chat.ChatMessages;
+import chat.ChatServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Interfaz que representa la forma en que llegan al servidor las conexiones de los clientes. Cada conexion se atiende
+ * con una sesion ({@link chat.ChatSession}) que decodifica sus peticiones y recibe sus mensajes, de modo que el resto
+ * del servidor no depende de como se transportan los frames.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see SocketTransport
+ * @see NioTransport
+ * @see InProcessTransport
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Metodo que atiende las conexiones nuevas hasta que se cierra el transporte. Bloquea al thread que lo invoca.
+     * @param chatServer servidor al que pertenecen las sesiones.
+     * @param globalMessages contenedor de los mensajes del chat global.
+     * @throws IOException si no es posible atender conexiones o el transporte se cerro mientras las esperaba.
+     */
+    void serve(ChatServer chatServer, ChatMessages globalMessages) throws IOException;
+
+    /**
+     * Metodo que deja de atender conexiones nuevas, lo que finaliza {@link #serve(ChatServer, ChatMessages)}.
+     * @throws IOException si no es posible liberar los recursos del transporte.
+     */
+    @Override
+    void close() throws IOException;
+}
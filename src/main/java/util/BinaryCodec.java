@@ -0,0 +1,118 @@
+package util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Clase que codifica los frames de la version binaria del protocolo {@link BinaryCodes}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class BinaryCodec {
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Metodo que codifica un frame cuyos campos son todos de texto.
+     * @param opcode opcode del frame.
+     * @param fields campos del frame, en el orden del protocolo.
+     * @return buffer listo para ser leido, con la longitud y el contenido del frame.
+     */
+    public static ByteBuffer encode(byte opcode, String... fields) {
+        int length = 1;
+        for (String field : fields) {
+            length += 1 + 4 + encodedLength(field);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + length);
+        buffer.putInt(length);
+        buffer.put(opcode);
+        for (String field : fields) {
+            buffer.put(BinaryCodes.TYPE_STRING);
+            buffer.putInt(encodedLength(field));
+            put(buffer, field);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Metodo que codifica un frame BAT con varias peticiones, que el servidor atiende en orden.
+     * @param requests frames de las peticiones, listos para ser leidos; no se modifica su posicion.
+     * @return buffer listo para ser leido, con la longitud y el contenido del frame.
+     * @see BinaryCodes#BATCH
+     */
+    public static ByteBuffer batch(ByteBuffer... requests) {
+        int content = 0;
+        for (ByteBuffer request : requests) {
+            content += request.remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + 1 + 1 + 4 + content);
+        buffer.putInt(1 + 1 + 4 + content);
+        buffer.put(BinaryCodes.BATCH);
+        buffer.put(BinaryCodes.TYPE_BYTES);
+        buffer.putInt(content);
+        for (ByteBuffer request : requests) {
+            buffer.put(request.duplicate());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Metodo que calcula la cantidad de bytes que ocupa un texto en UTF-8, sin codificarlo.
+     * @param text texto a medir.
+     * @return cantidad de bytes.
+     */
+    public static int encodedLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Metodo que escribe un texto en UTF-8 directamente en el buffer, con el mismo resultado que
+     * {@link String#getBytes(java.nio.charset.Charset)}: los surrogates sin pareja se reemplazan por '?'.
+     * @param buffer buffer destino.
+     * @param text texto a escribir.
+     */
+    private static void put(ByteBuffer buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    buffer.put((byte) '?');
+                }
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package util;
+
+/**
+ * Clase que contiene la version binaria (v2) del protocolo de comunicacion entre el servidor y el cliente.
+ * <p>
+ * Un cliente solicita la version 2 enviando como primer mensaje, con el formato de texto, HLO|2. El servidor responde
+ * HLO|2 con el formato de texto y a partir de ese momento ambos extremos utilizan frames binarios:
+ * <pre>
+ * [int32 longitud][uint8 opcode][campo]...
+ * campo: [uint8 tipo][datos]
+ *   STRING: [int32 longitud][bytes UTF-8]
+ *   LONG:   [int64]
+ *   BYTES:  [int32 longitud][bytes]
+ * </pre>
+ * La longitud del frame no incluye los cuatro bytes de la propia longitud. Los campos de cada opcode son los mismos,
+ * y en el mismo orden, que los de su equivalente en {@link MessagesCodes}.
+ * <p>
+ * Si se negocio la funcionalidad {@link MessagesCodes#FEATURE_COMPRESSION}, un frame puede enviarse comprimido como
+ * un frame {@link #COMPRESSED} con un unico campo BYTES: el frame original sin su longitud (opcode y campos),
+ * comprimido con deflate en formato zlib (ver {@link FrameCompressor}).
+ * <p>
+ * Si se negocio la funcionalidad {@link MessagesCodes#FEATURE_BATCH}, el cliente puede enviar varias peticiones en un
+ * frame {@link #BATCH} con un unico campo BYTES: las peticiones, cada una con su longitud, una a continuacion de la
+ * otra. Un frame BATCH puede enviarse comprimido, pero no puede contener frames BATCH ni COMPRESSED.
+ * <p>
+ * Si se negocio la funcionalidad {@link MessagesCodes#FEATURE_TRANSFER}, el contenido de los archivos viaja en frames
+ * {@link #CHUNK} con un campo STRING, el id de la transferencia, y un campo BYTES con la porcion del contenido. El
+ * cliente solo puede enviar la cantidad de frames CHUNK que el servidor le admitio con frames {@link #CREDIT}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class BinaryCodes {
+
+    public static final int VERSION_TEXT = 1;
+    public static final int VERSION_BINARY = 2;
+
+    public static final byte NEW_USER = 1; // NWU username
+    public static final byte GLOBAL_MESSAGE = 2; // GBL [sender] message
+    public static final byte PRIVATE_MESSAGE = 3; // PRV sender receiver message
+    public static final byte GET_USERS = 4; // GTU username...
+    public static final byte REMOVE_USER = 5; // RMV username
+    public static final byte SNAPSHOT = 6; // SNP version username...
+    public static final byte PRESENCE_DELTA = 7; // DLT version (+|-)username...
+    public static final byte HISTORY = 8; // HIS (last|since) valor, o HIS proxima secuencia
+    public static final byte JOIN_ROOM = 9; // JON room [username]
+    public static final byte LEAVE_ROOM = 10; // LVE room [username]
+    public static final byte ROOM_MESSAGE = 11; // ROM room [sender] message
+    public static final byte NODE = 12; // NOD nodeId - Solo en los enlaces entre nodos del cluster
+    public static final byte COMPRESSED = 13; // ZIP bytes - Frame comprimido, ver FrameCompressor
+    public static final byte PING = 14; // PIN
+    public static final byte PONG = 15; // PON
+    public static final byte RESUME = 16; // RSM [token [recibidos]]
+    public static final byte BATCH = 17; // BAT bytes - Varias peticiones en un unico frame
+    public static final byte ACK = 18; // ACK secuencia
+    public static final byte ERROR = 19; // ERR motivo codigo [id]
+    public static final byte FILE = 20; // FIL id (receiver|sender) nombre bytes
+    public static final byte CHUNK = 21; // CHK id bytes - Porcion del contenido de un archivo
+    public static final byte CREDIT = 22; // CRD id cantidad bytes
+    public static final byte MAX_OPCODE = CREDIT;
+
+    public static final byte TYPE_STRING = 1;
+    public static final byte TYPE_LONG = 2;
+    public static final byte TYPE_BYTES = 3;
+
+    public static final int HEADER_LENGTH = 4;
+
+    private BinaryCodes() {
+    }
+
+    /**
+     * Metodo que obtiene el opcode binario equivalente a un codigo de texto.
+     * @param code codigo de {@link MessagesCodes}.
+     * @return opcode binario, o -1 si el codigo no tiene equivalente.
+     */
+    public static byte opcodeOf(String code) {
+        switch (code) {
+            case MessagesCodes.NEW_USER:
+                return NEW_USER;
+            case MessagesCodes.GLOBAL_MESSAGE:
+                return GLOBAL_MESSAGE;
+            case MessagesCodes.PRIVATE_MESSAGE:
+                return PRIVATE_MESSAGE;
+            case MessagesCodes.GET_USERS:
+                return GET_USERS;
+            case MessagesCodes.REMOVE_USER:
+                return REMOVE_USER;
+            case MessagesCodes.SNAPSHOT:
+                return SNAPSHOT;
+            case MessagesCodes.PRESENCE_DELTA:
+                return PRESENCE_DELTA;
+            case MessagesCodes.HISTORY:
+                return HISTORY;
+            case MessagesCodes.JOIN_ROOM:
+                return JOIN_ROOM;
+            case MessagesCodes.LEAVE_ROOM:
+                return LEAVE_ROOM;
+            case MessagesCodes.ROOM_MESSAGE:
+                return ROOM_MESSAGE;
+            case MessagesCodes.NODE:
+                return NODE;
+            case MessagesCodes.COMPRESSED:
+                return COMPRESSED;
+            case MessagesCodes.PING:
+                return PING;
+            case MessagesCodes.PONG:
+                return PONG;
+            case MessagesCodes.RESUME:
+                return RESUME;
+            case MessagesCodes.BATCH:
+                return BATCH;
+            case MessagesCodes.ACK:
+                return ACK;
+            case MessagesCodes.ERROR:
+                return ERROR;
+            case MessagesCodes.FILE:
+                return FILE;
+            case MessagesCodes.CHUNK:
+                return CHUNK;
+            case MessagesCodes.CREDIT:
+                return CREDIT;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Metodo que obtiene el codigo de texto equivalente a un opcode binario.
+     * @param opcode opcode binario.
+     * @return codigo de {@link MessagesCodes}, o null si el opcode no existe.
+     */
+    public static String codeOf(byte opcode) {
+        switch (opcode) {
+            case NEW_USER:
+                return MessagesCodes.NEW_USER;
+            case GLOBAL_MESSAGE:
+                return MessagesCodes.GLOBAL_MESSAGE;
+            case PRIVATE_MESSAGE:
+                return MessagesCodes.PRIVATE_MESSAGE;
+            case GET_USERS:
+                return MessagesCodes.GET_USERS;
+            case REMOVE_USER:
+                return MessagesCodes.REMOVE_USER;
+            case SNAPSHOT:
+                return MessagesCodes.SNAPSHOT;
+            case PRESENCE_DELTA:
+                return MessagesCodes.PRESENCE_DELTA;
+            case HISTORY:
+                return MessagesCodes.HISTORY;
+            case JOIN_ROOM:
+                return MessagesCodes.JOIN_ROOM;
+            case LEAVE_ROOM:
+                return MessagesCodes.LEAVE_ROOM;
+            case ROOM_MESSAGE:
+                return MessagesCodes.ROOM_MESSAGE;
+            case NODE:
+                return MessagesCodes.NODE;
+            case COMPRESSED:
+                return MessagesCodes.COMPRESSED;
+            case PING:
+                return MessagesCodes.PING;
+            case PONG:
+                return MessagesCodes.PONG;
+            case RESUME:
+                return MessagesCodes.RESUME;
+            case BATCH:
+                return MessagesCodes.BATCH;
+            case ACK:
+                return MessagesCodes.ACK;
+            case ERROR:
+                return MessagesCodes.ERROR;
+            case FILE:
+                return MessagesCodes.FILE;
+            case CHUNK:
+                return MessagesCodes.CHUNK;
+            case CREDIT:
+                return MessagesCodes.CREDIT;
+            default:
+                return null;
+        }
+    }
+}
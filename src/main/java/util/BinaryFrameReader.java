@@ -0,0 +1,235 @@
+package util;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Clase que decodifica los frames de la version binaria del protocolo {@link BinaryCodes} directamente sobre el buffer
+ * de lectura de la conexion. Solo registra la posicion y longitud de cada campo, de modo que decodificar un frame no
+ * crea objetos; los campos de texto se convierten en String unicamente cuando se solicitan.
+ * <p>
+ * Una instancia se reutiliza para todos los frames de una conexion. Los campos del ultimo frame leido son validos
+ * mientras no se modifique el contenido del buffer.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class BinaryFrameReader implements FrameReader {
+
+    public static final int MAX_FIELDS = 16;
+
+    private final int maxFrameLength;
+    private final byte[] types;
+    private final int[] offsets;
+    private final int[] lengths;
+    private ByteBuffer buffer;
+    private byte opcode;
+    private int fieldCount;
+
+    /**
+     * Constructor de la clase.
+     * @param maxFrameLength longitud maxima admitida para un frame, sin contar la cabecera.
+     */
+    public BinaryFrameReader(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+        this.types = new byte[MAX_FIELDS];
+        this.offsets = new int[MAX_FIELDS];
+        this.lengths = new int[MAX_FIELDS];
+    }
+
+    /**
+     * Metodo que intenta decodificar el frame que comienza en la posicion actual del buffer. Si el frame esta completo
+     * avanza la posicion hasta su final; si no, no consume ningun byte.
+     * @param buffer buffer en modo lectura con los bytes recibidos.
+     * @return true si se decodifico un frame completo.
+     * @throws ProtocolException si el frame es invalido o supera la longitud maxima.
+     */
+    public boolean next(ByteBuffer buffer) throws ProtocolException {
+        int start = buffer.position();
+        if (buffer.remaining() < BinaryCodes.HEADER_LENGTH) {
+            return false;
+        }
+        int length = this.frameLength(buffer);
+        if (buffer.remaining() < BinaryCodes.HEADER_LENGTH + length) {
+            return false;
+        }
+        int index = start + BinaryCodes.HEADER_LENGTH;
+        int end = index + length;
+        this.buffer = buffer;
+        this.opcode = buffer.get(index++);
+        this.fieldCount = 0;
+        while (index < end) {
+            if (this.fieldCount == MAX_FIELDS) {
+                throw new ProtocolException("El frame supera los " + MAX_FIELDS + " campos");
+            }
+            byte type = buffer.get(index++);
+            int fieldLength;
+            if (type == BinaryCodes.TYPE_LONG) {
+                fieldLength = 8;
+            } else if (type == BinaryCodes.TYPE_STRING || type == BinaryCodes.TYPE_BYTES) {
+                if (index + 4 > end) {
+                    throw new ProtocolException("Campo truncado");
+                }
+                fieldLength = buffer.getInt(index);
+                index += 4;
+            } else {
+                throw new ProtocolException("Tipo de campo desconocido: " + type);
+            }
+            if (fieldLength < 0 || fieldLength > end - index) {
+                throw new ProtocolException("Campo truncado");
+            }
+            this.types[this.fieldCount] = type;
+            this.offsets[this.fieldCount] = index;
+            this.lengths[this.fieldCount] = fieldLength;
+            this.fieldCount++;
+            index += fieldLength;
+        }
+        buffer.position(end);
+        return true;
+    }
+
+    /**
+     * Metodo que valida y retorna la longitud del frame que comienza en la posicion actual del buffer.
+     * @param buffer buffer con al menos la cabecera del frame.
+     * @return longitud del frame sin contar la cabecera.
+     * @throws ProtocolException si la longitud es invalida o supera la maxima.
+     */
+    public int frameLength(ByteBuffer buffer) throws ProtocolException {
+        int length = buffer.getInt(buffer.position());
+        if (length < 1 || length > this.maxFrameLength) {
+            throw new ProtocolException("Longitud de frame invalida: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Metodo para obtener el opcode del ultimo frame decodificado.
+     * @return opcode de {@link BinaryCodes}.
+     */
+    @Override
+    public byte opcode() {
+        return opcode;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de campos del ultimo frame decodificado.
+     * @return cantidad de campos.
+     */
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Metodo para obtener el tipo de un campo.
+     * @param field indice del campo.
+     * @return tipo de {@link BinaryCodes}.
+     */
+    public byte fieldType(int field) {
+        this.check(field);
+        return this.types[field];
+    }
+
+    /**
+     * Metodo para obtener la posicion de los datos de un campo dentro del buffer.
+     * @param field indice del campo.
+     * @return posicion absoluta en el buffer.
+     */
+    public int fieldOffset(int field) {
+        this.check(field);
+        return this.offsets[field];
+    }
+
+    /**
+     * Metodo para obtener la longitud de los datos de un campo.
+     * @param field indice del campo.
+     * @return cantidad de bytes.
+     */
+    public int fieldLength(int field) {
+        this.check(field);
+        return this.lengths[field];
+    }
+
+    /**
+     * Metodo que convierte un campo de texto en String.
+     * @param field indice del campo.
+     * @return el texto del campo.
+     * @throws ProtocolException si el campo no existe o no es de texto.
+     */
+    @Override
+    public String getString(int field) throws ProtocolException {
+        if (field >= this.fieldCount || this.types[field] != BinaryCodes.TYPE_STRING) {
+            throw new ProtocolException("El campo " + field + " no es de texto");
+        }
+        int offset = this.offsets[field];
+        int length = this.lengths[field];
+        if (this.buffer.hasArray()) {
+            return new String(this.buffer.array(), this.buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = this.buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Metodo que copia el contenido de un campo de bytes en un arreglo provisto, sin crear objetos.
+     * @param field indice del campo.
+     * @param destination arreglo destino, con al menos {@link #fieldLength(int)} posiciones a partir de offset.
+     * @param offset posicion del arreglo en la que se copia el campo.
+     * @return cantidad de bytes copiados.
+     * @throws ProtocolException si el campo no existe o no es de bytes.
+     */
+    public int getBytes(int field, byte[] destination, int offset) throws ProtocolException {
+        if (field >= this.fieldCount || this.types[field] != BinaryCodes.TYPE_BYTES) {
+            throw new ProtocolException("El campo " + field + " no es de bytes");
+        }
+        int length = this.lengths[field];
+        if (this.buffer.hasArray()) {
+            System.arraycopy(this.buffer.array(), this.buffer.arrayOffset() + this.offsets[field], destination, offset, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = this.buffer.get(this.offsets[field] + i);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Metodo que obtiene una vista del contenido de un campo de bytes, sin copiarlo. La vista comparte el contenido del
+     * buffer, por lo que es valida mientras este no se modifique y no debe escribirse.
+     * @param field indice del campo.
+     * @return buffer posicionado al comienzo del campo, con su longitud como limite.
+     * @throws ProtocolException si el campo no existe o no es de bytes.
+     */
+    public ByteBuffer getView(int field) throws ProtocolException {
+        if (field >= this.fieldCount || this.types[field] != BinaryCodes.TYPE_BYTES) {
+            throw new ProtocolException("El campo " + field + " no es de bytes");
+        }
+        ByteBuffer view = this.buffer.duplicate();
+        view.limit(this.offsets[field] + this.lengths[field]);
+        view.position(this.offsets[field]);
+        return view;
+    }
+
+    /**
+     * Metodo que obtiene el valor de un campo numerico.
+     * @param field indice del campo.
+     * @return el valor del campo.
+     * @throws ProtocolException si el campo no existe o no es numerico.
+     */
+    public long getLong(int field) throws ProtocolException {
+        if (field >= this.fieldCount || this.types[field] != BinaryCodes.TYPE_LONG) {
+            throw new ProtocolException("El campo " + field + " no es numerico");
+        }
+        return this.buffer.getLong(this.offsets[field]);
+    }
+
+    private void check(int field) {
+        if (field < 0 || field >= this.fieldCount) {
+            throw new IndexOutOfBoundsException("Campo inexistente: " + field);
+        }
+    }
+}
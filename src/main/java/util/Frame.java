@@ -0,0 +1,144 @@
+package util;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Clase que representa un mensaje del protocolo {@link MessagesCodes} listo para ser enviado. El contenido es
+ * inmutable, por lo que un mismo frame puede encolarse en las conexiones de todos los destinatarios: se codifica a lo
+ * sumo una vez por version del protocolo y cada conexion escribe a partir de su propia vista de solo lectura, sin
+ * volver a armar ni codificar el mensaje.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see BinaryCodes
+ */
+public class Frame {
+
+    private final String code;
+    private final byte opcode;
+    private final String[] fields;
+    private volatile ByteBuffer text;
+    private volatile ByteBuffer binary;
+    private volatile ByteBuffer compressed;
+
+    private Frame(String code, String[] fields) {
+        this.code = code;
+        this.opcode = BinaryCodes.opcodeOf(code);
+        this.fields = fields;
+    }
+
+    /**
+     * Metodo que crea un frame a partir de su codigo y sus campos.
+     * @param code codigo de {@link MessagesCodes}.
+     * @param fields campos del mensaje, en el orden del protocolo.
+     * @return frame listo para ser enviado.
+     */
+    public static Frame of(String code, String... fields) {
+        return new Frame(code, fields);
+    }
+
+    /**
+     * Metodo que crea un frame a partir de sus codificaciones ya armadas, por ejemplo leidas del historial, de modo que
+     * se envien sin volver a codificarlas ni copiarlas.
+     * @param code codigo de {@link MessagesCodes}.
+     * @param text codificacion de texto, o null si el mensaje no puede representarse en esa version.
+     * @param binary codificacion binaria, o null si el mensaje no puede representarse en esa version.
+     * @return frame listo para ser enviado.
+     */
+    public static Frame encoded(String code, ByteBuffer text, ByteBuffer binary) {
+        Frame frame = new Frame(code, null);
+        frame.text = text == null ? null : text.asReadOnlyBuffer();
+        frame.binary = binary == null ? null : binary.asReadOnlyBuffer();
+        return frame;
+    }
+
+    /**
+     * Metodo para obtener el codigo del mensaje.
+     * @return codigo de {@link MessagesCodes}.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Metodo para obtener el opcode binario del mensaje, calculado una unica vez al crear el frame.
+     * @return opcode de {@link BinaryCodes}, o -1 si el codigo no tiene equivalente binario.
+     */
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Metodo que retorna una vista de solo lectura del frame codificado para la version del protocolo indicada, con
+     * posicion y limite propios, para que una conexion la consuma al escribir.
+     * @param version version del protocolo de la conexion.
+     * @return vista del contenido codificado.
+     * @throws IOException si el mensaje no puede representarse en esa version del protocolo.
+     */
+    public ByteBuffer view(int version) throws IOException {
+        return this.encoded(version).duplicate();
+    }
+
+    /**
+     * Metodo que retorna una vista de solo lectura del frame codificado para una conexion que negocio la compresion.
+     * En la version binaria el frame se comprime a lo sumo una vez y todas las conexiones comparten el resultado; si
+     * el frame no se comprime, por su tamano o porque el resultado no es mas chico, se envia sin comprimir.
+     * @param version version del protocolo de la conexion.
+     * @param compressor compresor del servidor, o null si la conexion no negocio la compresion.
+     * @return vista del contenido codificado.
+     * @throws IOException si el mensaje no puede representarse en esa version del protocolo.
+     * @see FrameCompressor
+     */
+    public ByteBuffer view(int version, FrameCompressor compressor) throws IOException {
+        if (compressor == null || version != BinaryCodes.VERSION_BINARY) {
+            return this.view(version);
+        }
+        ByteBuffer encoded = this.compressed;
+        if (encoded == null) {
+            ByteBuffer binary = this.encoded(version);
+            ByteBuffer result = compressor.compress(binary);
+            encoded = result == null ? binary : result.asReadOnlyBuffer();
+            this.compressed = encoded;
+        }
+        return encoded.duplicate();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de bytes del frame en la version del protocolo indicada.
+     * @param version version del protocolo.
+     * @return cantidad de bytes, incluyendo la cabecera.
+     * @throws IOException si el mensaje no puede representarse en esa version del protocolo.
+     */
+    public int length(int version) throws IOException {
+        return this.encoded(version).remaining();
+    }
+
+    private ByteBuffer encoded(int version) throws IOException {
+        if (this.fields == null) {
+            ByteBuffer encoded = version == BinaryCodes.VERSION_BINARY ? this.binary : this.text;
+            if (encoded == null) {
+                throw new ProtocolException("Mensaje sin codificacion para la version " + version + ": " + this.code);
+            }
+            return encoded;
+        }
+        if (version == BinaryCodes.VERSION_BINARY) {
+            ByteBuffer encoded = this.binary;
+            if (encoded == null) {
+                if (this.opcode < 0) {
+                    throw new ProtocolException("Mensaje sin equivalente binario: " + this.code);
+                }
+                encoded = BinaryCodec.encode(this.opcode, this.fields).asReadOnlyBuffer();
+                this.binary = encoded;
+            }
+            return encoded;
+        }
+        ByteBuffer encoded = this.text;
+        if (encoded == null) {
+            encoded = FrameCodec.encode(this.code, this.fields).asReadOnlyBuffer();
+            this.text = encoded;
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,169 @@
+package util;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * Clase que codifica y decodifica los mensajes del protocolo {@link MessagesCodes} con el mismo formato que utilizan
+ * {@link java.io.DataOutputStream#writeUTF(String)} y {@link java.io.DataInputStream#readUTF()}: dos bytes con la
+ * longitud seguidos del texto en UTF-8 modificado. Permite atender clientes existentes sin utilizar streams.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class FrameCodec {
+
+    public static final int HEADER_LENGTH = 2;
+    public static final int MAX_LENGTH = 65535;
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Metodo que codifica un mensaje como lo haria writeUTF.
+     * @param message mensaje a codificar.
+     * @return buffer listo para ser leido, con la longitud y el contenido del mensaje.
+     * @throws UTFDataFormatException si el mensaje codificado supera los 65535 bytes.
+     */
+    public static ByteBuffer encode(String message) throws UTFDataFormatException {
+        int length = encodedLength(message);
+        if (length > MAX_LENGTH) {
+            throw new UTFDataFormatException("Mensaje demasiado largo: " + length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + length);
+        buffer.putShort((short) length);
+        put(buffer, message);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Metodo que codifica un mensaje a partir de su codigo y sus campos, separados por {@link MessagesCodes#SEPARATOR},
+     * sin armar antes el mensaje completo como String.
+     * @param code codigo de {@link MessagesCodes}.
+     * @param fields campos del mensaje, en el orden del protocolo.
+     * @return buffer listo para ser leido, igual al que se obtiene codificando el mensaje completo.
+     * @throws UTFDataFormatException si el mensaje codificado supera los 65535 bytes.
+     */
+    public static ByteBuffer encode(String code, String[] fields) throws UTFDataFormatException {
+        int length = encodedLength(code);
+        for (String field : fields) {
+            length += 1 + encodedLength(field);
+        }
+        if (length > MAX_LENGTH) {
+            throw new UTFDataFormatException("Mensaje demasiado largo: " + length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + length);
+        buffer.putShort((short) length);
+        put(buffer, code);
+        for (String field : fields) {
+            buffer.put((byte) MessagesCodes.SEPARATOR.charAt(0));
+            put(buffer, field);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void put(ByteBuffer buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                buffer.put((byte) c);
+            } else if (c > 0x07FF) {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Metodo que calcula la cantidad de bytes que ocupa un mensaje en UTF-8 modificado.
+     * @param message mensaje a medir.
+     * @return cantidad de bytes, sin contar la cabecera.
+     */
+    public static int encodedLength(String message) {
+        int length = 0;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Metodo que intenta extraer un mensaje completo del buffer. Si el buffer no contiene el mensaje completo
+     * no consume ningun byte.
+     * @param buffer buffer en modo lectura con los bytes recibidos.
+     * @return el mensaje decodificado, o null si aun no se recibio completo.
+     * @throws UTFDataFormatException si el contenido no es UTF-8 modificado valido.
+     */
+    public static String decode(ByteBuffer buffer) throws UTFDataFormatException {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getShort(start) & 0xFFFF;
+        if (buffer.remaining() < HEADER_LENGTH + length) {
+            return null;
+        }
+        char[] chars = new char[length];
+        int end = start + HEADER_LENGTH + length;
+        int count = decode(buffer, start + HEADER_LENGTH, end, chars);
+        buffer.position(end);
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Metodo que decodifica una porcion del buffer en UTF-8 modificado sobre un arreglo provisto, sin crear objetos.
+     * @param buffer buffer con los bytes a decodificar.
+     * @param index posicion absoluta del primer byte.
+     * @param end posicion absoluta siguiente al ultimo byte.
+     * @param chars arreglo destino, con al menos end - index posiciones.
+     * @return cantidad de caracteres decodificados.
+     * @throws UTFDataFormatException si el contenido no es UTF-8 modificado valido.
+     */
+    public static int decode(ByteBuffer buffer, int index, int end, char[] chars) throws UTFDataFormatException {
+        int count = 0;
+        while (index < end) {
+            int b = buffer.get(index) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                index++;
+            } else if ((b & 0xE0) == 0xC0) {
+                if (index + 2 > end) {
+                    throw new UTFDataFormatException("Mensaje truncado");
+                }
+                int b2 = buffer.get(index + 1);
+                if ((b2 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("Byte invalido en la posicion " + (index + 1));
+                }
+                chars[count++] = (char) (((b & 0x1F) << 6) | (b2 & 0x3F));
+                index += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                if (index + 3 > end) {
+                    throw new UTFDataFormatException("Mensaje truncado");
+                }
+                int b2 = buffer.get(index + 1);
+                int b3 = buffer.get(index + 2);
+                if (((b2 & 0xC0) != 0x80) || ((b3 & 0xC0) != 0x80)) {
+                    throw new UTFDataFormatException("Byte invalido en la posicion " + (index + 1));
+                }
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+                index += 3;
+            } else {
+                throw new UTFDataFormatException("Byte invalido en la posicion " + index);
+            }
+        }
+        return count;
+    }
+}
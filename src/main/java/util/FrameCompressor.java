@@ -0,0 +1,187 @@
+package util;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Clase que comprime los frames de la version binaria del protocolo para las conexiones que negociaron
+ * {@link MessagesCodes#FEATURE_COMPRESSION}. Un frame comprimido es un frame {@link BinaryCodes#COMPRESSED} cuyo unico
+ * campo contiene el frame original sin su longitud, comprimido con deflate en formato zlib. Si se configura un
+ * diccionario, el compresor lo utiliza como diccionario inicial y el formato zlib incluye su identificador, de modo
+ * que un cliente sin el mismo diccionario detecta la diferencia al descomprimir.
+ * <p>
+ * Solo se comprimen los frames cuyo contenido alcanza el umbral configurado, y solo si el resultado es mas chico que el
+ * original. Una instancia es compartida por todas las conexiones y puede utilizarse desde cualquier thread: cada
+ * compresion toma un {@link Deflater} de un pool acotado, o crea uno si el pool esta vacio, y lo devuelve al terminar;
+ * los que no entran en el pool se liberan con {@link Deflater#end()}. El contenido se entrega al {@link Deflater} en
+ * porciones de tamano fijo, por lo que ni el pool ni los threads conservan buffers del tamano de los frames.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see Frame#view(int, FrameCompressor)
+ * @see FrameInflater
+ */
+public class FrameCompressor implements Closeable {
+
+    // Opcode, tipo y longitud del campo que se agregan al contenido comprimido
+    private static final int OVERHEAD = 1 + 1 + 4;
+    private static final int CHUNK = 16 * 1024;
+
+    private final int threshold;
+    private final int level;
+    private final byte[] dictionary;
+    private final BlockingQueue<Slot> pool;
+    private final LongAdder compressedFrames;
+    private final LongAdder savedBytes;
+
+    /**
+     * Constructor de la clase.
+     * @param threshold longitud minima, en bytes y sin contar la cabecera, de los frames que se comprimen.
+     * @param level nivel de compresion de {@link Deflater}, entre 0 y 9.
+     * @param dictionary diccionario inicial compartido con los clientes, o null.
+     */
+    public FrameCompressor(int threshold, int level, byte[] dictionary) {
+        this.threshold = threshold;
+        this.level = level;
+        this.dictionary = dictionary;
+        this.pool = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+        this.compressedFrames = new LongAdder();
+        this.savedBytes = new LongAdder();
+    }
+
+    /**
+     * Metodo que comprime un frame de la version binaria.
+     * @param frame buffer con el frame completo, incluyendo la cabecera; su posicion no se modifica.
+     * @return el frame comprimido, o null si el frame no alcanza el umbral o comprimido no resulta mas chico.
+     */
+    public ByteBuffer compress(ByteBuffer frame) {
+        int length = frame.remaining() - BinaryCodes.HEADER_LENGTH;
+        if (length < this.threshold || length <= OVERHEAD) {
+            return null;
+        }
+        ByteBuffer content = frame.duplicate();
+        content.position(content.position() + BinaryCodes.HEADER_LENGTH);
+        Slot slot = this.pool.poll();
+        if (slot == null) {
+            slot = new Slot(this.level);
+        }
+        int compressed;
+        byte[] output;
+        try {
+            Deflater deflater = slot.deflater;
+            deflater.reset();
+            if (this.dictionary != null) {
+                deflater.setDictionary(this.dictionary);
+            }
+            // Solo se acepta un resultado mas chico que el original, por lo que la salida no necesita mas espacio.
+            // La salida reserva al comienzo el lugar de la cabecera y crece a medida que se necesita
+            int start = BinaryCodes.HEADER_LENGTH + OVERHEAD;
+            int limit = start + length - OVERHEAD;
+            output = new byte[Math.min(limit, start + CHUNK)];
+            int position = start;
+            while (!deflater.finished()) {
+                if (deflater.needsInput()) {
+                    if (content.hasRemaining()) {
+                        int chunk = Math.min(CHUNK, content.remaining());
+                        content.get(slot.input, 0, chunk);
+                        deflater.setInput(slot.input, 0, chunk);
+                    } else {
+                        deflater.finish();
+                    }
+                }
+                if (position == output.length) {
+                    if (position == limit) {
+                        return null;
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min(limit, 2L * output.length));
+                }
+                position += deflater.deflate(output, position, output.length - position);
+            }
+            compressed = position - start;
+            if (position < output.length) {
+                output = Arrays.copyOf(output, position);
+            }
+        } finally {
+            this.release(slot);
+        }
+        ByteBuffer result = ByteBuffer.wrap(output);
+        result.putInt(OVERHEAD + compressed);
+        result.put(BinaryCodes.COMPRESSED);
+        result.put(BinaryCodes.TYPE_BYTES);
+        result.putInt(compressed);
+        result.rewind();
+        this.compressedFrames.increment();
+        this.savedBytes.add(length - OVERHEAD - compressed);
+        return result;
+    }
+
+    private void release(Slot slot) {
+        if (!this.pool.offer(slot)) {
+            slot.deflater.end();
+        }
+    }
+
+    /**
+     * Metodo que libera los {@link Deflater} del pool. El compresor puede seguir utilizandose, creando nuevos.
+     */
+    @Override
+    public void close() {
+        Slot slot;
+        while ((slot = this.pool.poll()) != null) {
+            slot.deflater.end();
+        }
+    }
+
+    /**
+     * Metodo para obtener la longitud minima de los frames que se comprimen.
+     * @return longitud en bytes, sin contar la cabecera.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Metodo para obtener el diccionario inicial compartido con los clientes.
+     * @return diccionario, o null si no se configuro.
+     */
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Metodo para obtener la cantidad de frames comprimidos. Un frame compartido por varias conexiones se comprime una
+     * unica vez.
+     * @return cantidad de frames.
+     */
+    public long getCompressedFrames() {
+        return compressedFrames.sum();
+    }
+
+    /**
+     * Metodo para obtener la cantidad de bytes ahorrados por la compresion de cada frame, sin contar la cantidad de
+     * conexiones a las que se envio.
+     * @return cantidad de bytes.
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Clase que agrupa un {@link Deflater} del pool con el buffer de tamano fijo por el que recibe el contenido.
+     */
+    private static final class Slot {
+
+        private final Deflater deflater;
+        private final byte[] input;
+
+        private Slot(int level) {
+            this.deflater = new Deflater(level);
+            this.input = new byte[CHUNK];
+        }
+    }
+}
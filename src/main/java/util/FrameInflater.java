@@ -0,0 +1,117 @@
+package util;
+
+import java.io.Closeable;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Clase que descomprime los frames {@link BinaryCodes#COMPRESSED} que recibe una conexion. El frame original se
+ * descomprime sobre un buffer reutilizable y se decodifica con un {@link BinaryFrameReader} propio, cuyos campos son
+ * validos hasta la siguiente descompresion. El frame descomprimido no puede superar la longitud maxima del protocolo.
+ * <p>
+ * Una instancia pertenece a una unica conexion y debe cerrarse con {@link #close()} para liberar el {@link Inflater}.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see FrameCompressor
+ */
+public class FrameInflater implements Closeable {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final int maxFrameLength;
+    private final byte[] dictionary;
+    private final Inflater inflater;
+    private final BinaryFrameReader reader;
+    private byte[] input;
+    private ByteBuffer output;
+
+    /**
+     * Constructor de la clase.
+     * @param maxFrameLength longitud maxima del frame descomprimido, sin contar la cabecera.
+     * @param dictionary diccionario inicial compartido con los clientes, o null.
+     */
+    public FrameInflater(int maxFrameLength, byte[] dictionary) {
+        this.maxFrameLength = maxFrameLength;
+        this.dictionary = dictionary;
+        this.inflater = new Inflater();
+        this.reader = new BinaryFrameReader(maxFrameLength);
+        this.input = new byte[INITIAL_BUFFER_SIZE];
+        this.output = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * Metodo que descomprime un frame comprimido.
+     * @param frame decodificador posicionado sobre un frame {@link BinaryCodes#COMPRESSED}.
+     * @return el decodificador posicionado sobre el frame original.
+     * @throws ProtocolException si el frame comprimido es invalido o el original supera la longitud maxima.
+     */
+    public BinaryFrameReader inflate(BinaryFrameReader frame) throws ProtocolException {
+        if (frame.opcode() != BinaryCodes.COMPRESSED || frame.fieldCount() != 1) {
+            throw new ProtocolException("Frame comprimido invalido");
+        }
+        int length = frame.fieldLength(0);
+        if (this.input.length < length) {
+            this.input = new byte[length];
+        }
+        frame.getBytes(0, this.input, 0);
+        this.inflater.reset();
+        this.inflater.setInput(this.input, 0, length);
+        int inflated = 0;
+        try {
+            while (!this.inflater.finished()) {
+                byte[] output = this.output.array();
+                if (BinaryCodes.HEADER_LENGTH + inflated == output.length) {
+                    this.grow(inflated);
+                    output = this.output.array();
+                }
+                int count = this.inflater.inflate(output, BinaryCodes.HEADER_LENGTH + inflated,
+                        output.length - BinaryCodes.HEADER_LENGTH - inflated);
+                if (count == 0 && this.inflater.needsDictionary()) {
+                    if (this.dictionary == null) {
+                        throw new ProtocolException("El frame comprimido requiere un diccionario");
+                    }
+                    this.inflater.setDictionary(this.dictionary);
+                } else if (count == 0 && this.inflater.needsInput()) {
+                    throw new ProtocolException("Frame comprimido truncado");
+                }
+                inflated += count;
+            }
+        } catch (DataFormatException | IllegalArgumentException e) {
+            // IllegalArgumentException si el diccionario no es el que se utilizo al comprimir
+            throw new ProtocolException("Frame comprimido invalido: " + e.getMessage());
+        }
+        this.output.clear();
+        this.output.putInt(0, inflated);
+        this.output.limit(BinaryCodes.HEADER_LENGTH + inflated);
+        if (!this.reader.next(this.output) || this.reader.opcode() == BinaryCodes.COMPRESSED) {
+            throw new ProtocolException("Frame comprimido invalido");
+        }
+        return this.reader;
+    }
+
+    /**
+     * Metodo que agranda el buffer de salida conservando lo ya descomprimido.
+     * @param inflated bytes descomprimidos hasta el momento.
+     * @throws ProtocolException si el frame descomprimido supera la longitud maxima.
+     */
+    private void grow(int inflated) throws ProtocolException {
+        if (inflated >= this.maxFrameLength) {
+            throw new ProtocolException("El frame descomprimido supera los " + this.maxFrameLength + " bytes");
+        }
+        long capacity = Math.min(this.output.capacity() * 2L, BinaryCodes.HEADER_LENGTH + (long) this.maxFrameLength);
+        ByteBuffer larger = ByteBuffer.allocate((int) capacity);
+        System.arraycopy(this.output.array(), 0, larger.array(), 0, BinaryCodes.HEADER_LENGTH + inflated);
+        this.output = larger;
+    }
+
+    /**
+     * Metodo que libera el {@link Inflater}.
+     */
+    @Override
+    public void close() {
+        this.inflater.end();
+    }
+}
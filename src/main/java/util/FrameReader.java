@@ -0,0 +1,36 @@
+package util;
+
+import java.net.ProtocolException;
+
+/**
+ * Interfaz comun de los decodificadores de peticiones de ambas versiones del protocolo. Un decodificador queda
+ * posicionado sobre la ultima peticion leida y expone su opcode y sus campos, sin incluir el codigo, en el mismo orden
+ * en ambas versiones, de modo que una peticion se atiende igual sin importar como fue recibida.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ * @see BinaryFrameReader
+ * @see TextFrameReader
+ */
+public interface FrameReader {
+
+    /**
+     * Metodo para obtener el opcode de la ultima peticion decodificada.
+     * @return opcode de {@link BinaryCodes}, o -1 si el codigo no tiene equivalente binario.
+     */
+    byte opcode();
+
+    /**
+     * Metodo para obtener la cantidad de campos de la ultima peticion decodificada.
+     * @return cantidad de campos.
+     */
+    int fieldCount();
+
+    /**
+     * Metodo que convierte un campo de texto en String.
+     * @param field indice del campo.
+     * @return el texto del campo.
+     * @throws ProtocolException si el campo no existe o no es de texto.
+     */
+    String getString(int field) throws ProtocolException;
+}
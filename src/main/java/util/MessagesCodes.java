@@ -13,6 +13,39 @@ public class MessagesCodes {
     public static final String NEW_USER = "NWU"; // NWU|username
     public static final String GET_USERS = "GTU"; // GTU
     public static final String REMOVE_USER = "RMV"; // RMV|username
+    public static final String HELLO = "HLO"; // HLO|version|feature... - Negocia la version del protocolo (ver BinaryCodes) y las funcionalidades opcionales
+    public static final String SNAPSHOT = "SNP"; // SNP|version|username... - Lista de usuarios conectados en la version indicada
+    public static final String PRESENCE_DELTA = "DLT"; // DLT|version|+username|-username... - Usuarios que se conectaron (+) y desconectaron (-)
+    public static final String HISTORY = "HIS"; // HIS|last|cantidad o HIS|since|secuencia - Pide mensajes globales anteriores; el servidor responde los GBL y HIS|proxima secuencia
+    public static final String JOIN_ROOM = "JON"; // Si el cliente envia JON|room - Si el servidor envia a los miembros JON|room|username
+    public static final String LEAVE_ROOM = "LVE"; // Si el cliente envia LVE|room - Si el servidor envia a los miembros LVE|room|username
+    public static final String ROOM_MESSAGE = "ROM"; // Si el cliente envia ROM|room|message - Si el servidor envia a los miembros ROM|room|sender|message
+    public static final String NODE = "NOD"; // NOD|nodeId - Presentacion entre dos nodos del cluster al abrir un enlace
+    public static final String COMPRESSED = "ZIP"; // Solo en la version binaria: frame comprimido (ver BinaryCodes)
+    public static final String PING = "PIN"; // PIN - Quien lo recibe responde PON; el servidor lo envia a los clientes inactivos
+    public static final String PONG = "PON"; // PON - Respuesta a PIN
+    public static final String RESUME = "RSM"; // Si el servidor envia RSM|token - Si el cliente envia RSM|token|recibidos; RSM sin campos indica que la sesion no pudo reanudarse
+    public static final String BATCH = "BAT"; // Solo en la version binaria: varias peticiones en un unico frame (ver BinaryCodes)
+    public static final String ACK = "ACK"; // ACK|secuencia - Cantidad de peticiones atendidas desde el HLO, enviada por el servidor
+    public static final String ERROR = "ERR"; // ERR|motivo|codigo[|id] - El servidor rechazo una peticion con el codigo indicado
+    public static final String FILE = "FIL"; // Si el cliente envia FIL|id|receiver|nombre|bytes - Si el servidor envia al receptor FIL|id|sender|nombre|bytes, seguido del contenido en frames CHK; al emisor le confirma FIL|id|receiver|nombre|bytes al recibir el archivo completo
+    public static final String CHUNK = "CHK"; // Solo en la version binaria: CHK|id|bytes - Porcion del contenido de un archivo
+    public static final String CREDIT = "CRD"; // CRD|id|cantidad|bytes - El servidor admite esa cantidad de frames CHK mas del archivo, de a lo sumo esos bytes cada uno
     public static final String SEPARATOR = "|";
 
+    public static final String HISTORY_LAST = "last"; // HIS|last|cantidad - Los ultimos mensajes
+    public static final String HISTORY_SINCE = "since"; // HIS|since|secuencia - Los mensajes a partir de la secuencia
+
+    public static final String ERROR_RATE_LIMIT = "rate"; // ERR|rate|codigo - El usuario supero el limite de peticiones con ese codigo
+    public static final String ERROR_TRANSFER = "transfer"; // ERR|transfer|FIL|id - El archivo fue rechazado o su envio se cancelo
+
+    public static final String FEATURE_PRESENCE_DELTA = "presence"; // Recibe SNP y DLT en lugar de GTU, NWU y RMV
+    public static final String FEATURE_COMPRESSION = "deflate"; // Solo con la version binaria: frames grandes comprimidos en ambos sentidos
+    public static final String FEATURE_RESUME = "resume"; // Recibe RSM|token al registrarse y puede reanudar la sesion al reconectarse
+    public static final String FEATURE_BATCH = "batch"; // Solo con la version binaria: puede enviar frames BAT
+    public static final String FEATURE_ACK = "ack"; // Recibe ACK con la secuencia de la ultima peticion atendida
+    public static final String FEATURE_TRANSFER = "transfer"; // Solo con la version binaria: puede enviar y recibir archivos con FIL y CHK
+    public static final String[] FEATURES = {FEATURE_PRESENCE_DELTA, FEATURE_COMPRESSION, FEATURE_RESUME, FEATURE_BATCH,
+            FEATURE_ACK, FEATURE_TRANSFER};
+
 }
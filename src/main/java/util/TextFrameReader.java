@@ -0,0 +1,150 @@
+package util;
+
+import java.io.UTFDataFormatException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Clase que decodifica las peticiones de la version de texto del protocolo {@link MessagesCodes}, con el formato de
+ * {@link java.io.DataOutputStream#writeUTF(String)}, directamente sobre el buffer de lectura de la conexion. Al igual
+ * que {@link BinaryFrameReader} solo registra la posicion y longitud de cada campo separado por
+ * {@link MessagesCodes#SEPARATOR}, de modo que decodificar una peticion no crea objetos: el codigo se compara byte a
+ * byte y los campos se convierten en String unicamente cuando se solicitan.
+ * <p>
+ * El separador es un caracter ASCII, que en UTF-8 modificado nunca forma parte de un caracter de varios bytes, por lo
+ * que los campos pueden separarse sin decodificar el texto. Los campos siguientes a {@link #MAX_FIELDS} se ignoran,
+ * como se ignoraban los campos de mas al separar la peticion completa.
+ * <p>
+ * Una instancia se reutiliza para todas las peticiones de una conexion. Los campos de la ultima peticion leida son
+ * validos mientras no se modifique el contenido del buffer.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+public class TextFrameReader implements FrameReader {
+
+    public static final int MAX_FIELDS = BinaryFrameReader.MAX_FIELDS;
+
+    private static final byte SEPARATOR = (byte) MessagesCodes.SEPARATOR.charAt(0);
+
+    private final int[] offsets;
+    private final int[] lengths;
+    private ByteBuffer buffer;
+    private int codeOffset;
+    private int codeLength;
+    private byte opcode;
+    private int fieldCount;
+    private char[] chars;
+
+    /**
+     * Constructor de la clase.
+     */
+    public TextFrameReader() {
+        this.offsets = new int[MAX_FIELDS];
+        this.lengths = new int[MAX_FIELDS];
+        this.chars = new char[64];
+    }
+
+    /**
+     * Metodo que intenta decodificar la peticion que comienza en la posicion actual del buffer. Si la peticion esta
+     * completa avanza la posicion hasta su final; si no, no consume ningun byte.
+     * @param buffer buffer en modo lectura con los bytes recibidos.
+     * @return true si se decodifico una peticion completa.
+     */
+    public boolean next(ByteBuffer buffer) {
+        if (buffer.remaining() < FrameCodec.HEADER_LENGTH) {
+            return false;
+        }
+        int start = buffer.position();
+        int length = buffer.getShort(start) & 0xFFFF;
+        if (buffer.remaining() < FrameCodec.HEADER_LENGTH + length) {
+            return false;
+        }
+        int index = start + FrameCodec.HEADER_LENGTH;
+        int end = index + length;
+        this.buffer = buffer;
+        this.codeOffset = index;
+        this.fieldCount = 0;
+        while (index < end && buffer.get(index) != SEPARATOR) {
+            index++;
+        }
+        this.codeLength = index - this.codeOffset;
+        while (index < end && this.fieldCount < MAX_FIELDS) {
+            int fieldStart = ++index;
+            while (index < end && buffer.get(index) != SEPARATOR) {
+                index++;
+            }
+            this.offsets[this.fieldCount] = fieldStart;
+            this.lengths[this.fieldCount] = index - fieldStart;
+            this.fieldCount++;
+        }
+        this.opcode = this.lookupOpcode();
+        buffer.position(end);
+        return true;
+    }
+
+    /**
+     * Metodo que busca el opcode binario equivalente al codigo de la peticion sin convertirlo en String.
+     * @return opcode de {@link BinaryCodes}, o -1 si el codigo no tiene equivalente.
+     */
+    private byte lookupOpcode() {
+        for (byte opcode = 1; opcode <= BinaryCodes.MAX_OPCODE; opcode++) {
+            if (this.isCode(BinaryCodes.codeOf(opcode))) {
+                return opcode;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Metodo que indica si la ultima peticion decodificada tiene el codigo indicado.
+     * @param code codigo de {@link MessagesCodes}, en ASCII.
+     * @return true si el codigo de la peticion es igual.
+     */
+    public boolean isCode(String code) {
+        if (code.length() != this.codeLength) {
+            return false;
+        }
+        for (int i = 0; i < this.codeLength; i++) {
+            if (this.buffer.get(this.codeOffset + i) != code.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public byte opcode() {
+        return opcode;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Metodo que convierte un campo en String. El texto se decodifica sobre un arreglo reutilizable, por lo que solo se
+     * crea el String resultante.
+     * @param field indice del campo, sin contar el codigo.
+     * @return el texto del campo.
+     * @throws ProtocolException si el campo no existe o no es UTF-8 modificado valido.
+     */
+    @Override
+    public String getString(int field) throws ProtocolException {
+        if (field < 0 || field >= this.fieldCount) {
+            throw new ProtocolException("Campo inexistente: " + field);
+        }
+        int offset = this.offsets[field];
+        int length = this.lengths[field];
+        if (this.chars.length < length) {
+            this.chars = new char[Math.max(length, this.chars.length * 2)];
+        }
+        try {
+            int count = FrameCodec.decode(this.buffer, offset, offset + length, this.chars);
+            return new String(this.chars, 0, count);
+        } catch (UTFDataFormatException e) {
+            throw new ProtocolException(e.getMessage());
+        }
+    }
+}
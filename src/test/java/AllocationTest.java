@@ -0,0 +1,145 @@
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ChatSession;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.FrameCodec;
+import util.MessagesCodes;
+import util.TextFrameReader;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AllocationTest {
+
+    private static final int WARMUP = 50000;
+    private static final int ITERATIONS = 10000;
+    private static final int RECIPIENTS = 64;
+
+    @Test
+    void readersDoNotAllocate() throws IOException {
+        ByteBuffer text = FrameCodec.encode("GBL|hola ñandú|extra");
+        ByteBuffer binary = copy(Frame.of(MessagesCodes.GLOBAL_MESSAGE, "hola").view(BinaryCodes.VERSION_BINARY));
+        TextFrameReader textReader = new TextFrameReader();
+        BinaryFrameReader binaryReader = new BinaryFrameReader(1024);
+
+        long checksum = read(text, textReader, binary, binaryReader, WARMUP);
+        long before = allocatedBytes();
+        checksum += read(text, textReader, binary, binaryReader, ITERATIONS);
+        long allocated = allocatedBytes() - before;
+
+        assertEquals((WARMUP + ITERATIONS) * (BinaryCodes.GLOBAL_MESSAGE * 2 + 2 + 1), checksum);
+        assertTrue(allocated < 1024,
+                "Se asignaron " + allocated + " bytes al decodificar " + ITERATIONS + " peticiones");
+    }
+
+    @Test
+    void textRequestAllocatesOnlyItsFields() throws IOException {
+        ChatServer chatServer = new ChatServer(0);
+        DiscardSession session = new DiscardSession(chatServer, new ChatMessages(null, null));
+        // El usuario no es miembro de la sala, por lo que la peticion solo se decodifica y se atiende
+        ByteBuffer request = FrameCodec.encode(MessagesCodes.LEAVE_ROOM + MessagesCodes.SEPARATOR + "sala");
+
+        for (int i = 0; i < WARMUP; i++) {
+            session.request(request);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            session.request(request);
+        }
+        long perRequest = (allocatedBytes() - before) / ITERATIONS;
+
+        // Solo el String con el nombre de la sala; separar la peticion completa asignaba varias veces mas
+        assertTrue(perRequest <= 64, "Se asignaron " + perRequest + " bytes por peticion");
+    }
+
+    @Test
+    void globalMessageIsEncodedOnceForAllRecipients() throws IOException {
+        ChatServer chatServer = new ChatServer(0);
+        ByteBuffer request = FrameCodec.encode(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "hola");
+        long single = allocatedPerMessage(chatServer, request, 1);
+        long many = allocatedPerMessage(chatServer, request, RECIPIENTS);
+        long perRecipient = (many - single) / (RECIPIENTS - 1);
+
+        // El frame, sus campos y su codificacion se crean una unica vez por mensaje
+        assertTrue(single <= 512, "Se asignaron " + single + " bytes por mensaje con un destinatario");
+        // Cada destinatario solo agrega la vista con la que su conexion escribe el frame compartido; codificarlo por
+        // destinatario agregaria al menos otro buffer y su arreglo
+        assertTrue(perRecipient <= 96, "Se asignaron " + perRecipient + " bytes por destinatario");
+    }
+
+    /**
+     * Metodo que publica mensajes globales recibidos como peticiones de texto a la cantidad de destinatarios indicada.
+     * @return bytes asignados por mensaje, desde la decodificacion de la peticion hasta la vista de cada destinatario.
+     */
+    private static long allocatedPerMessage(ChatServer chatServer, ByteBuffer request, int recipients)
+            throws IOException {
+        ChatMessages globalMessages = new ChatMessages(null, null);
+        DiscardSession sender = new DiscardSession(chatServer, globalMessages);
+        for (int i = 0; i < recipients; i++) {
+            globalMessages.addObserver(new DiscardSession(chatServer, globalMessages));
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            sender.request(request);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sender.request(request);
+        }
+        return (allocatedBytes() - before) / ITERATIONS;
+    }
+
+    private static long read(ByteBuffer text, TextFrameReader textReader, ByteBuffer binary,
+                             BinaryFrameReader binaryReader, int iterations) throws IOException {
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            text.rewind();
+            textReader.next(text);
+            binary.rewind();
+            binaryReader.next(binary);
+            checksum += textReader.opcode() + binaryReader.opcode() + textReader.fieldCount()
+                    + binaryReader.fieldCount();
+        }
+        return checksum;
+    }
+
+    private static ByteBuffer copy(ByteBuffer view) {
+        ByteBuffer copy = ByteBuffer.allocate(view.remaining()).put(view);
+        copy.flip();
+        return copy;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Sesion sin conexion que descarta los mensajes que recibe, luego de obtener la vista que escribiria una conexion.
+     */
+    private static class DiscardSession extends ChatSession {
+
+        private ByteBuffer written;
+
+        DiscardSession(ChatServer chatServer, ChatMessages globalMessages) {
+            super(chatServer, globalMessages);
+        }
+
+        void request(ByteBuffer frame) throws IOException {
+            frame.rewind();
+            this.textReader.next(frame);
+            this.decodeRequest(this.textReader);
+        }
+
+        @Override
+        protected void send(Frame frame) throws IOException {
+            this.written = this.view(frame);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodec;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.MessagesCodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchTest {
+
+    private static final int PORT = 2513;
+
+    @Test
+    void batchFramesAreDecodedInPlace() throws IOException {
+        ByteBuffer batch = BinaryCodec.batch(BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "uno"),
+                BinaryCodec.encode(BinaryCodes.PRIVATE_MESSAGE, "Ana", "Beto", "dos"));
+        BinaryFrameReader reader = new BinaryFrameReader(1024);
+        assertTrue(reader.next(batch));
+        assertEquals(BinaryCodes.BATCH, reader.opcode());
+
+        ByteBuffer requests = reader.getView(0);
+        BinaryFrameReader request = new BinaryFrameReader(1024);
+        assertTrue(request.next(requests));
+        assertEquals("uno", request.getString(0));
+        assertTrue(request.next(requests));
+        assertEquals(Arrays.asList("Ana", "Beto", "dos"),
+                Arrays.asList(request.getString(0), request.getString(1), request.getString(2)));
+        assertFalse(requests.hasRemaining());
+    }
+
+    @Test
+    void blockingServer() throws Exception {
+        pipelineAndBatch(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        pipelineAndBatch(ServerConfig.Mode.NIO);
+    }
+
+    private void pipelineAndBatch(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+
+            // Los frames BAT solo se aceptan junto con la version binaria
+            anaOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + "1" + MessagesCodes.SEPARATOR
+                    + MessagesCodes.FEATURE_BATCH + MessagesCodes.SEPARATOR + MessagesCodes.FEATURE_ACK);
+            assertEquals("HLO|1|ack", anaIn.readUTF());
+
+            // Ana envia varias peticiones seguidas sin esperar las respuestas
+            ByteArrayOutputStream pipelined = new ByteArrayOutputStream();
+            DataOutputStream requests = new DataOutputStream(pipelined);
+            requests.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            requests.writeUTF(MessagesCodes.JOIN_ROOM + MessagesCodes.SEPARATOR + "sala");
+            requests.writeUTF(MessagesCodes.PING);
+            anaOut.write(pipelined.toByteArray());
+            assertEquals(Arrays.asList("NWU|Ana", "JON|sala|Ana", MessagesCodes.PONG), readText(anaIn, 3));
+
+            betoOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY
+                    + MessagesCodes.SEPARATOR + MessagesCodes.FEATURE_BATCH + MessagesCodes.SEPARATOR
+                    + MessagesCodes.FEATURE_ACK);
+            assertEquals("HLO|2|batch|ack", betoIn.readUTF());
+            TestClients.writeBinary(betoOut, BinaryCodec.encode(BinaryCodes.NEW_USER, "Beto"));
+            assertEquals(Arrays.asList(Arrays.asList("4", "Ana"), Arrays.asList("1", "Beto")), readBinary(betoIn, 2, 1));
+            assertEquals("NWU|Beto", anaIn.readUTF());
+
+            // Las peticiones de un frame BAT se atienden en orden y se confirman con un unico ACK. Los mensajes masivos
+            // pueden recibirse luego de los prioritarios
+            TestClients.writeBinary(betoOut, BinaryCodec.batch(
+                    BinaryCodec.encode(BinaryCodes.JOIN_ROOM, "sala"),
+                    BinaryCodec.encode(BinaryCodes.ROOM_MESSAGE, "sala", "hola"),
+                    BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "uno"),
+                    BinaryCodec.encode(BinaryCodes.PRIVATE_MESSAGE, "Beto", "Ana", "dos")));
+            assertEquals(new HashSet<>(Arrays.asList(
+                    Arrays.asList("9", "sala", "Beto"),
+                    Arrays.asList("11", "sala", "Beto", "hola"),
+                    Arrays.asList("2", "Beto", "uno"),
+                    Arrays.asList("3", "Beto", "Ana", "dos"))), new HashSet<>(readBinary(betoIn, 4, 5)));
+            assertEquals(new HashSet<>(Arrays.asList("JON|sala|Beto", "ROM|sala|Beto|hola", "GBL|Beto|uno",
+                    "PRV|Beto|Ana|dos")), new HashSet<>(Arrays.asList(anaIn.readUTF(), anaIn.readUTF(),
+                    anaIn.readUTF(), anaIn.readUTF())));
+
+            // Un frame BAT con una peticion truncada cierra la conexion
+            ByteBuffer truncated = BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "tres");
+            truncated.limit(truncated.limit() - 1);
+            TestClients.writeBinary(betoOut, BinaryCodec.batch(truncated));
+            assertThrows(EOFException.class, () -> readBinary(betoIn, 1, 5));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Metodo que lee mensajes de texto hasta recibir el ACK con la secuencia indicada. Los ACK anteriores pueden
+     * recibirse o no segun como lleguen las peticiones, pero su secuencia nunca disminuye.
+     * @return mensajes recibidos, sin los ACK.
+     */
+    private static List<String> readText(DataInputStream in, long sequence) throws IOException {
+        List<String> messages = new ArrayList<>();
+        long acknowledged = 0;
+        while (acknowledged != sequence) {
+            String message = in.readUTF();
+            if (message.startsWith(MessagesCodes.ACK + MessagesCodes.SEPARATOR)) {
+                long next = Long.parseLong(message.substring(4));
+                assertTrue(next > acknowledged && next <= sequence);
+                acknowledged = next;
+            } else {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Metodo que lee frames binarios hasta recibir la cantidad de frames y el ACK con la secuencia indicados. El ACK
+     * es prioritario, por lo que puede recibirse antes que los mensajes masivos de las peticiones que confirma.
+     * @return campos de los frames recibidos, sin los ACK.
+     */
+    private static List<List<String>> readBinary(DataInputStream in, int count, long sequence) throws IOException {
+        List<List<String>> frames = new ArrayList<>();
+        long acknowledged = 0;
+        while (acknowledged != sequence || frames.size() < count) {
+            BinaryFrameReader reader = TestClients.readFrame(in);
+            if (reader.opcode() == BinaryCodes.ACK) {
+                long next = Long.parseLong(reader.getString(0));
+                assertTrue(next > acknowledged && next <= sequence);
+                acknowledged = next;
+                continue;
+            }
+            frames.add(TestClients.fields(reader));
+        }
+        return frames;
+    }
+}
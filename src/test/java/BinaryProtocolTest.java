@@ -0,0 +1,109 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodec;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryProtocolTest {
+
+    private static final int PORT = 2502;
+
+    @Test
+    void blockingServer() throws Exception {
+        negotiateAndChat(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        negotiateAndChat(ServerConfig.Mode.NIO);
+    }
+
+    @Test
+    void partialFramesAreNotConsumed() throws IOException {
+        ByteBuffer frame = BinaryCodec.encode(BinaryCodes.PRIVATE_MESSAGE, "Ana", "Beto", "hola|chau");
+        BinaryFrameReader reader = new BinaryFrameReader(1024);
+        ByteBuffer partial = frame.duplicate();
+        partial.limit(frame.limit() - 1);
+        assertFalse(reader.next(partial));
+        assertEquals(0, partial.position());
+        assertTrue(reader.next(frame));
+        assertEquals(Arrays.asList("3", "Ana", "Beto", "hola|chau"), TestClients.fields(reader));
+    }
+
+    @Test
+    void malformedFieldLengthIsRejected() {
+        ByteBuffer frame = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + 1 + 1 + 4 + 8);
+        frame.putInt(frame.capacity() - BinaryCodes.HEADER_LENGTH);
+        frame.put(BinaryCodes.GLOBAL_MESSAGE);
+        frame.put(BinaryCodes.TYPE_STRING);
+        frame.putInt(0x7FFFFFF8);
+        frame.rewind();
+        BinaryFrameReader reader = new BinaryFrameReader(1024);
+        assertThrows(ProtocolException.class, () -> reader.next(frame));
+    }
+
+    private void negotiateAndChat(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+
+            betoOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY);
+            assertEquals("HLO|2", betoIn.readUTF());
+            TestClients.writeBinary(betoOut, BinaryCodec.encode(BinaryCodes.NEW_USER, "Beto"));
+            assertEquals(Arrays.asList("4", "Ana"), TestClients.readBinary(betoIn));
+            assertEquals(Arrays.asList("1", "Beto"), TestClients.readBinary(betoIn));
+            assertEquals("NWU|Beto", anaIn.readUTF());
+
+            // El separador del protocolo de texto puede formar parte del mensaje
+            TestClients.writeBinary(betoOut, BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "a|b"));
+            assertEquals(Arrays.asList("2", "Beto", "a|b"), TestClients.readBinary(betoIn));
+            assertEquals("GBL|Beto|a|b", anaIn.readUTF());
+
+            // Un mensaje que supera el limite de writeUTF solo llega a los clientes binarios
+            char[] chars = new char[100 * 1024];
+            Arrays.fill(chars, 'x');
+            String longMessage = new String(chars);
+            TestClients.writeBinary(betoOut, BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, longMessage));
+            assertEquals(Arrays.asList("2", "Beto", longMessage), TestClients.readBinary(betoIn));
+
+            anaOut.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "fin");
+            assertEquals("GBL|Ana|fin", anaIn.readUTF());
+            assertEquals(Arrays.asList("2", "Ana", "fin"), TestClients.readBinary(betoIn));
+
+            // Una negociacion sin version es invalida y cierra la conexion
+            try (Socket carla = TestClients.connect(PORT)) {
+                new DataOutputStream(carla.getOutputStream()).writeUTF(MessagesCodes.HELLO);
+                DataInputStream carlaIn = new DataInputStream(carla.getInputStream());
+                assertThrows(EOFException.class, carlaIn::readUTF);
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClusterTest {
+
+    private static final int PORT_A = 2507;
+    private static final int PORT_B = 2508;
+    private static final int CLUSTER_PORT_A = 2517;
+    private static final int CLUSTER_PORT_B = 2518;
+
+    @Test
+    void twoNodesOverLoopback() throws Exception {
+        ChatServer nodeA = new ChatServer(PORT_A, config("a", CLUSTER_PORT_A, CLUSTER_PORT_B));
+        ChatServer nodeB = new ChatServer(PORT_B, config("b", CLUSTER_PORT_B, CLUSTER_PORT_A));
+        new Thread(nodeA::serve).start();
+        new Thread(nodeB::serve).start();
+        long batches = ChatMetrics.getInstance().getClusterBatches();
+        long frames = ChatMetrics.getInstance().getClusterFrames();
+        try {
+            await(() -> nodeA.getCluster() != null && nodeA.getCluster().getConnectedLinks() == 1
+                    && nodeB.getCluster() != null && nodeB.getCluster().getConnectedLinks() == 1);
+
+            try (Socket ana = TestClients.connect(PORT_A); Socket beto = TestClients.connect(PORT_B)) {
+                DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+                DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+                DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+                DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+
+                anaOut.writeUTF("NWU|Ana");
+                assertEquals("NWU|Ana", anaIn.readUTF());
+                await(() -> nodeB.getCluster().isRemoteUser("Ana"));
+
+                // La presencia abarca todo el cluster: Beto recibe a Ana en la lista y Ana recibe el alta de Beto
+                betoOut.writeUTF("NWU|Beto");
+                assertEquals("GTU|Ana", betoIn.readUTF());
+                assertEquals("NWU|Beto", betoIn.readUTF());
+                assertEquals("NWU|Beto", anaIn.readUTF());
+
+                anaOut.writeUTF("GBL|hola cluster");
+                assertEquals("GBL|Ana|hola cluster", anaIn.readUTF());
+                assertEquals("GBL|Ana|hola cluster", betoIn.readUTF());
+
+                // El mensaje privado se reenvia solo al nodo de Beto
+                anaOut.writeUTF("PRV|Ana|Beto|secreto");
+                assertEquals("PRV|Ana|Beto|secreto", anaIn.readUTF());
+                assertEquals("PRV|Ana|Beto|secreto", betoIn.readUTF());
+                betoOut.writeUTF("PRV|Beto|Ana|recibido");
+                assertEquals("PRV|Beto|Ana|recibido", betoIn.readUTF());
+                assertEquals("PRV|Beto|Ana|recibido", anaIn.readUTF());
+
+                for (int i = 0; i < 100; i++) {
+                    betoOut.writeUTF("GBL|rafaga " + i);
+                }
+                for (int i = 0; i < 100; i++) {
+                    assertEquals("GBL|Beto|rafaga " + i, anaIn.readUTF());
+                }
+            }
+            // Al cerrarse las conexiones las bajas llegan al otro nodo
+            await(() -> nodeA.getCluster().getRemoteUsers().isEmpty() && nodeB.getCluster().getRemoteUsers().isEmpty());
+
+            long sentFrames = ChatMetrics.getInstance().getClusterFrames() - frames;
+            long sentBatches = ChatMetrics.getInstance().getClusterBatches() - batches;
+            assertTrue(sentFrames >= 106);
+            assertTrue(sentBatches <= sentFrames);
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+    }
+
+    private static ServerConfig config(String nodeId, int clusterPort, int peerPort) {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setClusterNodeId(nodeId);
+        config.setClusterPort(clusterPort);
+        config.setClusterPeers("localhost:" + peerPort);
+        return config;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int attempt = 0; !condition.getAsBoolean(); attempt++) {
+            assertTrue(attempt < 100, "Tiempo de espera agotado");
+            Thread.sleep(50);
+        }
+    }
+}
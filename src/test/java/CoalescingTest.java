@@ -0,0 +1,108 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.outbound.OutboundQueue;
+import org.junit.jupiter.api.Test;
+import util.MessagesCodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingTest {
+
+    private static final int PORT = 2516;
+    private static final int MESSAGES = 500;
+
+    @Test
+    void flushIsOnlyDelayedDuringBursts() {
+        OutboundQueue queue = new OutboundQueue(0, ServerConfig.OverflowPolicy.DROP_OLDEST, 1000);
+        ByteBuffer[] frames = new ByteBuffer[OutboundQueue.GATHER_FRAMES];
+
+        // Con poco trafico cada frame se escribe al encolarse
+        queue.offer(ByteBuffer.allocate(10), true);
+        assertEquals(0, queue.getFlushDelay(System.nanoTime()));
+        assertEquals(1, queue.drainTo(frames));
+
+        // Luego de tomar varios frames juntos la escritura se demora a lo sumo la demora configurada
+        queue.offer(ByteBuffer.allocate(10), true);
+        queue.offer(ByteBuffer.allocate(10), false);
+        assertEquals(0, queue.getFlushDelay(System.nanoTime()));
+        assertEquals(2, queue.drainTo(frames));
+        queue.offer(ByteBuffer.allocate(10), true);
+        long delay = queue.getFlushDelay(System.nanoTime());
+        assertTrue(delay > 0 && delay <= 1_000_000);
+        assertEquals(0, queue.getFlushDelay(System.nanoTime() + 1_000_000));
+
+        // Un grupo completo se escribe sin demora
+        for (int i = 1; i < OutboundQueue.GATHER_FRAMES; i++) {
+            queue.offer(ByteBuffer.allocate(10), true);
+        }
+        assertEquals(0, queue.getFlushDelay(System.nanoTime()));
+        queue.offer(ByteBuffer.allocate(10), true);
+        assertEquals(OutboundQueue.GATHER_FRAMES, queue.drainTo(frames));
+        assertEquals(1, queue.size());
+
+        // Si el ultimo grupo tenia un unico frame la conexion deja de considerarse en rafaga
+        assertEquals(1, queue.drainTo(frames));
+        queue.offer(ByteBuffer.allocate(10), true);
+        assertEquals(0, queue.getFlushDelay(System.nanoTime()));
+    }
+
+    @Test
+    void blockingServer() throws Exception {
+        burstIsWrittenWithFewerSyscalls(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        burstIsWrittenWithFewerSyscalls(ServerConfig.Mode.NIO);
+    }
+
+    private void burstIsWrittenWithFewerSyscalls(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        config.setOutboundFlushMicros(1000);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("GTU|Ana", betoIn.readUTF());
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            assertEquals("NWU|Beto", anaIn.readUTF());
+
+            long syscalls = ChatMetrics.getInstance().getWriteSyscalls();
+            long written = ChatMetrics.getInstance().getFramesWritten();
+            ByteArrayOutputStream burst = new ByteArrayOutputStream();
+            DataOutputStream requests = new DataOutputStream(burst);
+            for (int i = 0; i < MESSAGES; i++) {
+                requests.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + i);
+            }
+            anaOut.write(burst.toByteArray());
+
+            // Los mensajes llegan completos y en orden aunque se escriban agrupados
+            for (int i = 0; i < MESSAGES; i++) {
+                assertEquals("GBL|Ana|" + i, betoIn.readUTF());
+                assertEquals("GBL|Ana|" + i, anaIn.readUTF());
+            }
+            long frames = ChatMetrics.getInstance().getFramesWritten() - written;
+            assertTrue(frames >= 2 * MESSAGES);
+            assertTrue(ChatMetrics.getInstance().getWriteSyscalls() - syscalls < frames / 2);
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodec;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.Frame;
+import util.FrameCompressor;
+import util.FrameInflater;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressionTest {
+
+    private static final int PORT = 2510;
+    private static final byte[] DICTIONARY = "GBL|PRV|NWU|hola|chau|mensaje".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void framesAreCompressedOnceAndShared() throws IOException {
+        FrameCompressor compressor = new FrameCompressor(64, 6, null);
+        String message = repeat("hola mundo ", 50);
+        Frame frame = Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", message);
+
+        ByteBuffer first = frame.view(BinaryCodes.VERSION_BINARY, compressor);
+        ByteBuffer second = frame.view(BinaryCodes.VERSION_BINARY, compressor);
+        assertEquals(1, compressor.getCompressedFrames());
+        assertEquals(first, second);
+        assertTrue(first.remaining() < frame.length(BinaryCodes.VERSION_BINARY));
+        assertTrue(compressor.getSavedBytes() > 0);
+
+        // Las conexiones de texto y los frames chicos se envian sin comprimir
+        assertEquals(frame.view(1), frame.view(1, compressor));
+        Frame small = Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", "hola");
+        assertEquals(small.view(BinaryCodes.VERSION_BINARY), small.view(BinaryCodes.VERSION_BINARY, compressor));
+        assertNull(compressor.compress(small.view(BinaryCodes.VERSION_BINARY)));
+
+        BinaryFrameReader reader = new BinaryFrameReader(1024);
+        assertTrue(reader.next(first));
+        try (FrameInflater inflater = new FrameInflater(1024, null)) {
+            assertEquals(Arrays.asList("2", "Ana", message), TestClients.fields(inflater.inflate(reader)));
+        }
+    }
+
+    @Test
+    void largeFramesAreCompressedInChunks() throws IOException {
+        try (FrameCompressor compressor = new FrameCompressor(64, 6, null)) {
+            // El contenido supera varias veces la porcion que se entrega por vez al compresor
+            String message = repeat("hola mundo ", 20000);
+            ByteBuffer frame = compressor.compress(BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "Ana", message));
+            BinaryFrameReader reader = new BinaryFrameReader(Integer.MAX_VALUE);
+            assertTrue(reader.next(frame));
+            try (FrameInflater inflater = new FrameInflater(Integer.MAX_VALUE, null)) {
+                assertEquals(Arrays.asList("2", "Ana", message), TestClients.fields(inflater.inflate(reader)));
+            }
+
+            // Un contenido que no se reduce no se comprime, aunque la salida crezca varias veces
+            byte[] noise = new byte[200 * 1024];
+            new Random(16).nextBytes(noise);
+            ByteBuffer random = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + 1 + 1 + 4 + noise.length);
+            random.putInt(random.capacity() - BinaryCodes.HEADER_LENGTH).put(BinaryCodes.CHUNK)
+                    .put(BinaryCodes.TYPE_BYTES).putInt(noise.length).put(noise).flip();
+            assertNull(compressor.compress(random));
+            assertEquals(1, compressor.getCompressedFrames());
+        }
+    }
+
+    @Test
+    void dictionaryMustMatch() throws IOException {
+        FrameCompressor compressor = new FrameCompressor(0, 9, DICTIONARY);
+        ByteBuffer frame = compressor.compress(BinaryCodec.encode(BinaryCodes.PRIVATE_MESSAGE, "Ana", "Beto",
+                "hola hola chau mensaje hola chau"));
+        BinaryFrameReader reader = new BinaryFrameReader(1024);
+
+        try (FrameInflater inflater = new FrameInflater(1024, DICTIONARY)) {
+            assertTrue(reader.next(frame.duplicate()));
+            assertEquals(Arrays.asList("3", "Ana", "Beto", "hola hola chau mensaje hola chau"),
+                    TestClients.fields(inflater.inflate(reader)));
+        }
+        try (FrameInflater inflater = new FrameInflater(1024, null)) {
+            assertTrue(reader.next(frame.duplicate()));
+            assertThrows(ProtocolException.class, () -> inflater.inflate(reader));
+        }
+        // El frame descomprimido tampoco puede superar la longitud maxima
+        try (FrameInflater inflater = new FrameInflater(16, DICTIONARY)) {
+            assertTrue(reader.next(frame.duplicate()));
+            assertThrows(ProtocolException.class, () -> inflater.inflate(reader));
+        }
+    }
+
+    @Test
+    void blockingServer() throws Exception {
+        negotiateAndChat(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        negotiateAndChat(ServerConfig.Mode.NIO);
+    }
+
+    private void negotiateAndChat(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setCompressionThreshold(64);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT);
+             FrameInflater anaInflater = new FrameInflater(Integer.MAX_VALUE, null);
+             FrameInflater betoInflater = new FrameInflater(Integer.MAX_VALUE, null)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+
+            // La compresion solo se acepta junto con la version binaria
+            anaOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + "1" + MessagesCodes.SEPARATOR
+                    + MessagesCodes.FEATURE_COMPRESSION);
+            assertEquals("HLO|1", anaIn.readUTF());
+            anaOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY
+                    + MessagesCodes.SEPARATOR + MessagesCodes.FEATURE_COMPRESSION);
+            assertEquals("HLO|2|deflate", anaIn.readUTF());
+            betoOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY
+                    + MessagesCodes.SEPARATOR + MessagesCodes.FEATURE_COMPRESSION);
+            assertEquals("HLO|2|deflate", betoIn.readUTF());
+
+            TestClients.writeBinary(anaOut, BinaryCodec.encode(BinaryCodes.NEW_USER, "Ana"));
+            assertEquals(Arrays.asList("1", "Ana"), readBinary(anaIn, anaInflater));
+            TestClients.writeBinary(betoOut, BinaryCodec.encode(BinaryCodes.NEW_USER, "Beto"));
+            assertEquals(Arrays.asList("4", "Ana"), readBinary(betoIn, betoInflater));
+            assertEquals(Arrays.asList("1", "Beto"), readBinary(betoIn, betoInflater));
+            assertEquals(Arrays.asList("1", "Beto"), readBinary(anaIn, anaInflater));
+
+            // El cliente tambien puede enviar frames comprimidos
+            String message = repeat("mensaje repetido ", 40);
+            long compressed = server.getCompressor().getCompressedFrames();
+            ByteBuffer request = new FrameCompressor(0, 6, null)
+                    .compress(BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, message));
+            TestClients.writeBinary(anaOut, request);
+            assertEquals(Arrays.asList("2", "Ana", message), readBinary(anaIn, anaInflater));
+            assertEquals(Arrays.asList("2", "Ana", message), readBinary(betoIn, betoInflater));
+            assertEquals(compressed + 1, server.getCompressor().getCompressedFrames());
+
+            TestClients.writeBinary(betoOut, BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "chau"));
+            assertEquals(Arrays.asList("2", "Beto", "chau"), readBinary(anaIn, anaInflater));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static List<String> readBinary(DataInputStream in, FrameInflater inflater) throws IOException {
+        BinaryFrameReader reader = TestClients.readFrame(in);
+        return TestClients.fields(reader.opcode() == BinaryCodes.COMPRESSED ? inflater.inflate(reader) : reader);
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,124 @@
+import chat.ChatMessages;
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.fanout.ParallelFanout;
+import chat.metrics.ChatMetrics;
+import org.junit.jupiter.api.Test;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FanoutTest {
+
+    private static final int PORT = 2521;
+
+    @Test
+    void parallelFanoutKeepsOrderPerRecipient() {
+        ChatMessages globalMessages = new ChatMessages(null, null);
+        ParallelFanout fanout = new ParallelFanout(4, 1000, 64);
+        globalMessages.setFanout(fanout);
+        List<Recorder> recorders = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Recorder recorder = new Recorder();
+            recorders.add(recorder);
+            globalMessages.addObserver(recorder);
+        }
+        long parallel = ChatMetrics.getInstance().getParallelPublishes();
+        try {
+            List<Frame> frames = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                Frame frame = Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", String.valueOf(i));
+                frames.add(frame);
+                globalMessages.publish(frame);
+            }
+            // Cada destinatario recibe todos los mensajes, en el orden en que se publicaron
+            for (Recorder recorder : recorders) {
+                assertEquals(frames, recorder.frames);
+            }
+            assertEquals(100, ChatMetrics.getInstance().getParallelPublishes() - parallel);
+            assertTrue(Recorder.threads.stream().anyMatch(name -> name.startsWith("chat-fanout-")));
+
+            // Por debajo del umbral el mensaje se entrega desde el thread que lo publica
+            for (int i = 999; i < recorders.size(); i++) {
+                globalMessages.deleteObserver(recorders.get(i));
+            }
+            Recorder.threads.clear();
+            globalMessages.publish(Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", "secuencial"));
+            assertEquals(101, recorders.get(0).frames.size());
+            assertEquals(100, recorders.get(999).frames.size());
+            assertEquals(Thread.currentThread().getName(), String.join("", Recorder.threads));
+        } finally {
+            fanout.shutdown();
+        }
+        // Sin threads disponibles los mensajes se siguen entregando
+        globalMessages.publish(Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", "fin"));
+        assertEquals(102, recorders.get(0).frames.size());
+    }
+
+    @Test
+    void serverUsesParallelFanout() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setFanoutThreshold(1);
+        config.setFanoutThreads(2);
+        config.setFanoutShardSize(1);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        long parallel = ChatMetrics.getInstance().getParallelPublishes();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            while (!anaIn.readUTF().equals("NWU|Ana")) {
+                // Lista de usuarios conectados
+            }
+            while (!betoIn.readUTF().equals("NWU|Ana")) {
+                // Usuarios conectados luego de Beto
+            }
+
+            for (int i = 0; i < 50; i++) {
+                anaOut.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + i);
+            }
+            for (int i = 0; i < 50; i++) {
+                assertEquals("GBL|Ana|" + i, anaIn.readUTF());
+                assertEquals("GBL|Ana|" + i, betoIn.readUTF());
+            }
+            assertTrue(ChatMetrics.getInstance().getParallelPublishes() - parallel >= 50);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Observer que registra los frames recibidos y los threads que se los entregaron. Cada frame lo entrega un unico
+     * thread y la publicacion siguiente comienza al terminar la anterior, por lo que la lista no necesita sincronizarse.
+     */
+    private static class Recorder implements Observer {
+
+        static final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        final List<Frame> frames = new ArrayList<>();
+
+        @Override
+        public void update(Observable o, Object arg) {
+            this.frames.add((Frame) arg);
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+}
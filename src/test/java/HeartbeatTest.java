@@ -0,0 +1,197 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.timer.TimingWheel;
+import org.junit.jupiter.api.Test;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeartbeatTest {
+
+    private static final int PORT = 2511;
+
+    @Test
+    void wheelExpiresInOrderAcrossRounds() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-timers", 5, 8);
+        List<Integer> expired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            wheel.schedule(() -> expired.add(3), 150);
+            wheel.schedule(() -> expired.add(1), 10);
+            TimingWheel.Timeout cancelled = wheel.schedule(() -> expired.add(-1), 60);
+            wheel.schedule(() -> expired.add(2), 90);
+            wheel.schedule(done::countDown, 200);
+            wheel.start();
+            assertTrue(cancelled.cancel());
+            assertFalse(cancelled.cancel());
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            // Los plazos de 90 y 150 ms dan mas de una vuelta a una rueda de 8 posiciones de 5 ms
+            assertEquals(Arrays.asList(1, 2, 3), expired);
+            assertTrue(cancelled.isCancelled());
+        } finally {
+            wheel.close();
+        }
+    }
+
+    @Test
+    void delaysOfWholeRoundsAreNotShortened() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-timers", 10, 8);
+        List<Long> elapsed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        try {
+            wheel.start();
+            Thread.sleep(25);
+            // Plazos de exactamente una y dos vueltas de una rueda de 8 posiciones de 10 ms
+            long start = System.nanoTime();
+            for (long delay : new long[] {80, 160}) {
+                wheel.schedule(() -> {
+                    elapsed.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    done.countDown();
+                }, delay);
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(elapsed.get(0) >= 80, "80 ms vencio a los " + elapsed.get(0));
+            assertTrue(elapsed.get(1) >= 160, "160 ms vencio a los " + elapsed.get(1));
+        } finally {
+            wheel.close();
+        }
+    }
+
+    @Test
+    void blockingServer() throws Exception {
+        pingAndReapIdle(ServerConfig.Mode.BLOCKING);
+        reapBlockedWriter(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        pingAndReapIdle(ServerConfig.Mode.NIO);
+        reapBlockedWriter(ServerConfig.Mode.NIO);
+    }
+
+    private void pingAndReapIdle(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = config(mode);
+        config.setPingIntervalMillis(100);
+        config.setIdleTimeoutMillis(400);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        long idleTimeouts = ChatMetrics.getInstance().getIdleTimeouts();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            assertEquals("NWU|Ana", read(anaIn, anaOut));
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("GTU|Ana", betoIn.readUTF());
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            assertEquals("NWU|Beto", read(anaIn, anaOut));
+
+            // Beto no responde los PIN, por lo que su conexion se cierra y Ana recibe su desconexion
+            assertEquals(MessagesCodes.PING, betoIn.readUTF());
+            assertEquals("RMV|Beto", read(anaIn, anaOut));
+            assertNull(server.getSessionOf("Beto"));
+            assertThrows(EOFException.class, () -> {
+                while (true) {
+                    betoIn.readUTF();
+                }
+            });
+            assertEquals(idleTimeouts + 1, ChatMetrics.getInstance().getIdleTimeouts());
+
+            // Ana sigue conectada y un PIN del cliente se responde con PON
+            anaOut.writeUTF(MessagesCodes.PING);
+            assertEquals(MessagesCodes.PONG, read(anaIn, anaOut));
+            anaOut.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "hola");
+            assertEquals("GBL|Ana|hola", read(anaIn, anaOut));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private void reapBlockedWriter(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = config(mode);
+        config.setPingIntervalMillis(0);
+        config.setIdleTimeoutMillis(0);
+        config.setWriteTimeoutMillis(200);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        long writeTimeouts = ChatMetrics.getInstance().getWriteTimeouts();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = new Socket()) {
+            beto.setReceiveBufferSize(4096);
+            beto.connect(new InetSocketAddress("localhost", PORT));
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            Thread reader = new Thread(() -> {
+                try {
+                    while (true) {
+                        anaIn.readUTF();
+                    }
+                } catch (IOException e) {
+                    // La conexion se cerro al terminar la prueba
+                }
+            });
+            reader.start();
+
+            // Beto deja de leer mientras Ana envia mensajes, hasta que su escritura no avanza y se cierra su conexion
+            char[] chars = new char[32 * 1024];
+            Arrays.fill(chars, 'x');
+            String message = MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + new String(chars);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (server.getSessionOf("Beto") != null && System.currentTimeMillis() < deadline) {
+                anaOut.writeUTF(message);
+                Thread.sleep(1);
+            }
+            assertNull(server.getSessionOf("Beto"));
+            assertTrue(server.getSessionOf("Ana") != null);
+            assertEquals(writeTimeouts + 1, ChatMetrics.getInstance().getWriteTimeouts());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static ServerConfig config(ServerConfig.Mode mode) {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        config.setHeartbeatTickMillis(10);
+        return config;
+    }
+
+    /**
+     * Metodo que lee el siguiente mensaje que no sea un PIN, respondiendo los PIN recibidos.
+     */
+    private static String read(DataInputStream in, DataOutputStream out) throws IOException {
+        String message;
+        while ((message = in.readUTF()).equals(MessagesCodes.PING)) {
+            out.writeUTF(MessagesCodes.PONG);
+        }
+        return message;
+    }
+}
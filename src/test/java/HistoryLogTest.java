@@ -0,0 +1,118 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.history.HistoryLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodes;
+import util.Frame;
+import util.FrameCodec;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistoryLogTest {
+
+    private static final int PORT = 2504;
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("chat-history");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void replayRollAndRetention() throws IOException {
+        try (HistoryLog history = new HistoryLog(directory, 1024, 4096, Long.MAX_VALUE)) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i, history.append(Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", "mensaje " + i)));
+            }
+            assertEquals(200, history.getNextSequence());
+            // Con segmentos de 1 KB y 4 KB de retencion solo quedan los mensajes mas recientes
+            assertTrue(history.getSegmentCount() <= 4);
+            assertTrue(history.getFirstSequence() > 0);
+
+            assertEquals(Arrays.asList("GBL|Ana|mensaje 197", "GBL|Ana|mensaje 198", "GBL|Ana|mensaje 199"),
+                    decode(history.last(3)));
+            assertEquals(Arrays.asList("GBL|Ana|mensaje 190", "GBL|Ana|mensaje 191"), decode(history.since(190, 2)));
+            List<Frame> all = history.since(0, 1000);
+            assertEquals(200 - history.getFirstSequence(), all.size());
+
+            ByteBuffer binary = history.last(1).get(0).view(BinaryCodes.VERSION_BINARY);
+            assertEquals(Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", "mensaje 199").view(BinaryCodes.VERSION_BINARY),
+                    binary);
+        }
+
+        // Al reabrir el directorio se conservan los mensajes y la secuencia
+        try (HistoryLog history = new HistoryLog(directory, 1024, 4096, Long.MAX_VALUE)) {
+            assertEquals(200, history.getNextSequence());
+            assertEquals(200, history.append(Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Beto", "de vuelta")));
+            assertEquals(Arrays.asList("GBL|Ana|mensaje 199", "GBL|Beto|de vuelta"), decode(history.last(2)));
+        }
+    }
+
+    @Test
+    void joiningClientAsksForHistory() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setHistoryDirectory(directory.toString());
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            anaOut.writeUTF("NWU|Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+            for (int i = 0; i < 5; i++) {
+                anaOut.writeUTF("GBL|hola " + i);
+                assertEquals("GBL|Ana|hola " + i, anaIn.readUTF());
+            }
+        }
+        try (Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            betoOut.writeUTF("HIS|last|2");
+            assertEquals("GBL|Ana|hola 3", betoIn.readUTF());
+            assertEquals("GBL|Ana|hola 4", betoIn.readUTF());
+            assertEquals("HIS|5", betoIn.readUTF());
+            betoOut.writeUTF("HIS|since|1");
+            assertEquals("GBL|Ana|hola 1", betoIn.readUTF());
+            assertEquals("GBL|Ana|hola 2", betoIn.readUTF());
+            assertEquals("GBL|Ana|hola 3", betoIn.readUTF());
+            assertEquals("GBL|Ana|hola 4", betoIn.readUTF());
+            assertEquals("HIS|5", betoIn.readUTF());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static List<String> decode(List<Frame> frames) throws IOException {
+        List<String> texts = new ArrayList<>();
+        for (Frame frame : frames) {
+            texts.add(FrameCodec.decode(frame.view(BinaryCodes.VERSION_TEXT)));
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,85 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.transport.InProcessClient;
+import chat.transport.InProcessTransport;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodec;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.MessagesCodes;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InProcessTest {
+
+    @Test
+    void inProcessClients() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        InProcessTransport transport = new InProcessTransport();
+        ChatServer server = new ChatServer(transport, config);
+        new Thread(server::serve).start();
+        try (InProcessClient ana = transport.connect()) {
+            // Beto se cierra durante la prueba, por lo que no se declara como recurso
+            InProcessClient beto = transport.connect();
+            try {
+                beto.send(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+                assertEquals("NWU|Beto", beto.receiveText(5, TimeUnit.SECONDS));
+                ana.send(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+                nextText(ana, "NWU|Ana");
+                nextText(beto, "NWU|Ana");
+
+                ana.send(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "hola");
+                assertEquals("GBL|Ana|hola", ana.receiveText(5, TimeUnit.SECONDS));
+                assertEquals("GBL|Ana|hola", beto.receiveText(5, TimeUnit.SECONDS));
+
+                beto.send(MessagesCodes.PRIVATE_MESSAGE + MessagesCodes.SEPARATOR + "Beto" + MessagesCodes.SEPARATOR
+                        + "Ana" + MessagesCodes.SEPARATOR + "chau");
+                assertEquals("PRV|Beto|Ana|chau", ana.receiveText(5, TimeUnit.SECONDS));
+                assertEquals("PRV|Beto|Ana|chau", beto.receiveText(5, TimeUnit.SECONDS));
+                assertNull(ana.receiveText(100, TimeUnit.MILLISECONDS));
+
+                // La version binaria se negocia igual que por un socket
+                beto.send(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY);
+                assertEquals("HLO|2", beto.receiveText(5, TimeUnit.SECONDS));
+                ana.send(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "binario");
+                BinaryFrameReader reader = new BinaryFrameReader(Integer.MAX_VALUE);
+                assertTrue(reader.next(beto.receive(5, TimeUnit.SECONDS)));
+                assertEquals(BinaryCodes.GLOBAL_MESSAGE, reader.opcode());
+                assertEquals("binario", reader.getString(1));
+                beto.send(BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "desde binario"));
+                nextText(ana, "GBL|Beto|desde binario");
+
+                // Al cerrar un cliente el resto recibe su salida
+                beto.close();
+                assertTrue(beto.isClosed());
+                assertThrows(IOException.class,
+                        () -> beto.send(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "x"));
+                nextText(ana, "RMV|Beto");
+            } finally {
+                beto.close();
+            }
+        } finally {
+            server.shutdown();
+        }
+        assertThrows(ConnectException.class, transport::connect);
+    }
+
+    private static void nextText(InProcessClient client, String expected) throws Exception {
+        while (true) {
+            String message = client.receiveText(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            if (message.equals(expected)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MailboxTest {
+
+    private static final int PORT = 2505;
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("chat-mailbox");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void offlineUserReceivesQueuedMessagesInOrder() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setPrivateEcho(false);
+        config.setMailboxDirectory(directory.toString());
+        // Con 100 bytes en memoria la mayoria de los mensajes pasan al archivo de la casilla
+        config.setMailboxMemoryBytes(100);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        ChatMetrics metrics = ChatMetrics.getInstance();
+        long spilled = metrics.getMailboxSpilled();
+        long delivered = metrics.getMailboxDelivered();
+        try (Socket ana = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            anaOut.writeUTF("NWU|Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+            for (int i = 0; i < 20; i++) {
+                anaOut.writeUTF("PRV|Ana|Beto|mensaje " + i);
+            }
+            // Un mensaje global confirma que el servidor ya proceso los privados anteriores
+            anaOut.writeUTF("GBL|listo");
+            assertEquals("GBL|Ana|listo", anaIn.readUTF());
+            assertEquals(20, server.getMailboxes().getDepth("Beto"));
+            assertTrue(metrics.getMailboxSpilled() - spilled > 0);
+
+            try (Socket beto = TestClients.connect(PORT)) {
+                DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+                DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+                betoOut.writeUTF("NWU|Beto");
+                assertEquals("GTU|Ana", betoIn.readUTF());
+                assertEquals("NWU|Beto", betoIn.readUTF());
+                for (int i = 0; i < 20; i++) {
+                    assertEquals("PRV|Ana|Beto|mensaje " + i, betoIn.readUTF());
+                }
+                assertEquals(0, server.getMailboxes().getDepth("Beto"));
+                assertEquals(20, metrics.getMailboxDelivered() - delivered);
+
+                // Con el usuario conectado los mensajes se entregan directamente
+                anaOut.writeUTF("PRV|Ana|Beto|ya estas");
+                assertEquals("PRV|Ana|Beto|ya estas", betoIn.readUTF());
+                assertEquals(0, server.getMailboxes().size());
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    void mailboxesAreLimitedAndSurviveARestart() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setPrivateEcho(false);
+        config.setMailboxDirectory(directory.toString());
+        config.setMailboxMemoryBytes(1);
+        config.setMailboxMaxUsers(3);
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'z');
+        String longName = new String(chars);
+        ChatMetrics metrics = ChatMetrics.getInstance();
+        long dropped = metrics.getMailboxDropped();
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            anaOut.writeUTF("NWU|Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+            for (int i = 0; i < 3; i++) {
+                anaOut.writeUTF("PRV|Ana|Beto|mensaje " + i);
+            }
+            anaOut.writeUTF("PRV|Ana|Carla|hola");
+            // Un nombre largo se guarda con el hash del nombre como archivo
+            anaOut.writeUTF("PRV|Ana|" + longName + "|hola");
+            // No hay lugar para una cuarta casilla
+            anaOut.writeUTF("PRV|Ana|Dario|hola");
+            anaOut.writeUTF("GBL|listo");
+            assertEquals("GBL|Ana|listo", anaIn.readUTF());
+            assertEquals(3, server.getMailboxes().size());
+            assertEquals(1, server.getMailboxes().getDepth(longName));
+            assertEquals(0, server.getMailboxes().getDepth("Dario"));
+            assertEquals(1, metrics.getMailboxDropped() - dropped);
+        } finally {
+            server.shutdown();
+        }
+
+        // Los mensajes guardados en disco se entregan luego de reiniciar el servidor
+        long delivered = metrics.getMailboxDelivered();
+        server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            betoOut.writeUTF("NWU|Beto");
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            for (int i = 0; i < 3; i++) {
+                assertEquals("PRV|Ana|Beto|mensaje " + i, betoIn.readUTF());
+            }
+            assertEquals(3, metrics.getMailboxDelivered() - delivered);
+            assertFalse(server.getMailboxes().hasPending("Beto"));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    void incompleteFrameIsDiscardedOnRestart() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setPrivateEcho(false);
+        config.setMailboxDirectory(directory.toString());
+        config.setMailboxMemoryBytes(1);
+        sendToBeto(config, 0, 2);
+
+        // Una escritura interrumpida deja un frame incompleto al final del archivo de Beto
+        Path file = directory.resolve("4265746f.mbx");
+        assertTrue(Files.exists(file));
+        Files.write(file, new byte[] {0, 0, 0, 100, 3, 0}, StandardOpenOption.APPEND);
+
+        // Los mensajes que pasan al archivo luego de reiniciar se agregan a continuacion del ultimo frame completo
+        sendToBeto(config, 2, 4);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            betoOut.writeUTF("NWU|Beto");
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            for (int i = 0; i < 4; i++) {
+                assertEquals("PRV|Ana|Beto|mensaje " + i, betoIn.readUTF());
+            }
+            assertFalse(server.getMailboxes().hasPending("Beto"));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Metodo que inicia el servidor y envia a Beto, desconectado, los mensajes de Ana numerados desde first hasta
+     * last, sin incluirlo.
+     */
+    private static void sendToBeto(ServerConfig config, int first, int last) throws Exception {
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            anaOut.writeUTF("NWU|Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+            for (int i = first; i < last; i++) {
+                anaOut.writeUTF("PRV|Ana|Beto|mensaje " + i);
+            }
+            anaOut.writeUTF("GBL|listo");
+            assertEquals("GBL|Ana|listo", anaIn.readUTF());
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodes;
+import util.MessagesCodes;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+    private static final int PORT = 2509;
+    private static final int METRICS_PORT = 2519;
+
+    static ChatServer server;
+
+    @BeforeAll
+    public static void initAll() {
+        ServerConfig config = new ServerConfig();
+        config.setMetricsPort(METRICS_PORT);
+        server = new ChatServer(PORT, config);
+        new Thread(() -> server.serve()).start();
+    }
+
+    @AfterAll
+    public static void tearDownAll() {
+        server.shutdown();
+    }
+
+    @Test
+    void countsFramesAndLatencies() throws Exception {
+        ChatMetrics metrics = ChatMetrics.getInstance();
+        try (Socket ana = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+
+            long globalIn = metrics.getFramesIn(BinaryCodes.GLOBAL_MESSAGE);
+            long globalOut = metrics.getFramesOut(BinaryCodes.GLOBAL_MESSAGE);
+            long decoded = metrics.getDecodeLatency().getCount();
+            long dispatched = metrics.getDispatchLatency().getCount();
+            anaOut.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "hola");
+            assertEquals("GBL|Ana|hola", anaIn.readUTF());
+
+            assertEquals(globalIn + 1, metrics.getFramesIn(BinaryCodes.GLOBAL_MESSAGE));
+            assertEquals(globalOut + 1, metrics.getFramesOut(BinaryCodes.GLOBAL_MESSAGE));
+            assertTrue(metrics.getDecodeLatency().getCount() > decoded);
+            assertTrue(metrics.getDispatchLatency().getCount() >= dispatched);
+            assertTrue(metrics.getConnectionsActive() >= 1);
+
+            ObjectName name = new ObjectName(ChatMetrics.OBJECT_NAME);
+            CompositeData decode = (CompositeData) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Decode");
+            assertTrue((Long) decode.get("count") > decoded);
+        }
+    }
+
+    @Test
+    void textEndpoint() throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (Socket socket = TestClients.connect(METRICS_PORT)) {
+            socket.getOutputStream().write("GET /metrics HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        assertEquals("HTTP/1.0 200 OK", lines.get(0));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("chat_connections_active ")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("chat_frames_in_total{code=\"NWU\"} ")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("chat_fanout_nanos{quantile=\"0.99\"} ")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("chat_write_errors_total ")));
+    }
+}
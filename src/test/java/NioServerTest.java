@@ -0,0 +1,93 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.FrameCodec;
+import util.MessagesCodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NioServerTest {
+
+    private static final int PORT = 2501;
+
+    static ChatServer server;
+
+    @BeforeAll
+    public static void initAll() {
+        ServerConfig config = new ServerConfig();
+        config.setMode(ServerConfig.Mode.NIO);
+        config.setIoThreads(2);
+        server = new ChatServer(PORT, config);
+        new Thread(() -> server.serve()).start();
+    }
+
+    @AfterAll
+    public static void tearDownAll() {
+        server.shutdown();
+    }
+
+    @Test
+    void globalAndPrivateChat() throws Exception {
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("GTU|Ana", betoIn.readUTF());
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            assertEquals("NWU|Beto", anaIn.readUTF());
+
+            long published = ChatMetrics.getInstance().getPublishLatency().getCount();
+            anaOut.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "hola \u00f1and\u00fa");
+            assertEquals("GBL|Ana|hola \u00f1and\u00fa", anaIn.readUTF());
+            assertEquals("GBL|Ana|hola \u00f1and\u00fa", betoIn.readUTF());
+            assertTrue(ChatMetrics.getInstance().getPublishLatency().getCount() > published);
+
+            anaOut.writeUTF("PRV|Ana|Beto|secreto");
+            assertEquals("PRV|Ana|Beto|secreto", betoIn.readUTF());
+            assertEquals("PRV|Ana|Beto|secreto", anaIn.readUTF());
+
+            // Un mensaje privado a un usuario no conectado no corta la conexion del emisor
+            anaOut.writeUTF("PRV|Ana|Nadie|hola");
+            assertEquals("PRV|Ana|Nadie|hola", anaIn.readUTF());
+            anaOut.writeUTF("PRV|Ana|Beto|sigo aca");
+            assertEquals("PRV|Ana|Beto|sigo aca", betoIn.readUTF());
+        }
+    }
+
+    @Test
+    void frameCodecMatchesDataStreams() throws IOException {
+        String message = "GBL|Ana|hola \u00f1and\u00fa \u20ac \u0000";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(message);
+
+        ByteBuffer encoded = FrameCodec.encode(message);
+        byte[] encodedBytes = new byte[encoded.remaining()];
+        encoded.duplicate().get(encodedBytes);
+        assertArrayEquals(bytes.toByteArray(), encodedBytes);
+
+        ByteBuffer partial = ByteBuffer.wrap(encodedBytes, 0, encodedBytes.length - 1);
+        assertNull(FrameCodec.decode(partial));
+        assertEquals(0, partial.position());
+        assertEquals(message, FrameCodec.decode(encoded));
+        assertEquals(0, encoded.remaining());
+    }
+}
@@ -0,0 +1,242 @@
+import chat.ChatServer;
+import chat.ChatSession;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.outbound.OutboundQueue;
+import org.junit.jupiter.api.Test;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutboundTest {
+
+    private static final int PORT = 2514;
+    private static final int DISCONNECT_PORT = 2515;
+
+    @Test
+    void priorityFramesSkipAheadOfBulkFrames() {
+        OutboundQueue queue = new OutboundQueue(0, ServerConfig.OverflowPolicy.DROP_OLDEST);
+        ByteBuffer global = frame(1, 10);
+        ByteBuffer presence = frame(2, 10);
+        ByteBuffer secondGlobal = frame(3, 10);
+        ByteBuffer secondPresence = frame(4, 10);
+        assertTrue(queue.offer(global, true));
+        assertTrue(queue.offer(presence, false));
+        assertTrue(queue.offer(secondGlobal, true));
+        assertTrue(queue.offer(secondPresence, false));
+        assertEquals(4, queue.size());
+        assertEquals(40, queue.getBytes());
+
+        assertEquals(presence, queue.poll());
+        assertEquals(secondPresence, queue.poll());
+        assertEquals(global, queue.poll());
+        assertEquals(secondGlobal, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.getBytes());
+    }
+
+    @Test
+    void overflowPolicies() {
+        long dropped = ChatMetrics.getInstance().getOutboundDropped();
+        OutboundQueue dropOldest = new OutboundQueue(30, ServerConfig.OverflowPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(dropOldest.offer(frame(i, 10), true));
+        }
+        assertEquals(Arrays.asList(2, 3, 4), drain(dropOldest));
+        assertEquals(dropped + 1, ChatMetrics.getInstance().getOutboundDropped());
+
+        OutboundQueue dropNew = new OutboundQueue(30, ServerConfig.OverflowPolicy.DROP_NEW);
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(dropNew.offer(frame(i, 10), true));
+        }
+        assertEquals(Arrays.asList(1, 2, 3), drain(dropNew));
+        assertEquals(dropped + 2, ChatMetrics.getInstance().getOutboundDropped());
+
+        // Un frame se acepta si la cola esta vacia, aunque supere el limite por si solo
+        assertTrue(dropNew.offer(frame(5, 100), true));
+        assertEquals(Arrays.asList(5), drain(dropNew));
+
+        // Los frames prioritarios no se descartan: si no entran se cierra la conexion una unica vez
+        OutboundQueue priority = new OutboundQueue(30, ServerConfig.OverflowPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(priority.offer(frame(i, 10), false));
+        }
+        assertFalse(priority.offer(frame(4, 10), false));
+        assertTrue(priority.offer(frame(5, 10), false));
+
+        // Salvo que la politica sea cerrar la conexion, un frame prioritario desplaza a los mensajes masivos
+        OutboundQueue dropNewPriority = new OutboundQueue(30, ServerConfig.OverflowPolicy.DROP_NEW);
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(dropNewPriority.offer(frame(i, 10), true));
+        }
+        assertTrue(dropNewPriority.offer(frame(4, 10), false));
+        assertEquals(Arrays.asList(4, 2, 3), drain(dropNewPriority));
+        assertEquals(dropped + 3, ChatMetrics.getInstance().getOutboundDropped());
+
+        OutboundQueue disconnect = new OutboundQueue(30, ServerConfig.OverflowPolicy.DISCONNECT);
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(disconnect.offer(frame(i, 10), true));
+        }
+        assertFalse(disconnect.offer(frame(4, 10), true));
+    }
+
+    @Test
+    void blockingServer() throws Exception {
+        privateFramesOvertakeGlobalFlood(ServerConfig.Mode.BLOCKING);
+        slowConsumerIsDisconnected(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        privateFramesOvertakeGlobalFlood(ServerConfig.Mode.NIO);
+        slowConsumerIsDisconnected(ServerConfig.Mode.NIO);
+    }
+
+    private void privateFramesOvertakeGlobalFlood(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = config(mode, ServerConfig.OverflowPolicy.DROP_OLDEST);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        long dropped = ChatMetrics.getInstance().getOutboundDropped();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = new Socket()) {
+            beto.setReceiveBufferSize(4096);
+            beto.setSoTimeout(5000);
+            beto.connect(new InetSocketAddress("localhost", PORT));
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            CountDownLatch echoed = register(ana, anaOut);
+            assertEquals("NWU|Ana", betoIn.readUTF());
+
+            // Beto deja de leer mientras Ana envia mensajes globales, hasta que su cola descarta los mas antiguos
+            ChatSession session = server.getSessionOf("Beto");
+            String message = flood();
+            long deadline = System.currentTimeMillis() + 10000;
+            while ((ChatMetrics.getInstance().getOutboundDropped() == dropped || session.getPendingFrames() < 8)
+                    && System.currentTimeMillis() < deadline) {
+                anaOut.writeUTF(message);
+                Thread.sleep(1);
+            }
+            assertTrue(ChatMetrics.getInstance().getOutboundDropped() > dropped);
+            // La cola de Beto no supera el limite de 256 KiB
+            assertTrue(session.getPendingFrames() >= 8 && session.getPendingFrames() <= 16);
+            assertTrue(server.getSessionOf("Beto") != null);
+
+            // El mensaje privado se escribe antes que los mensajes globales que aun estan encolados
+            anaOut.writeUTF(MessagesCodes.PRIVATE_MESSAGE + MessagesCodes.SEPARATOR + "Ana" + MessagesCodes.SEPARATOR
+                    + "Beto" + MessagesCodes.SEPARATOR + "hola");
+            // Ana recibe el eco luego de que el mensaje se encola para Beto
+            assertTrue(echoed.await(10, TimeUnit.SECONDS));
+            String received;
+            while (!(received = betoIn.readUTF()).startsWith(MessagesCodes.PRIVATE_MESSAGE)) {
+                assertTrue(received.startsWith(MessagesCodes.GLOBAL_MESSAGE));
+            }
+            assertEquals("PRV|Ana|Beto|hola", received);
+            assertTrue(betoIn.readUTF().startsWith(MessagesCodes.GLOBAL_MESSAGE));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private void slowConsumerIsDisconnected(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = config(mode, ServerConfig.OverflowPolicy.DISCONNECT);
+        ChatServer server = new ChatServer(DISCONNECT_PORT, config);
+        new Thread(server::serve).start();
+        long disconnects = ChatMetrics.getInstance().getSlowConsumerDisconnects();
+        try (Socket ana = TestClients.connect(DISCONNECT_PORT); Socket beto = new Socket()) {
+            beto.setReceiveBufferSize(4096);
+            beto.setSoTimeout(5000);
+            beto.connect(new InetSocketAddress("localhost", DISCONNECT_PORT));
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            register(ana, anaOut);
+            assertEquals("NWU|Ana", betoIn.readUTF());
+
+            String message = flood();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (server.getSessionOf("Beto") != null && System.currentTimeMillis() < deadline) {
+                anaOut.writeUTF(message);
+                Thread.sleep(1);
+            }
+            assertNull(server.getSessionOf("Beto"));
+            assertTrue(server.getSessionOf("Ana") != null);
+            assertEquals(disconnects + 1, ChatMetrics.getInstance().getSlowConsumerDisconnects());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static ServerConfig config(ServerConfig.Mode mode, ServerConfig.OverflowPolicy policy) {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        config.setWriteTimeoutMillis(0);
+        config.setOutboundMaxBytes(256 * 1024);
+        config.setOutboundPolicy(policy);
+        return config;
+    }
+
+    /**
+     * Metodo que registra a Ana y descarta en otro thread todo lo que recibe.
+     * @return latch que se libera cuando Ana recibe el eco de un mensaje privado.
+     */
+    private static CountDownLatch register(Socket ana, DataOutputStream anaOut) throws IOException {
+        DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+        anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+        CountDownLatch echoed = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    if (anaIn.readUTF().startsWith(MessagesCodes.PRIVATE_MESSAGE)) {
+                        echoed.countDown();
+                    }
+                }
+            } catch (IOException e) {
+                // La conexion se cerro al terminar la prueba
+            }
+        });
+        reader.start();
+        return echoed;
+    }
+
+    private static String flood() {
+        char[] chars = new char[16 * 1024];
+        Arrays.fill(chars, 'x');
+        return MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + new String(chars);
+    }
+
+    private static ByteBuffer frame(int id, int length) {
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.put(0, (byte) id);
+        return frame;
+    }
+
+    private static List<Integer> drain(OutboundQueue queue) {
+        List<Integer> ids = new ArrayList<>();
+        ByteBuffer frame;
+        while ((frame = queue.poll()) != null) {
+            ids.add((int) frame.get(0));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,56 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import org.junit.jupiter.api.Test;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PresenceTest {
+
+    private static final int PORT = 2503;
+
+    @Test
+    void joinsInTheSameWindowAreSentAsOneDelta() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(300);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket dora = TestClients.connect(PORT); Socket eva = TestClients.connect(PORT);
+                Socket fede = TestClients.connect(PORT)) {
+            DataOutputStream doraOut = new DataOutputStream(dora.getOutputStream());
+            DataInputStream doraIn = new DataInputStream(dora.getInputStream());
+            DataOutputStream evaOut = new DataOutputStream(eva.getOutputStream());
+            DataInputStream evaIn = new DataInputStream(eva.getInputStream());
+            DataOutputStream fedeOut = new DataOutputStream(fede.getOutputStream());
+            DataInputStream fedeIn = new DataInputStream(fede.getInputStream());
+
+            doraOut.writeUTF(MessagesCodes.HELLO + "|1|" + MessagesCodes.FEATURE_PRESENCE_DELTA + "|desconocida");
+            assertEquals("HLO|1|presence", doraIn.readUTF());
+            doraOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Dora");
+            assertEquals("SNP|1|Dora", doraIn.readUTF());
+
+            // Dos clientes sin la funcionalidad se conectan dentro de la misma ventana
+            evaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Eva");
+            Thread.sleep(20);
+            fedeOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Fede");
+            assertEquals("DLT|2|+Eva|+Fede", doraIn.readUTF());
+            assertEquals("GTU|Dora", evaIn.readUTF());
+            assertEquals("NWU|Eva", evaIn.readUTF());
+            assertEquals("NWU|Fede", evaIn.readUTF());
+            assertEquals("GTU|Dora", fedeIn.readUTF());
+            assertEquals("NWU|Eva", fedeIn.readUTF());
+            assertEquals("NWU|Fede", fedeIn.readUTF());
+
+            evaOut.writeUTF(MessagesCodes.REMOVE_USER + MessagesCodes.SEPARATOR + "Eva");
+            assertEquals("DLT|3|-Eva", doraIn.readUTF());
+            assertEquals("RMV|Eva", fedeIn.readUTF());
+            assertEquals(3, server.getPresence().getVersion());
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.ratelimit.RateLimiter;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodec;
+import util.BinaryCodes;
+import util.MessagesCodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitTest {
+
+    private static final int PORT = 2522;
+
+    @Test
+    void tokenBucket() throws InterruptedException {
+        ServerConfig config = new ServerConfig();
+        config.setRateLimit(MessagesCodes.GLOBAL_MESSAGE, 10, 3);
+        RateLimiter limiter = new RateLimiter(config);
+        assertTrue(limiter.isLimited(BinaryCodes.GLOBAL_MESSAGE));
+        assertFalse(limiter.isLimited(BinaryCodes.PRIVATE_MESSAGE));
+        assertFalse(limiter.isLimited((byte) -1));
+
+        // La rafaga se consume y luego se recupera un token cada 100 ms
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(BinaryCodes.GLOBAL_MESSAGE, now));
+        }
+        long wait = limiter.tryAcquire(BinaryCodes.GLOBAL_MESSAGE, now);
+        assertTrue(wait > 0 && wait <= 100_000_000);
+        assertEquals(0, limiter.tryAcquire(BinaryCodes.GLOBAL_MESSAGE, now + 100_000_000));
+        assertTrue(limiter.tryAcquire(BinaryCodes.GLOBAL_MESSAGE, now + 100_000_000) > 0);
+
+        // Con deuda cada peticion espera un token mas
+        assertEquals(100_000_000, limiter.acquire(BinaryCodes.GLOBAL_MESSAGE, now + 100_000_000));
+        assertEquals(200_000_000, limiter.acquire(BinaryCodes.GLOBAL_MESSAGE, now + 100_000_000));
+
+        // Sin locks, varios threads nunca toman mas tokens que la rafaga
+        config.setRateLimit(MessagesCodes.GLOBAL_MESSAGE, 1, 1000);
+        RateLimiter shared = new RateLimiter(config);
+        long start = System.nanoTime();
+        AtomicInteger acquired = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (shared.tryAcquire(BinaryCodes.GLOBAL_MESSAGE, start) == 0) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, acquired.get());
+    }
+
+    @Test
+    void blockingServer() throws Exception {
+        limitActions(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        limitActions(ServerConfig.Mode.NIO);
+    }
+
+    private void limitActions(ServerConfig.Mode mode) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        config.setRateLimit(MessagesCodes.GLOBAL_MESSAGE, 1, 2);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try {
+            ChatMetrics metrics = ChatMetrics.getInstance();
+            try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+                DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+                DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+                DataInputStream betoIn = register(ana, beto);
+
+                // La tercera peticion GBL seguida se rechaza; las peticiones sin limite se atienden
+                long limited = metrics.getRateLimited(BinaryCodes.GLOBAL_MESSAGE);
+                anaOut.write(globals(3, "uno"));
+                anaOut.writeUTF(MessagesCodes.PRIVATE_MESSAGE + MessagesCodes.SEPARATOR + "Ana"
+                        + MessagesCodes.SEPARATOR + "Beto" + MessagesCodes.SEPARATOR + "hola");
+                assertEquals(new HashSet<>(Arrays.asList("GBL|Ana|uno0", "GBL|Ana|uno1", "ERR|rate|GBL",
+                        "PRV|Ana|Beto|hola")), new HashSet<>(Arrays.asList(anaIn.readUTF(), anaIn.readUTF(),
+                        anaIn.readUTF(), anaIn.readUTF())));
+                assertEquals(new HashSet<>(Arrays.asList("GBL|Ana|uno0", "GBL|Ana|uno1", "PRV|Ana|Beto|hola")),
+                        new HashSet<>(Arrays.asList(betoIn.readUTF(), betoIn.readUTF(), betoIn.readUTF())));
+                assertEquals(limited + 1, metrics.getRateLimited(BinaryCodes.GLOBAL_MESSAGE));
+            }
+
+            // Con la demora se atienden todas las peticiones, al ritmo del limite
+            config.setRateLimit(MessagesCodes.GLOBAL_MESSAGE, 20, 1);
+            config.setRateLimitAction(ServerConfig.RateLimitAction.DELAY);
+            waitUntilLeft(server);
+            try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+                DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+                DataInputStream betoIn = register(ana, beto);
+                long start = System.nanoTime();
+                anaOut.write(globals(6, "dos"));
+                for (int i = 0; i < 6; i++) {
+                    assertEquals("GBL|Ana|dos" + i, betoIn.readUTF());
+                }
+                // Luego del primer token cada peticion demora la siguiente 50 ms
+                assertTrue(System.nanoTime() - start >= 150_000_000);
+            }
+
+            // Al superar el limite se cierra la conexion
+            config.setRateLimit(MessagesCodes.GLOBAL_MESSAGE, 1, 1);
+            config.setRateLimitAction(ServerConfig.RateLimitAction.DISCONNECT);
+            waitUntilLeft(server);
+            long disconnects = metrics.getRateLimitDisconnects();
+            try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+                DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+                DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+                DataInputStream betoIn = register(ana, beto);
+                anaOut.write(globals(2, "tres"));
+                assertEquals(new HashSet<>(Arrays.asList("GBL|Ana|tres0", "RMV|Ana")),
+                        new HashSet<>(Arrays.asList(betoIn.readUTF(), betoIn.readUTF())));
+                // La conexion se cierra sin atender la segunda peticion, aunque no se haya escrito el eco de la primera
+                assertThrows(IOException.class, () -> {
+                    while (true) {
+                        assertEquals("GBL|Ana|tres0", anaIn.readUTF());
+                    }
+                });
+                assertEquals(disconnects + 1, metrics.getRateLimitDisconnects());
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    void delayedBatchCannotExceedTheMaximumDebt() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        config.setRateLimit(MessagesCodes.GLOBAL_MESSAGE, 1, 1);
+        config.setRateLimitAction(ServerConfig.RateLimitAction.DELAY);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        long disconnects = ChatMetrics.getInstance().getRateLimitDisconnects();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            anaOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY
+                    + MessagesCodes.SEPARATOR + MessagesCodes.FEATURE_BATCH);
+            assertEquals("HLO|2|batch", anaIn.readUTF());
+            TestClients.writeBinary(anaOut, BinaryCodec.encode(BinaryCodes.NEW_USER, "Ana"));
+            assertEquals("NWU|Ana", betoIn.readUTF());
+
+            // Las peticiones de un frame BAT se atienden sin demorar la lectura entre ellas, por lo que al superar la
+            // deuda maxima se cierra la conexion y el resto del frame no se atiende
+            int count = RateLimiter.MAX_DEBT_TOKENS + 1000;
+            ByteBuffer[] requests = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                requests[i] = BinaryCodec.encode(BinaryCodes.GLOBAL_MESSAGE, "x");
+            }
+            TestClients.writeBinary(anaOut, BinaryCodec.batch(requests));
+
+            // La desconexion es prioritaria y puede recibirse antes que los mensajes masivos
+            int published = 0;
+            boolean removed = false;
+            beto.setSoTimeout(1000);
+            try {
+                while (true) {
+                    String message = betoIn.readUTF();
+                    if (message.equals("RMV|Ana")) {
+                        removed = true;
+                    } else {
+                        assertEquals("GBL|Ana|x", message);
+                        published++;
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                // No quedan mensajes por recibir
+            }
+            assertTrue(removed);
+            // La rafaga mas la deuda maxima, y a lo sumo los tokens recuperados mientras se atendia el frame
+            int admitted = 1 + RateLimiter.MAX_DEBT_TOKENS;
+            assertTrue(published >= admitted && published <= admitted + 2, "Se publicaron " + published);
+            assertEquals(disconnects + 1, ChatMetrics.getInstance().getRateLimitDisconnects());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Metodo que registra a Ana y a Beto.
+     * @return input de Beto, luego de recibir el registro de Ana.
+     */
+    private static DataInputStream register(Socket ana, Socket beto) throws IOException {
+        DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+        DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+        DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+        DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+        betoOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Beto");
+        assertEquals("NWU|Beto", betoIn.readUTF());
+        anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+        assertEquals("GTU|Beto", anaIn.readUTF());
+        assertEquals("NWU|Ana", anaIn.readUTF());
+        assertEquals("NWU|Ana", betoIn.readUTF());
+        return betoIn;
+    }
+
+    private static void waitUntilLeft(ChatServer server) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((server.getSessionOf("Ana") != null || server.getSessionOf("Beto") != null)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static byte[] globals(int count, String prefix) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream requests = new DataOutputStream(bytes);
+        for (int i = 0; i < count; i++) {
+            requests.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + prefix + i);
+        }
+        return bytes.toByteArray();
+    }
+}
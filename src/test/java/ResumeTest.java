@@ -0,0 +1,179 @@
+import chat.ChatServer;
+import chat.ChatSession;
+import chat.ServerConfig;
+import chat.resume.ReplayBuffer;
+import org.junit.jupiter.api.Test;
+import util.Frame;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResumeTest {
+
+    private static final int PORT = 2512;
+
+    @Test
+    void replayBufferKeepsTheLastFrames() {
+        ReplayBuffer buffer = new ReplayBuffer(3);
+        Frame[] frames = new Frame[5];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = Frame.of(MessagesCodes.GLOBAL_MESSAGE, "Ana", String.valueOf(i));
+            buffer.add(frames[i]);
+        }
+        assertEquals(5, buffer.getCount());
+        assertEquals(Arrays.asList(frames[2], frames[3], frames[4]), buffer.since(2));
+        assertEquals(Arrays.asList(frames[4]), buffer.since(4));
+        assertTrue(buffer.since(5).isEmpty());
+        // Los frames reemplazados, o que aun no se enviaron, no pueden reenviarse
+        assertNull(buffer.since(1));
+        assertNull(buffer.since(6));
+    }
+
+    @Test
+    void blockingServer() throws Exception {
+        resumeWithoutPresenceChurn(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        resumeWithoutPresenceChurn(ServerConfig.Mode.NIO);
+    }
+
+    @Test
+    void sessionIsReleasedAfterTheGracePeriod() throws Exception {
+        ServerConfig config = config(ServerConfig.Mode.NIO);
+        config.setResumeGraceMillis(200);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+
+            String token;
+            try (Socket beto = TestClients.connect(PORT)) {
+                token = register(beto, "Beto");
+            }
+            assertEquals("NWU|Beto", anaIn.readUTF());
+            assertEquals("RMV|Beto", anaIn.readUTF());
+            assertNull(server.getSessionOf("Beto"));
+
+            try (Socket beto = TestClients.connect(PORT)) {
+                DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+                DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+                hello(betoOut, betoIn);
+                betoOut.writeUTF(MessagesCodes.RESUME + MessagesCodes.SEPARATOR + token + MessagesCodes.SEPARATOR + "2");
+                assertEquals(MessagesCodes.RESUME, betoIn.readUTF());
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private void resumeWithoutPresenceChurn(ServerConfig.Mode mode) throws Exception {
+        ChatServer server = new ChatServer(PORT, config(mode));
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            anaOut.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + "Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+
+            String token;
+            ChatSession previous;
+            try (Socket beto = TestClients.connect(PORT)) {
+                token = register(beto, "Beto");
+                previous = server.getSessionOf("Beto");
+                DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+                betoOut.writeUTF(MessagesCodes.JOIN_ROOM + MessagesCodes.SEPARATOR + "sala");
+                assertEquals("JON|sala|Beto", new DataInputStream(beto.getInputStream()).readUTF());
+            }
+            assertEquals("NWU|Beto", anaIn.readUTF());
+
+            // Mientras Beto esta desconectado sus mensajes se conservan
+            anaOut.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "uno");
+            assertEquals("GBL|Ana|uno", anaIn.readUTF());
+            anaOut.writeUTF(MessagesCodes.PRIVATE_MESSAGE + MessagesCodes.SEPARATOR + "Ana" + MessagesCodes.SEPARATOR
+                    + "Beto" + MessagesCodes.SEPARATOR + "dos");
+            assertEquals("PRV|Ana|Beto|dos", anaIn.readUTF());
+
+            try (Socket beto = TestClients.connect(PORT)) {
+                DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+                DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+                hello(betoOut, betoIn);
+                // Beto recibio GTU, NWU y JON luego del RSM
+                betoOut.writeUTF(MessagesCodes.RESUME + MessagesCodes.SEPARATOR + token + MessagesCodes.SEPARATOR + "3");
+                String resumed = betoIn.readUTF();
+                assertTrue(resumed.startsWith(MessagesCodes.RESUME + MessagesCodes.SEPARATOR));
+                assertNotEquals(MessagesCodes.RESUME + MessagesCodes.SEPARATOR + token, resumed);
+                assertEquals("GBL|Ana|uno", betoIn.readUTF());
+                assertEquals("PRV|Ana|Beto|dos", betoIn.readUTF());
+
+                ChatSession current = server.getSessionOf("Beto");
+                assertNotSame(previous, current);
+                assertEquals("Beto", current.getUserName());
+                assertTrue(server.getRooms().get("sala").contains(current));
+
+                // Ana no vio la desconexion ni la reconexion de Beto
+                anaOut.writeUTF(MessagesCodes.GLOBAL_MESSAGE + MessagesCodes.SEPARATOR + "tres");
+                assertEquals("GBL|Ana|tres", anaIn.readUTF());
+                assertEquals("GBL|Ana|tres", betoIn.readUTF());
+                betoOut.writeUTF(MessagesCodes.ROOM_MESSAGE + MessagesCodes.SEPARATOR + "sala" + MessagesCodes.SEPARATOR
+                        + "hola");
+                assertEquals("ROM|sala|Beto|hola", betoIn.readUTF());
+
+                // El token anterior ya no puede utilizarse
+                try (Socket other = TestClients.connect(PORT)) {
+                    DataOutputStream otherOut = new DataOutputStream(other.getOutputStream());
+                    DataInputStream otherIn = new DataInputStream(other.getInputStream());
+                    hello(otherOut, otherIn);
+                    otherOut.writeUTF(MessagesCodes.RESUME + MessagesCodes.SEPARATOR + token + MessagesCodes.SEPARATOR
+                            + "3");
+                    assertEquals(MessagesCodes.RESUME, otherIn.readUTF());
+                }
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static ServerConfig config(ServerConfig.Mode mode) {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        return config;
+    }
+
+    private static void hello(DataOutputStream out, DataInputStream in) throws Exception {
+        out.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + "1" + MessagesCodes.SEPARATOR
+                + MessagesCodes.FEATURE_RESUME);
+        assertEquals("HLO|1|resume", in.readUTF());
+    }
+
+    /**
+     * Metodo que registra un usuario que puede reanudar su sesion.
+     * @return token recibido.
+     */
+    private static String register(Socket socket, String userName) throws Exception {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        hello(out, in);
+        out.writeUTF(MessagesCodes.NEW_USER + MessagesCodes.SEPARATOR + userName);
+        String[] resume = in.readUTF().split("\\" + MessagesCodes.SEPARATOR);
+        assertEquals(MessagesCodes.RESUME, resume[0]);
+        assertEquals("GTU|Ana", in.readUTF());
+        assertEquals("NWU|" + userName, in.readUTF());
+        return resume[1];
+    }
+}
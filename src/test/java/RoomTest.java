@@ -0,0 +1,75 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RoomTest {
+
+    private static final int PORT = 2506;
+
+    @Test
+    void roomMessagesOnlyReachMembers() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT);
+                Socket carla = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            DataOutputStream carlaOut = new DataOutputStream(carla.getOutputStream());
+            DataInputStream carlaIn = new DataInputStream(carla.getInputStream());
+            anaOut.writeUTF("NWU|Ana");
+            assertEquals("NWU|Ana", anaIn.readUTF());
+            betoOut.writeUTF("NWU|Beto");
+            assertEquals("GTU|Ana", betoIn.readUTF());
+            assertEquals("NWU|Beto", betoIn.readUTF());
+            assertEquals("NWU|Beto", anaIn.readUTF());
+            carlaOut.writeUTF("NWU|Carla");
+            while (!"NWU|Carla".equals(carlaIn.readUTF())) {
+                // Lista de usuarios conectados
+            }
+            assertEquals("NWU|Carla", anaIn.readUTF());
+            assertEquals("NWU|Carla", betoIn.readUTF());
+
+            anaOut.writeUTF("JON|java");
+            assertEquals("JON|java|Ana", anaIn.readUTF());
+            betoOut.writeUTF("JON|java");
+            assertEquals("JON|java|Beto", anaIn.readUTF());
+            assertEquals("JON|java|Beto", betoIn.readUTF());
+            assertEquals(2, server.getRooms().get("java").size());
+
+            anaOut.writeUTF("ROM|java|hola sala");
+            assertEquals("ROM|java|Ana|hola sala", anaIn.readUTF());
+            assertEquals("ROM|java|Ana|hola sala", betoIn.readUTF());
+
+            // Carla no es miembro: no recibe los mensajes de la sala ni puede enviarle
+            carlaOut.writeUTF("ROM|java|intruso");
+            carlaOut.writeUTF("GBL|hola a todos");
+            assertEquals("GBL|Carla|hola a todos", carlaIn.readUTF());
+            assertEquals("GBL|Carla|hola a todos", anaIn.readUTF());
+            assertEquals("GBL|Carla|hola a todos", betoIn.readUTF());
+
+            betoOut.writeUTF("LVE|java");
+            assertEquals("LVE|java|Beto", betoIn.readUTF());
+            assertEquals("LVE|java|Beto", anaIn.readUTF());
+            assertEquals(1, server.getRooms().get("java").size());
+
+            // Al irse el ultimo miembro la sala se elimina
+            anaOut.writeUTF("LVE|java");
+            assertEquals("LVE|java|Ana", anaIn.readUTF());
+            assertNull(server.getRooms().get("java"));
+            assertEquals(0, server.getRooms().size());
+        } finally {
+            server.shutdown();
+        }
+    }
+}
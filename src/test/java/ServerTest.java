@@ -36,7 +36,7 @@ public class ServerTest {
                     DataOutputStream dataOut = new DataOutputStream(socket.getOutputStream());
                     registerNewUser(dataOut, "Chiri");
                     Thread.sleep(1000);
-                    log.info("Cantidad de usuarios conectados: " + ChatServer.getClientsConnected());
+                    log.info("Cantidad de usuarios conectados: " + server.getRegistry().size());
                     Thread.sleep(1000);
                     dataOut.close();
                     socket.close();
@@ -58,7 +58,7 @@ public class ServerTest {
                     DataOutputStream dataOut = new DataOutputStream(socket.getOutputStream());
                     registerNewUser(dataOut, "Chiri2");
                     Thread.sleep(1000);
-                    log.info("Cantidad de usuarios conectados: " + ChatServer.getClientsConnected());
+                    log.info("Cantidad de usuarios conectados: " + server.getRegistry().size());
                     Thread.sleep(1000);
                     dataOut.close();
                     socket.close();
@@ -80,7 +80,7 @@ public class ServerTest {
                     DataOutputStream dataOut = new DataOutputStream(socket.getOutputStream());
                     registerNewUser(dataOut, "Chiri3");
                     Thread.sleep(1000);
-                    log.info("Cantidad de usuarios conectados: " + ChatServer.getClientsConnected());
+                    log.info("Cantidad de usuarios conectados: " + server.getRegistry().size());
                     Thread.sleep(1000);
                     dataOut.close();
                     socket.close();
@@ -102,7 +102,7 @@ public class ServerTest {
                     DataOutputStream dataOut = new DataOutputStream(socket.getOutputStream());
                     registerNewUser(dataOut, "Chiri4");
                     Thread.sleep(1000);
-                    log.info("Cantidad de usuarios conectados: " + ChatServer.getClientsConnected());
+                    log.info("Cantidad de usuarios conectados: " + server.getRegistry().size());
                     Thread.sleep(1000);
                     dataOut.close();
                     socket.close();
@@ -0,0 +1,91 @@
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Metodos comunes de las pruebas para conectarse al servidor y escribir y leer frames binarios como lo haria un
+ * cliente.
+ * @author Agustin Chirichigno
+ * @author Braian Varona
+ * @version 1.0
+ */
+final class TestClients {
+
+    private static final int CONNECT_ATTEMPTS = 50;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+
+    private TestClients() {
+    }
+
+    /**
+     * Metodo que se conecta al servidor local, reintentando mientras el servidor aun no comenzo a escuchar.
+     * @param port puerto del servidor.
+     * @return socket conectado, con un tiempo maximo de lectura de 5 segundos.
+     */
+    static Socket connect(int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Socket socket = new Socket("localhost", port);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                return socket;
+            } catch (ConnectException e) {
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Metodo que escribe un frame ya codificado, por ejemplo con {@link util.BinaryCodec}.
+     */
+    static void writeBinary(DataOutputStream out, ByteBuffer frame) throws IOException {
+        out.write(frame.array(), 0, frame.limit());
+    }
+
+    /**
+     * Metodo que lee un frame binario completo.
+     * @return decodificador posicionado sobre el frame leido.
+     */
+    static BinaryFrameReader readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        ByteBuffer frame = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + length);
+        frame.putInt(length);
+        in.readFully(frame.array(), BinaryCodes.HEADER_LENGTH, length);
+        frame.rewind();
+        BinaryFrameReader reader = new BinaryFrameReader(Integer.MAX_VALUE);
+        assertTrue(reader.next(frame));
+        return reader;
+    }
+
+    /**
+     * Metodo que lee un frame binario completo.
+     * @return opcode y campos de texto del frame, como en {@link #fields(BinaryFrameReader)}.
+     */
+    static List<String> readBinary(DataInputStream in) throws IOException {
+        return fields(readFrame(in));
+    }
+
+    /**
+     * Metodo que retorna el opcode del frame decodificado seguido de sus campos como texto.
+     */
+    static List<String> fields(BinaryFrameReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        fields.add(String.valueOf(reader.opcode()));
+        for (int i = 0; i < reader.fieldCount(); i++) {
+            fields.add(reader.getString(i));
+        }
+        return fields;
+    }
+}
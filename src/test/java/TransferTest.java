@@ -0,0 +1,266 @@
+import chat.ChatServer;
+import chat.ServerConfig;
+import chat.metrics.ChatMetrics;
+import chat.transport.InProcessClient;
+import chat.transport.InProcessTransport;
+import org.junit.jupiter.api.Test;
+import util.BinaryCodec;
+import util.BinaryCodes;
+import util.BinaryFrameReader;
+import util.MessagesCodes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransferTest {
+
+    private static final int PORT = 2520;
+    private static final int SIZE = 1024 * 1024 + 123;
+    private static final String ERROR = String.valueOf(BinaryCodes.ERROR);
+    private static final String FILE = String.valueOf(BinaryCodes.FILE);
+
+    @Test
+    void blockingServer() throws Exception {
+        transfer(ServerConfig.Mode.BLOCKING);
+    }
+
+    @Test
+    void nioServer() throws Exception {
+        transfer(ServerConfig.Mode.NIO);
+    }
+
+    private void transfer(ServerConfig.Mode mode) throws Exception {
+        Path directory = Files.createTempDirectory("transfer");
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setIoThreads(1);
+        config.setPresenceWindowMillis(0);
+        config.setTransferDirectory(directory.toString());
+        config.setTransferChunkBytes(16 * 1024);
+        config.setTransferWindow(4);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        ChatMetrics metrics = ChatMetrics.getInstance();
+        long bytesReceived = metrics.getTransferBytesReceived();
+        long bytesSent = metrics.getTransferBytesSent();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = TestClients.connect(PORT);
+                Socket carla = TestClients.connect(PORT)) {
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            DataOutputStream betoOut = new DataOutputStream(beto.getOutputStream());
+            DataInputStream betoIn = new DataInputStream(beto.getInputStream());
+            register(anaOut, anaIn, "Ana");
+            register(betoOut, betoIn, "Beto");
+
+            // Los archivos solo se aceptan junto con la version binaria
+            DataOutputStream carlaOut = new DataOutputStream(carla.getOutputStream());
+            carlaOut.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + "1" + MessagesCodes.SEPARATOR
+                    + MessagesCodes.FEATURE_TRANSFER);
+            assertEquals("HLO|1", new DataInputStream(carla.getInputStream()).readUTF());
+
+            // Un archivo para un usuario desconocido se rechaza
+            TestClients.writeBinary(anaOut, BinaryCodec.encode(BinaryCodes.FILE, "1", "Nadie", "datos.bin", "10"));
+            assertEquals(Arrays.asList(ERROR, "transfer", "FIL", "1"),
+                    TestClients.fields(next(anaIn, BinaryCodes.ERROR)));
+
+            // Ana envia el archivo en porciones, solo las que el servidor le admite
+            byte[] content = new byte[SIZE];
+            new Random(23).nextBytes(content);
+            upload(anaOut, anaIn, "2", "Beto", content);
+            assertEquals(Arrays.asList(FILE, "2", "Beto", "datos.bin", String.valueOf(SIZE)),
+                    TestClients.fields(next(anaIn, BinaryCodes.FILE)));
+
+            // Beto recibe el archivo con un id asignado por el servidor, seguido de su contenido
+            List<String> file = TestClients.fields(next(betoIn, BinaryCodes.FILE));
+            assertEquals(Arrays.asList("Ana", "datos.bin", String.valueOf(SIZE)), file.subList(2, 5));
+            byte[] received = new byte[SIZE];
+            int offset = 0;
+            while (offset < SIZE) {
+                BinaryFrameReader chunk = next(betoIn, BinaryCodes.CHUNK);
+                assertEquals(file.get(1), chunk.getString(0));
+                offset += chunk.getBytes(1, received, offset);
+            }
+            assertArrayEquals(content, received);
+
+            assertTrue(metrics.getTransferBytesReceived() - bytesReceived >= SIZE);
+            assertTrue(metrics.getTransferBytesSent() - bytesSent >= SIZE);
+            // El archivo temporal se elimina al terminar de enviarse
+            for (int attempt = 0; !isEmpty(directory); attempt++) {
+                assertTrue(attempt < 50);
+                Thread.sleep(100);
+            }
+        } finally {
+            server.shutdown();
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void receiverIsToldWhenItsConnectionRejectsTheFile() throws Exception {
+        Path directory = Files.createTempDirectory("transfer");
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setTransferDirectory(directory.toString());
+        // Las conexiones en memoria no aceptan el contenido de los archivos
+        InProcessTransport transport = new InProcessTransport();
+        ChatServer server = new ChatServer(transport, config);
+        new Thread(server::serve).start();
+        try (InProcessClient ana = transport.connect(); InProcessClient beto = transport.connect()) {
+            register(ana, "Ana");
+            register(beto, "Beto");
+            ana.send(BinaryCodec.encode(BinaryCodes.FILE, "1", "Beto", "datos.bin", "3"));
+            assertEquals("1", next(ana, BinaryCodes.CREDIT).getString(0));
+            ana.send(chunk("1", new byte[] {1, 2, 3}, 0, 3));
+
+            String id = next(beto, BinaryCodes.FILE).getString(0);
+            assertEquals(Arrays.asList(ERROR, "transfer", "FIL", id),
+                    TestClients.fields(next(beto, BinaryCodes.ERROR)));
+            assertEquals(Arrays.asList(ERROR, "transfer", "FIL", "1"),
+                    TestClients.fields(next(ana, BinaryCodes.ERROR)));
+        } finally {
+            server.shutdown();
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void filesQueuedForAReceiverAreLimited() throws Exception {
+        Path directory = Files.createTempDirectory("transfer");
+        ServerConfig config = new ServerConfig();
+        config.setPresenceWindowMillis(0);
+        config.setTransferDirectory(directory.toString());
+        config.setTransferChunkBytes(16 * 1024);
+        config.setTransferWindow(4);
+        config.setTransferMaxQueuedFiles(1);
+        ChatServer server = new ChatServer(PORT, config);
+        new Thread(server::serve).start();
+        try (Socket ana = TestClients.connect(PORT); Socket beto = new Socket()) {
+            beto.setReceiveBufferSize(4096);
+            beto.connect(new InetSocketAddress("localhost", PORT));
+            beto.setSoTimeout(5000);
+            DataOutputStream anaOut = new DataOutputStream(ana.getOutputStream());
+            DataInputStream anaIn = new DataInputStream(ana.getInputStream());
+            register(anaOut, anaIn, "Ana");
+            register(new DataOutputStream(beto.getOutputStream()), new DataInputStream(beto.getInputStream()), "Beto");
+
+            // Beto no lee, por lo que el primer archivo queda encolado y el segundo no entra en su cola
+            byte[] content = new byte[4 * SIZE];
+            upload(anaOut, anaIn, "1", "Beto", content);
+            assertEquals(Arrays.asList(FILE, "1", "Beto", "datos.bin", String.valueOf(content.length)),
+                    TestClients.fields(next(anaIn, BinaryCodes.FILE)));
+            upload(anaOut, anaIn, "2", "Beto", new byte[10]);
+            assertEquals(Arrays.asList(ERROR, "transfer", "FIL", "2"),
+                    TestClients.fields(next(anaIn, BinaryCodes.ERROR)));
+        } finally {
+            server.shutdown();
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void register(InProcessClient client, String name) throws Exception {
+        client.send(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY
+                + MessagesCodes.SEPARATOR + MessagesCodes.FEATURE_TRANSFER);
+        assertEquals("HLO|2|transfer", client.receiveText(5, TimeUnit.SECONDS));
+        client.send(BinaryCodec.encode(BinaryCodes.NEW_USER, name));
+        assertEquals(name, next(client, BinaryCodes.NEW_USER).getString(0));
+    }
+
+    private static BinaryFrameReader next(InProcessClient client, byte opcode) throws Exception {
+        while (true) {
+            ByteBuffer frame = client.receive(5, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            BinaryFrameReader reader = new BinaryFrameReader(Integer.MAX_VALUE);
+            assertTrue(reader.next(frame));
+            if (reader.opcode() == opcode) {
+                return reader;
+            }
+        }
+    }
+
+    private static void register(DataOutputStream out, DataInputStream in, String name) throws IOException {
+        out.writeUTF(MessagesCodes.HELLO + MessagesCodes.SEPARATOR + BinaryCodes.VERSION_BINARY
+                + MessagesCodes.SEPARATOR + MessagesCodes.FEATURE_TRANSFER);
+        assertEquals("HLO|2|transfer", in.readUTF());
+        TestClients.writeBinary(out, BinaryCodec.encode(BinaryCodes.NEW_USER, name));
+        assertEquals(name, next(in, BinaryCodes.NEW_USER).getString(0));
+    }
+
+    /**
+     * Metodo que envia un archivo en porciones de 16 KiB, solo las que el servidor admite.
+     */
+    private static void upload(DataOutputStream out, DataInputStream in, String id, String receiver, byte[] content)
+            throws IOException {
+        TestClients.writeBinary(out,
+                BinaryCodec.encode(BinaryCodes.FILE, id, receiver, "datos.bin", String.valueOf(content.length)));
+        int sent = 0;
+        int credits = 0;
+        while (sent < content.length) {
+            while (credits == 0) {
+                BinaryFrameReader credit = next(in, BinaryCodes.CREDIT);
+                assertEquals(id, credit.getString(0));
+                credits = Integer.parseInt(credit.getString(1));
+                assertEquals(16 * 1024, Integer.parseInt(credit.getString(2)));
+            }
+            int length = Math.min(16 * 1024, content.length - sent);
+            TestClients.writeBinary(out, chunk(id, content, sent, length));
+            sent += length;
+            credits--;
+        }
+    }
+
+    /**
+     * Metodo que arma un frame CHK con una porcion del contenido, como lo enviaria un cliente.
+     */
+    private static ByteBuffer chunk(String id, byte[] content, int offset, int length) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(BinaryCodes.HEADER_LENGTH + 1 + 1 + 4 + idBytes.length + 1 + 4 + length);
+        frame.putInt(frame.capacity() - BinaryCodes.HEADER_LENGTH);
+        frame.put(BinaryCodes.CHUNK);
+        frame.put(BinaryCodes.TYPE_STRING);
+        frame.putInt(idBytes.length);
+        frame.put(idBytes);
+        frame.put(BinaryCodes.TYPE_BYTES);
+        frame.putInt(length);
+        frame.put(content, offset, length);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Metodo que lee frames binarios hasta recibir uno con el opcode indicado, descartando los anteriores.
+     */
+    private static BinaryFrameReader next(DataInputStream in, byte opcode) throws IOException {
+        while (true) {
+            BinaryFrameReader reader = TestClients.readFrame(in);
+            if (reader.opcode() == opcode) {
+                return reader;
+            }
+        }
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return !files.findAny().isPresent();
+        }
+    }
+}
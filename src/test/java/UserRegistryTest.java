@@ -0,0 +1,72 @@
+import chat.ChatServer;
+import chat.ChatSession;
+import chat.registry.UserRegistry;
+import org.junit.jupiter.api.Test;
+import util.Frame;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserRegistryTest {
+
+    @Test
+    void registerLookupAndRemove() {
+        ChatServer server = new ChatServer(0);
+        UserRegistry registry = new UserRegistry(4);
+        ChatSession ana = new TestSession(server);
+        ChatSession beto = new TestSession(server);
+
+        registry.register("Ana", ana);
+        registry.register("Beto", beto);
+        assertSame(ana, registry.get("Ana"));
+        assertSame(beto, registry.get("Beto"));
+        assertEquals(2, registry.size());
+
+        // Una conexion anterior del mismo usuario no elimina la sesion nueva
+        ChatSession anaAgain = new TestSession(server);
+        registry.register("Ana", anaAgain);
+        assertEquals(2, registry.size());
+        assertNull(registry.unregister("Ana", ana));
+        assertSame(anaAgain, registry.unregister("Ana", anaAgain));
+        assertNull(registry.get("Ana"));
+
+        List<String> names = registry.names();
+        assertEquals(1, names.size());
+        assertTrue(names.contains("Beto"));
+        assertEquals(1, registry.sessions().size());
+    }
+
+    @Test
+    void usersAreSpreadAcrossShards() {
+        ChatServer server = new ChatServer(0);
+        UserRegistry registry = new UserRegistry(16);
+        for (int i = 0; i < 1000; i++) {
+            registry.register("user" + i, new TestSession(server));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(registry.unregister("user" + i) != null);
+        }
+        assertEquals(500, registry.size());
+        List<String> names = registry.names();
+        assertEquals(500, names.size());
+        for (int i = 1; i < 1000; i += 2) {
+            assertTrue(names.contains("user" + i));
+        }
+        assertEquals(500, registry.sessions().size());
+    }
+
+    private static class TestSession extends ChatSession {
+
+        TestSession(ChatServer chatServer) {
+            super(chatServer, null);
+        }
+
+        @Override
+        protected void send(Frame frame) {
+        }
+    }
+}